@@ -23,12 +23,22 @@ if [ ${JAVA_MAJOR_VERSION} -eq 1 ] ; then
   export MAIN_BUILD="TRUE"
 fi
 
+if [ ${JAVA_MAJOR_VERSION} -eq 11 ] && [ "$(uname -m)" = "x86_64" ] ; then
+  # the released jars are built on Java 11, so that oauth-common contains the Java 11 transport as well,
+  # while the base classes are still compiled with --release 8, and tested on Java 8 below
+  export RELEASE_BUILD="TRUE"
+  export JAVA8_HOME=${JAVA8_HOME:-/usr/lib/jvm/java-8-openjdk-amd64}
+fi
+
 export PULL_REQUEST=${PULL_REQUEST:-true}
 export BRANCH=${BRANCH:-main}
 export TAG=${TAG:-latest}
 
 if [ ${JAVA_MAJOR_VERSION} -eq 1 ] ; then
   mvn -e -V -B install
+elif [ "${RELEASE_BUILD}" = "TRUE" ] ; then
+  # run the oauth-common tests on Java 8 against the multi-release jar as well
+  mvn -e -V -B -Djava8.home=${JAVA8_HOME} install
 else
   mvn -e -V -B -Dmaven.javadoc.skip=true install
 fi
@@ -78,7 +88,7 @@ if [ "$PULL_REQUEST" != "false" ] ; then
 elif [ "$TAG" = "latest" ] && [ "$BRANCH" != "main" ]; then
     echo "Not in main branch and not in release tag - nothing to push"
 else
-    if [ "${MAIN_BUILD}" = "TRUE" ] ; then
+    if [ "${RELEASE_BUILD}" = "TRUE" ] ; then
         echo "Pushing JARs"
         ./.travis/push-to-nexus.sh
     fi
@@ -5,6 +5,7 @@
 package io.strimzi.kafka.oauth.client;
 
 import io.strimzi.kafka.oauth.common.ConfigException;
+import io.strimzi.kafka.oauth.common.HttpEndpointGroup;
 import io.strimzi.kafka.oauth.common.MetricsHandler;
 import io.strimzi.kafka.oauth.common.Config;
 import io.strimzi.kafka.oauth.common.ConfigUtil;
@@ -95,7 +96,7 @@ public class JaasClientOauthLoginCallbackHandler implements AuthenticateCallback
             }
 
             try {
-                tokenEndpoint = new URI(endpoint);
+                tokenEndpoint = HttpEndpointGroup.register(endpoint);
             } catch (URISyntaxException e) {
                 throw new ConfigException("Specified token endpoint uri is invalid: " + endpoint, e);
             }
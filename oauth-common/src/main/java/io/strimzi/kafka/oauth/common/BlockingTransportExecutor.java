@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.validator.DaemonThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor that runs the blocking requests of the transports that don't implement {@link HttpTransport#sendAsync} themselves
+ */
+class BlockingTransportExecutor {
+
+    private static final int THREADS = 20;
+
+    static final ExecutorService EXECUTOR = createExecutor();
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private BlockingTransportExecutor() {
+    }
+}
@@ -30,6 +30,20 @@ public class Config {
     public static final String OAUTH_ACCESS_TOKEN_IS_JWT = "oauth.access.token.is.jwt";
     public static final String OAUTH_CONNECT_TIMEOUT_SECONDS = "oauth.connect.timeout.seconds";
     public static final String OAUTH_READ_TIMEOUT_SECONDS = "oauth.read.timeout.seconds";
+    public static final String OAUTH_HTTP_TRANSPORT = "oauth.http.transport";
+    public static final String OAUTH_HTTP_POOL_MAX_CONNECTIONS = "oauth.http.pool.max.connections";
+    public static final String OAUTH_HTTP_POOL_IDLE_TIMEOUT_SECONDS = "oauth.http.pool.idle.timeout.seconds";
+    public static final String OAUTH_HTTP_POOL_TLS_SESSION_REUSE = "oauth.http.pool.tls.session.reuse";
+    public static final String OAUTH_HTTP_MAX_RESPONSE_SIZE = "oauth.http.max.response.size";
+    public static final String OAUTH_HTTP_COMPRESSION_ENABLED = "oauth.http.compression.enabled";
+    public static final String OAUTH_HTTP_ENDPOINT_EJECTION_SECONDS = "oauth.http.endpoint.ejection.seconds";
+    public static final String OAUTH_HTTP_ENDPOINT_EJECTION_MAX_SECONDS = "oauth.http.endpoint.ejection.max.seconds";
+    public static final String OAUTH_HTTP_DNS_CACHE_TTL_SECONDS = "oauth.http.dns.cache.ttl.seconds";
+    public static final String OAUTH_HTTP_CONCURRENCY_LIMIT_ENABLED = "oauth.http.concurrency.limit.enabled";
+    public static final String OAUTH_HTTP_CONCURRENCY_LIMIT_INITIAL = "oauth.http.concurrency.limit.initial";
+    public static final String OAUTH_HTTP_CONCURRENCY_LIMIT_MAX = "oauth.http.concurrency.limit.max";
+    public static final String OAUTH_HTTP_CONCURRENCY_LIMIT_BACKGROUND_PERCENT = "oauth.http.concurrency.limit.background.percent";
+    public static final String OAUTH_HTTP_CONCURRENCY_LIMIT_QUEUE_SIZE = "oauth.http.concurrency.limit.queue.size";
     public static final String OAUTH_CONFIG_ID = "oauth.config.id";
     public static final String OAUTH_ENABLE_METRICS = "oauth.enable.metrics";
 
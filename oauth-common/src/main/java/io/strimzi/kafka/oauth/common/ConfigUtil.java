@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocketFactory;
+import java.net.URI;
 import java.util.Properties;
 
 public class ConfigUtil {
@@ -32,6 +33,26 @@ public class ConfigUtil {
         return "".equals(hostCheck) ? SSLUtil.createAnyHostHostnameVerifier() : null;
     }
 
+    /**
+     * Get the URI of the endpoint, registering the group of equivalent endpoints if the option lists more than one.
+     *
+     * @param config The configuration
+     * @param key The endpoint option (e.g. <em>oauth.jwks.endpoint.uri</em>)
+     * @return The URI identifying the endpoint group, or null if not configured
+     * @see HttpEndpointGroup
+     */
+    public static URI getEndpointURI(Config config, String key) {
+        String value = config.getValue(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return HttpEndpointGroup.register(value);
+        } catch (Exception e) {
+            throw new ConfigException("Bad URI value for key: " + key + ", value: " + value, e);
+        }
+    }
+
     public static void putIfNotNull(Properties p, String key, Object value) {
         if (value != null) {
             p.put(key, value);
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.metrics.HttpConcurrencyLimitSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The adaptive limit of the number of requests in progress to the same authorization server endpoint (host and port), shared by all
+ * the components in the JVM - the validators, the authorizer, the keys refresh, and the grants refresh.
+ * <p>
+ * The limit is adjusted by the AIMD (additive increase, multiplicative decrease) algorithm. Every request that completes
+ * while at least half the limit is in use raises the limit by <em>1 / limit</em> - about one per round of requests.
+ * If the request fails with an <code>IOException</code> (e.g. a timeout), the server responds with <em>429</em>, <em>503</em>
+ * or <em>504</em> status, or the response time exceeds twice the minimum response time observed recently, the limit is reduced
+ * by a tenth - at most once per round of requests, so that the requests already in progress do not reduce it further.
+ * </p>
+ * <p>
+ * The requests over the limit wait for the requests in progress to complete. The interactive requests (e.g. the introspection of
+ * the token of the client being authenticated) may use the whole limit, and are always let through before the waiting background
+ * requests. The background requests (marked by {@link #background(Task)}, e.g. the periodic refresh of the keys or the grants) may
+ * only use the configured share of the limit. If too many requests are already waiting, the request fails immediately with
+ * {@link LimitExceededException}. The request waits at most for the connect timeout of the request, as the wait stands in for
+ * establishing the connection, and then fails with {@link LimitExceededException} as well.
+ * </p>
+ * <p>
+ * The following options can be set as system properties, or as env variables:
+ * <ul>
+ * <li><em>oauth.http.concurrency.limit.enabled</em> If true, the concurrency of the requests is limited. Default value is <em>false</em>.</li>
+ * <li><em>oauth.http.concurrency.limit.initial</em> The initial limit. Default value is <em>20</em>.</li>
+ * <li><em>oauth.http.concurrency.limit.max</em> The maximum the limit can grow to. Default value is <em>200</em>.</li>
+ * <li><em>oauth.http.concurrency.limit.background.percent</em> The share of the limit the background requests may use. Default value is <em>50</em>.</li>
+ * <li><em>oauth.http.concurrency.limit.queue.size</em> The maximum number of requests of each priority waiting for the requests in progress to complete.
+ * Default value is <em>1000</em>.</li>
+ * </ul>
+ */
+public class HttpConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpConcurrencyLimiter.class);
+
+    static final int DEFAULT_INITIAL_LIMIT = 20;
+    static final int DEFAULT_MAX_LIMIT = 200;
+    static final int DEFAULT_BACKGROUND_PERCENT = 50;
+    static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The factor by which the limit is reduced when the server is overloaded
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * The response time, as a multiple of the minimum response time, above which the server is considered overloaded
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The increase of the response time in ms below which the server is never considered overloaded, so that the noise
+     * of the very short response times does not reduce the limit
+     */
+    private static final long LATENCY_SLACK_MS = 20;
+
+    /**
+     * The time after which the minimum response time is forgotten, and the minimum of the last window is used instead
+     */
+    private static final long MIN_RTT_WINDOW_MS = 60_000;
+
+    private static final boolean ENABLED = new Config().getValueAsBoolean(Config.OAUTH_HTTP_CONCURRENCY_LIMIT_ENABLED, false);
+
+    private static final Map<URI, HttpConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static final Map<URI, HttpConcurrencyLimiter> LIMITERS_BY_REQUEST_URI = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Boolean> BACKGROUND = new ThreadLocal<>();
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    private final URI uri;
+    private final int maxLimit;
+    private final int backgroundPercent;
+    private final int queueSize;
+
+    private final HttpConcurrencyLimitSensorKeyProducer sensorKeyProducer;
+    private final AtomicBoolean metricsRegistered = new AtomicBoolean();
+
+    private final Deque<Waiter> interactiveQueue = new ArrayDeque<>();
+    private final Deque<Waiter> backgroundQueue = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+    private long minRttMs = -1;
+    private long windowMinRttMs = -1;
+    private long windowStartMs = System.currentTimeMillis();
+    private long lastDecreaseMs;
+
+    /**
+     * The task performed as the background task
+     *
+     * @param <T> The result type
+     * @param <E> The exception type
+     */
+    public interface Task<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * The blocking send of the request
+     */
+    interface Call {
+        HttpResponse send() throws IOException;
+    }
+
+    /**
+     * The exception signalling that the request was not sent, because too many requests to the endpoint were already waiting
+     */
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        LimitExceededException(URI uri, int limit) {
+            super("Too many requests to " + uri + " waiting for the requests in progress to complete (concurrency limit: " + limit + ")");
+        }
+
+        LimitExceededException(URI uri, int limit, long maxWaitMs) {
+            super("Request to " + uri + " not sent within " + maxWaitMs + " ms waiting for the requests in progress to complete (concurrency limit: " + limit + ")");
+        }
+    }
+
+    HttpConcurrencyLimiter(URI uri, int initialLimit, int maxLimit, int backgroundPercent, int queueSize) {
+        if (initialLimit < 1) {
+            throw new IllegalArgumentException("Invalid initial limit: " + initialLimit + " (should be at least 1)");
+        }
+        if (maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid max limit: " + maxLimit + " (should be at least the initial limit: " + initialLimit + ")");
+        }
+        if (backgroundPercent < 1 || backgroundPercent > 100) {
+            throw new IllegalArgumentException("Invalid background percent: " + backgroundPercent + " (should be between 1 and 100)");
+        }
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+        }
+        this.uri = uri;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.backgroundPercent = backgroundPercent;
+        this.queueSize = queueSize;
+        this.sensorKeyProducer = new HttpConcurrencyLimitSensorKeyProducer(uri);
+    }
+
+    /**
+     * Perform the task with the requests it sends to the authorization server treated as the background requests.
+     * <p>
+     * The priority is determined when the request is sent, so the asynchronous requests have to be sent from within the task,
+     * but may complete later.
+     * </p>
+     *
+     * @param task The task
+     * @param <T> The result type
+     * @param <E> The exception type
+     * @return The result of the task
+     * @throws E The exception thrown by the task
+     */
+    public static <T, E extends Exception> T background(Task<T, E> task) throws E {
+        Boolean previous = BACKGROUND.get();
+        BACKGROUND.set(Boolean.TRUE);
+        try {
+            return task.run();
+        } finally {
+            if (previous == null) {
+                BACKGROUND.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if the current thread is performing the background task
+     *
+     * @return True if the requests sent by the current thread are the background requests
+     */
+    static boolean isBackground() {
+        return BACKGROUND.get() != null;
+    }
+
+    /**
+     * Get the limiter of the endpoint (host and port) of the URI
+     *
+     * @param uri The request URI
+     * @return The limiter, or null if the concurrency of the requests is not limited
+     */
+    static HttpConcurrencyLimiter forUri(URI uri) {
+        if (!ENABLED) {
+            return null;
+        }
+        return LIMITERS_BY_REQUEST_URI.computeIfAbsent(uri, u -> LIMITERS.computeIfAbsent(
+                URI.create(u.getScheme() + "://" + u.getRawAuthority() + "/"), HttpConcurrencyLimiter::create));
+    }
+
+    private static HttpConcurrencyLimiter create(URI endpoint) {
+        Config config = new Config();
+        int initialLimit = config.getValueAsInt(Config.OAUTH_HTTP_CONCURRENCY_LIMIT_INITIAL, DEFAULT_INITIAL_LIMIT);
+        int maxLimit = config.getValueAsInt(Config.OAUTH_HTTP_CONCURRENCY_LIMIT_MAX, DEFAULT_MAX_LIMIT);
+        int backgroundPercent = config.getValueAsInt(Config.OAUTH_HTTP_CONCURRENCY_LIMIT_BACKGROUND_PERCENT, DEFAULT_BACKGROUND_PERCENT);
+        int queueSize = config.getValueAsInt(Config.OAUTH_HTTP_CONCURRENCY_LIMIT_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        try {
+            HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter(endpoint, initialLimit, maxLimit, backgroundPercent, queueSize);
+            log.debug("Limiting the concurrency of the requests to {} (initial limit: {}, max limit: {}, background percent: {}, queue size: {})",
+                    endpoint, initialLimit, maxLimit, backgroundPercent, queueSize);
+            return limiter;
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException("Invalid configuration of the concurrency limit (" + Config.OAUTH_HTTP_CONCURRENCY_LIMIT_ENABLED + "=true): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Send the request once the number of requests in progress is below the limit, waiting for it if necessary
+     *
+     * @param background True if the request is the background request
+     * @param maxWaitMs The maximum time to wait for the requests in progress to complete (in millis)
+     * @param call The function sending the request
+     * @return The response
+     * @throws IOException If the request fails, or is rejected with {@link LimitExceededException}
+     */
+    HttpResponse send(boolean background, long maxWaitMs, Call call) throws IOException {
+        Permit permit = await(acquire(background), background, maxWaitMs);
+        HttpResponse response = null;
+        Throwable error = null;
+        try {
+            response = call.send();
+            return response;
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } finally {
+            permit.release(response, error);
+        }
+    }
+
+    /**
+     * Send the request once the number of requests in progress is below the limit, without blocking the calling thread
+     *
+     * @param background True if the request is the background request
+     * @param maxWaitMs The maximum time to wait for the requests in progress to complete (in millis)
+     * @param call The function sending the request
+     * @return The future completed with the response, or with the error if the request fails, or is rejected with {@link LimitExceededException}
+     */
+    CompletableFuture<HttpResponse> sendAsync(boolean background, long maxWaitMs, Supplier<CompletableFuture<HttpResponse>> call) {
+        CompletableFuture<Permit> acquired = acquire(background);
+        if (!acquired.isDone()) {
+            ScheduledFuture<?> timeout = SCHEDULER.schedule(() -> {
+                expire(acquired, background, maxWaitMs);
+            }, maxWaitMs, TimeUnit.MILLISECONDS);
+            acquired.whenComplete((permit, e) -> timeout.cancel(false));
+        }
+        return acquired.thenCompose(permit -> {
+            CompletableFuture<HttpResponse> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                permit.release(null, null);
+                throw e;
+            }
+            return future.whenComplete((response, e) ->
+                    permit.release(response, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+        });
+    }
+
+    /**
+     * Get the permit to send the request
+     *
+     * @param background True if the request is the background request
+     * @return The future completed with the permit once the request can be sent
+     */
+    CompletableFuture<Permit> acquire(boolean background) {
+        registerMetrics();
+        synchronized (this) {
+            boolean canStart = background
+                    ? inFlight < backgroundLimit() && interactiveQueue.isEmpty() && backgroundQueue.isEmpty()
+                    : inFlight < limit() && interactiveQueue.isEmpty();
+            if (canStart) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            Deque<Waiter> queue = background ? backgroundQueue : interactiveQueue;
+            if (queue.size() < queueSize) {
+                Waiter waiter = new Waiter(background);
+                queue.add(waiter);
+                return waiter.future;
+            }
+        }
+        addMetricTime(sensorKeyProducer.rejectedKey(priority(background)), 0);
+        CompletableFuture<Permit> result = new CompletableFuture<>();
+        result.completeExceptionally(new LimitExceededException(uri, limit()));
+        return result;
+    }
+
+    private void completed(Permit permit, long rttMs, boolean sample, boolean overloaded) {
+        List<Waiter> granted;
+        synchronized (this) {
+            inFlight--;
+            if (sample) {
+                adjustLimit(permit.startMs, rttMs, overloaded);
+            }
+            granted = dequeue();
+        }
+        for (Waiter waiter : granted) {
+            Permit next = new Permit();
+            if (waiter.future.complete(next)) {
+                addMetricTime(sensorKeyProducer.queuedKey(priority(waiter.background)), next.startMs - waiter.startMs);
+            } else {
+                // the waiting was cancelled meanwhile
+                next.release(null, null);
+            }
+        }
+    }
+
+    private void adjustLimit(long startMs, long rttMs, boolean overloaded) {
+        long now = System.currentTimeMillis();
+        if (!overloaded) {
+            updateMinRtt(rttMs, now);
+            overloaded = rttMs > Math.max(minRttMs * LATENCY_TOLERANCE, minRttMs + LATENCY_SLACK_MS);
+        }
+
+        if (overloaded) {
+            // only the requests sent after the last decrease can decrease the limit again
+            if (startMs >= lastDecreaseMs) {
+                int previous = limit();
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastDecreaseMs = now;
+                if (log.isDebugEnabled() && previous != limit()) {
+                    log.debug("Concurrency limit of the requests to {} reduced to {} (response time: {} ms, minimum: {} ms)", uri, limit(), rttMs, minRttMs);
+                }
+            }
+        } else if ((inFlight + 1) * 2 >= limit()) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private void updateMinRtt(long rttMs, long now) {
+        if (windowMinRttMs < 0 || rttMs < windowMinRttMs) {
+            windowMinRttMs = rttMs;
+        }
+        if (minRttMs < 0 || rttMs < minRttMs) {
+            minRttMs = rttMs;
+        }
+        // the minimum is forgotten periodically, so that the permanently slower server is not considered overloaded forever
+        if (now - windowStartMs >= MIN_RTT_WINDOW_MS) {
+            minRttMs = windowMinRttMs;
+            windowMinRttMs = -1;
+            windowStartMs = now;
+        }
+    }
+
+    private List<Waiter> dequeue() {
+        List<Waiter> granted = Collections.emptyList();
+        Waiter waiter;
+        while (inFlight < limit() && (waiter = interactiveQueue.poll()) != null) {
+            granted = grant(waiter, granted);
+        }
+        while (interactiveQueue.isEmpty() && inFlight < backgroundLimit() && (waiter = backgroundQueue.poll()) != null) {
+            granted = grant(waiter, granted);
+        }
+        return granted;
+    }
+
+    private List<Waiter> grant(Waiter waiter, List<Waiter> granted) {
+        if (waiter.future.isDone()) {
+            return granted;
+        }
+        inFlight++;
+        List<Waiter> result = granted.isEmpty() ? new ArrayList<>() : granted;
+        result.add(waiter);
+        return result;
+    }
+
+    /**
+     * Fail the waiting for the permit, unless it has been granted meanwhile
+     *
+     * @return True if the waiting was failed
+     */
+    private boolean expire(CompletableFuture<Permit> future, boolean background, long maxWaitMs) {
+        // dequeued before failing, so that the failed request is never seen as still queued
+        synchronized (this) {
+            (background ? backgroundQueue : interactiveQueue).removeIf(waiter -> waiter.future == future);
+        }
+        if (!future.completeExceptionally(new LimitExceededException(uri, limit(), maxWaitMs))) {
+            return false;
+        }
+        addMetricTime(sensorKeyProducer.rejectedKey(priority(background)), maxWaitMs);
+        return true;
+    }
+
+    private Permit await(CompletableFuture<Permit> future, boolean background, long maxWaitMs) throws IOException {
+        try {
+            try {
+                return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // if the permit was granted meanwhile, the future now holds it
+                expire(future, background, maxWaitMs);
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // the permit was granted meanwhile
+                future.join().release(null, null);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send the request to: " + uri);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to send the request to: " + uri, e.getCause());
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "oauth-concurrency-limit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    private int backgroundLimit() {
+        return Math.max(1, (int) limit * backgroundPercent / 100);
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return interactiveQueue.size() + backgroundQueue.size();
+    }
+
+    synchronized long minRttMs() {
+        return minRttMs;
+    }
+
+    private static boolean isOverloaded(HttpResponse response) {
+        // the failed request (e.g. the timeout) is also the sign of overload
+        if (response == null) {
+            return true;
+        }
+        int status = response.status();
+        return status == 429 || status == 503 || status == 504;
+    }
+
+    private static String priority(boolean background) {
+        return background ? "background" : "interactive";
+    }
+
+    private void registerMetrics() {
+        OAuthMetrics metrics = metrics();
+        if (metrics != null && metricsRegistered.compareAndSet(false, true)) {
+            metrics.addGauge(sensorKeyProducer.limitKey(), "limit", "Current concurrency limit", this::limit);
+            metrics.addGauge(sensorKeyProducer.limitKey(), "inFlight", "Number of requests in progress", this::inFlight);
+            metrics.addGauge(sensorKeyProducer.limitKey(), "queued", "Number of requests waiting to be sent", this::queued);
+            metrics.addGauge(sensorKeyProducer.limitKey(), "minRttMs", "Minimum recent response time in ms", this::minRttMs);
+        }
+    }
+
+    private static OAuthMetrics metrics() {
+        // The limit is shared by all the components, the metrics are collected if they are enabled for any of them
+        return Services.isAvailable() && Services.getInstance().hasMetrics() ? Services.getInstance().getMetrics() : null;
+    }
+
+    private static void addMetricTime(SensorKey key, long timeMs) {
+        OAuthMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+
+    /**
+     * The permit to send one request, which has to be released once the request completes
+     */
+    final class Permit {
+
+        private final long startMs = System.currentTimeMillis();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Release the permit, and adjust the limit by the outcome of the request
+         *
+         * @param response The response, or null if the request failed
+         * @param error The error, or null. The error other than <code>IOException</code> does not adjust the limit.
+         */
+        void release(HttpResponse response, Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                boolean sample = response != null || error instanceof IOException;
+                completed(this, System.currentTimeMillis() - startMs, sample, sample && isOverloaded(response));
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private final boolean background;
+        private final long startMs = System.currentTimeMillis();
+
+        private Waiter(boolean background) {
+            this.background = background;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A persistent HTTP/1.1 connection to the authorization server, used by the {@link PooledHttpTransport}.
+ * <p>
+ * The connection is used by one request at a time. It reads the complete response, so that the connection can be reused for the next request.
+ * </p>
+ */
+class HttpConnection implements Closeable {
+
+    private static final String USER_AGENT = "Java/" + System.getProperty("java.version");
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final ByteBuffer received = ByteBuffer.allocate(8192);
+
+    private long exchanges;
+    private volatile boolean failed;
+
+    // guarded by the pool
+    private long lastUsedMs;
+
+    private HttpConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        received.flip();
+    }
+
+    /**
+     * Open a new connection to the address, and perform the TLS handshake if the scheme is <em>https</em>.
+     *
+     * @param uri The request URI
+     * @param address The resolved address to connect to
+     * @param socketFactory The optional SSL socket factory
+     * @param hostnameVerifier The optional hostname verifier. If not set, the hostname is verified as part of the TLS handshake.
+     * @param tlsSessionReuse If false, the TLS session is invalidated after the handshake, so that it is not resumed by the next connection
+     * @param connectTimeoutMs The connect timeout in millis
+     * @param readTimeoutMs The read timeout in millis, also used as the timeout for the TLS handshake
+     * @return The new connection
+     * @throws IOException If the connection fails
+     */
+    static HttpConnection open(URI uri, InetSocketAddress address, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                               boolean tlsSessionReuse, int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(readTimeoutMs);
+            try {
+                socket.connect(address, connectTimeoutMs);
+            } catch (ConnectException e) {
+                throw new IOException("Failed to connect to: " + uri, e);
+            }
+
+            if (isHttps(uri)) {
+                socket = startTls(socket, host(uri), port(uri), socketFactory, hostnameVerifier, tlsSessionReuse);
+            }
+            return new HttpConnection(socket);
+
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private static Socket startTls(Socket socket, String host, int port, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                   boolean tlsSessionReuse) throws IOException {
+        SSLSocketFactory factory = socketFactory != null ? socketFactory : HttpsURLConnection.getDefaultSSLSocketFactory();
+
+        // Layering over the connected socket with the host and port specified allows the TLS session of the previous connection to be resumed
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+        if (hostnameVerifier == null) {
+            SSLParameters params = sslSocket.getSSLParameters();
+            params.setEndpointIdentificationAlgorithm("HTTPS");
+            sslSocket.setSSLParameters(params);
+        }
+        sslSocket.startHandshake();
+
+        if (hostnameVerifier != null && !hostnameVerifier.verify(host, sslSocket.getSession())) {
+            throw new SSLPeerUnverifiedException("Hostname verification failed for: " + host);
+        }
+        if (!tlsSessionReuse) {
+            sslSocket.getSession().invalidate();
+        }
+        return sslSocket;
+    }
+
+    /**
+     * Send the request, and read the complete response.
+     * <p>
+     * If the connection is found to be closed by the server before any part of the response is received, and the request was not
+     * the first one sent over the connection, the {@link StaleConnectionException} is thrown, so that the request can be retried
+     * with a new connection. The exception tells if the request may have reached the server, in which case only the safe request can be retried.
+     * </p>
+     *
+     * @param request The encoded request
+     * @param method The request method
+     * @param readTimeoutMs The read timeout in millis
+     * @param maxResponseSize The maximum size of the response body in bytes
+     * @return The response
+     * @throws IOException If sending the request, or reading the response fails
+     */
+    HttpResponse exchange(byte[] request, String method, int readTimeoutMs, int maxResponseSize) throws IOException {
+        boolean reused = exchanges++ > 0;
+        if (failed) {
+            throw new StaleConnectionException(new SocketException("Connection closed"), false);
+        }
+        try {
+            out.write(request);
+            out.flush();
+        } catch (IOException e) {
+            fail();
+            throw reused ? new StaleConnectionException(e, true) : e;
+        }
+
+        HttpResponseParser parser = new HttpResponseParser(method, maxResponseSize);
+        try {
+            socket.setSoTimeout(readTimeoutMs);
+            while (!parser.feed(received)) {
+                if (!fill()) {
+                    if (parser.closed()) {
+                        break;
+                    }
+                    throw parser.isStarted() ? new EOFException("Unexpected end of response") : new SocketException("Unexpected end of file from server");
+                }
+            }
+        } catch (IOException e) {
+            fail();
+            throw reused && !parser.isStarted() && !(e instanceof SocketTimeoutException) ? new StaleConnectionException(e, true) : e;
+        } catch (RuntimeException e) {
+            fail();
+            throw new IOException("Failed to read the response", e);
+        }
+
+        if (!parser.isKeepAlive()) {
+            fail();
+        }
+        return parser.response();
+    }
+
+    /**
+     * Check if the idle connection has been closed by the server, before sending the request that can not be retried over it.
+     * Any data or the end of stream received while idle means the connection can no longer be used.
+     *
+     * @return True if the connection has been closed, or is otherwise unusable
+     */
+    boolean isStale() {
+        if (!isOpen() || received.hasRemaining()) {
+            return true;
+        }
+        try {
+            socket.setSoTimeout(1);
+            in.read();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        received.clear();
+        int count = in.read(received.array(), 0, received.capacity());
+        received.limit(Math.max(count, 0));
+        return count != -1;
+    }
+
+    private void fail() {
+        failed = true;
+        close();
+    }
+
+    /**
+     * The safe methods are only meant to retrieve the information, and can be retried
+     *
+     * @param method The request method
+     * @return True if the method is safe as defined by RFC 7231
+     */
+    static boolean isSafe(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    /**
+     * Encode the request
+     *
+     * @param uri The request URI
+     * @param method The request method
+     * @param headers The request headers
+     * @param body The request body or null
+     * @return The request bytes
+     */
+    static byte[] encodeRequest(URI uri, String method, Map<String, String> headers, byte[] body) {
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(uri.getHost());
+        if (uri.getPort() != -1) {
+            sb.append(':').append(uri.getPort());
+        }
+        sb.append("\r\n");
+        sb.append("User-Agent: ").append(USER_AGENT).append("\r\n");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        if (body != null) {
+            sb.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        sb.append("\r\n");
+
+        byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (body == null || body.length == 0) {
+            return head;
+        }
+        byte[] request = new byte[head.length + body.length];
+        System.arraycopy(head, 0, request, 0, head.length);
+        System.arraycopy(body, 0, request, head.length, body.length);
+        return request;
+    }
+
+    static boolean isHttps(URI uri) {
+        return "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    static String host(URI uri) {
+        String host = uri.getHost();
+        if (host == null) {
+            throw new IllegalArgumentException("No host in uri: " + uri);
+        }
+        // IPv6 literal is enclosed in brackets
+        return host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    }
+
+    static int port(URI uri) {
+        int port = uri.getPort();
+        if (port != -1) {
+            return port;
+        }
+        return isHttps(uri) ? 443 : 80;
+    }
+
+    /**
+     * @return True if the connection has not failed, and has not been closed
+     */
+    boolean isOpen() {
+        return !failed && !socket.isClosed();
+    }
+
+    long lastUsedMs() {
+        return lastUsedMs;
+    }
+
+    void lastUsedMs(long timeMs) {
+        lastUsedMs = timeMs;
+    }
+
+    /**
+     * Close the connection. The request in progress fails.
+     */
+    @Override
+    public void close() {
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Thrown when the reused connection turns out to have been closed by the server while idle
+     */
+    static class StaleConnectionException extends IOException {
+
+        private final boolean sent;
+
+        StaleConnectionException(IOException cause, boolean sent) {
+            super("Pooled connection closed by the server", cause);
+            this.sent = sent;
+        }
+
+        /**
+         * @return True if the request may have been received by the server, false if it was never sent
+         */
+        boolean isSent() {
+            return sent;
+        }
+    }
+}
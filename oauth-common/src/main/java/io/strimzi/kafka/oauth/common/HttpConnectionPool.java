@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The pool of persistent connections to a single endpoint, used by the {@link PooledHttpTransport}.
+ * <p>
+ * At most <code>maxConnections</code> connections are open at the same time, each used by one request at a time.
+ * When all of them are in use, the caller waits for a connection to be released.
+ * The idle connections are reused in the LIFO order, which lets the least recently used ones reach the idle timeout, after which they are closed -
+ * by the periodic {@link #closeExpired()}, or when a connection is acquired.
+ * </p>
+ */
+class HttpConnectionPool {
+
+    private final String endpoint;
+    private final int maxConnections;
+    private final long idleTimeoutMs;
+
+    private final Deque<HttpConnection> idle = new ArrayDeque<>();
+    private final Set<HttpConnection> busy = new LinkedHashSet<>();
+    private int opening;
+    private int waiting;
+
+    /**
+     * Set once the metrics for this pool have been registered
+     */
+    final AtomicBoolean metricsRegistered = new AtomicBoolean();
+
+    HttpConnectionPool(String endpoint, int maxConnections, long idleTimeoutMs) {
+        this.endpoint = endpoint;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Get the connection to send the request over, waiting for one to be released if all are in use.
+     * <p>
+     * If there is no idle connection, but a new one can be opened, the permit is granted and the lease without the connection is returned.
+     * The caller then has to open the connection, and report it with {@link #opened}, or call {@link #openFailed} if it failed to open.
+     * Once the exchange is over the caller has to {@link #release} the connection.
+     * </p>
+     *
+     * @param maxWaitMs The maximum time to wait for the connection to be released
+     * @return The lease of the connection
+     * @throws PoolTimeoutException If no connection was released within the maximum wait time
+     * @throws InterruptedIOException If the thread was interrupted while waiting
+     */
+    Lease acquire(long maxWaitMs) throws InterruptedIOException {
+        List<HttpConnection> closed = new ArrayList<>();
+        try {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + maxWaitMs;
+                boolean waited = false;
+                while (true) {
+                    removeExpired(closed);
+                    HttpConnection connection = idle.pollFirst();
+                    if (connection != null) {
+                        busy.add(connection);
+                        return new Lease(connection, waited);
+                    }
+                    if (busy.size() + opening < maxConnections) {
+                        opening++;
+                        return new Lease(null, waited);
+                    }
+
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new PoolTimeoutException(endpoint);
+                    }
+                    waiting++;
+                    waited = true;
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for a pooled connection to: " + endpoint);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            }
+        } finally {
+            closed.forEach(HttpConnection::close);
+        }
+    }
+
+    /**
+     * The exception signalling that the request was not sent, because all the connections to the endpoint were in use
+     */
+    static class PoolTimeoutException extends SocketTimeoutException {
+
+        private static final long serialVersionUID = 1L;
+
+        PoolTimeoutException(String endpoint) {
+            super("Timed out waiting for a pooled connection to: " + endpoint);
+        }
+    }
+
+    /**
+     * The connection to send the request over
+     */
+    static class Lease {
+
+        private final HttpConnection connection;
+        private final boolean waited;
+
+        Lease(HttpConnection connection, boolean waited) {
+            this.connection = connection;
+            this.waited = waited;
+        }
+
+        /**
+         * @return The connection, or null if a new connection should be opened
+         */
+        HttpConnection connection() {
+            return connection;
+        }
+
+        /**
+         * @return True if all the connections were in use, and the caller had to wait for one to be released
+         */
+        boolean hasWaited() {
+            return waited;
+        }
+    }
+
+    /**
+     * Add the newly opened connection to the pool
+     *
+     * @param connection The connection
+     */
+    synchronized void opened(HttpConnection connection) {
+        opening--;
+        busy.add(connection);
+    }
+
+    /**
+     * Return the permit to open the connection, which failed to open
+     */
+    synchronized void openFailed() {
+        opening--;
+        notifyAll();
+    }
+
+    /**
+     * Called when the exchange over the connection is over. The connection becomes idle, unless it is closed.
+     *
+     * @param connection The connection
+     * @param reuse True if the connection can be used for another request, false if it should be closed
+     */
+    void release(HttpConnection connection, boolean reuse) {
+        boolean close = !reuse;
+        synchronized (this) {
+            busy.remove(connection);
+            if (close || !connection.isOpen()) {
+                close = true;
+            } else {
+                connection.lastUsedMs(System.currentTimeMillis());
+                idle.addFirst(connection);
+            }
+            notifyAll();
+        }
+        if (close) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Close all the idle connections, for example when they turn out to have been closed by the server.
+     */
+    void closeIdle() {
+        List<HttpConnection> closed;
+        synchronized (this) {
+            closed = new ArrayList<>(idle);
+            idle.clear();
+        }
+        closed.forEach(HttpConnection::close);
+    }
+
+    /**
+     * Close the idle connections that have reached the idle timeout, or have been closed by the server.
+     */
+    void closeExpired() {
+        List<HttpConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            removeExpired(expired);
+        }
+        expired.forEach(HttpConnection::close);
+    }
+
+    private void removeExpired(List<HttpConnection> expired) {
+        long oldest = System.currentTimeMillis() - idleTimeoutMs;
+        Iterator<HttpConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            HttpConnection connection = it.next();
+            if (connection.isOpen() && connection.lastUsedMs() >= oldest) {
+                continue;
+            }
+            it.remove();
+            expired.add(connection);
+        }
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    int maxConnections() {
+        return maxConnections;
+    }
+
+    synchronized int activeCount() {
+        return busy.size() + opening;
+    }
+
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    synchronized int waitingCount() {
+        return waiting;
+    }
+}
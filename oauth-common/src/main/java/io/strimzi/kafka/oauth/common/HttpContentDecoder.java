@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.metrics.HttpCompressionSensorKeyProducer;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses the response body sent with <em>Content-Encoding: gzip</em> or <em>deflate</em>.
+ * <p>
+ * The body is inflated as a stream into the buffer limited by the maximum response size, so that a small compressed response
+ * can not expand into an arbitrarily large one. If metrics are enabled, the compressed and the uncompressed sizes of the body
+ * are recorded per endpoint.
+ * </p>
+ */
+class HttpContentDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpContentDecoder.class);
+
+    /**
+     * The value of the <em>Accept-Encoding</em> request header listing the supported encodings
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private HttpContentDecoder() {
+    }
+
+    /**
+     * Decompress the response body, if it was compressed
+     *
+     * @param response The response as received from the server
+     * @param uri The request URI
+     * @param maxSize The maximum size of the decompressed body
+     * @return The response with the decompressed body, or the same response if the body is not compressed
+     * @throws IOException If the body is not validly compressed, or if the decompressed body exceeds the maximum size
+     */
+    static HttpResponse decode(HttpResponse response, URI uri, int maxSize) throws IOException {
+        String encoding = response.header("Content-Encoding");
+        if (encoding == null || response.bodyLength() == 0) {
+            return response;
+        }
+        encoding = encoding.trim();
+        boolean gzip = "gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding);
+        if (!gzip && !"deflate".equalsIgnoreCase(encoding)) {
+            if (!encoding.isEmpty() && !"identity".equalsIgnoreCase(encoding)) {
+                log.debug("Unsupported Content-Encoding '{}' of the response from: {} - using the body as is", encoding, uri);
+            }
+            return response;
+        }
+
+        // the compressed JSON typically expands several times
+        ResponseBodyBuffer buffer = new ResponseBodyBuffer(Math.min(response.bodyLength() * 4L, maxSize), maxSize);
+        InputStream body = response.bodyStream();
+        Inflater inflater = gzip ? null : new Inflater(!isZlib(body));
+        try (InputStream input = gzip ? new GZIPInputStream(body) : new InflaterInputStream(body, inflater)) {
+            buffer.appendAll(input);
+        } catch (ZipException | EOFException e) {
+            throw new IOException("Failed to decompress the response body (Content-Encoding: " + encoding + ") from: " + uri, e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        addMetrics(uri, gzip ? "gzip" : "deflate", response.bodyLength(), buffer.size());
+        return response.decoded(buffer.array(), buffer.size());
+    }
+
+    private static boolean isZlib(InputStream input) throws IOException {
+        // 'deflate' should be the zlib format, but some servers send the raw deflate stream without the zlib header
+        input.mark(2);
+        int cmf = input.read();
+        int flg = input.read();
+        input.reset();
+        return (cmf & 0x0f) == 8 && flg != -1 && (cmf << 8 | flg) % 31 == 0;
+    }
+
+    private static void addMetrics(URI uri, String encoding, long compressed, long uncompressed) {
+        if (!Services.isAvailable() || !Services.getInstance().hasMetrics()) {
+            return;
+        }
+        OAuthMetrics metrics = Services.getInstance().getMetrics();
+        HttpCompressionSensorKeyProducer sensorKeyProducer = new HttpCompressionSensorKeyProducer(uri, encoding);
+        metrics.addBytes(sensorKeyProducer.compressedKey(), compressed);
+        metrics.addBytes(sensorKeyProducer.uncompressedKey(), uncompressed);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cache of the resolved addresses of the endpoint hosts, used by the {@link PooledHttpTransport}.
+ * <p>
+ * The address is kept for the configured time to live, on top of the JDK's own caching. It is dropped as soon as the connection
+ * to it fails, so that the new address of the failed over host is picked up without waiting for the time to live to pass.
+ * The addresses that fail to resolve are not cached.
+ * </p>
+ */
+class HttpDnsCache {
+
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        private final InetAddress address;
+        private final long expiresAt;
+
+        Entry(InetAddress address, long expiresAt) {
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Create a new instance
+     *
+     * @param ttlSeconds The time to live of the cached address in seconds, or 0 to not cache the addresses
+     */
+    HttpDnsCache(int ttlSeconds) {
+        this.ttlMs = ttlSeconds * 1000L;
+    }
+
+    /**
+     * Resolve the address of the host
+     *
+     * @param host The host name
+     * @param port The port
+     * @return The address, which is unresolved if the host name could not be resolved
+     */
+    InetSocketAddress resolve(String host, int port) {
+        if (ttlMs <= 0) {
+            return new InetSocketAddress(host, port);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(host);
+        if (entry != null && entry.expiresAt > now) {
+            return new InetSocketAddress(entry.address, port);
+        }
+        InetSocketAddress result = new InetSocketAddress(host, port);
+        if (result.isUnresolved()) {
+            entries.remove(host);
+        } else {
+            entries.put(host, new Entry(result.getAddress(), now + ttlMs));
+        }
+        return result;
+    }
+
+    /**
+     * Drop the cached address of the host, for example when the connection to it fails
+     *
+     * @param host The host name
+     */
+    void invalidate(String host) {
+        entries.remove(host);
+    }
+}
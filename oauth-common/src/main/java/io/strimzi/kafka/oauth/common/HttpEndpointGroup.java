@@ -0,0 +1,507 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.metrics.HttpEndpointSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The group of equivalent endpoints (e.g. the JWKS endpoints of the authorization server nodes), among which the requests are balanced.
+ * <p>
+ * The endpoint options (e.g. <em>oauth.jwks.endpoint.uri</em>) accept a list of URIs separated by whitespace. The commas are not separators,
+ * as they are valid characters of a URI, but the value with a comma before the scheme of the next URI is rejected as ambiguous.
+ * </p>
+ * <p>
+ * The groups are registered per list of URIs, so the components configured with the same list share the group.
+ * The group is identified by the first URI in the list with a fragment numbering the group (e.g. <em>#endpoint-group-1</em>), which the components
+ * keep using to identify the endpoint, for example in the metrics. {@link HttpUtil} sends the requests to that URI to one of the endpoints
+ * of the group instead, so the fragment is never sent. The fragment is reserved, so that the component configured with just one URI never
+ * sends its requests to a group.
+ * </p>
+ * <p>
+ * The endpoint is selected by the power of two choices: of two randomly picked endpoints the one with the lower load wins.
+ * The load is the peak EWMA of the response time, multiplied by the number of requests in progress, so that a slow endpoint
+ * is avoided as soon as one slow response is received, and is gradually tried again as the average decays.
+ * </p>
+ * <p>
+ * When the request fails with an <code>IOException</code> or a <em>5xx</em> status, the endpoint is ejected. The ejected endpoint is not
+ * selected for the backoff time, which doubles with each subsequent failure, up to the maximum. If all the endpoints are ejected,
+ * the one to be readmitted first is tried, rather than failing the request outright.
+ * </p>
+ * <p>
+ * The request that was never sent (e.g. the connection to the endpoint could not be established) is retried with another endpoint.
+ * The request that may have reached the endpoint (e.g. the response timed out) is only retried if it is idempotent - if its method is safe
+ * (e.g. <em>GET</em>), or it was sent from within {@link #idempotent(HttpConcurrencyLimiter.Task)}. Otherwise, repeating the request
+ * (e.g. the request for a new token) could repeat its effect. When the request could not be sent, because the concurrency limit
+ * or the connection pool of the endpoint was exhausted, the endpoint is busy rather than failing, so it is not ejected.
+ * </p>
+ * <p>
+ * The following options can be set as system properties, or as env variables:
+ * <ul>
+ * <li><em>oauth.http.endpoint.ejection.seconds</em> The time for which the failed endpoint is ejected. Default value is <em>5</em>.</li>
+ * <li><em>oauth.http.endpoint.ejection.max.seconds</em> The maximum time for which the repeatedly failing endpoint is ejected.
+ * Default value is <em>60</em>.</li>
+ * </ul>
+ */
+public class HttpEndpointGroup {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpEndpointGroup.class);
+
+    static final int DEFAULT_EJECTION_SECONDS = 5;
+    static final int DEFAULT_EJECTION_MAX_SECONDS = 60;
+
+    /**
+     * The weight of the new response time sample in the EWMA
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * The time constant of the decay of the EWMA with no new samples - it halves about every 7 seconds
+     */
+    private static final double DECAY_MS = 10_000;
+
+    /**
+     * The groups by their list of URIs, guarded by itself
+     */
+    private static final Map<List<URI>, HttpEndpointGroup> GROUPS = new HashMap<>();
+
+    /**
+     * The groups by the URI identifying them
+     */
+    private static final Map<URI, HttpEndpointGroup> GROUP_IDS = new ConcurrentHashMap<>();
+
+    /**
+     * The comma followed by the scheme of a URI, e.g. <em>,https://</em>
+     */
+    private static final Pattern AMBIGUOUS_SEPARATOR = Pattern.compile(",[a-zA-Z][a-zA-Z0-9+.-]*://|,$");
+
+    /**
+     * The prefix of the fragment of the URI identifying the group
+     */
+    private static final String GROUP_FRAGMENT_PREFIX = "endpoint-group-";
+
+    private static final ThreadLocal<Boolean> IDEMPOTENT = new ThreadLocal<>();
+
+    private final URI id;
+    private final List<Endpoint> endpoints;
+    private final long ejectionMs;
+    private final long maxEjectionMs;
+
+    HttpEndpointGroup(List<URI> uris, long ejectionMs, long maxEjectionMs) {
+        this(uris.get(0), uris, ejectionMs, maxEjectionMs);
+    }
+
+    HttpEndpointGroup(URI id, List<URI> uris, long ejectionMs, long maxEjectionMs) {
+        this.id = id;
+        List<Endpoint> list = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            list.add(new Endpoint(uri));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.ejectionMs = ejectionMs;
+        this.maxEjectionMs = maxEjectionMs;
+    }
+
+    /**
+     * Parse the value of the endpoint option, and register the group of endpoints if it lists more than one.
+     *
+     * @param value The URI, or the list of URIs separated by whitespace
+     * @return The URI identifying the group, or the URI itself if the value lists only one
+     * @throws URISyntaxException If any of the URIs is not valid, the URIs seem to be separated by commas, or the URI has the fragment reserved for the groups
+     */
+    public static URI register(String value) throws URISyntaxException {
+        List<URI> uris = new ArrayList<>();
+        for (String item : value.trim().split("\\s+")) {
+            if (AMBIGUOUS_SEPARATOR.matcher(item).find()) {
+                throw new URISyntaxException(value, "Ambiguous list of URIs - separate the URIs with whitespace, not commas");
+            }
+            URI uri = new URI(item);
+            if (uri.getFragment() != null && uri.getFragment().startsWith(GROUP_FRAGMENT_PREFIX)) {
+                throw new URISyntaxException(value, "The URI fragment starting with '" + GROUP_FRAGMENT_PREFIX + "' is reserved for the endpoint groups");
+            }
+            uris.add(uri);
+        }
+        if (uris.size() == 1) {
+            return uris.get(0);
+        }
+        synchronized (GROUPS) {
+            HttpEndpointGroup group = GROUPS.get(uris);
+            if (group == null) {
+                URI primary = uris.get(0);
+                URI id = new URI(primary.getScheme(), primary.getSchemeSpecificPart(), GROUP_FRAGMENT_PREFIX + (GROUPS.size() + 1));
+                Config config = new Config();
+                group = new HttpEndpointGroup(id, uris,
+                        config.getValueAsInt(Config.OAUTH_HTTP_ENDPOINT_EJECTION_SECONDS, DEFAULT_EJECTION_SECONDS) * 1000L,
+                        config.getValueAsInt(Config.OAUTH_HTTP_ENDPOINT_EJECTION_MAX_SECONDS, DEFAULT_EJECTION_MAX_SECONDS) * 1000L);
+                GROUPS.put(uris, group);
+                GROUP_IDS.put(id, group);
+                log.debug("Registered the endpoint group {} as {}", uris, id);
+            }
+            return group.id;
+        }
+    }
+
+    /**
+     * Get the group of endpoints registered under the URI
+     *
+     * @param uri The request URI
+     * @return The group, or null if the URI does not identify a group
+     */
+    static HttpEndpointGroup forUri(URI uri) {
+        return GROUP_IDS.isEmpty() ? null : GROUP_IDS.get(uri);
+    }
+
+    /**
+     * Perform the task with the requests it sends to the authorization server treated as idempotent, so that they can be retried
+     * with another endpoint of the group even if they may have been processed by the failed endpoint.
+     * <p>
+     * As with {@link HttpConcurrencyLimiter#background(HttpConcurrencyLimiter.Task)}, the asynchronous requests have to be sent
+     * from within the task, but may complete later.
+     * </p>
+     *
+     * @param task The task
+     * @param <T> The result type
+     * @param <E> The exception type
+     * @return The result of the task
+     * @throws E The exception thrown by the task
+     */
+    public static <T, E extends Exception> T idempotent(HttpConcurrencyLimiter.Task<T, E> task) throws E {
+        Boolean previous = IDEMPOTENT.get();
+        IDEMPOTENT.set(Boolean.TRUE);
+        try {
+            return task.run();
+        } finally {
+            if (previous == null) {
+                IDEMPOTENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if the request sent by the current thread can be repeated without repeating its effect
+     *
+     * @param method The request method
+     * @return True if the method is safe, or the current thread is performing the idempotent task
+     */
+    static boolean isIdempotent(String method) {
+        return HttpConnection.isSafe(method) || IDEMPOTENT.get() != null;
+    }
+
+    List<URI> uris() {
+        List<URI> result = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            result.add(endpoint.uri);
+        }
+        return result;
+    }
+
+    /**
+     * The blocking send of the request to the selected endpoint
+     */
+    interface Sender {
+        HttpResponse send(URI uri) throws IOException;
+    }
+
+    /**
+     * Send the request to one of the endpoints, failing over to the others if it fails.
+     *
+     * @param sender The function sending the request to the selected endpoint
+     * @param idempotent True if the request may be repeated even if it has been processed by the failed endpoint
+     * @return The response
+     * @throws IOException The error of the last endpoint tried, if the request failed with all of them
+     */
+    HttpResponse send(Sender sender, boolean idempotent) throws IOException {
+        Set<Endpoint> tried = new HashSet<>();
+        IOException error = null;
+        Endpoint endpoint;
+        while ((endpoint = select(tried)) != null) {
+            long start = endpoint.start();
+            try {
+                HttpResponse response = sender.send(endpoint.uri);
+                if (!completed(endpoint, start, response, null, tried, idempotent)) {
+                    return response;
+                }
+            } catch (IOException e) {
+                if (!completed(endpoint, start, null, e, tried, idempotent)) {
+                    throw e;
+                }
+                error = e;
+            } catch (RuntimeException e) {
+                endpoint.released();
+                throw e;
+            }
+        }
+        throw error != null ? error : new IOException("No endpoint available");
+    }
+
+    /**
+     * Send the request to one of the endpoints, failing over to the others if it fails, without blocking the calling thread.
+     *
+     * @param sender The function sending the request to the selected endpoint
+     * @param idempotent True if the request may be repeated even if it has been processed by the failed endpoint
+     * @return The future completed with the response, or with the error of the last endpoint tried
+     */
+    CompletableFuture<HttpResponse> sendAsync(Function<URI, CompletableFuture<HttpResponse>> sender, boolean idempotent) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        sendAsync(sender, idempotent, new HashSet<>(), result);
+        return result;
+    }
+
+    private void sendAsync(Function<URI, CompletableFuture<HttpResponse>> sender, boolean idempotent, Set<Endpoint> tried,
+                           CompletableFuture<HttpResponse> result) {
+        Endpoint endpoint = select(tried);
+        long start = endpoint.start();
+        CompletableFuture<HttpResponse> attempt;
+        try {
+            attempt = sender.apply(endpoint.uri);
+        } catch (RuntimeException e) {
+            endpoint.released();
+            result.completeExceptionally(e);
+            return;
+        }
+        attempt.whenComplete((response, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause != null && !(cause instanceof IOException)) {
+                endpoint.released();
+                result.completeExceptionally(cause);
+            } else if (completed(endpoint, start, response, (IOException) cause, tried, idempotent)) {
+                sendAsync(sender, idempotent, tried, result);
+            } else if (cause != null) {
+                result.completeExceptionally(cause);
+            } else {
+                result.complete(response);
+            }
+        });
+    }
+
+    /**
+     * Record the outcome of the request sent to the endpoint
+     *
+     * @return True if the request should be retried with another endpoint
+     */
+    private boolean completed(Endpoint endpoint, long start, HttpResponse response, IOException error, Set<Endpoint> tried, boolean idempotent) {
+        long timeMs = System.currentTimeMillis() - start;
+        tried.add(endpoint);
+        if (error instanceof HttpConcurrencyLimiter.LimitExceededException || error instanceof HttpConnectionPool.PoolTimeoutException) {
+            // the request was not sent - the endpoint is busy rather than failing, so it is not ejected
+            endpoint.released();
+            return tried.size() < endpoints.size();
+        }
+        OAuthMetrics metrics = metrics(endpoint);
+        if (error == null && response.status() < 500) {
+            endpoint.succeeded(timeMs);
+            addMetricTime(metrics, endpoint.sensorKeyProducer.successKey(), timeMs);
+            return false;
+        }
+
+        boolean ejected = endpoint.failed(timeMs, ejectionMs, maxEjectionMs);
+        addMetricTime(metrics, endpoint.sensorKeyProducer.errorKey(), timeMs);
+        if (ejected) {
+            addMetricTime(metrics, endpoint.sensorKeyProducer.ejectedKey(), 0);
+        }
+        boolean more = tried.size() < endpoints.size();
+        boolean retry = more && (idempotent || error != null && isNotSent(error));
+        if (log.isDebugEnabled()) {
+            log.debug("Request to {} failed ({}) - {}", endpoint.uri, error != null ? error.toString() : "status " + response.status(),
+                    retry ? "failing over to another endpoint" : more ? "not failing over, as the request may have been processed" : "no more endpoints to try");
+        }
+        return retry;
+    }
+
+    /**
+     * Check if the request failed before it was sent to the endpoint, so that it could not have been processed
+     *
+     * @param error The error
+     * @return True if the connection to the endpoint could not be established
+     */
+    static boolean isNotSent(IOException error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException
+                    || e instanceof SSLHandshakeException) {
+                return true;
+            }
+            if (e instanceof HttpConnection.StaleConnectionException) {
+                return !((HttpConnection.StaleConnectionException) e).isSent();
+            }
+            // the transports report the connect timeout with the same exception type as the read timeout
+            if (e instanceof SocketTimeoutException && e.getMessage() != null
+                    && e.getMessage().toLowerCase(Locale.ROOT).startsWith("connect timed out")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Select the endpoint to send the request to
+     *
+     * @param tried The endpoints the request has already been sent to
+     * @return The endpoint, or null if the request has been sent to all of them
+     */
+    Endpoint select(Set<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> available = new ArrayList<>(endpoints.size());
+        Endpoint readmittedFirst = null;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            long ejectedUntil = endpoint.ejectedUntil();
+            if (ejectedUntil <= now) {
+                available.add(endpoint);
+            } else if (readmittedFirst == null || ejectedUntil < readmittedFirst.ejectedUntil()) {
+                readmittedFirst = endpoint;
+            }
+        }
+        if (available.isEmpty()) {
+            return readmittedFirst;
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+
+        // power of two choices
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = available.get(first);
+        Endpoint b = available.get(second);
+        return a.load(now) <= b.load(now) ? a : b;
+    }
+
+    private static OAuthMetrics metrics(Endpoint endpoint) {
+        // The endpoint group has no configuration of its own, the metrics are collected if they are enabled for any component
+        if (!Services.isAvailable() || !Services.getInstance().hasMetrics()) {
+            return null;
+        }
+        OAuthMetrics metrics = Services.getInstance().getMetrics();
+        if (endpoint.metricsRegistered.compareAndSet(false, true)) {
+            metrics.addGauge(endpoint.sensorKeyProducer.endpointKey(), "latencyMs", "Peak EWMA of the response time in ms",
+                () -> endpoint.latencyMs(System.currentTimeMillis()));
+            metrics.addGauge(endpoint.sensorKeyProducer.endpointKey(), "inFlight", "Number of requests in progress", endpoint::inFlight);
+            metrics.addGauge(endpoint.sensorKeyProducer.endpointKey(), "ejected", "1 if the endpoint is ejected, 0 otherwise",
+                () -> endpoint.ejectedUntil() > System.currentTimeMillis() ? 1 : 0);
+        }
+        return metrics;
+    }
+
+    private static void addMetricTime(OAuthMetrics metrics, SensorKey key, long timeMs) {
+        if (metrics != null) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+
+    /**
+     * The endpoint of the group, with the statistics used to select it
+     */
+    static class Endpoint {
+
+        private final URI uri;
+        private final HttpEndpointSensorKeyProducer sensorKeyProducer;
+        private final AtomicBoolean metricsRegistered = new AtomicBoolean();
+
+        private double latencyMs;
+        private long updatedMs;
+        private int inFlight;
+        private long backoffMs;
+        private long ejectedUntil;
+
+        Endpoint(URI uri) {
+            this.uri = uri;
+            this.sensorKeyProducer = new HttpEndpointSensorKeyProducer(uri);
+        }
+
+        URI uri() {
+            return uri;
+        }
+
+        synchronized long start() {
+            inFlight++;
+            return System.currentTimeMillis();
+        }
+
+        synchronized void released() {
+            inFlight--;
+        }
+
+        synchronized void succeeded(long timeMs) {
+            inFlight--;
+            update(timeMs);
+            backoffMs = 0;
+            ejectedUntil = 0;
+        }
+
+        /**
+         * @return True if the endpoint has just been ejected, rather than having been ejected already
+         */
+        synchronized boolean failed(long timeMs, long ejectionMs, long maxEjectionMs) {
+            inFlight--;
+            update(timeMs);
+            long now = System.currentTimeMillis();
+            if (ejectedUntil > now) {
+                return false;
+            }
+            backoffMs = backoffMs == 0 ? ejectionMs : Math.min(backoffMs * 2, maxEjectionMs);
+            ejectedUntil = now + backoffMs;
+            return true;
+        }
+
+        private void update(long timeMs) {
+            long now = System.currentTimeMillis();
+            double current = latencyMs(now);
+            // peak EWMA - the slow response is taken into account immediately, the fast ones gradually
+            latencyMs = timeMs > current ? timeMs : current + (timeMs - current) * ALPHA;
+            updatedMs = now;
+        }
+
+        synchronized double latencyMs(long now) {
+            // with no new samples the average decays towards zero, so that the slow endpoint is eventually tried again
+            return updatedMs == 0 ? 0 : latencyMs * Math.exp(-Math.max(0, now - updatedMs) / DECAY_MS);
+        }
+
+        synchronized double load(long now) {
+            return (latencyMs(now) + 1) * (inFlight + 1);
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized long ejectedUntil() {
+            return ejectedUntil;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The response to an HTTP request, with the status code and response headers available in addition to the body.
+ * <p>
+ * Returned by {@link HttpUtil#getResponse} which, unlike other <code>HttpUtil</code> methods,
+ * does not treat a <em>304 Not Modified</em> response as an error.
+ * It is also the result of sending the request through the {@link HttpTransport}, regardless of the status code.
+ * </p>
+ */
+public class HttpResponse {
+
+    public static final int NOT_MODIFIED = 304;
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final String statusMessage;
+    private final byte[] bodyBytes;
+    private final int bodyLength;
+    private String body;
+
+    /**
+     * Create a new instance
+     *
+     * @param status The HTTP status code
+     * @param headers The response headers
+     * @param body The response body or null if no body was sent
+     */
+    public HttpResponse(int status, Map<String, List<String>> headers, String body) {
+        this(status, null, headers, body);
+    }
+
+    /**
+     * Create a new instance
+     *
+     * @param status The HTTP status code
+     * @param statusMessage The reason phrase of the status line, or null if not known
+     * @param headers The response headers
+     * @param body The response body or null if no body was sent
+     */
+    public HttpResponse(int status, String statusMessage, Map<String, List<String>> headers, String body) {
+        this(status, statusMessage, headers, body != null ? body.getBytes(StandardCharsets.UTF_8) : null, -1);
+        this.body = body;
+    }
+
+    /**
+     * Create a new instance, with the body as received from the server. The array is used as it is, without copying.
+     *
+     * @param status The HTTP status code
+     * @param statusMessage The reason phrase of the status line, or null if not known
+     * @param headers The response headers
+     * @param body The UTF-8 encoded response body or null if no body was sent
+     * @param bodyLength The length of the body in the array, or -1 to use the whole array
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public HttpResponse(int status, String statusMessage, Map<String, List<String>> headers, byte[] body, int bodyLength) {
+        this.status = status;
+        this.statusMessage = statusMessage;
+
+        // header names are case-insensitive
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                // the status line is reported under the null key by HttpURLConnection
+                if (entry.getKey() != null) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        this.headers = Collections.unmodifiableMap(map);
+        this.bodyBytes = body;
+        this.bodyLength = body == null ? 0 : bodyLength == -1 ? body.length : bodyLength;
+    }
+
+    /**
+     * @return The HTTP status code
+     */
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return The reason phrase of the status line (e.g. 'Not Found'), or null if not known
+     */
+    public String statusMessage() {
+        return statusMessage;
+    }
+
+    /**
+     * @return True if the response status is <em>304 Not Modified</em>
+     */
+    public boolean isNotModified() {
+        return status == NOT_MODIFIED;
+    }
+
+    /**
+     * Get the first value of the response header
+     *
+     * @param name The header name (case-insensitive)
+     * @return The header value or null if the header is not present
+     */
+    public String header(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * @return The response body or null if no body was sent
+     */
+    public String body() {
+        if (body == null && bodyBytes != null) {
+            body = new String(bodyBytes, 0, bodyLength, StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    /**
+     * @return The length of the UTF-8 encoded response body in bytes
+     */
+    public int bodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * Parse the JSON response body straight from the received bytes
+     *
+     * @param type The type to parse the body into
+     * @param <T> The type
+     * @return The parsed body
+     * @throws IOException If the body is not a valid JSON, or is missing
+     */
+    <T> T readJSON(Class<T> type) throws IOException {
+        return JSONUtil.readJSON(bodyBytes != null ? bodyBytes : new byte[0], 0, bodyLength, type);
+    }
+
+    /**
+     * @return The stream of the response body bytes, as received from the server
+     */
+    InputStream bodyStream() {
+        return new ByteArrayInputStream(bodyBytes != null ? bodyBytes : new byte[0], 0, bodyLength);
+    }
+
+    /**
+     * Create a copy of this response with the decoded body, and without the headers describing the encoded one
+     *
+     * @param body The decoded body
+     * @param bodyLength The length of the decoded body in the array
+     * @return The new response
+     */
+    HttpResponse decoded(byte[] body, int bodyLength) {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.putAll(headers);
+        map.remove("Content-Encoding");
+        map.remove("Content-Length");
+        return new HttpResponse(status, statusMessage, map, body, bodyLength);
+    }
+
+    /**
+     * Get the <em>max-age</em> directive of the <em>Cache-Control</em> response header.
+     *
+     * @return The max-age in seconds, or -1 if not present, not valid, or if the response must not be reused
+     *         (<em>no-cache</em> or <em>no-store</em> directive is present)
+     */
+    public long cacheControlMaxAgeSeconds() {
+        String value = header("Cache-Control");
+        if (value == null) {
+            return -1;
+        }
+
+        long maxAge = -1;
+        for (String directive : value.split(",")) {
+            String d = directive.trim();
+            if ("no-cache".equalsIgnoreCase(d) || "no-store".equalsIgnoreCase(d)) {
+                return -1;
+            }
+            if (d.regionMatches(true, 0, "max-age=", 0, 8)) {
+                try {
+                    maxAge = Long.parseLong(d.substring(8).replace("\"", "").trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return maxAge < 0 ? -1 : maxAge;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResponse {status: " + status + ", headers: " + headers + "}";
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The incremental parser of the HTTP/1.1 response, fed with the bytes as they are read from the connection.
+ * <p>
+ * Supports the body delimited by <em>Content-Length</em>, by <em>Transfer-Encoding: chunked</em>, or by the server closing the connection.
+ * The interim <em>1xx</em> responses are skipped.
+ * </p>
+ * <p>
+ * The body is collected into the buffer presized from the <em>Content-Length</em>, and is handed over to the {@link HttpResponse} as it is.
+ * The response fails as soon as the body is known to exceed the maximum size, without reading the rest of it.
+ * </p>
+ */
+class HttpResponseParser {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private enum State {
+        STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, BODY_UNTIL_CLOSE, DONE
+    }
+
+    private final String method;
+    private final int maxBodySize;
+
+    private State state = State.STATUS_LINE;
+    private final StringBuilder line = new StringBuilder(64);
+    private ResponseBodyBuffer body;
+    private Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private String statusLine;
+    private int status;
+    private long remaining;
+    private boolean keepAlive = true;
+    private boolean started;
+
+    /**
+     * Create a new instance
+     *
+     * @param method The request method - the response to the HEAD request has no body
+     */
+    HttpResponseParser(String method) {
+        this(method, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new instance
+     *
+     * @param method The request method - the response to the HEAD request has no body
+     * @param maxBodySize The maximum size of the response body in bytes
+     */
+    HttpResponseParser(String method, int maxBodySize) {
+        this.method = method;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Consume the bytes of the response
+     *
+     * @param buffer The buffer in read mode. The bytes are consumed up to the end of the response - any bytes following it are left in the buffer.
+     * @return True if the response is complete
+     * @throws IOException If the response is not a valid HTTP response
+     */
+    boolean feed(ByteBuffer buffer) throws IOException {
+        if (buffer.hasRemaining()) {
+            started = true;
+        }
+        while (buffer.hasRemaining() && state != State.DONE) {
+            switch (state) {
+                case BODY:
+                case CHUNK_DATA:
+                    readData(buffer);
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    readRemaining(buffer);
+                    break;
+                default:
+                    String l = readLine(buffer);
+                    if (l != null) {
+                        processLine(l);
+                    }
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Called when the server closes the connection
+     *
+     * @return True if the response is complete, because the body is delimited by the server closing the connection
+     */
+    boolean closed() {
+        if (state == State.BODY_UNTIL_CLOSE) {
+            state = State.DONE;
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * @return True if any part of the response has been received
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return True if the response is complete
+     */
+    boolean isDone() {
+        return state == State.DONE;
+    }
+
+    /**
+     * @return True if the connection can be reused for the next request
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return The parsed response
+     */
+    HttpResponse response() {
+        String statusMessage = statusLine.length() > 13 ? statusLine.substring(13) : null;
+        if (body == null) {
+            return new HttpResponse(status, statusMessage, headers, null, 0);
+        }
+        return new HttpResponse(status, statusMessage, headers, body.array(), body.size());
+    }
+
+    private void readData(ByteBuffer buffer) throws IOException {
+        int count = (int) Math.min(remaining, buffer.remaining());
+        body.append(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+        buffer.position(buffer.position() + count);
+        remaining -= count;
+        if (remaining == 0) {
+            state = state == State.BODY ? State.DONE : State.CHUNK_END;
+        }
+    }
+
+    private void readRemaining(ByteBuffer buffer) throws IOException {
+        body.append(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+    }
+
+    private String readLine(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            char c = (char) (buffer.get() & 0xff);
+            if (c == '\n') {
+                String result = line.toString();
+                line.setLength(0);
+                return result;
+            }
+            if (c != '\r') {
+                if (line.length() >= MAX_LINE_LENGTH) {
+                    throw new IOException("Response line too long");
+                }
+                line.append(c);
+            }
+        }
+        return null;
+    }
+
+    private void processLine(String l) throws IOException {
+        switch (state) {
+            case STATUS_LINE:
+                statusLine = l;
+                status = parseStatus(l);
+                state = State.HEADERS;
+                break;
+            case HEADERS:
+                if (l.isEmpty()) {
+                    endOfHeaders();
+                } else {
+                    addHeader(l);
+                }
+                break;
+            case CHUNK_SIZE:
+                remaining = parseChunkSize(l);
+                state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                break;
+            case CHUNK_END:
+                state = State.CHUNK_SIZE;
+                break;
+            case TRAILERS:
+                if (l.isEmpty()) {
+                    state = State.DONE;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state: " + state);
+        }
+    }
+
+    private void endOfHeaders() throws IOException {
+        // skip the interim responses (e.g. 100 Continue)
+        if (status >= 100 && status < 200 && status != 101) {
+            headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            state = State.STATUS_LINE;
+            return;
+        }
+
+        String connection = lastHeader("Connection");
+        if (statusLine.startsWith("HTTP/1.0") && !"keep-alive".equalsIgnoreCase(connection) || "close".equalsIgnoreCase(connection)) {
+            keepAlive = false;
+        }
+
+        String transferEncoding = lastHeader("Transfer-Encoding");
+        String contentLength = lastHeader("Content-Length");
+        if ("HEAD".equals(method) || status == 204 || status == HttpResponse.NOT_MODIFIED) {
+            state = State.DONE;
+        } else if (transferEncoding != null && transferEncoding.regionMatches(true, transferEncoding.length() - 7, "chunked", 0, 7)) {
+            body = new ResponseBodyBuffer(-1, maxBodySize);
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            if (remaining < 0) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            body = new ResponseBodyBuffer(remaining, maxBodySize);
+            state = remaining == 0 ? State.DONE : State.BODY;
+        } else {
+            keepAlive = false;
+            body = new ResponseBodyBuffer(-1, maxBodySize);
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private void addHeader(String l) throws IOException {
+        int colon = l.indexOf(':');
+        if (colon <= 0) {
+            throw new IOException("Invalid HTTP header: " + l);
+        }
+        headers.computeIfAbsent(l.substring(0, colon).trim(), k -> new ArrayList<>(1)).add(l.substring(colon + 1).trim());
+    }
+
+    private String lastHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    private static int parseStatus(String l) throws IOException {
+        if (!l.startsWith("HTTP/") || l.length() < 12) {
+            throw new IOException("Invalid HTTP status line: " + l);
+        }
+        try {
+            return Integer.parseInt(l.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid HTTP status line: " + l);
+        }
+    }
+
+    private static long parseChunkSize(String l) throws IOException {
+        int end = l.indexOf(';');
+        long size;
+        try {
+            size = Long.parseLong((end == -1 ? l : l.substring(0, end)).trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + l);
+        }
+        if (size < 0) {
+            throw new IOException("Invalid chunk size: " + l);
+        }
+        return size;
+    }
+}
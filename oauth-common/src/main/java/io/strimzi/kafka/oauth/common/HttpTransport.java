@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The transport used by {@link HttpUtil} to send the requests to the authorization server.
+ * <p>
+ * The transport is selected globally by setting the <em>oauth.http.transport</em> system property, or the <em>OAUTH_HTTP_TRANSPORT</em> env variable to:
+ * <ul>
+ * <li><em>httpclient</em> - the transport based on <code>java.net.http.HttpClient</code>, shipped in the multi-release jar (the default on Java 11 or later)</li>
+ * <li><em>pooled</em> - the {@link PooledHttpTransport} which keeps the pool of persistent connections per endpoint (the default on Java 8)</li>
+ * <li><em>urlconnection</em> - the {@link UrlConnectionHttpTransport} which uses <code>java.net.HttpURLConnection</code></li>
+ * <li>the fully qualified name of the class implementing this interface, with a public no-arg constructor</li>
+ * </ul>
+ * <p>
+ * The transport is shared by all the components in the same JVM, and has to be thread-safe.
+ * It only has to send the request, and read the complete response. Any status code is returned as <code>HttpResponse</code>,
+ * the error handling is performed by the caller.
+ * </p>
+ * <p>
+ * The transport that can not send the requests without blocking the calling thread only has to implement {@link #send}.
+ * The default {@link #sendAsync} runs it on a shared pool of threads, which bounds the number of asynchronous requests in progress.
+ * </p>
+ */
+public interface HttpTransport {
+
+    /**
+     * Send the request, and read the response.
+     * <p>
+     * If the connection to the server can not be established the <code>IOException</code> with the <code>java.net.ConnectException</code>
+     * as the cause should be thrown, so that the failure is reported as <em>error_type=connect</em> in metrics.
+     * </p>
+     *
+     * @param uri The request URI
+     * @param method The request method
+     * @param socketFactory The optional SSL socket factory
+     * @param hostnameVerifier The optional hostname verifier
+     * @param headers The request headers
+     * @param body The request body or null if no body should be sent
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @return The response
+     * @throws IOException If the request could not be sent, or the response could not be read
+     */
+    HttpResponse send(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                      Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException;
+
+    /**
+     * Send the request without blocking the calling thread.
+     * <p>
+     * The returned future may be completed on the I/O thread of the transport, therefore the dependent actions should not block.
+     * The failures are reported in the same way as by {@link #send}, with the <code>IOException</code> as the cause.
+     * </p>
+     *
+     * @param uri The request URI
+     * @param method The request method
+     * @param socketFactory The optional SSL socket factory
+     * @param hostnameVerifier The optional hostname verifier
+     * @param headers The request headers
+     * @param body The request body or null if no body should be sent
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @return The future completed with the response
+     */
+    default CompletableFuture<HttpResponse> sendAsync(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                                      Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BlockingTransportExecutor.EXECUTOR);
+    }
+}
@@ -4,37 +4,57 @@
  */
 package io.strimzi.kafka.oauth.common;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.strimzi.kafka.oauth.validator.DaemonThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.ConnectException;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static io.strimzi.kafka.oauth.common.ConfigUtil.getConnectTimeout;
 import static io.strimzi.kafka.oauth.common.ConfigUtil.getReadTimeout;
-import static io.strimzi.kafka.oauth.common.IOUtil.copy;
 
 /**
- * A helper class that performs all network calls using java.net.HttpURLConnection.
+ * A helper class that performs all network calls to the authorization server.
  *
+ * The requests are sent through the {@link HttpTransport}. On Java 11 or later, the transport based on <code>java.net.http.HttpClient</code>
+ * is used by default, which sends the requests without blocking, and negotiates HTTP/2 with the servers that support it. It is shipped
+ * in the multi-release jar, and is configured with the <em>jdk.httpclient.*</em> system properties of the JDK.
+ *
+ * On Java 8, the {@link PooledHttpTransport} is used by default, which keeps a pool of persistent connections per endpoint.
  * If application uses many concurrent threads initiating many Kafka sessions in parallel, consider setting
- * 'http.maxConnections' system property to value closer to the number of parallel sessions.
+ * <em>oauth.http.pool.max.connections</em> system property to value closer to the number of parallel sessions.
  *
- * This value controls the size of internal connection pool per destination in JDK's java.net.HttpURLConnection implementation.
+ * If the JDK proxy settings are configured on Java 8, or <em>oauth.http.transport</em> is set to <em>urlconnection</em>, the {@link UrlConnectionHttpTransport}
+ * is used instead, which uses java.net.HttpURLConnection, and the <em>http.maxConnections</em> system property controls the size of its pool.
  *
  * See: https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html
  *
+ * The <em>Async</em> methods send the request without blocking the calling thread, and return the <code>CompletableFuture</code> of the response.
+ * The response is decoded and parsed on a shared pool of worker threads, never on the I/O thread of the transport.
+ *
+ * The requests to the slow authorization server can be hedged - see {@link RequestHedging}.
+ *
+ * If <em>oauth.http.concurrency.limit.enabled</em> is set to <em>true</em>, the number of requests in progress to the same authorization
+ * server endpoint is limited by the adaptive limit, shared by all the callers - see {@link HttpConcurrencyLimiter}.
+ *
+ * If <em>oauth.http.compression.enabled</em> is set to <em>true</em>, the requests are sent with <em>Accept-Encoding: gzip, deflate</em>,
+ * and the compressed responses are transparently decompressed.
+ *
  * By default the connect timeout and read timeout are set to 60 seconds. Use system properties <em>oauth.connect.timeout.seconds</em>
  * and <em>oauth.read.timeout.seconds</em>, or corresponding env variables to set custom timeouts in seconds.
  */
@@ -44,6 +64,14 @@ public class HttpUtil {
 
     static final int DEFAULT_CONNECT_TIMEOUT = getConnectTimeout(new Config());
     static final int DEFAULT_READ_TIMEOUT = getReadTimeout(new Config());
+    static final boolean COMPRESSION_ENABLED = new Config().getValueAsBoolean(Config.OAUTH_HTTP_COMPRESSION_ENABLED, false);
+    static final int MAX_RESPONSE_SIZE = ResponseBodyBuffer.configuredMaxSize(new Config());
+
+    private static final String HTTP_CLIENT_TRANSPORT = "io.strimzi.kafka.oauth.common.HttpClientTransport";
+
+    private static final ExecutorService RESPONSE_EXECUTOR = createResponseExecutor();
+
+    private static volatile HttpTransport transport;
 
     public static <T> T get(URI uri, String authorization, Class<T> responseType) throws IOException {
         return request(uri, null, null, authorization, null, null, responseType);
@@ -77,6 +105,34 @@ public class HttpUtil {
         return request(uri, "POST", socketFactory, verifier, authorization, contentType, body, responseType, connectTimeout, readTimeout);
     }
 
+    /**
+     * Send the POST request, hedging it as configured by the hedging policy.
+     * <p>
+     * Only the requests that can safely be processed by the server more than once (e.g. the token introspection) should be hedged.
+     * </p>
+     *
+     * @param uri The request URI
+     * @param socketFactory The optional SSL socket factory
+     * @param verifier The optional hostname verifier
+     * @param authorization The optional value of the Authorization header
+     * @param contentType The content type of the body
+     * @param body The request body
+     * @param responseType The type to parse the JSON response into
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @param hedging The hedging policy, or null to send the request without hedging
+     * @param <T> The response type
+     * @return The parsed response
+     * @throws IOException If the connection fails
+     */
+    public static <T> T post(URI uri, SSLSocketFactory socketFactory, HostnameVerifier verifier, String authorization, String contentType, String body,
+                             Class<T> responseType, int connectTimeout, int readTimeout, RequestHedging hedging) throws IOException {
+        if (hedging == null) {
+            return post(uri, socketFactory, verifier, authorization, contentType, body, responseType, connectTimeout, readTimeout);
+        }
+        return await(uri, postAsync(uri, socketFactory, verifier, authorization, contentType, body, responseType, connectTimeout, readTimeout, hedging));
+    }
+
     public static void put(URI uri, String authorization, String contentType, String body) throws IOException {
         request(uri, null, null, authorization, contentType, body, null);
     }
@@ -113,125 +169,340 @@ public class HttpUtil {
         return request(uri, method, socketFactory, hostnameVerifier, authorization, contentType, body, responseType, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
     }
 
-    // Suppressed because of Spotbugs Java 11 bug - https://github.com/spotbugs/spotbugs/issues/756
-    @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE")
     public static <T> T request(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
                                 String contentType, String body, Class<T> responseType, int connectTimeout, int readTimeout) throws IOException {
-        HttpURLConnection con;
-        try {
-            con = (HttpURLConnection) uri.toURL().openConnection();
-        } catch (IOException e) {
-            throw new IOException("Failed to initialise connection to: " + uri, e);
-        }
+        String requestMethod = method(method, body, responseType);
+        byte[] content = body != null ? body.getBytes(StandardCharsets.UTF_8) : null;
+        Map<String, String> headers = requestHeaders(authorization, contentType, content);
 
-        configureTimeouts(con, connectTimeout, readTimeout);
+        HttpResponse response = send(uri, requestMethod, socketFactory, hostnameVerifier, headers, content, connectTimeout, readTimeout);
+        return readResponse(response, requestMethod, uri, responseType);
+    }
 
-        configureTLS(con, uri, socketFactory, hostnameVerifier);
+    public static <T> CompletableFuture<T> getAsync(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
+                                                    Class<T> responseType, int connectTimeout, int readTimeout) {
+        return requestAsync(uri, "GET", socketFactory, hostnameVerifier, authorization, null, null, responseType, connectTimeout, readTimeout);
+    }
 
-        con.setUseCaches(false);
-        if (body != null) {
-            con.setDoOutput(true);
-        }
+    public static <T> CompletableFuture<T> postAsync(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
+                                                     String contentType, String body, Class<T> responseType, int connectTimeout, int readTimeout) {
+        return requestAsync(uri, "POST", socketFactory, hostnameVerifier, authorization, contentType, body, responseType, connectTimeout, readTimeout);
+    }
+
+    public static <T> CompletableFuture<T> postAsync(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
+                                                     String contentType, String body, Class<T> responseType, int connectTimeout, int readTimeout,
+                                                     RequestHedging hedging) {
+        return requestAsync(uri, "POST", socketFactory, hostnameVerifier, authorization, contentType, body, responseType, connectTimeout, readTimeout, hedging);
+    }
+
+    /**
+     * Send the request without blocking the calling thread.
+     * <p>
+     * The future fails with the same <code>IOException</code> (e.g. {@link HttpException}) the blocking {@link #request} would throw,
+     * wrapped in <code>CompletionException</code>. The response is decoded and parsed on a shared pool of worker threads, on which the future
+     * is then completed - the dependent actions that block, or take long, should therefore be run with one of the <em>async</em> methods
+     * of <code>CompletableFuture</code>, on the caller's executor.
+     * </p>
+     *
+     * @param uri The request URI
+     * @param method The request method, or null to use GET, POST or PUT depending on the body and the response type
+     * @param socketFactory The optional SSL socket factory
+     * @param hostnameVerifier The optional hostname verifier
+     * @param authorization The optional value of the Authorization header
+     * @param contentType The content type of the body
+     * @param body The optional request body
+     * @param responseType The type to parse the JSON response into, String to get the body as is, or null to ignore the response body
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @param <T> The response type
+     * @return The future completed with the parsed response
+     */
+    public static <T> CompletableFuture<T> requestAsync(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
+                                                        String contentType, String body, Class<T> responseType, int connectTimeout, int readTimeout) {
+        return requestAsync(uri, method, socketFactory, hostnameVerifier, authorization, contentType, body, responseType, connectTimeout, readTimeout, null);
+    }
+
+    private static <T> CompletableFuture<T> requestAsync(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                                         String authorization, String contentType, String body, Class<T> responseType,
+                                                         int connectTimeout, int readTimeout, RequestHedging hedging) {
+        String requestMethod = method(method, body, responseType);
+        byte[] content = body != null ? body.getBytes(StandardCharsets.UTF_8) : null;
+        Map<String, String> headers = requestHeaders(authorization, contentType, content);
+        checkTimeouts(connectTimeout, readTimeout);
+
+        boolean background = HttpConcurrencyLimiter.isBackground();
+        boolean idempotent = HttpEndpointGroup.isIdempotent(requestMethod);
+        HttpEndpointGroup group = HttpEndpointGroup.forUri(uri);
+        Supplier<CompletableFuture<HttpResponse>> sender = () -> group == null
+                ? sendAsync(uri, background, requestMethod, socketFactory, hostnameVerifier, headers, content, connectTimeout, readTimeout)
+                : group.sendAsync(endpoint -> sendAsync(endpoint, background, requestMethod, socketFactory, hostnameVerifier, headers, content, connectTimeout, readTimeout),
+                    idempotent);
+        CompletableFuture<HttpResponse> result = hedging != null ? hedging.send(uri, sender) : sender.get();
+        // decompressing and parsing the response could hold up the other requests served by the I/O thread the future is completed on
+        return result.thenApplyAsync(response -> {
+            try {
+                return readResponse(HttpContentDecoder.decode(response, uri, MAX_RESPONSE_SIZE), requestMethod, uri, responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, RESPONSE_EXECUTOR);
+    }
 
-        if (method == null) {
-            method = body == null ? "GET" : responseType != null ? "POST" : "PUT";
+    private static String method(String method, String body, Class<?> responseType) {
+        if (method != null) {
+            return method;
         }
-        con.setRequestMethod(method);
+        return body == null ? "GET" : responseType != null ? "POST" : "PUT";
+    }
+
+    private static Map<String, String> requestHeaders(String authorization, String contentType, byte[] content) {
+        Map<String, String> headers = new LinkedHashMap<>();
         if (authorization != null) {
-            con.setRequestProperty("Authorization", authorization);
+            headers.put("Authorization", authorization);
+        }
+        headers.put("Accept", "application/json");
+        if (COMPRESSION_ENABLED) {
+            headers.put("Accept-Encoding", HttpContentDecoder.ACCEPT_ENCODING);
         }
-        con.setRequestProperty("Accept", "application/json");
-        if (body != null && body.length() > 0) {
+
+        if (content != null && content.length > 0) {
             if (contentType == null) {
                 throw new IllegalArgumentException("contentType must be set when body is not null");
             }
-            con.setRequestProperty("Content-Type", contentType);
+            headers.put("Content-Type", contentType);
         }
+        return headers;
+    }
 
-        try {
-            con.connect();
-        } catch (ConnectException e) {
-            throw new IOException("Failed to connect to: " + uri, e);
+    private static <T> T readResponse(HttpResponse response, String method, URI uri, Class<T> responseType) throws IOException {
+        int code = response.status();
+        if (code != 200 && code != 201 && code != 204) {
+            throw errorResponse(response, method, uri);
+        }
+
+        if (responseType == null) {
+            return null;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Response body for " + method + " " + uri + ": " + response.body());
+        }
+        if (responseType == String.class) {
+            return responseType.cast(response.body() != null ? response.body() : "");
+        }
+        // parse straight from the received bytes, without decoding the body into a String first
+        return response.readJSON(responseType);
+    }
+
+    /**
+     * Perform a GET request, and return the response body as a String, together with the status code and the response headers.
+     * <p>
+     * The additional request headers can be used to make a conditional request - using <em>If-None-Match</em> or <em>If-Modified-Since</em>.
+     * A <em>304 Not Modified</em> response is therefore not considered an error, and is returned without the body.
+     * </p>
+     *
+     * @param uri The request URI
+     * @param socketFactory The optional SSL socket factory
+     * @param hostnameVerifier The optional hostname verifier
+     * @param authorization The optional value of the Authorization header
+     * @param headers The optional additional request headers
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @return The response
+     * @throws IOException If the connection fails, or if the response status is an error status
+     */
+    public static HttpResponse getResponse(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier, String authorization,
+                                           Map<String, String> headers, int connectTimeout, int readTimeout) throws IOException {
+        Map<String, String> requestHeaders = new LinkedHashMap<>();
+        if (authorization != null) {
+            requestHeaders.put("Authorization", authorization);
+        }
+        requestHeaders.put("Accept", "application/json");
+        if (COMPRESSION_ENABLED) {
+            requestHeaders.put("Accept-Encoding", HttpContentDecoder.ACCEPT_ENCODING);
+        }
+        if (headers != null) {
+            requestHeaders.putAll(headers);
+        }
+
+        HttpResponse response = send(uri, "GET", socketFactory, hostnameVerifier, requestHeaders, null, connectTimeout, readTimeout);
+        int code = response.status();
+        if (code == HttpResponse.NOT_MODIFIED) {
+            return response;
+        }
+        if (code != 200 && code != 201 && code != 204) {
+            throw errorResponse(response, "GET", uri);
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("Response body for GET " + uri + ": " + response.body());
         }
+        return response;
+    }
 
-        if (body != null && body.length() > 0) {
-            try (OutputStream out = con.getOutputStream()) {
-                out.write(body.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Get the transport used to send the requests, creating it on first use as configured by <em>oauth.http.transport</em>
+     * system property or <em>OAUTH_HTTP_TRANSPORT</em> env variable.
+     *
+     * @return The transport
+     */
+    public static HttpTransport getTransport() {
+        HttpTransport result = transport;
+        if (result == null) {
+            synchronized (HttpUtil.class) {
+                result = transport;
+                if (result == null) {
+                    result = createTransport(new Config());
+                    transport = result;
+                }
             }
         }
+        return result;
+    }
 
-        return handleResponse(con, method, uri, responseType);
+    /**
+     * Set the transport used to send the requests, replacing the configured one.
+     *
+     * @param httpTransport The transport
+     */
+    public static void setTransport(HttpTransport httpTransport) {
+        if (httpTransport == null) {
+            throw new IllegalArgumentException("httpTransport == null");
+        }
+        transport = httpTransport;
     }
 
-    private static void configureTLS(HttpURLConnection con, URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier) {
-        if (con instanceof HttpsURLConnection) {
-            HttpsURLConnection scon = (HttpsURLConnection) con;
-            if (socketFactory != null) {
-                scon.setSSLSocketFactory(socketFactory);
+    static HttpTransport createTransport(Config config) {
+        String type = config.getValue(Config.OAUTH_HTTP_TRANSPORT);
+        if (type == null || "httpclient".equals(type)) {
+            HttpTransport httpClientTransport = createHttpClientTransport(config);
+            if (httpClientTransport != null) {
+                return httpClientTransport;
             }
-            if (hostnameVerifier != null) {
-                scon.setHostnameVerifier(hostnameVerifier);
+            if (type != null) {
+                log.warn("The 'httpclient' HTTP transport requires Java 11 or later - using 'pooled' HTTP transport");
             }
-        } else if (socketFactory != null) {
-            log.warn("SSL socket factory set but url scheme not https ({})", uri);
+            type = "pooled";
+        }
+        if ("pooled".equals(type)) {
+            if (isProxyConfigured()) {
+                log.info("Proxy is configured - using 'urlconnection' HTTP transport");
+                return new UrlConnectionHttpTransport(ResponseBodyBuffer.configuredMaxSize(config));
+            }
+            return new PooledHttpTransport(config);
+        }
+        if ("urlconnection".equals(type)) {
+            return new UrlConnectionHttpTransport(ResponseBodyBuffer.configuredMaxSize(config));
         }
-    }
 
-    private static void configureTimeouts(HttpURLConnection con, int connectTimeout, int readTimeout) {
-        if (connectTimeout <= 0) {
-            throw new IllegalArgumentException("connectTimeout <= 0");
+        try {
+            return Class.forName(type, true, HttpUtil.class.getClassLoader())
+                    .asSubclass(HttpTransport.class).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new ConfigException("Failed to create the HTTP transport (" + Config.OAUTH_HTTP_TRANSPORT + "=" + type + ")", e);
         }
-        con.setConnectTimeout(connectTimeout * 1000);
+    }
 
-        if (readTimeout <= 0) {
-            throw new IllegalArgumentException("readTimeout <= 0");
+    /**
+     * Create the transport based on <code>java.net.http.HttpClient</code>, which is only present in the multi-release jar
+     * when running on Java 11 or later
+     *
+     * @param config The configuration
+     * @return The transport, or null if not available
+     */
+    private static HttpTransport createHttpClientTransport(Config config) {
+        Class<? extends HttpTransport> transportClass;
+        try {
+            transportClass = Class.forName(HTTP_CLIENT_TRANSPORT, true, HttpUtil.class.getClassLoader()).asSubclass(HttpTransport.class);
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("The 'httpclient' HTTP transport is not available", e);
+            return null;
+        }
+        try {
+            return transportClass.getDeclaredConstructor(Config.class).newInstance(config);
+        } catch (Exception e) {
+            throw new ConfigException("Failed to create the HTTP transport (" + Config.OAUTH_HTTP_TRANSPORT + "=httpclient)", e);
         }
-        con.setReadTimeout(readTimeout * 1000);
     }
 
-    // Surpressed because of Spotbugs Java 11 bug - https://github.com/spotbugs/spotbugs/issues/756
-    @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE")
-    private static <T> T handleResponse(HttpURLConnection con, String method, URI uri, Class<T> responseType) throws IOException {
-        int code = con.getResponseCode();
-        if (code != 200 && code != 201 && code != 204) {
-            InputStream err = con.getErrorStream();
-            if (err != null) {
-                ByteArrayOutputStream errbuf = new ByteArrayOutputStream(4096);
-                try {
-                    copy(err, errbuf);
-                } catch (Exception e) {
-                    log.warn("[IGNORED] Failed to read response body", e);
-                }
+    private static ExecutorService createResponseExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-                throw new HttpException(method, uri, code, errbuf.toString(StandardCharsets.UTF_8.name()));
-            } else {
-                throw new HttpException(method, uri, code, con.getResponseMessage());
-            }
+    private static boolean isProxyConfigured() {
+        return System.getProperty("http.proxyHost") != null
+                || System.getProperty("https.proxyHost") != null
+                || System.getProperty("socksProxyHost") != null
+                || Boolean.getBoolean("java.net.useSystemProxies");
+    }
+
+    private static HttpResponse send(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                     Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        checkTimeouts(connectTimeout, readTimeout);
+        boolean background = HttpConcurrencyLimiter.isBackground();
+        HttpEndpointGroup group = HttpEndpointGroup.forUri(uri);
+        HttpResponse response = group == null
+                ? send(uri, background, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout)
+                : group.send(endpoint -> send(endpoint, background, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout),
+                    HttpEndpointGroup.isIdempotent(method));
+        return HttpContentDecoder.decode(response, uri, MAX_RESPONSE_SIZE);
+    }
+
+    /**
+     * Send the request to the single endpoint, within its concurrency limit if configured
+     */
+    private static HttpResponse send(URI uri, boolean background, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                     Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        HttpConcurrencyLimiter limiter = HttpConcurrencyLimiter.forUri(uri);
+        if (limiter == null) {
+            return getTransport().send(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout);
         }
+        return limiter.send(background, connectTimeout * 1000L, () -> getTransport().send(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout));
+    }
 
-        try (InputStream response = con.getInputStream()) {
-            if (responseType == null) {
-                response.close();
-                return null;
-            }
-            InputStream is = response;
-            if (log.isTraceEnabled()) {
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                IOUtil.copy(response, buffer);
-                log.trace("Response body for " + method + " " + uri + ": " + buffer.toString("utf-8"));
+    private static CompletableFuture<HttpResponse> sendAsync(URI uri, boolean background, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                                             Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) {
+        HttpConcurrencyLimiter limiter = HttpConcurrencyLimiter.forUri(uri);
+        if (limiter == null) {
+            return getTransport().sendAsync(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout);
+        }
+        return limiter.sendAsync(background, connectTimeout * 1000L, () -> getTransport().sendAsync(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout));
+    }
 
-                is = new ByteArrayInputStream(buffer.toByteArray());
+    private static <T> T await(URI uri, CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response from: " + uri);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-            return JSONUtil.readJSON(is, responseType);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Request failed: " + uri, cause);
         }
+    }
+
+    private static void checkTimeouts(int connectTimeout, int readTimeout) {
+        if (connectTimeout <= 0) {
+            throw new IllegalArgumentException("connectTimeout <= 0");
+        }
+        if (readTimeout <= 0) {
+            throw new IllegalArgumentException("readTimeout <= 0");
+        }
+    }
 
-        // Don't call con.disconnect() in order to allow connection reuse.
-        //
-        // The connection pool per destination is determined by http.maxConnections system property.
-        //
-        // See also:
-        //   https://docs.oracle.com/javase/8/docs/api/java/net/HttpURLConnection.html
-        //   https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html
-        //   https://docs.oracle.com/javase/8/docs/api/java/net/doc-files/net-properties.html
+    private static HttpException errorResponse(HttpResponse response, String method, URI uri) {
+        String body = response.body();
+        return new HttpException(method, uri, response.status(), body != null && !body.isEmpty() ? body : response.statusMessage());
     }
 }
@@ -9,6 +9,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Random;
 import java.util.zip.CRC32;
 
@@ -16,6 +18,14 @@ public class IOUtil {
 
     private static final Random RANDOM = new Random();
 
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
     public static void copy(InputStream input, OutputStream output) throws IOException {
         byte[] buf = new byte[4096];
 
@@ -75,4 +85,18 @@ public class IOUtil {
         crc.update(content.getBytes(StandardCharsets.UTF_8));
         return crc.getValue();
     }
+
+    /**
+     * Calculate the SHA-256 digest of the UTF-8 encoded content, and return it as a hex string.
+     *
+     * This is used to key the token caches without retaining the raw tokens as keys.
+     *
+     * @param content The content to digest
+     * @return The hex encoded digest
+     */
+    public static String sha256Hex(String content) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return asHexString(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
 }
@@ -40,6 +40,10 @@ public class JSONUtil {
         return MAPPER.readValue(jsonString, clazz);
     }
 
+    public static <T> T readJSON(byte[] bytes, int offset, int length, Class<T> clazz) throws IOException {
+        return MAPPER.readValue(bytes, offset, length, clazz);
+    }
+
     /**
      * Convert object to JsonNode
      *
@@ -5,13 +5,32 @@
 package io.strimzi.kafka.oauth.common;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.PayloadTransformer;
 
+import java.io.IOException;
+
+/**
+ * Transforms the JWT payload into a Jackson JSON object.
+ * <p>
+ * The Base64URL encoded payload segment is decoded and parsed straight into the Jackson tree,
+ * rather than first parsing it into a Nimbus JSON object, and then converting that into a Jackson tree.
+ * </p>
+ */
 public class NimbusPayloadTransformer implements PayloadTransformer<JsonNode> {
 
     @Override
     public JsonNode transform(Payload payload) {
-        return JSONUtil.asJson(payload.toJSONObject());
+        JsonNode result;
+        try {
+            result = JSONUtil.MAPPER.readTree(payload.toBase64URL().decode());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to parse JWT payload", e);
+        }
+        if (!(result instanceof ObjectNode)) {
+            throw new IllegalArgumentException("JWT payload is not a JSON object");
+        }
+        return result;
     }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.metrics.HttpConnectionPoolSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The transport that keeps a pool of persistent HTTP/1.1 connections per endpoint.
+ * <p>
+ * Every endpoint (e.g. the JWKS endpoint, the introspection endpoint, the token endpoint) gets its own pool, so that the load on one endpoint
+ * can not starve the requests to the others. The connections opened with a different SSL socket factory or hostname verifier are kept
+ * in separate pools, so that a connection is only ever reused with the same TLS settings it was opened with.
+ * </p>
+ * <p>
+ * The following options can be set as system properties, or as env variables:
+ * <ul>
+ * <li><em>oauth.http.pool.max.connections</em> The maximum number of connections open at the same time to the same endpoint. The request waits
+ * for the connection to be released for up to the connect timeout. Default value is <em>20</em>.</li>
+ * <li><em>oauth.http.pool.idle.timeout.seconds</em> The time after which the idle connection is closed. It should be lower than the idle timeout
+ * of the authorization server and any load balancers in front of it. The idle connections are checked every half of the idle timeout
+ * (at least every second), so they are closed even if no more requests are sent to the endpoint. Default value is <em>30</em>.</li>
+ * <li><em>oauth.http.pool.tls.session.reuse</em> If true, the new connection resumes the TLS session of the previous connection to the same endpoint,
+ * skipping the full TLS handshake. Default value is <em>true</em>.</li>
+ * <li><em>oauth.http.max.response.size</em> The maximum size of the response body in bytes. The request fails as soon as the response
+ * is known to exceed it. Default value is <em>10485760</em> (10 MiB).</li>
+ * <li><em>oauth.http.dns.cache.ttl.seconds</em> The time for which the resolved address of the endpoint host is cached, on top of the JDK's
+ * own caching. The cached address is dropped as soon as the connection to it fails. Default value is <em>0</em> - not cached.</li>
+ * </ul>
+ * <p>
+ * Every connection carries one request at a time, so the number of concurrent requests to the endpoint is bounded by
+ * <em>oauth.http.pool.max.connections</em>. To multiplex many concurrent requests over a single connection use the default
+ * <em>httpclient</em> transport on Java 11 or later, which negotiates HTTP/2 with the servers that support it.
+ * </p>
+ * <p>
+ * If the reused connection turns out to have been closed by the server while idle, the safe request (e.g. <em>GET</em>) is retried once
+ * with a new connection. The other requests (e.g. <em>POST</em>) are never retried once they may have reached the server - instead,
+ * the connection that has been idle for a while is checked to still be open before such a request is sent over it.
+ * The JDK proxy settings are not supported.
+ * </p>
+ * <p>
+ * The connections are blocking - the request occupies the calling thread until the response is read. The {@link #sendAsync} runs
+ * the request on the shared pool of threads, as for any other transport that can not send the requests without blocking.
+ * </p>
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    static final int DEFAULT_MAX_CONNECTIONS = 20;
+    static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * The connection idle for at least this long is checked to still be open before sending the request that can not be retried over it
+     */
+    static final long STALE_CHECK_IDLE_MS = 1000;
+
+    /**
+     * The minimum time between the checks for the expired idle connections
+     */
+    static final long MIN_SWEEP_PERIOD_MS = 1000;
+
+    private static final ScheduledThreadPoolExecutor SWEEPER = createSweeper();
+
+    private final int maxConnections;
+    private final int idleTimeoutSeconds;
+    private final boolean tlsSessionReuse;
+    private final int maxResponseSize;
+    private final HttpDnsCache dnsCache;
+
+    private final Map<PoolKey, HttpConnectionPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new instance, configured with system properties or env variables.
+     */
+    public PooledHttpTransport() {
+        this(new Config());
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param config The configuration
+     */
+    public PooledHttpTransport(Config config) {
+        this(config.getValueAsInt(Config.OAUTH_HTTP_POOL_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS),
+                config.getValueAsInt(Config.OAUTH_HTTP_POOL_IDLE_TIMEOUT_SECONDS, DEFAULT_IDLE_TIMEOUT_SECONDS),
+                config.getValueAsBoolean(Config.OAUTH_HTTP_POOL_TLS_SESSION_REUSE, true),
+                ResponseBodyBuffer.configuredMaxSize(config),
+                config.getValueAsInt(Config.OAUTH_HTTP_DNS_CACHE_TTL_SECONDS, 0));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxConnections The maximum number of connections open at the same time to the same endpoint
+     * @param idleTimeoutSeconds The time after which the idle connection is closed
+     * @param tlsSessionReuse If true, the new connection resumes the TLS session of the previous connection
+     */
+    public PooledHttpTransport(int maxConnections, int idleTimeoutSeconds, boolean tlsSessionReuse) {
+        this(maxConnections, idleTimeoutSeconds, tlsSessionReuse, ResponseBodyBuffer.DEFAULT_MAX_SIZE, 0);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxConnections The maximum number of connections open at the same time to the same endpoint
+     * @param idleTimeoutSeconds The time after which the idle connection is closed
+     * @param tlsSessionReuse If true, the new connection resumes the TLS session of the previous connection
+     * @param maxResponseSize The maximum size of the response body in bytes
+     * @param dnsCacheTtlSeconds The time for which the resolved address of the endpoint host is cached, or 0 to not cache it
+     */
+    public PooledHttpTransport(int maxConnections, int idleTimeoutSeconds, boolean tlsSessionReuse, int maxResponseSize, int dnsCacheTtlSeconds) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections has to be a positive number - (maxConnections=" + maxConnections + ")");
+        }
+        if (idleTimeoutSeconds <= 0) {
+            throw new IllegalArgumentException("idleTimeoutSeconds has to be a positive number - (idleTimeoutSeconds=" + idleTimeoutSeconds + ")");
+        }
+        this.maxConnections = maxConnections;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        if (maxResponseSize <= 0) {
+            throw new IllegalArgumentException("maxResponseSize has to be a positive number - (maxResponseSize=" + maxResponseSize + ")");
+        }
+        this.tlsSessionReuse = tlsSessionReuse;
+        this.maxResponseSize = maxResponseSize;
+        this.dnsCache = new HttpDnsCache(dnsCacheTtlSeconds);
+        scheduleSweep(this, idleTimeoutSeconds * 1000L);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured PooledHttpTransport:"
+                    + "\n    maxConnections: " + maxConnections
+                    + "\n    idleTimeoutSeconds: " + idleTimeoutSeconds
+                    + "\n    tlsSessionReuse: " + tlsSessionReuse
+                    + "\n    maxResponseSize: " + maxResponseSize
+                    + "\n    dnsCacheTtlSeconds: " + dnsCacheTtlSeconds);
+        }
+    }
+
+    @Override
+    public HttpResponse send(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                             Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        if (socketFactory != null && !HttpConnection.isHttps(uri)) {
+            log.warn("SSL socket factory set but url scheme not https ({})", uri);
+        }
+        HttpConnectionPool pool = pools.computeIfAbsent(new PoolKey(uri, socketFactory, hostnameVerifier),
+            k -> new HttpConnectionPool(k.endpoint, maxConnections, idleTimeoutSeconds * 1000L));
+
+        byte[] request = HttpConnection.encodeRequest(uri, method, headers, body);
+        try {
+            return send(pool, uri, method, socketFactory, hostnameVerifier, request, connectTimeout * 1000, readTimeout * 1000);
+        } catch (HttpConnection.StaleConnectionException e) {
+            if (e.isSent() && !HttpConnection.isSafe(method)) {
+                // the server may have processed the request, retrying it could repeat its effect
+                throw e;
+            }
+            log.debug("Pooled connection to {} closed by the server - retrying with a new connection", pool.endpoint());
+            // if one idle connection has been closed by the server the others most likely have been closed as well
+            pool.closeIdle();
+            return send(pool, uri, method, socketFactory, hostnameVerifier, request, connectTimeout * 1000, readTimeout * 1000);
+        }
+    }
+
+    private HttpResponse send(HttpConnectionPool pool, URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                              byte[] request, int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        HttpConnection connection = acquire(pool, uri, method, socketFactory, hostnameVerifier, connectTimeoutMs, readTimeoutMs);
+        boolean reuse = false;
+        try {
+            HttpResponse response = connection.exchange(request, method, readTimeoutMs, maxResponseSize);
+            reuse = true;
+            return response;
+        } finally {
+            pool.release(connection, reuse);
+        }
+    }
+
+    private HttpConnection acquire(HttpConnectionPool pool, URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                   int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        OAuthMetrics metrics = metrics(pool, uri);
+        HttpConnectionPoolSensorKeyProducer sensorKeyProducer = metrics != null ? new HttpConnectionPoolSensorKeyProducer(uri) : null;
+
+        long startTime = System.currentTimeMillis();
+        HttpConnectionPool.Lease lease;
+        HttpConnection connection;
+        while (true) {
+            try {
+                lease = pool.acquire(Math.max(1, connectTimeoutMs - (System.currentTimeMillis() - startTime)));
+            } catch (SocketTimeoutException e) {
+                addMetricTime(metrics, sensorKeyProducer != null ? sensorKeyProducer.waitTimeoutKey() : null, System.currentTimeMillis() - startTime);
+                throw e;
+            }
+            connection = lease.connection();
+            if (isUsable(lease, method)) {
+                break;
+            }
+            log.debug("Pooled connection to {} closed by the server while idle - not sending the {} request over it", pool.endpoint(), method);
+            pool.release(connection, false);
+        }
+        if (lease.hasWaited()) {
+            addMetricTime(metrics, sensorKeyProducer != null ? sensorKeyProducer.waitAcquiredKey() : null, System.currentTimeMillis() - startTime);
+        }
+
+        if (connection != null) {
+            addMetricTime(metrics, sensorKeyProducer != null ? sensorKeyProducer.reusedKey() : null, 0);
+            return connection;
+        }
+
+        long connectTime = System.currentTimeMillis();
+        try {
+            InetSocketAddress address = dnsCache.resolve(HttpConnection.host(uri), HttpConnection.port(uri));
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(HttpConnection.host(uri));
+            }
+            connection = HttpConnection.open(uri, address, socketFactory, hostnameVerifier, tlsSessionReuse, connectTimeoutMs, readTimeoutMs);
+        } catch (IOException | RuntimeException e) {
+            dnsCache.invalidate(HttpConnection.host(uri));
+            pool.openFailed();
+            throw e;
+        }
+        pool.opened(connection);
+        addMetricTime(metrics, sensorKeyProducer != null ? sensorKeyProducer.createdKey() : null, System.currentTimeMillis() - connectTime);
+        return connection;
+    }
+
+    /**
+     * @return False if the request can not be sent over the leased connection, because the server has closed it while idle
+     */
+    private static boolean isUsable(HttpConnectionPool.Lease lease, String method) {
+        HttpConnection connection = lease.connection();
+        if (connection == null || HttpConnection.isSafe(method)) {
+            return true;
+        }
+        return System.currentTimeMillis() - connection.lastUsedMs() < STALE_CHECK_IDLE_MS || !connection.isStale();
+    }
+
+    /**
+     * Close the expired idle connections of all the pools
+     */
+    void closeExpired() {
+        for (HttpConnectionPool pool : pools.values()) {
+            pool.closeExpired();
+        }
+    }
+
+    /**
+     * Periodically close the expired idle connections, until the transport is no longer used
+     */
+    private static void scheduleSweep(PooledHttpTransport transport, long idleTimeoutMs) {
+        // the task does not keep the transport from being garbage collected
+        WeakReference<PooledHttpTransport> ref = new WeakReference<>(transport);
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        long periodMs = Math.max(MIN_SWEEP_PERIOD_MS, idleTimeoutMs / 2);
+        task.set(SWEEPER.scheduleWithFixedDelay(() -> {
+            PooledHttpTransport current = ref.get();
+            if (current != null) {
+                current.closeExpired();
+            } else {
+                task.get().cancel(false);
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS));
+    }
+
+    private static ScheduledThreadPoolExecutor createSweeper() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "oauth-http-pool-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static OAuthMetrics metrics(HttpConnectionPool pool, URI uri) {
+        // The transport has no configuration of its own, the metrics are collected if they are enabled for any component
+        if (!Services.isAvailable() || !Services.getInstance().hasMetrics()) {
+            return null;
+        }
+        OAuthMetrics metrics = Services.getInstance().getMetrics();
+        if (pool.metricsRegistered.compareAndSet(false, true)) {
+            SensorKey poolKey = new HttpConnectionPoolSensorKeyProducer(uri).poolKey();
+            metrics.addGauge(poolKey, "active", "Number of connections in use", pool::activeCount);
+            metrics.addGauge(poolKey, "idle", "Number of idle connections", pool::idleCount);
+            metrics.addGauge(poolKey, "waiting", "Number of requests waiting for a connection", pool::waitingCount);
+            metrics.addGauge(poolKey, "max", "Maximum number of connections", pool::maxConnections);
+        }
+        return metrics;
+    }
+
+    private static void addMetricTime(OAuthMetrics metrics, SensorKey key, long timeMs) {
+        if (metrics != null) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+
+    /**
+     * The key identifying the pool - the endpoint, and the TLS settings the connections are opened with
+     */
+    private static class PoolKey {
+
+        private final String endpoint;
+        private final SSLSocketFactory socketFactory;
+        private final HostnameVerifier hostnameVerifier;
+
+        PoolKey(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier) {
+            this.endpoint = uri.getScheme() + "://" + uri.getHost() + ":" + HttpConnection.port(uri) + uri.getRawPath();
+            this.socketFactory = socketFactory;
+            this.hostnameVerifier = hostnameVerifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PoolKey poolKey = (PoolKey) o;
+            return endpoint.equals(poolKey.endpoint)
+                    && socketFactory == poolKey.socketFactory
+                    && hostnameVerifier == poolKey.hostnameVerifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, System.identityHashCode(socketFactory), System.identityHashCode(hostnameVerifier));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import io.strimzi.kafka.oauth.metrics.HttpHedgingSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The policy of hedging the requests: if no response is received within the delay, the same request is sent once more,
+ * and the response that arrives first is used.
+ * <p>
+ * The delay is the configured percentile of the response times of the recent requests to the same URI. The hedging only starts once
+ * enough response times have been collected. If the URI identifies the {@link HttpEndpointGroup}, the hedged request is sent to the endpoint
+ * selected by the group, which is usually another endpoint, since the one with the request in progress has the higher load.
+ * </p>
+ * <p>
+ * The hedged requests are limited by the budget - every request adds the <em>budgetPercent</em> of a hedged request to the budget,
+ * so that at most that percentage of the requests is hedged, and the load on a slow authorization server does not double.
+ * The response times and the budget are shared by all the components sending hedged requests to the same URI.
+ * </p>
+ * <p>
+ * Only the idempotent requests should be hedged, as the request may be processed by the server twice. The slower response is not cancelled,
+ * it is read and discarded.
+ * </p>
+ */
+public class RequestHedging {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestHedging.class);
+
+    /**
+     * The number of the most recent response times, from which the delay is calculated
+     */
+    static final int WINDOW_SIZE = 200;
+
+    /**
+     * The number of the response times to collect before hedging any requests
+     */
+    static final int MIN_SAMPLES = 20;
+
+    /**
+     * The maximum number of the hedged requests the unused budget can accumulate to
+     */
+    private static final double MAX_BUDGET = 10;
+
+    private static final Map<URI, Stats> STATS = new ConcurrentHashMap<>();
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    private final int percentile;
+    private final int budgetPercent;
+
+    /**
+     * Create a new instance
+     *
+     * @param percentile The percentile of the recent response times after which the request is hedged (1 - 99)
+     * @param budgetPercent The maximum percentage of the requests that are hedged (1 - 100)
+     */
+    public RequestHedging(int percentile, int budgetPercent) {
+        if (percentile < 1 || percentile > 99) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile + " (should be between 1 and 99)");
+        }
+        if (budgetPercent < 1 || budgetPercent > 100) {
+            throw new IllegalArgumentException("Invalid budgetPercent: " + budgetPercent + " (should be between 1 and 100)");
+        }
+        this.percentile = percentile;
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * Create the hedging policy, or return null if the hedging is disabled
+     *
+     * @param percentile The percentile of the recent response times after which the request is hedged, or 0 to disable the hedging
+     * @param budgetPercent The maximum percentage of the requests that are hedged
+     * @return The policy, or null
+     */
+    public static RequestHedging create(int percentile, int budgetPercent) {
+        return percentile > 0 ? new RequestHedging(percentile, budgetPercent) : null;
+    }
+
+    public int percentile() {
+        return percentile;
+    }
+
+    public int budgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * Send the request, and hedge it if no response is received within the delay
+     *
+     * @param uri The request URI, which identifies the shared statistics
+     * @param sender The function sending the request
+     * @return The future completed with the first response received, or with the error if all the requests sent failed
+     */
+    CompletableFuture<HttpResponse> send(URI uri, Supplier<CompletableFuture<HttpResponse>> sender) {
+        Stats stats = STATS.computeIfAbsent(uri, Stats::new);
+        stats.deposit(budgetPercent / 100.0);
+        long delayMs = stats.delayMs(percentile);
+
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        attempt(stats, sender, result, pending, false);
+
+        if (delayMs >= 0 && !result.isDone()) {
+            ScheduledFuture<?> hedge = SCHEDULER.schedule(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                OAuthMetrics metrics = metrics();
+                if (!stats.withdraw()) {
+                    addMetricTime(metrics, stats.sensorKeyProducer.throttledKey(), 0);
+                    return;
+                }
+                log.debug("No response from {} in {} ms - sending the hedged request", uri, delayMs);
+                addMetricTime(metrics, stats.sensorKeyProducer.sentKey(), delayMs);
+                pending.incrementAndGet();
+                attempt(stats, sender, result, pending, true);
+            }, delayMs, TimeUnit.MILLISECONDS);
+            result.whenComplete((response, e) -> hedge.cancel(false));
+        }
+        return result;
+    }
+
+    private static void attempt(Stats stats, Supplier<CompletableFuture<HttpResponse>> sender, CompletableFuture<HttpResponse> result,
+                                AtomicInteger pending, boolean hedged) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<HttpResponse> future;
+        try {
+            future = sender.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((response, e) -> {
+            if (e != null) {
+                // the request only fails if all the requests sent have failed
+                if (pending.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+                return;
+            }
+            long timeMs = System.currentTimeMillis() - start;
+            if (response.status() < 500) {
+                stats.record(timeMs);
+            }
+            if (result.complete(response) && hedged) {
+                addMetricTime(metrics(), stats.sensorKeyProducer.wonKey(), timeMs);
+            }
+        });
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "oauth-request-hedging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static OAuthMetrics metrics() {
+        // The statistics are shared by all the components, the metrics are collected if they are enabled for any of them
+        return Services.isAvailable() && Services.getInstance().hasMetrics() ? Services.getInstance().getMetrics() : null;
+    }
+
+    private static void addMetricTime(OAuthMetrics metrics, SensorKey key, long timeMs) {
+        if (metrics != null) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RequestHedging {percentile: " + percentile + ", budgetPercent: " + budgetPercent + "}";
+    }
+
+    /**
+     * The recent response times, and the budget for the hedged requests sent to the same URI
+     */
+    static class Stats {
+
+        private final HttpHedgingSensorKeyProducer sensorKeyProducer;
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+
+        private long[] sorted;
+
+        private double budget;
+
+        Stats(URI uri) {
+            this.sensorKeyProducer = new HttpHedgingSensorKeyProducer(uri);
+        }
+
+        synchronized void record(long timeMs) {
+            samples[next] = timeMs;
+            next = (next + 1) % WINDOW_SIZE;
+            if (count < WINDOW_SIZE) {
+                count++;
+            }
+            // the samples are sorted again after a tenth of them have been replaced
+            if (next % (WINDOW_SIZE / 10) == 0) {
+                sorted = null;
+            }
+        }
+
+        /**
+         * Get the delay after which the request is hedged
+         *
+         * @param percentile The percentile of the recent response times
+         * @return The delay in ms, or -1 if not enough response times have been collected yet
+         */
+        synchronized long delayMs(int percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (sorted == null || sorted.length != count) {
+                sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+            }
+            return Math.max(1, sorted[Math.min(count - 1, count * percentile / 100)]);
+        }
+
+        synchronized void deposit(double amount) {
+            budget = Math.min(MAX_BUDGET, budget + amount);
+        }
+
+        synchronized boolean withdraw() {
+            if (budget < 1) {
+                return false;
+            }
+            budget -= 1;
+            return true;
+        }
+    }
+}
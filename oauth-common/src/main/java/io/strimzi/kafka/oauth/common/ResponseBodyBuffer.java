@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The buffer collecting the response body, up to the maximum size.
+ * <p>
+ * The collected bytes are handed over to the {@link HttpResponse} without copying, and are parsed from there as they are,
+ * so that the response body is held in memory only once.
+ * </p>
+ */
+class ResponseBodyBuffer extends ByteArrayOutputStream {
+
+    static final int DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+    private static final int DEFAULT_INITIAL_SIZE = 512;
+
+    private final int maxSize;
+
+    /**
+     * Create a new instance
+     *
+     * @param expectedSize The expected size of the body (e.g. the Content-Length) or -1 if not known
+     * @param maxSize The maximum size of the body
+     * @throws ResponseTooLargeException If the expected size exceeds the maximum size
+     */
+    ResponseBodyBuffer(long expectedSize, int maxSize) throws ResponseTooLargeException {
+        super(expectedSize >= 0 ? (int) Math.min(expectedSize, maxSize) : Math.min(DEFAULT_INITIAL_SIZE, maxSize));
+        if (expectedSize > maxSize) {
+            throw new ResponseTooLargeException(maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the maximum size of the response body
+     *
+     * @param config The configuration
+     * @return The value of <em>oauth.http.max.response.size</em>, or the default of 10 MiB
+     */
+    static int configuredMaxSize(Config config) {
+        return config.getValueAsInt(Config.OAUTH_HTTP_MAX_RESPONSE_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Append the bytes to the body
+     *
+     * @param bytes The bytes
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @throws ResponseTooLargeException If the body exceeds the maximum size
+     */
+    void append(byte[] bytes, int offset, int length) throws ResponseTooLargeException {
+        if (length > maxSize - count) {
+            throw new ResponseTooLargeException(maxSize);
+        }
+        write(bytes, offset, length);
+    }
+
+    /**
+     * Read the input stream to the end, and append all the bytes to the body
+     *
+     * @param input The input stream
+     * @throws IOException If reading from the stream fails, or if the body exceeds the maximum size
+     */
+    void appendAll(InputStream input) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = input.read(chunk)) != -1) {
+            append(chunk, 0, read);
+        }
+    }
+
+    /**
+     * @return The internal array holding the body in its first {@link #size()} bytes
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    byte[] array() {
+        return buf;
+    }
+
+    /**
+     * Thrown when the response body exceeds the maximum size
+     */
+    static class ResponseTooLargeException extends IOException {
+
+        ResponseTooLargeException(int maxSize) {
+            super("Response body exceeds the maximum size of " + maxSize + " bytes (" + Config.OAUTH_HTTP_MAX_RESPONSE_SIZE + ")");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * The SSL socket factory that remembers the SSL context it was created from.
+ * <p>
+ * The transport based on <code>java.net.http.HttpClient</code> configures the client with the SSL context, as the client can not use
+ * the socket factory.
+ * </p>
+ */
+class SSLContextSocketFactory extends SSLSocketFactory {
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory delegate;
+
+    SSLContextSocketFactory(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        this.delegate = sslContext.getSocketFactory();
+    }
+
+    SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return delegate.createSocket();
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return delegate.createSocket(s, host, port, autoClose);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return delegate.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return delegate.createSocket(address, port, localAddress, localPort);
+    }
+}
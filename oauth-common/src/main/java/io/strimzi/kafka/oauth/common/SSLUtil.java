@@ -88,7 +88,24 @@ public class SSLUtil {
             throw new ConfigException("Failed to initialise ssl context", e);
         }
 
-        return sslContext.getSocketFactory();
+        return new SSLContextSocketFactory(sslContext);
+    }
+
+    /**
+     * Get the SSL context of the SSL socket factory, if known.
+     *
+     * @param socketFactory The SSL socket factory or null for the default one
+     * @return The SSL context the socket factory was created from, or null if it is not known
+     */
+    static SSLContext getSSLContext(SSLSocketFactory socketFactory) {
+        if (socketFactory == null) {
+            try {
+                return SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Failed to get the default SSL context", e);
+            }
+        }
+        return socketFactory instanceof SSLContextSocketFactory ? ((SSLContextSocketFactory) socketFactory).getSSLContext() : null;
     }
 
     private static X509TrustManager getTrustManager(TrustManagerFactory tmf) {
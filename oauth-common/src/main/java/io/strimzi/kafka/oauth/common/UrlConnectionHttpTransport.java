@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * The transport that performs the requests using <code>java.net.HttpURLConnection</code>.
+ * <p>
+ * The connections are kept alive and reused by the JDK's internal connection cache, which is configured with the JDK system properties
+ * such as <em>http.maxConnections</em>. Unlike the {@link PooledHttpTransport} it honors the JDK proxy settings,
+ * and is therefore used when the proxy is configured.
+ * </p>
+ *
+ * See: https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html
+ */
+public class UrlConnectionHttpTransport implements HttpTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(UrlConnectionHttpTransport.class);
+
+    private final int maxResponseSize;
+
+    /**
+     * Create a new instance, with the maximum size of the response body configured with system properties or env variables.
+     */
+    public UrlConnectionHttpTransport() {
+        this(ResponseBodyBuffer.configuredMaxSize(new Config()));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxResponseSize The maximum size of the response body in bytes
+     */
+    public UrlConnectionHttpTransport(int maxResponseSize) {
+        if (maxResponseSize <= 0) {
+            throw new IllegalArgumentException("maxResponseSize has to be a positive number - (maxResponseSize=" + maxResponseSize + ")");
+        }
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    @Override
+    public HttpResponse send(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                             Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        HttpURLConnection con = openConnection(uri, socketFactory, hostnameVerifier, connectTimeout, readTimeout);
+        if (body != null) {
+            con.setDoOutput(true);
+        }
+        con.setRequestMethod(method);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                con.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+
+        try {
+            con.connect();
+        } catch (ConnectException e) {
+            throw new IOException("Failed to connect to: " + uri, e);
+        }
+
+        if (body != null && body.length > 0) {
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        // Don't call con.disconnect() in order to allow connection reuse.
+        //
+        // The connection pool per destination is determined by http.maxConnections system property.
+        //
+        // See also:
+        //   https://docs.oracle.com/javase/8/docs/api/java/net/HttpURLConnection.html
+        //   https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html
+        //   https://docs.oracle.com/javase/8/docs/api/java/net/doc-files/net-properties.html
+        int code = con.getResponseCode();
+        if (code == HttpResponse.NOT_MODIFIED) {
+            return new HttpResponse(code, con.getResponseMessage(), con.getHeaderFields(), null, 0);
+        }
+
+        InputStream response = code < 400 ? con.getInputStream() : con.getErrorStream();
+        if (response == null) {
+            return new HttpResponse(code, con.getResponseMessage(), con.getHeaderFields(), null, 0);
+        }
+
+        ResponseBodyBuffer buffer = null;
+        try (InputStream is = response) {
+            buffer = new ResponseBodyBuffer(con.getContentLengthLong(), maxResponseSize);
+            buffer.appendAll(is);
+        } catch (IOException e) {
+            if (code < 400) {
+                throw e;
+            }
+            log.warn("[IGNORED] Failed to read response body", e);
+        }
+        return buffer == null ? new HttpResponse(code, con.getResponseMessage(), con.getHeaderFields(), new byte[0], 0)
+                : new HttpResponse(code, con.getResponseMessage(), con.getHeaderFields(), buffer.array(), buffer.size());
+    }
+
+    private static HttpURLConnection openConnection(URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                                    int connectTimeout, int readTimeout) throws IOException {
+        HttpURLConnection con;
+        try {
+            con = (HttpURLConnection) uri.toURL().openConnection();
+        } catch (IOException e) {
+            throw new IOException("Failed to initialise connection to: " + uri, e);
+        }
+
+        con.setConnectTimeout(connectTimeout * 1000);
+        con.setReadTimeout(readTimeout * 1000);
+
+        configureTLS(con, uri, socketFactory, hostnameVerifier);
+
+        con.setUseCaches(false);
+        return con;
+    }
+
+    private static void configureTLS(HttpURLConnection con, URI uri, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier) {
+        if (con instanceof HttpsURLConnection) {
+            HttpsURLConnection scon = (HttpsURLConnection) con;
+            if (socketFactory != null) {
+                scon.setSSLSocketFactory(socketFactory);
+            }
+            if (hostnameVerifier != null) {
+                scon.setHostnameVerifier(hostnameVerifier);
+            }
+        } else if (socketFactory != null) {
+            log.warn("SSL socket factory set but url scheme not https ({})", uri);
+        }
+    }
+}
@@ -11,6 +11,9 @@ import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import io.strimzi.kafka.oauth.common.JSONUtil;
+
+import java.util.List;
 
 import static com.jayway.jsonpath.JsonPath.using;
 
@@ -133,6 +136,24 @@ public class JsonPathFilterQuery {
         return matcher.matches(jsonObject);
     }
 
+    /**
+     * Match the query against the synthetic json objects, so that the query evaluation is compiled by JIT before it is first used.
+     * An empty object is matched as well in every iteration, so that the non-matching outcome is exercised even if all the samples match.
+     * The results are ignored.
+     *
+     * @param samples Jackson DataBind objects similar to those the query will be matched against
+     * @param iterations The number of times to match every sample
+     */
+    public void warmUp(List<? extends JsonNode> samples, int iterations) {
+        JsonNode empty = JSONUtil.newObjectNode();
+        for (int i = 0; i < iterations; i++) {
+            for (JsonNode sample : samples) {
+                matcher.matches(sample);
+            }
+            matcher.matches(empty);
+        }
+    }
+
 
     @Override
     public String toString() {
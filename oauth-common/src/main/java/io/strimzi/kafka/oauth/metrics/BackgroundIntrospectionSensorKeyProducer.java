@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the introspections of the already authenticated tokens, performed in the background
+ * (e.g. 'background_introspections' right after the authentication, or the periodic 'reintrospections').
+ *
+ * Rather than successful and failed requests, the sensors count the tokens found to be active, the tokens found to be inactive,
+ * and the introspections that failed without a definite answer.
+ */
+public class BackgroundIntrospectionSensorKeyProducer {
+
+    private final String contextId;
+    private final URI uri;
+    private final String kind;
+    private final String sensorName;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator performing the background introspection
+     * @param uri The introspection endpoint uri
+     * @param kind The kind of the validator (e.g. 'introspect')
+     * @param sensorName The name of the sensors (e.g. 'reintrospections')
+     */
+    public BackgroundIntrospectionSensorKeyProducer(String contextId, URI uri, String kind, String sensorName) {
+        if (contextId == null) {
+            throw new IllegalArgumentException("contextId == null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.contextId = contextId;
+        this.uri = uri;
+        this.kind = kind;
+        this.sensorName = sensorName;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the tokens found to be active
+     *
+     * @return A SensorKey
+     */
+    public SensorKey activeKey() {
+        return outcomeKey("active");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the tokens found to be inactive, and their sessions invalidated
+     *
+     * @return A SensorKey
+     */
+    public SensorKey inactiveKey() {
+        return outcomeKey("inactive");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the introspections that failed, leaving the token unchecked
+     *
+     * @return A SensorKey
+     */
+    public SensorKey errorKey() {
+        return outcomeKey("error");
+    }
+
+    private SensorKey outcomeKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("outcome", outcome);
+        return SensorKey.of(sensorName, attrs);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the lookups in one of the token caches.
+ *
+ * Rather than successful and failed requests, cache sensors come in pairs of hits and misses.
+ */
+public class CacheSensorKeyProducer {
+
+    private final String contextId;
+    private final URI uri;
+    private final String kind;
+    private final String cacheName;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator owning the cache
+     * @param uri The endpoint uri of the validator owning the cache
+     * @param kind The kind of the validator owning the cache (e.g. 'jwks')
+     * @param cacheName The name of the cache
+     */
+    public CacheSensorKeyProducer(String contextId, URI uri, String kind, String cacheName) {
+        if (contextId == null) {
+            throw new IllegalArgumentException("contextId == null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.contextId = contextId;
+        this.uri = uri;
+        this.kind = kind;
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests served from the cache
+     *
+     * @return A SensorKey
+     */
+    public SensorKey hitKey() {
+        return cacheKey("hit");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests not found in the cache
+     *
+     * @return A SensorKey
+     */
+    public SensorKey missKey() {
+        return cacheKey("miss");
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the cache
+     *
+     * @return A SensorKey
+     */
+    public SensorKey sizeKey() {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("cache", cacheName);
+        return SensorKey.of("cache_size", attrs);
+    }
+
+    private SensorKey cacheKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("cache", cacheName);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("cache_requests", attrs);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the state of the circuit breaker protecting the requests to the authorization server.
+ *
+ * Rather than successful and failed requests, the sensors count the transitions to the individual states.
+ */
+public class CircuitBreakerSensorKeyProducer {
+
+    private final String contextId;
+    private final URI uri;
+    private final String kind;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator owning the circuit breaker
+     * @param uri The endpoint uri protected by the circuit breaker
+     * @param kind The kind of the validator owning the circuit breaker (e.g. 'introspect')
+     */
+    public CircuitBreakerSensorKeyProducer(String contextId, URI uri, String kind) {
+        if (contextId == null) {
+            throw new IllegalArgumentException("contextId == null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.contextId = contextId;
+        this.uri = uri;
+        this.kind = kind;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the transitions of the circuit breaker to the state
+     *
+     * @param state The new state (e.g. 'open')
+     * @return A SensorKey
+     */
+    public SensorKey transitionKey(String state) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("state", state);
+        return SensorKey.of("circuit_breaker_transitions", attrs);
+    }
+
+    /**
+     * Generate a SensorKey for the gauge representing the current state of the circuit breaker
+     *
+     * @return A SensorKey
+     */
+    public SensorKey stateKey() {
+        return SensorKey.of("circuit_breaker", MetricsUtil.getSensorKeyAttrs(contextId, uri, kind));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the tasks submitted to one of the bounded executors.
+ *
+ * The task is either executed, rejected because the executor queue is full, or abandoned by the submitter after waiting for too long.
+ */
+public class ExecutorSensorKeyProducer {
+
+    private final String contextId;
+    private final URI uri;
+    private final String kind;
+    private final String executorName;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator owning the executor
+     * @param uri The endpoint uri of the validator owning the executor
+     * @param kind The kind of the validator owning the executor (e.g. 'introspect')
+     * @param executorName The name of the executor
+     */
+    public ExecutorSensorKeyProducer(String contextId, URI uri, String kind, String executorName) {
+        if (contextId == null) {
+            throw new IllegalArgumentException("contextId == null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.contextId = contextId;
+        this.uri = uri;
+        this.kind = kind;
+        this.executorName = executorName;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the executed tasks, and the time they waited in the queue
+     *
+     * @return A SensorKey
+     */
+    public SensorKey executedKey() {
+        return requestKey("executed");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the tasks rejected because the queue was full
+     *
+     * @return A SensorKey
+     */
+    public SensorKey rejectedKey() {
+        return requestKey("rejected");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the tasks that did not complete within the maximum wait time
+     *
+     * @return A SensorKey
+     */
+    public SensorKey timeoutKey() {
+        return requestKey("timeout");
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the executor queue
+     *
+     * @return A SensorKey
+     */
+    public SensorKey queueKey() {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("executor", executorName);
+        return SensorKey.of("executor_queue", attrs);
+    }
+
+    private SensorKey requestKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("executor", executorName);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("executor_requests", attrs);
+    }
+}
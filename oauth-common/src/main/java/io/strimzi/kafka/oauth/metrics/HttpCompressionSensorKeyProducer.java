@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the sizes of the compressed responses from a single endpoint.
+ *
+ * The responses are decompressed by the shared HTTP client code, so the keys use a fixed context and kind.
+ */
+public class HttpCompressionSensorKeyProducer {
+
+    private static final String CONTEXT = "http-transport";
+    private static final String KIND = "compression";
+
+    private final URI uri;
+    private final String encoding;
+
+    /**
+     * Create a new instance
+     *
+     * @param uri The endpoint uri
+     * @param encoding The content encoding of the response (e.g. 'gzip')
+     */
+    public HttpCompressionSensorKeyProducer(URI uri, String encoding) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.uri = uri;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the size of the response body as received from the server
+     *
+     * @return A SensorKey
+     */
+    public SensorKey compressedKey() {
+        return bytesKey("compressed");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the size of the response body once decompressed
+     *
+     * @return A SensorKey
+     */
+    public SensorKey uncompressedKey() {
+        return bytesKey("uncompressed");
+    }
+
+    private SensorKey bytesKey(String size) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("encoding", encoding);
+        attrs.put("size", size);
+        return SensorKey.of("http_response_bytes", attrs);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the concurrency limit of the requests sent to a single authorization server endpoint.
+ *
+ * The limit is shared by all the components sending requests to the same host and port, so the keys use a fixed context and kind.
+ */
+public class HttpConcurrencyLimitSensorKeyProducer {
+
+    private static final String CONTEXT = "http-transport";
+    private static final String KIND = "concurrency-limit";
+
+    private final URI uri;
+
+    /**
+     * Create a new instance
+     *
+     * @param uri The endpoint uri
+     */
+    public HttpConcurrencyLimitSensorKeyProducer(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.uri = uri;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests that had to wait for the number of requests in progress
+     * to drop below the limit, and the time they waited
+     *
+     * @param priority The priority of the request ('interactive' or 'background')
+     * @return A SensorKey
+     */
+    public SensorKey queuedKey(String priority) {
+        return requestsKey("queued", priority);
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests that were rejected because too many requests were already waiting
+     *
+     * @param priority The priority of the request ('interactive' or 'background')
+     * @return A SensorKey
+     */
+    public SensorKey rejectedKey(String priority) {
+        return requestsKey("rejected", priority);
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the limit
+     *
+     * @return A SensorKey
+     */
+    public SensorKey limitKey() {
+        return SensorKey.of("http_concurrency_limit", MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND));
+    }
+
+    private SensorKey requestsKey(String outcome, String priority) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("outcome", outcome);
+        attrs.put("priority", priority);
+        return SensorKey.of("http_concurrency_limit_requests", attrs);
+    }
+}
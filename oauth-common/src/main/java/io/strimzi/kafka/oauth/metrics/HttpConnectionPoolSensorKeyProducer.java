@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the connection pool of a single endpoint, kept by the pooled HTTP transport.
+ *
+ * The pool is shared by all the components sending requests to the endpoint, so the keys use a fixed context and kind.
+ */
+public class HttpConnectionPoolSensorKeyProducer {
+
+    private static final String CONTEXT = "http-transport";
+    private static final String KIND = "pooled";
+
+    private final URI uri;
+
+    /**
+     * Create a new instance
+     *
+     * @param uri The endpoint uri
+     */
+    public HttpConnectionPoolSensorKeyProducer(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.uri = uri;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the newly opened connections, and the time it took to connect
+     *
+     * @return A SensorKey
+     */
+    public SensorKey createdKey() {
+        return connectionKey("created");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the reused idle connections
+     *
+     * @return A SensorKey
+     */
+    public SensorKey reusedKey() {
+        return connectionKey("reused");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests that waited for a connection to be released, and the time they waited
+     *
+     * @return A SensorKey
+     */
+    public SensorKey waitAcquiredKey() {
+        return waitKey("acquired");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests that did not get a connection within the connect timeout
+     *
+     * @return A SensorKey
+     */
+    public SensorKey waitTimeoutKey() {
+        return waitKey("timeout");
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the connection pool
+     *
+     * @return A SensorKey
+     */
+    public SensorKey poolKey() {
+        return SensorKey.of("http_connection_pool", MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND));
+    }
+
+    private SensorKey connectionKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("http_connections", attrs);
+    }
+
+    private SensorKey waitKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("http_connection_waits", attrs);
+    }
+}
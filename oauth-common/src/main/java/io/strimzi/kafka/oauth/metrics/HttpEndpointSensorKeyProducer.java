@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking a single endpoint of the group of equivalent endpoints, among which the requests are balanced.
+ *
+ * The endpoint group is shared by all the components sending requests to it, so the keys use a fixed context and kind.
+ */
+public class HttpEndpointSensorKeyProducer {
+
+    private static final String CONTEXT = "http-transport";
+    private static final String KIND = "endpoint-group";
+
+    private final URI uri;
+
+    /**
+     * Create a new instance
+     *
+     * @param uri The endpoint uri
+     */
+    public HttpEndpointSensorKeyProducer(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.uri = uri;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests sent to the endpoint that succeeded, and the time they took
+     *
+     * @return A SensorKey
+     */
+    public SensorKey successKey() {
+        return selectionKey("success");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the requests sent to the endpoint that failed, and the time they took
+     *
+     * @return A SensorKey
+     */
+    public SensorKey errorKey() {
+        return selectionKey("error");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the times the endpoint was ejected from the selection
+     *
+     * @return A SensorKey
+     */
+    public SensorKey ejectedKey() {
+        return selectionKey("ejected");
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the endpoint
+     *
+     * @return A SensorKey
+     */
+    public SensorKey endpointKey() {
+        return SensorKey.of("http_endpoint", MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND));
+    }
+
+    private SensorKey selectionKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("http_endpoint_selections", attrs);
+    }
+}
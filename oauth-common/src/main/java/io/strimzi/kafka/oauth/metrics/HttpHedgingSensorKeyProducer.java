@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the hedged requests sent to a single endpoint.
+ *
+ * The hedging statistics are shared by all the components sending requests to the endpoint, so the keys use a fixed context and kind.
+ */
+public class HttpHedgingSensorKeyProducer {
+
+    private static final String CONTEXT = "http-transport";
+    private static final String KIND = "hedging";
+
+    private final URI uri;
+
+    /**
+     * Create a new instance
+     *
+     * @param uri The endpoint uri
+     */
+    public HttpHedgingSensorKeyProducer(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.uri = uri;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the hedged requests sent, and the delay after which they were sent
+     *
+     * @return A SensorKey
+     */
+    public SensorKey sentKey() {
+        return hedgeKey("sent");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the hedged requests that responded first, and the time they took
+     *
+     * @return A SensorKey
+     */
+    public SensorKey wonKey() {
+        return hedgeKey("won");
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the hedged requests not sent because the budget was used up
+     *
+     * @return A SensorKey
+     */
+    public SensorKey throttledKey() {
+        return hedgeKey("throttled");
+    }
+
+    private SensorKey hedgeKey(String outcome) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(CONTEXT, uri, KIND);
+        attrs.put("outcome", outcome);
+        return SensorKey.of("http_hedged_requests", attrs);
+    }
+}
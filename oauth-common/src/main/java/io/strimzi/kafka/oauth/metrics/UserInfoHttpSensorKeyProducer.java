@@ -25,4 +25,40 @@ public class UserInfoHttpSensorKeyProducer extends AbstractSensorKeyProducer {
         Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, "userinfo");
         return SensorKey.of("http_requests", MetricsUtil.addHttpErrorAttrs(attrs, e));
     }
+
+    /**
+     * Generate a SensorKey for the sensor representing the lookups in the cache of user info endpoint responses
+     *
+     * @param hit true if the response was found in the cache
+     * @return A SensorKey
+     */
+    public SensorKey cacheKey(boolean hit) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, "userinfo");
+        attrs.put("cache", "userinfo_responses");
+        attrs.put("outcome", hit ? "hit" : "miss");
+        return SensorKey.of("cache_requests", attrs);
+    }
+
+    /**
+     * Generate a SensorKey for the gauges representing the state of the cache of user info endpoint responses
+     *
+     * @return A SensorKey
+     */
+    public SensorKey cacheSizeKey() {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, "userinfo");
+        attrs.put("cache", "userinfo_responses");
+        return SensorKey.of("cache_size", attrs);
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the user info endpoint requests sent in parallel with the introspection
+     *
+     * @param used true if the response was used, false if the request was cancelled because the response was not needed
+     * @return A SensorKey
+     */
+    public SensorKey parallelKey(boolean used) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, "userinfo");
+        attrs.put("outcome", used ? "used" : "cancelled");
+        return SensorKey.of("parallel_requests", attrs);
+    }
 }
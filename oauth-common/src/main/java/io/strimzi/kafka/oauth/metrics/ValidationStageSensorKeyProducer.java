@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the time spent in the individual stages of the token validation.
+ *
+ * Every stage is tracked by its own sensor, regardless of the outcome of the validation.
+ */
+public class ValidationStageSensorKeyProducer {
+
+    private final String contextId;
+    private final URI uri;
+    private final String kind;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator
+     * @param uri The endpoint uri of the validator
+     * @param kind The kind of the validator (e.g. 'jwks')
+     */
+    public ValidationStageSensorKeyProducer(String contextId, URI uri, String kind) {
+        if (contextId == null) {
+            throw new IllegalArgumentException("contextId == null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri == null");
+        }
+        this.contextId = contextId;
+        this.uri = uri;
+        this.kind = kind;
+    }
+
+    /**
+     * Generate a SensorKey for the sensor representing the validation stage
+     *
+     * @param stage The name of the stage (e.g. 'signature')
+     * @return A SensorKey
+     */
+    public SensorKey stageKey(String stage) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("stage", stage);
+        return SensorKey.of("validation_stages", attrs);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.metrics;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * A producer of SensorKeys for tracking the duration of the validator warm-up performed at startup.
+ */
+public class WarmupSensorKeyProducer extends AbstractSensorKeyProducer {
+
+    private final String kind;
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator
+     * @param uri The endpoint uri of the validator
+     * @param kind The kind of the validator (e.g. 'jwks')
+     */
+    public WarmupSensorKeyProducer(String contextId, URI uri, String kind) {
+        super(contextId, uri);
+        this.kind = kind;
+    }
+
+    @Override
+    public SensorKey successKey() {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("outcome", "success");
+        return SensorKey.of("warmup", attrs);
+    }
+
+    @Override
+    public SensorKey errorKey(Throwable e) {
+        Map<String, String> attrs = MetricsUtil.getSensorKeyAttrs(contextId, uri, kind);
+        attrs.put("outcome", "error");
+        attrs.put("error_type", "other");
+        return SensorKey.of("warmup", attrs);
+    }
+}
@@ -10,6 +10,7 @@ import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.metrics.Gauge;
 import org.apache.kafka.common.metrics.JmxReporter;
 import org.apache.kafka.common.metrics.KafkaMetricsContext;
 import org.apache.kafka.common.metrics.MetricConfig;
@@ -30,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.apache.kafka.clients.CommonClientConfigs.CLIENT_ID_CONFIG;
 import static org.apache.kafka.clients.CommonClientConfigs.METRICS_NUM_SAMPLES_CONFIG;
@@ -70,6 +72,17 @@ public class OAuthMetrics {
      * @param timeMs Time spent processing the request in millis
      */
     public void addTime(SensorKey key, long timeMs) {
+        addTime(key, (double) timeMs);
+    }
+
+    /**
+     * Record a time in millis with a sub-millisecond precision.
+     * Used for timing the operations that typically take less than a millisecond.
+     *
+     * @param key SensorKey identifying the sensor
+     * @param timeMs Time spent processing the request in millis
+     */
+    public void addTime(SensorKey key, double timeMs) {
         Sensor registeredSensor = sensorMap.computeIfAbsent(key, k -> {
             Sensor sensor = metrics.sensor(key.getId());
             addMetricsToSensor(metrics, sensor, key);
@@ -79,6 +92,39 @@ public class OAuthMetrics {
         registeredSensor.record(timeMs);
     }
 
+    /**
+     * Record a size in bytes.
+     *
+     * @param key SensorKey identifying the sensor
+     * @param bytes The number of bytes
+     */
+    public void addBytes(SensorKey key, long bytes) {
+        Sensor registeredSensor = sensorMap.computeIfAbsent(key, k -> {
+            Sensor sensor = metrics.sensor(key.getId());
+            addByteMetricsToSensor(sensor, key);
+            return sensor;
+        });
+
+        registeredSensor.record(bytes);
+    }
+
+    /**
+     * Register a gauge, unless a gauge with the same name has already been registered.
+     *
+     * @param key SensorKey identifying the group and the attributes of the gauge
+     * @param name The name of the gauge
+     * @param description The description of the gauge
+     * @param value The supplier of the current value
+     */
+    public void addGauge(SensorKey key, String name, String description, Supplier<? extends Number> value) {
+        MetricName metricName = metrics.metricName(name, key.getName(), description, key.getAttributes());
+        synchronized (metrics) {
+            if (metrics.metric(metricName) == null) {
+                metrics.addMetric(metricName, (Gauge<Number>) (config, now) -> value.get());
+            }
+        }
+    }
+
     private Metrics initKafkaMetrics() {
         List<MetricsReporter> reporters = initReporters();
         KafkaMetricsContext ctx = createKafkaMetricsContext();
@@ -194,4 +240,18 @@ public class OAuthMetrics {
         metricName = metrics.metricName("minTimeMs", key.getName(), "Min request time in ms", key.getAttributes());
         sensor.add(metricName, new Min());
     }
+
+    private void addByteMetricsToSensor(Sensor sensor, SensorKey key) {
+        MetricName metricName = new MetricName("count", key.getName(), "Total count", key.getAttributes());
+        sensor.add(metricName, new CumulativeCount());
+
+        metricName = new MetricName("totalBytes", key.getName(), "Total size in bytes", key.getAttributes());
+        sensor.add(metricName, new CumulativeSum());
+
+        metricName = new MetricName("avgBytes", key.getName(), "Average size in bytes", key.getAttributes());
+        sensor.add(metricName, new Avg());
+
+        metricName = new MetricName("maxBytes", key.getName(), "Max size in bytes", key.getAttributes());
+        sensor.add(metricName, new Max());
+    }
 }
@@ -65,6 +65,16 @@ public class Services {
         return credentials;
     }
 
+    /**
+     * Check if the metrics have been initialised, which happens when any of the components has the metrics enabled.
+     * Used by the shared components that do not have their own configuration, and only collect metrics if some other component does.
+     *
+     * @return True if the metrics have been initialised
+     */
+    public boolean hasMetrics() {
+        return metrics != null;
+    }
+
     public OAuthMetrics getMetrics() {
         if (metrics == null) {
             synchronized (Services.class) {
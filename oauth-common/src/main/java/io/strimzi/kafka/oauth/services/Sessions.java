@@ -5,14 +5,19 @@
 package io.strimzi.kafka.oauth.services;
 
 import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
+import io.strimzi.kafka.oauth.common.IOUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -31,12 +36,65 @@ public class Sessions {
      */
     private final Map<BearerTokenWithPayload, Object> activeSessions = Collections.synchronizedMap(new WeakHashMap<>());
 
+    /**
+     * The sessions whose tokens have been found to be no longer valid (e.g. revoked at the authorization server) after
+     * the authentication. They are removed from `activeSessions`, but kept here for as long as Kafka holds on to them.
+     */
+    private final Map<BearerTokenWithPayload, Object> invalidatedSessions = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The SHA-256 digests of the invalidated tokens, with their expiry times. They are used to also invalidate the sessions
+     * that are only added after the token has been invalidated.
+     */
+    private final Map<String, Long> invalidatedTokens = new ConcurrentHashMap<>();
+
     public void put(BearerTokenWithPayload token) {
+        if (!invalidatedTokens.isEmpty() && invalidatedTokens.containsKey(IOUtil.sha256Hex(token.value()))) {
+            invalidatedSessions.put(token, NONE);
+            return;
+        }
         activeSessions.put(token, NONE);
     }
 
     public void remove(BearerTokenWithPayload token) {
         activeSessions.remove(token);
+        invalidatedSessions.remove(token);
+    }
+
+    /**
+     * Invalidate all the sessions using the specified token, including those added later on.
+     * The invalidated sessions are no longer considered active, and {@link #isInvalidated(BearerTokenWithPayload)} returns true for them.
+     *
+     * @param token The raw token
+     * @param expiresAtMs The expiry time of the token, after which there is no need to track it any more
+     * @return The number of currently active sessions that were invalidated
+     */
+    public int invalidate(String token, long expiresAtMs) {
+        invalidatedTokens.put(IOUtil.sha256Hex(token), expiresAtMs);
+
+        // In order to prevent the possible ConcurrentModificationException in the middle of using an iterator
+        // we first make a local copy, then iterate over the copy
+        ArrayList<BearerTokenWithPayload> values = new ArrayList<>(activeSessions.keySet());
+
+        int count = 0;
+        for (BearerTokenWithPayload session: values) {
+            if (token.equals(session.value())) {
+                activeSessions.remove(session);
+                invalidatedSessions.put(session, NONE);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check if the session has been invalidated by {@link #invalidate(String, long)}
+     *
+     * @param token The session
+     * @return true if the session is no longer valid
+     */
+    public boolean isInvalidated(BearerTokenWithPayload token) {
+        return !invalidatedSessions.isEmpty() && invalidatedSessions.containsKey(token);
     }
 
     public List<SessionFuture<?>> executeTask(ExecutorService executor, Predicate<BearerTokenWithPayload> filter,
@@ -58,6 +116,56 @@ public class Sessions {
         return results;
     }
 
+    /**
+     * Start the asynchronous task for every active session matching the filter, without occupying a thread per task.
+     * <p>
+     * At most <code>maxInProgress</code> tasks are in progress at the same time - the calling thread waits for one of them
+     * to complete before starting the next one.
+     * </p>
+     *
+     * @param filter The filter selecting the sessions
+     * @param maxInProgress The maximum number of tasks in progress at the same time
+     * @param task The function starting the task for the session, and returning the future of its completion
+     * @return The futures of the started tasks
+     */
+    public List<SessionFuture<?>> executeTask(Predicate<BearerTokenWithPayload> filter, int maxInProgress,
+                                              Function<BearerTokenWithPayload, CompletableFuture<?>> task) {
+        cleanupExpired();
+
+        // In order to prevent the possible ConcurrentModificationException in the middle of using an iterator
+        // we first make a local copy, then iterate over the copy
+        ArrayList<BearerTokenWithPayload> values = new ArrayList<>(activeSessions.keySet());
+
+        Semaphore permits = new Semaphore(maxInProgress);
+        List<SessionFuture<?>> results = new ArrayList<>(values.size());
+        for (BearerTokenWithPayload token: values) {
+            if (filter.test(token)) {
+                CompletableFuture<?> future;
+                try {
+                    permits.acquire();
+                    try {
+                        future = task.apply(token);
+                    } catch (RuntimeException e) {
+                        permits.release();
+                        throw e;
+                    }
+                    future.whenComplete((result, error) -> permits.release());
+                } catch (InterruptedException | RuntimeException e) {
+                    if (e instanceof InterruptedException) {
+                        // the interrupt status is kept, so the tasks for the remaining sessions fail as well
+                        Thread.currentThread().interrupt();
+                    }
+                    CompletableFuture<?> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(e);
+                    future = failed;
+                }
+                results.add(new SessionFuture<>(token, future));
+            }
+        }
+
+        return results;
+    }
+
     public void cleanupExpired() {
         // In order to prevent the possible ConcurrentModificationException in the middle of using an iterator
         // we first make a local copy, then iterate over the copy
@@ -71,5 +179,6 @@ public class Sessions {
                 activeSessions.remove(token);
             }
         }
+        invalidatedTokens.values().removeIf(expiresAt -> expiresAt <= now);
     }
 }
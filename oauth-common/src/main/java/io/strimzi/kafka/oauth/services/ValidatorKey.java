@@ -6,6 +6,10 @@ package io.strimzi.kafka.oauth.services;
 
 import io.strimzi.kafka.oauth.common.IOUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -144,6 +148,12 @@ public class ValidatorKey {
         private final boolean checkAccessTokenType;
         private final boolean failFast;
         private final boolean jwksIgnoreKeyUse;
+        private final boolean jwksRespectCacheControl;
+        private final String jwksSnapshotDir;
+        private final int validatedTokenCacheSize;
+        private final int rejectedTokenCacheSize;
+        private final int rejectedTokenCacheTtlSeconds;
+        private final int warmupTokens;
 
         private final String configIdHash;
 
@@ -167,9 +177,15 @@ public class ValidatorKey {
                                int jwksExpirySeconds,
                                int jwksRefreshMinPauseSeconds,
                                boolean jwksIgnoreKeyUse,
+                               boolean jwksRespectCacheControl,
+                               String jwksSnapshotDir,
                                boolean checkAccessTokenType,
                                int connectTimeout,
                                int readTimeout,
+                               int validatedTokenCacheSize,
+                               int rejectedTokenCacheSize,
+                               int rejectedTokenCacheTtlSeconds,
+                               int warmupTokens,
                                boolean enableMetrics,
                                boolean failFast) {
 
@@ -194,17 +210,42 @@ public class ValidatorKey {
             this.jwksExpirySeconds = jwksExpirySeconds;
             this.jwksRefreshMinPauseSeconds = jwksRefreshMinPauseSeconds;
             this.jwksIgnoreKeyUse = jwksIgnoreKeyUse;
+            this.jwksRespectCacheControl = jwksRespectCacheControl;
+            this.jwksSnapshotDir = jwksSnapshotDir;
             this.checkAccessTokenType = checkAccessTokenType;
             this.failFast = failFast;
+            this.validatedTokenCacheSize = validatedTokenCacheSize;
+            this.rejectedTokenCacheSize = rejectedTokenCacheSize;
+            this.rejectedTokenCacheTtlSeconds = rejectedTokenCacheTtlSeconds;
+            this.warmupTokens = warmupTokens;
 
-            this.configIdHash = IOUtil.hashForObjects(super.getConfigIdHash(),
+            List<Object> hashed = new ArrayList<>(Arrays.asList(super.getConfigIdHash(),
                     jwksEndpointUri,
                     jwksRefreshSeconds,
                     jwksExpirySeconds,
                     jwksRefreshMinPauseSeconds,
                     jwksIgnoreKeyUse,
                     checkAccessTokenType,
-                    failFast);
+                    failFast));
+
+            // the cache control, the snapshot, the token caches, and the warm-up settings only contribute to the hash when enabled,
+            // so that the config id of existing configurations does not change
+            if (jwksRespectCacheControl) {
+                hashed.add(jwksRespectCacheControl);
+            }
+            if (jwksSnapshotDir != null) {
+                hashed.add(jwksSnapshotDir);
+            }
+            if (validatedTokenCacheSize > 0) {
+                hashed.add(validatedTokenCacheSize);
+            }
+            if (rejectedTokenCacheSize > 0) {
+                hashed.addAll(Arrays.asList(rejectedTokenCacheSize, rejectedTokenCacheTtlSeconds));
+            }
+            if (warmupTokens > 0) {
+                hashed.add(warmupTokens);
+            }
+            this.configIdHash = IOUtil.hashForObjects(hashed.toArray());
         }
 
         @Override
@@ -217,9 +258,15 @@ public class ValidatorKey {
                     jwksExpirySeconds == that.jwksExpirySeconds &&
                     jwksRefreshMinPauseSeconds == that.jwksRefreshMinPauseSeconds &&
                     jwksIgnoreKeyUse == that.jwksIgnoreKeyUse &&
+                    jwksRespectCacheControl == that.jwksRespectCacheControl &&
                     checkAccessTokenType == that.checkAccessTokenType &&
+                    validatedTokenCacheSize == that.validatedTokenCacheSize &&
+                    rejectedTokenCacheSize == that.rejectedTokenCacheSize &&
+                    rejectedTokenCacheTtlSeconds == that.rejectedTokenCacheTtlSeconds &&
+                    warmupTokens == that.warmupTokens &&
                     failFast == that.failFast &&
-                    Objects.equals(jwksEndpointUri, that.jwksEndpointUri);
+                    Objects.equals(jwksEndpointUri, that.jwksEndpointUri) &&
+                    Objects.equals(jwksSnapshotDir, that.jwksSnapshotDir);
         }
 
         @Override
@@ -230,7 +277,13 @@ public class ValidatorKey {
                     jwksExpirySeconds,
                     jwksRefreshMinPauseSeconds,
                     jwksIgnoreKeyUse,
+                    jwksRespectCacheControl,
+                    jwksSnapshotDir,
                     checkAccessTokenType,
+                    validatedTokenCacheSize,
+                    rejectedTokenCacheSize,
+                    rejectedTokenCacheTtlSeconds,
+                    warmupTokens,
                     failFast);
         }
 
@@ -247,6 +300,24 @@ public class ValidatorKey {
         private final String validTokenType;
         private final String clientId;
         private final String clientSecret;
+        private final int executorThreads;
+        private final int executorQueueSize;
+        private final int executorMaxWaitMs;
+        private final int cacheSize;
+        private final int cacheMaxTtlSeconds;
+        private final int inactiveCacheTtlSeconds;
+        private final int userInfoCacheSize;
+        private final int userInfoCacheTtlSeconds;
+        private final boolean userInfoParallel;
+        private final int circuitBreakerErrorRate;
+        private final int circuitBreakerWindowSize;
+        private final int circuitBreakerOpenSeconds;
+        private final boolean circuitBreakerServeStale;
+        private final int hedgingPercentile;
+        private final int hedgingBudgetPercent;
+        private final int reintrospectPeriodSeconds;
+        private final int reintrospectThreads;
+        private final int reintrospectMaxTokens;
 
         private final String configIdHash;
 
@@ -272,6 +343,24 @@ public class ValidatorKey {
                                   String clientSecret,
                                   int connectTimeout,
                                   int readTimeout,
+                                  int executorThreads,
+                                  int executorQueueSize,
+                                  int executorMaxWaitMs,
+                                  int cacheSize,
+                                  int cacheMaxTtlSeconds,
+                                  int inactiveCacheTtlSeconds,
+                                  int userInfoCacheSize,
+                                  int userInfoCacheTtlSeconds,
+                                  boolean userInfoParallel,
+                                  int circuitBreakerErrorRate,
+                                  int circuitBreakerWindowSize,
+                                  int circuitBreakerOpenSeconds,
+                                  boolean circuitBreakerServeStale,
+                                  int hedgingPercentile,
+                                  int hedgingBudgetPercent,
+                                  int reintrospectPeriodSeconds,
+                                  int reintrospectThreads,
+                                  int reintrospectMaxTokens,
                                   boolean enableMetrics) {
 
             super(validIssuerUri,
@@ -295,13 +384,53 @@ public class ValidatorKey {
             this.validTokenType = validTokenType;
             this.clientId = clientId;
             this.clientSecret = clientSecret;
-
-            this.configIdHash = IOUtil.hashForObjects(super.getConfigIdHash(),
+            this.executorThreads = executorThreads;
+            this.executorQueueSize = executorQueueSize;
+            this.executorMaxWaitMs = executorMaxWaitMs;
+            this.cacheSize = cacheSize;
+            this.cacheMaxTtlSeconds = cacheMaxTtlSeconds;
+            this.inactiveCacheTtlSeconds = inactiveCacheTtlSeconds;
+            this.userInfoCacheSize = userInfoCacheSize;
+            this.userInfoCacheTtlSeconds = userInfoCacheTtlSeconds;
+            this.userInfoParallel = userInfoParallel;
+            this.circuitBreakerErrorRate = circuitBreakerErrorRate;
+            this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+            this.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds;
+            this.circuitBreakerServeStale = circuitBreakerServeStale;
+            this.hedgingPercentile = hedgingPercentile;
+            this.hedgingBudgetPercent = hedgingBudgetPercent;
+            this.reintrospectPeriodSeconds = reintrospectPeriodSeconds;
+            this.reintrospectThreads = reintrospectThreads;
+            this.reintrospectMaxTokens = reintrospectMaxTokens;
+
+            List<Object> hashed = new ArrayList<>(Arrays.asList(super.getConfigIdHash(),
                     introspectionEndpoint,
                     userInfoEndpoint,
                     validTokenType,
                     clientId,
-                    clientSecret);
+                    clientSecret));
+
+            // the executor, the cache, the user info, the circuit breaker, the hedging, and the re-introspection settings only contribute to the hash when enabled,
+            // so that the config id of existing configurations does not change
+            if (executorThreads > 0) {
+                hashed.addAll(Arrays.asList(executorThreads, executorQueueSize, executorMaxWaitMs));
+            }
+            if (cacheSize > 0) {
+                hashed.addAll(Arrays.asList(cacheSize, cacheMaxTtlSeconds, inactiveCacheTtlSeconds));
+            }
+            if (userInfoCacheSize > 0 || userInfoParallel) {
+                hashed.addAll(Arrays.asList(userInfoCacheSize, userInfoCacheTtlSeconds, userInfoParallel));
+            }
+            if (circuitBreakerErrorRate > 0) {
+                hashed.addAll(Arrays.asList(circuitBreakerErrorRate, circuitBreakerWindowSize, circuitBreakerOpenSeconds, circuitBreakerServeStale));
+            }
+            if (hedgingPercentile > 0) {
+                hashed.addAll(Arrays.asList(hedgingPercentile, hedgingBudgetPercent));
+            }
+            if (reintrospectPeriodSeconds > 0) {
+                hashed.addAll(Arrays.asList(reintrospectPeriodSeconds, reintrospectThreads, reintrospectMaxTokens));
+            }
+            this.configIdHash = IOUtil.hashForObjects(hashed.toArray());
         }
 
         @Override
@@ -314,7 +443,41 @@ public class ValidatorKey {
                     Objects.equals(userInfoEndpoint, that.userInfoEndpoint) &&
                     Objects.equals(validTokenType, that.validTokenType) &&
                     Objects.equals(clientId, that.clientId) &&
-                    Objects.equals(clientSecret, that.clientSecret);
+                    Objects.equals(clientSecret, that.clientSecret) &&
+                    sameExecutorSettings(that) &&
+                    sameCacheSettings(that) &&
+                    sameCircuitBreakerSettings(that) &&
+                    sameReintrospectSettings(that);
+        }
+
+        private boolean sameExecutorSettings(IntrospectionValidatorKey that) {
+            return executorThreads == that.executorThreads &&
+                    executorQueueSize == that.executorQueueSize &&
+                    executorMaxWaitMs == that.executorMaxWaitMs;
+        }
+
+        private boolean sameCacheSettings(IntrospectionValidatorKey that) {
+            return cacheSize == that.cacheSize &&
+                    cacheMaxTtlSeconds == that.cacheMaxTtlSeconds &&
+                    inactiveCacheTtlSeconds == that.inactiveCacheTtlSeconds &&
+                    userInfoCacheSize == that.userInfoCacheSize &&
+                    userInfoCacheTtlSeconds == that.userInfoCacheTtlSeconds &&
+                    userInfoParallel == that.userInfoParallel;
+        }
+
+        private boolean sameCircuitBreakerSettings(IntrospectionValidatorKey that) {
+            return circuitBreakerErrorRate == that.circuitBreakerErrorRate &&
+                    circuitBreakerWindowSize == that.circuitBreakerWindowSize &&
+                    circuitBreakerOpenSeconds == that.circuitBreakerOpenSeconds &&
+                    circuitBreakerServeStale == that.circuitBreakerServeStale &&
+                    hedgingPercentile == that.hedgingPercentile &&
+                    hedgingBudgetPercent == that.hedgingBudgetPercent;
+        }
+
+        private boolean sameReintrospectSettings(IntrospectionValidatorKey that) {
+            return reintrospectPeriodSeconds == that.reintrospectPeriodSeconds &&
+                    reintrospectThreads == that.reintrospectThreads &&
+                    reintrospectMaxTokens == that.reintrospectMaxTokens;
         }
 
         @Override
@@ -324,7 +487,86 @@ public class ValidatorKey {
                     userInfoEndpoint,
                     validTokenType,
                     clientId,
-                    clientSecret);
+                    clientSecret,
+                    executorThreads,
+                    executorQueueSize,
+                    executorMaxWaitMs,
+                    cacheSize,
+                    cacheMaxTtlSeconds,
+                    inactiveCacheTtlSeconds,
+                    userInfoCacheSize,
+                    userInfoCacheTtlSeconds,
+                    userInfoParallel,
+                    circuitBreakerErrorRate,
+                    circuitBreakerWindowSize,
+                    circuitBreakerOpenSeconds,
+                    circuitBreakerServeStale,
+                    hedgingPercentile,
+                    hedgingBudgetPercent,
+                    reintrospectPeriodSeconds,
+                    reintrospectThreads,
+                    reintrospectMaxTokens);
+        }
+
+        @Override
+        public String getConfigIdHash() {
+            return configIdHash;
+        }
+    }
+
+    /**
+     * The key of a validator that delegates to other validators, each of which is registered with its own key.
+     * <p>
+     * The delegates are identified by their validator ids. The registry only ever binds a validator id to a single configuration,
+     * so two composite validators with the same type, the same delegates and the same own settings have the same configuration.
+     * </p>
+     */
+    public static class CompositeValidatorKey extends ValidatorKey {
+
+        private final String type;
+        private final List<String> delegateIds;
+        private final List<Object> settings;
+
+        private final String configIdHash;
+
+        /**
+         * Create a new instance
+         *
+         * @param type The type of the composite validator
+         * @param delegateIds The validator ids of the validators to delegate to, in the order of the delegation
+         * @param settings The configuration of the composite validator itself
+         */
+        public CompositeValidatorKey(String type, List<String> delegateIds, Object... settings) {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, false, 0, 0, false);
+
+            if (type == null) {
+                throw new IllegalArgumentException("type == null");
+            }
+            if (delegateIds == null || delegateIds.isEmpty()) {
+                throw new IllegalArgumentException("delegateIds is empty");
+            }
+            this.type = type;
+            this.delegateIds = Collections.unmodifiableList(new ArrayList<>(delegateIds));
+            this.settings = Collections.unmodifiableList(Arrays.asList(settings.clone()));
+
+            List<Object> hashed = new ArrayList<>();
+            hashed.add(type);
+            hashed.addAll(this.delegateIds);
+            hashed.addAll(this.settings);
+            this.configIdHash = IOUtil.hashForObjects(hashed.toArray());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CompositeValidatorKey that = (CompositeValidatorKey) o;
+            return type.equals(that.type) && delegateIds.equals(that.delegateIds) && settings.equals(that.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, delegateIds, settings);
         }
 
         @Override
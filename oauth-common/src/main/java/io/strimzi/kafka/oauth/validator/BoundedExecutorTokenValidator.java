@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.metrics.ExecutorSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.ServiceException;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A validator that runs the validations of another validator on a dedicated bounded executor.
+ * <p>
+ * The validator that calls the authorization server during validation (e.g. {@link OAuthIntrospectionValidator}) blocks the calling thread
+ * for as long as the authorization server takes to respond, which may be up to the configured read timeout.
+ * When the calling thread is a Kafka network or authentication thread that stalls all the other connections served by the same thread.
+ * </p>
+ * <p>
+ * This validator limits the number of validations in progress to the number of executor threads, and the number of waiting validations
+ * to the size of the queue. If the queue is full, the validation fails immediately. The calling thread waits for the result
+ * for at most the configured time, after which the validation fails, and the task is cancelled.
+ * </p>
+ */
+public class BoundedExecutorTokenValidator implements TokenValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedExecutorTokenValidator.class);
+
+    private final TokenValidator delegate;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitMillis;
+
+    private final boolean enableMetrics;
+    private final OAuthMetrics metrics;
+    private final ExecutorSensorKeyProducer sensorKeyProducer;
+
+    /**
+     * Create a new instance.
+     *
+     * @param delegate The validator performing the validation
+     * @param endpointUri The endpoint uri of the delegate validator, used for metrics
+     * @param kind The kind of the delegate validator (e.g. 'introspect'), used for metrics
+     * @param threads The number of executor threads
+     * @param queueSize The maximum number of validations waiting for an executor thread
+     * @param maxWaitMillis The maximum time for the calling thread to wait for the validation result (in millis)
+     * @param enableMetrics The switch that enables metrics collection
+     */
+    public BoundedExecutorTokenValidator(TokenValidator delegate,
+                                         URI endpointUri,
+                                         String kind,
+                                         int threads,
+                                         int queueSize,
+                                         int maxWaitMillis,
+                                         boolean enableMetrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        this.delegate = delegate;
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads has to be a positive number - (threads=" + threads + ")");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize has to be a positive number - (queueSize=" + queueSize + ")");
+        }
+        if (maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("maxWaitMillis has to be a positive number - (maxWaitMillis=" + maxWaitMillis + ")");
+        }
+        this.maxWaitMillis = maxWaitMillis;
+
+        // the default AbortPolicy rejects the task when the queue is full
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+
+        this.enableMetrics = enableMetrics;
+        metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
+        sensorKeyProducer = new ExecutorSensorKeyProducer(delegate.getValidatorId(), endpointUri, kind, "validation");
+
+        if (enableMetrics) {
+            SensorKey queueKey = sensorKeyProducer.queueKey();
+            metrics.addGauge(queueKey, "size", "Number of tasks waiting in the queue", () -> executor.getQueue().size());
+            metrics.addGauge(queueKey, "activeThreads", "Number of threads executing tasks", executor::getActiveCount);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured BoundedExecutorTokenValidator:"
+                    + "\n    validatorId: " + delegate.getValidatorId()
+                    + "\n    threads: " + threads
+                    + "\n    queueSize: " + queueSize
+                    + "\n    maxWaitMillis: " + maxWaitMillis
+                    + "\n    enableMetrics: " + enableMetrics);
+        }
+    }
+
+    @Override
+    public TokenInfo validate(String token) {
+        long submitTime = System.currentTimeMillis();
+
+        Future<TokenInfo> result;
+        try {
+            result = executor.submit(() -> {
+                addMetricTime(sensorKeyProducer.executedKey(), System.currentTimeMillis() - submitTime);
+                return delegate.validate(token);
+            });
+        } catch (RejectedExecutionException e) {
+            addMetricTime(sensorKeyProducer.rejectedKey(), 0);
+            throw new ServiceException("Token validation failed: Too many validations in progress");
+        }
+
+        try {
+            return result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServiceException("Token validation failed", cause);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            addMetricTime(sensorKeyProducer.timeoutKey(), System.currentTimeMillis() - submitTime);
+            throw new ServiceException("Token validation failed: No result within " + maxWaitMillis + " ms");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Token validation interrupted", e);
+        }
+    }
+
+    @Override
+    public String getValidatorId() {
+        return delegate.getValidatorId();
+    }
+
+    private void addMetricTime(SensorKey key, long timeMs) {
+        if (enableMetrics) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.services.CurrentTime;
+
+import java.util.function.Consumer;
+
+/**
+ * A circuit breaker protecting the calls to the authorization server.
+ * <p>
+ * The outcomes of the last <em>windowSize</em> calls are tracked. When the share of failed calls reaches the configured error rate,
+ * the breaker opens, and the calls are rejected without being attempted. After the configured time the breaker becomes half-open,
+ * and a single probe call is let through. If it succeeds, the breaker closes again, otherwise it opens for another period.
+ * </p>
+ */
+class CircuitBreaker {
+
+    /**
+     * The state of the circuit breaker
+     */
+    enum State {
+        CLOSED(0, "closed"),
+        OPEN(1, "open"),
+        HALF_OPEN(2, "half_open");
+
+        private final int value;
+        private final String metricName;
+
+        State(int value, String metricName) {
+            this.value = value;
+            this.metricName = metricName;
+        }
+
+        /**
+         * @return The numeric value reported by the state gauge
+         */
+        int value() {
+            return value;
+        }
+
+        /**
+         * @return The name used in metrics
+         */
+        String metricName() {
+            return metricName;
+        }
+    }
+
+    private final boolean[] failures;
+    private final int errorRatePercent;
+    private final long openMillis;
+    private final Consumer<State> onTransition;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failureCount;
+    private long openedAt;
+    private boolean probeInProgress;
+
+    /**
+     * Create a new instance
+     *
+     * @param windowSize The number of the most recent calls from which the error rate is calculated
+     * @param errorRatePercent The error rate in percent at which the breaker opens
+     * @param openMillis The time the breaker stays open before letting the probe call through
+     * @param onTransition Invoked with the new state on every state change
+     */
+    CircuitBreaker(int windowSize, int errorRatePercent, long openMillis, Consumer<State> onTransition) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize has to be a positive number - (windowSize=" + windowSize + ")");
+        }
+        if (errorRatePercent <= 0 || errorRatePercent > 100) {
+            throw new IllegalArgumentException("errorRatePercent has to be between 1 and 100 - (errorRatePercent=" + errorRatePercent + ")");
+        }
+        if (openMillis <= 0) {
+            throw new IllegalArgumentException("openMillis has to be a positive number - (openMillis=" + openMillis + ")");
+        }
+        this.failures = new boolean[windowSize];
+        this.errorRatePercent = errorRatePercent;
+        this.openMillis = openMillis;
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Check if the call can be attempted. If the breaker has been open long enough, the call becomes the probe.
+     *
+     * @return true if the call should be attempted, false if it should be rejected
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (CurrentTime.currentTime() - openedAt < openMillis) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probeInProgress = true;
+                return true;
+            default:
+                // only one probe at a time
+                if (probeInProgress) {
+                    return false;
+                }
+                probeInProgress = true;
+                return true;
+        }
+    }
+
+    /**
+     * Record the successful call
+     */
+    synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            transition(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Record the failed call
+     */
+    synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+    }
+
+    /**
+     * @return The current state
+     */
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        // the outcomes of the requests started before the breaker opened are ignored
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failureCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        next = (next + 1) % failures.length;
+
+        // the error rate is only evaluated once the window is full
+        if (recorded == failures.length && failureCount * 100 >= errorRatePercent * failures.length) {
+            open();
+        }
+    }
+
+    private void open() {
+        reset();
+        openedAt = CurrentTime.currentTime();
+        transition(State.OPEN);
+    }
+
+    private void reset() {
+        recorded = 0;
+        next = 0;
+        failureCount = 0;
+        probeInProgress = false;
+    }
+
+    private void transition(State newState) {
+        if (state != newState) {
+            state = newState;
+            onTransition.accept(newState);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.HttpConcurrencyLimiter;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.metrics.BackgroundIntrospectionSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.ExecutorSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static io.strimzi.kafka.oauth.common.LogUtil.mask;
+
+/**
+ * A validator that combines the fast local validation with the introspection of the token performed in the background.
+ * <p>
+ * The token is validated by the local validator (e.g. {@link JWTSignatureValidator}) on the calling thread, so the authentication
+ * does not wait for the authorization server. Every distinct token is then queued for the introspection by the introspection validator
+ * (e.g. {@link OAuthIntrospectionValidator}) on a dedicated bounded executor. If the token turns out to be inactive, for example
+ * because it has been revoked at the authorization server, the sessions using it are invalidated in {@link io.strimzi.kafka.oauth.services.Sessions},
+ * and any further authentication with the same token fails.
+ * </p>
+ * <p>
+ * The revocation is thus honored within the time it takes the executor to process the queue, rather than only when the token expires.
+ * Only the token reported as not active (<code>"active": false</code>) is treated as revoked. If the token is active, but fails the other checks
+ * of the introspection validator, like the issuer or the audience check, it is not treated as revoked, since it has already been validated locally.
+ * If the queue is full, or the introspection fails for other reasons, the token stays unchecked, and is queued again the next time it is used for authentication.
+ * </p>
+ */
+public class HybridTokenValidator implements TokenValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridTokenValidator.class);
+
+    private final TokenValidator delegate;
+    private final TokenValidator introspectionValidator;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The results of the background introspection, until the tokens expire - true if the token was found to be active, false otherwise
+     */
+    private final TokenCache<Boolean> introspectedTokens;
+
+    /**
+     * The tokens currently queued for, or undergoing the background introspection
+     */
+    private final Set<String> pendingTokens = ConcurrentHashMap.newKeySet();
+
+    private final boolean enableMetrics;
+    private final OAuthMetrics metrics;
+    private final ExecutorSensorKeyProducer executorSensorKeyProducer;
+    private final BackgroundIntrospectionSensorKeyProducer sensorKeyProducer;
+
+    /**
+     * Create a new instance.
+     *
+     * @param delegate The validator performing the local validation of the token
+     * @param introspectionValidator The validator performing the introspection of the token in the background
+     * @param introspectionEndpointUri The introspection endpoint uri, used for metrics
+     * @param threads The number of threads performing the background introspection
+     * @param queueSize The maximum number of tokens waiting for the background introspection
+     * @param cacheSize The maximum number of introspection results to keep
+     * @param enableMetrics The switch that enables metrics collection
+     */
+    public HybridTokenValidator(TokenValidator delegate,
+                                TokenValidator introspectionValidator,
+                                URI introspectionEndpointUri,
+                                int threads,
+                                int queueSize,
+                                int cacheSize,
+                                boolean enableMetrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        this.delegate = delegate;
+
+        if (introspectionValidator == null) {
+            throw new IllegalArgumentException("introspectionValidator == null");
+        }
+        this.introspectionValidator = introspectionValidator;
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads has to be a positive number - (threads=" + threads + ")");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize has to be a positive number - (queueSize=" + queueSize + ")");
+        }
+        introspectedTokens = new TokenCache<>(cacheSize);
+
+        // the default AbortPolicy rejects the task when the queue is full
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new DaemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+
+        this.enableMetrics = enableMetrics;
+        metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
+        executorSensorKeyProducer = new ExecutorSensorKeyProducer(introspectionValidator.getValidatorId(), introspectionEndpointUri, "introspect", "background_introspection");
+        sensorKeyProducer = new BackgroundIntrospectionSensorKeyProducer(introspectionValidator.getValidatorId(), introspectionEndpointUri, "introspect", "background_introspections");
+
+        if (enableMetrics) {
+            SensorKey queueKey = executorSensorKeyProducer.queueKey();
+            metrics.addGauge(queueKey, "size", "Number of tasks waiting in the queue", () -> executor.getQueue().size());
+            metrics.addGauge(queueKey, "activeThreads", "Number of threads executing tasks", executor::getActiveCount);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured HybridTokenValidator:"
+                    + "\n    validatorId: " + delegate.getValidatorId()
+                    + "\n    introspectionValidatorId: " + introspectionValidator.getValidatorId()
+                    + "\n    threads: " + threads
+                    + "\n    queueSize: " + queueSize
+                    + "\n    cacheSize: " + cacheSize
+                    + "\n    enableMetrics: " + enableMetrics);
+        }
+    }
+
+    @Override
+    public TokenInfo validate(String token) {
+        Boolean active = introspectedTokens.get(token);
+        if (Boolean.FALSE.equals(active)) {
+            throw new TokenValidationException("Token validation failed: Token not active");
+        }
+
+        TokenInfo info = delegate.validate(token);
+
+        if (active == null) {
+            scheduleIntrospection(token, info.expiresAtMs());
+        }
+        return info;
+    }
+
+    private void scheduleIntrospection(String token, long expiresAtMs) {
+        if (!pendingTokens.add(token)) {
+            return;
+        }
+
+        long submitTime = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                try {
+                    addMetricTime(executorSensorKeyProducer.executedKey(), System.currentTimeMillis() - submitTime);
+                    introspect(token, expiresAtMs);
+                } finally {
+                    pendingTokens.remove(token);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingTokens.remove(token);
+            addMetricTime(executorSensorKeyProducer.rejectedKey(), 0);
+            log.debug("Background introspection queue is full - token left unchecked: {}", mask(token));
+        }
+    }
+
+    private void introspect(String token, long expiresAtMs) {
+        long startTime = System.currentTimeMillis();
+        try {
+            HttpConcurrencyLimiter.background(() -> introspectionValidator.validate(token));
+            introspectedTokens.put(token, Boolean.TRUE, expiresAtMs);
+            addMetricTime(sensorKeyProducer.activeKey(), System.currentTimeMillis() - startTime);
+
+        } catch (TokenNotActiveException e) {
+            introspectedTokens.put(token, Boolean.FALSE, expiresAtMs);
+            int invalidated = Services.isAvailable() ? Services.getInstance().getSessions().invalidate(token, expiresAtMs) : 0;
+            addMetricTime(sensorKeyProducer.inactiveKey(), System.currentTimeMillis() - startTime);
+            log.debug("Background introspection found the token inactive ({}) - invalidated {} session(s) for token: {}", e.getMessage(), invalidated, mask(token));
+
+        } catch (TokenValidationException e) {
+            // the token is active, but fails the checks of the introspection validator - it is not revoked
+            introspectedTokens.put(token, Boolean.TRUE, expiresAtMs);
+            addMetricTime(sensorKeyProducer.activeKey(), System.currentTimeMillis() - startTime);
+            log.debug("Background introspection found the token active, but it failed the introspection checks ({}) - not treated as revoked: {}", e.getMessage(), mask(token));
+
+        } catch (Throwable e) {
+            addMetricTime(sensorKeyProducer.errorKey(), System.currentTimeMillis() - startTime);
+            log.warn("[IGNORED] Background introspection failed - token left unchecked: {}", mask(token), e);
+        }
+    }
+
+    @Override
+    public String getValidatorId() {
+        return delegate.getValidatorId();
+    }
+
+    private void addMetricTime(SensorKey key, long timeMs) {
+        if (enableMetrics) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+}
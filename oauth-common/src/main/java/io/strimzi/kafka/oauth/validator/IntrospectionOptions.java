@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+/**
+ * The optional features of the {@link OAuthIntrospectionValidator}: caching, parallel user info requests, the circuit breaker and the request hedging.
+ * <p>
+ * All the features are disabled by default. The options are set fluently, for example:
+ * </p>
+ * <pre>
+ *     new IntrospectionOptions()
+ *         .withCache(10000, 60, 10)
+ *         .withCircuitBreaker(50, 20, 30, true);
+ * </pre>
+ * The values are checked by the validator when it is created.
+ */
+public class IntrospectionOptions {
+
+    private int cacheSize;
+    private int cacheMaxTtlSeconds = 60;
+    private int inactiveCacheTtlSeconds;
+
+    private int userInfoCacheSize;
+    private int userInfoCacheTtlSeconds = 60;
+    private boolean userInfoParallel;
+
+    private int circuitBreakerErrorRate;
+    private int circuitBreakerWindowSize = 20;
+    private int circuitBreakerOpenSeconds = 30;
+    private boolean circuitBreakerServeStale;
+
+    private int hedgingPercentile;
+    private int hedgingBudgetPercent = 10;
+
+    /**
+     * Remember the introspection results
+     *
+     * @param cacheSize The maximum number of introspection results to keep in cache. If 0 the cache is disabled.
+     * @param cacheMaxTtlSeconds The maximum time to remember the introspection result of an active token, regardless of its expiry (in seconds)
+     * @param inactiveCacheTtlSeconds The time to remember the 'not active' introspection result (in seconds). If 0 the 'not active' results are not cached.
+     * @return This instance
+     */
+    public IntrospectionOptions withCache(int cacheSize, int cacheMaxTtlSeconds, int inactiveCacheTtlSeconds) {
+        this.cacheSize = cacheSize;
+        this.cacheMaxTtlSeconds = cacheMaxTtlSeconds;
+        this.inactiveCacheTtlSeconds = inactiveCacheTtlSeconds;
+        return this;
+    }
+
+    /**
+     * Remember the user info endpoint responses, and optionally send the user info endpoint request in parallel with the introspection request
+     *
+     * @param userInfoCacheSize The maximum number of user info endpoint responses to keep in cache, per subject. If 0 the cache is disabled.
+     * @param userInfoCacheTtlSeconds The time to remember the user info endpoint response (in seconds)
+     * @param userInfoParallel If true the user info endpoint request is sent in parallel with the introspection request
+     * @return This instance
+     */
+    public IntrospectionOptions withUserInfo(int userInfoCacheSize, int userInfoCacheTtlSeconds, boolean userInfoParallel) {
+        this.userInfoCacheSize = userInfoCacheSize;
+        this.userInfoCacheTtlSeconds = userInfoCacheTtlSeconds;
+        this.userInfoParallel = userInfoParallel;
+        return this;
+    }
+
+    /**
+     * Stop sending the introspection requests while the authorization server is degraded
+     *
+     * @param errorRate The error rate of the introspection requests in percent at which the circuit breaker opens. If 0 the circuit breaker is disabled.
+     * @param windowSize The number of the most recent introspection requests from which the error rate is calculated
+     * @param openSeconds The time the circuit breaker stays open before letting a probe request through (in seconds)
+     * @param serveStale If true, while the circuit breaker is open, the cached introspection results are used until the tokens expire
+     * @return This instance
+     */
+    public IntrospectionOptions withCircuitBreaker(int errorRate, int windowSize, int openSeconds, boolean serveStale) {
+        this.circuitBreakerErrorRate = errorRate;
+        this.circuitBreakerWindowSize = windowSize;
+        this.circuitBreakerOpenSeconds = openSeconds;
+        this.circuitBreakerServeStale = serveStale;
+        return this;
+    }
+
+    /**
+     * Send a second introspection request when the first one is slow to respond
+     *
+     * @param percentile The percentile of the recent introspection response times after which the request is hedged. If 0 the hedging is disabled.
+     * @param budgetPercent The maximum percentage of the introspection requests that are hedged
+     * @return This instance
+     */
+    public IntrospectionOptions withHedging(int percentile, int budgetPercent) {
+        this.hedgingPercentile = percentile;
+        this.hedgingBudgetPercent = budgetPercent;
+        return this;
+    }
+
+    int cacheSize() {
+        return cacheSize;
+    }
+
+    int cacheMaxTtlSeconds() {
+        return cacheMaxTtlSeconds;
+    }
+
+    int inactiveCacheTtlSeconds() {
+        return inactiveCacheTtlSeconds;
+    }
+
+    int userInfoCacheSize() {
+        return userInfoCacheSize;
+    }
+
+    int userInfoCacheTtlSeconds() {
+        return userInfoCacheTtlSeconds;
+    }
+
+    boolean userInfoParallel() {
+        return userInfoParallel;
+    }
+
+    int circuitBreakerErrorRate() {
+        return circuitBreakerErrorRate;
+    }
+
+    int circuitBreakerWindowSize() {
+        return circuitBreakerWindowSize;
+    }
+
+    int circuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    boolean circuitBreakerServeStale() {
+        return circuitBreakerServeStale;
+    }
+
+    int hedgingPercentile() {
+        return hedgingPercentile;
+    }
+
+    int hedgingBudgetPercent() {
+        return hedgingBudgetPercent;
+    }
+
+    @Override
+    public String toString() {
+        return "IntrospectionOptions {cacheSize: " + cacheSize
+                + ", cacheMaxTtlSeconds: " + cacheMaxTtlSeconds
+                + ", inactiveCacheTtlSeconds: " + inactiveCacheTtlSeconds
+                + ", userInfoCacheSize: " + userInfoCacheSize
+                + ", userInfoCacheTtlSeconds: " + userInfoCacheTtlSeconds
+                + ", userInfoParallel: " + userInfoParallel
+                + ", circuitBreakerErrorRate: " + circuitBreakerErrorRate
+                + ", circuitBreakerWindowSize: " + circuitBreakerWindowSize
+                + ", circuitBreakerOpenSeconds: " + circuitBreakerOpenSeconds
+                + ", circuitBreakerServeStale: " + circuitBreakerServeStale
+                + ", hedgingPercentile: " + hedgingPercentile
+                + ", hedgingBudgetPercent: " + hedgingBudgetPercent
+                + "}";
+    }
+}
@@ -5,21 +5,24 @@
 package io.strimzi.kafka.oauth.validator;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
-import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jwt.SignedJWT;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.strimzi.kafka.oauth.common.HttpConcurrencyLimiter;
+import io.strimzi.kafka.oauth.common.HttpEndpointGroup;
+import io.strimzi.kafka.oauth.common.HttpResponse;
 import io.strimzi.kafka.oauth.common.HttpUtil;
 import io.strimzi.kafka.oauth.common.JSONUtil;
+import io.strimzi.kafka.oauth.common.NimbusPayloadTransformer;
 import io.strimzi.kafka.oauth.common.PrincipalExtractor;
 import io.strimzi.kafka.oauth.common.TimeUtil;
 import io.strimzi.kafka.oauth.common.TokenInfo;
 import io.strimzi.kafka.oauth.jsonpath.JsonPathFilterQuery;
 import io.strimzi.kafka.oauth.jsonpath.JsonPathQuery;
+import io.strimzi.kafka.oauth.metrics.CacheSensorKeyProducer;
 import io.strimzi.kafka.oauth.metrics.JwksHttpSensorKeyProducer;
 import io.strimzi.kafka.oauth.metrics.SensorKeyProducer;
 import io.strimzi.kafka.oauth.services.OAuthMetrics;
@@ -33,18 +36,22 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocketFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.PublicKey;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
+import static io.strimzi.kafka.oauth.validator.ValidationStageTimer.Stage;
 
 /**
  * This class is responsible for validating the JWT token signatures during session authentication.
@@ -59,12 +66,36 @@ import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
  * to retry later in order to reduce any out-of-sync time with the authorization server while still not flooding the server
  * with endless consecutive requests.
  * </p>
+ * <p>
+ * The refresh is a conditional request if the authorization server returns the <em>ETag</em> or <em>Last-Modified</em> header,
+ * and only the keys that have been added or changed are converted into public keys.
+ * </p>
+ * <p>
+ * Optionally, the last successful JWKS response is stored on disk. When the validator is created, the keys that have not yet expired
+ * are loaded from the snapshot, and the initial keys refresh runs in the background.
+ * </p>
+ * <p>
+ * The signing keys are held in an immutable {@link SigningKeys} instance, which the keys refresh replaces as a whole.
+ * Every validation reads it once, and uses the same keys, previous keys and refresh time for all the checks.
+ * The version of the keys is available through {@link #getKeysVersion()}.
+ * </p>
+ * <p>
+ * The validation is performed in stages ordered from the cheapest to the most expensive: the token header is parsed first,
+ * then the expiry, the issuer, the token type and the audience are checked on the decoded, but not yet verified claims,
+ * then the signature is checked, and finally the custom claim check is applied. A token rejected in an early stage
+ * never reaches the signature check, but gets the same error as it would after the signature check.
+ * The time spent in every stage is tracked by the <em>validation_stages</em> metrics.
+ * </p>
+ * <p>
+ * Optionally, a number of synthetic tokens signed with throwaway keys is validated at startup, so that the validation path
+ * is already compiled by JIT when the clients start connecting.
+ * </p>
  */
 public class JWTSignatureValidator implements TokenValidator {
 
     private static final Logger log = LoggerFactory.getLogger(JWTSignatureValidator.class);
 
-    private static final DefaultJWSVerifierFactory VERIFIER_FACTORY = new DefaultJWSVerifierFactory();
+    private static final NimbusPayloadTransformer PAYLOAD_TRANSFORMER = new NimbusPayloadTransformer();
 
     private final String validatorId;
     private final URI keysUri;
@@ -79,20 +110,85 @@ public class JWTSignatureValidator implements TokenValidator {
     private final HostnameVerifier hostnameVerifier;
     private final PrincipalExtractor principalExtractor;
     private final boolean ignoreKeyUse;
+    private final boolean respectCacheControl;
+    private final int maxCacheControlSeconds;
+    private final Path snapshotFile;
 
     private final int connectTimeout;
     private final int readTimeout;
 
-    private long lastFetchTime;
+    // the current signing keys, replaced as a whole by the keys refresh so that the validation always sees a consistent view
+    private final AtomicReference<SigningKeys> signingKeys = new AtomicReference<>(SigningKeys.EMPTY);
 
-    private Map<String, PublicKey> cache = Collections.emptyMap();
-    private Map<String, PublicKey> oldCache = Collections.emptyMap();
+    // the state of the last successful JWKS response, only accessed by the keys refresh
+    private Map<String, JWK> jwks = Collections.emptyMap();
+    private String jwksResponse;
+    private String etag;
+    private String lastModified;
+    private long cacheControlFreshUntil;
 
     private BackOffTaskScheduler fastScheduler;
 
+    private final List<Runnable> keysChangeListeners = new CopyOnWriteArrayList<>();
+
+    private final TokenCache<ValidatedToken> validatedTokens;
+    private final TokenCache<RejectedToken> rejectedTokens;
+    private final long rejectedTokenCacheTtlMillis;
+
     private final boolean enableMetrics;
     private final OAuthMetrics metrics;
     private final SensorKeyProducer jwksHttpSensorKeyProducer;
+    private final CacheSensorKeyProducer validatedTokensSensorKeyProducer;
+    private final CacheSensorKeyProducer rejectedTokensSensorKeyProducer;
+    private final ValidationStageTimer stageTimer;
+
+    /**
+     * Create a new instance.
+     *
+     * @param validatorId A unique id to associate with this validator for the purpose of validator lifecycle and metrics tracking
+     * @param keysEndpointUri The JWKS endpoint url at the authorization server
+     * @param socketFactory The optional SSL socket factory to use when establishing the connection to authorization server
+     * @param verifier The optional hostname verifier used to validate the TLS certificate by the authorization server
+     * @param principalExtractor The object used to extract the username from the JWT token
+     * @param groupsClaimQuery The optional JSONPath query for group extraction
+     * @param groupsClaimDelimiter The optional delimiter for group extraction
+     * @param validIssuerUri The required value of the 'iss' claim in JWT token
+     * @param refreshSeconds The optional time interval between two consecutive regular JWKS keys refresh runs
+     * @param refreshMinPauseSeconds The optional minimum pause between two consecutive JWKS keys refreshes.
+     * @param expirySeconds The maximum time to trust the unrefreshed JWKS keys. If keys are not successfully refreshed within this time, the validation will start failing.
+     * @param ignoreKeyUse Should any key present in JWKS key set be considered a public key for signature checking
+     * @param checkAccessTokenType Should the 'typ' claim in the token be validated (be equal to 'Bearer')
+     * @param audience The optional audience
+     * @param customClaimCheck The optional JSONPath filter query for additional custom claim checking
+     * @param connectTimeoutSeconds The maximum time to wait for connection to authorization server to be established (in seconds)
+     * @param readTimeoutSeconds The maximum time to wait for response from authorization server after connection has been established and request sent (in seconds)
+     * @param enableMetrics The switch that enables metrics collection
+     * @param failFast Should exception be thrown during initialisation if unable to retrieve JWKS keys
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public JWTSignatureValidator(String validatorId,
+                                 String keysEndpointUri,
+                                 SSLSocketFactory socketFactory,
+                                 HostnameVerifier verifier,
+                                 PrincipalExtractor principalExtractor,
+                                 String groupsClaimQuery,
+                                 String groupsClaimDelimiter,
+                                 String validIssuerUri,
+                                 int refreshSeconds,
+                                 int refreshMinPauseSeconds,
+                                 int expirySeconds,
+                                 boolean ignoreKeyUse,
+                                 boolean checkAccessTokenType,
+                                 String audience,
+                                 String customClaimCheck,
+                                 int connectTimeoutSeconds,
+                                 int readTimeoutSeconds,
+                                 boolean enableMetrics,
+                                 boolean failFast) {
+        this(validatorId, keysEndpointUri, socketFactory, verifier, principalExtractor, groupsClaimQuery, groupsClaimDelimiter, validIssuerUri,
+                refreshSeconds, refreshMinPauseSeconds, expirySeconds, ignoreKeyUse, checkAccessTokenType, audience, customClaimCheck,
+                connectTimeoutSeconds, readTimeoutSeconds, new JwksOptions(), enableMetrics, failFast);
+    }
 
     /**
      * Create a new instance.
@@ -114,6 +210,7 @@ public class JWTSignatureValidator implements TokenValidator {
      * @param customClaimCheck The optional JSONPath filter query for additional custom claim checking
      * @param connectTimeoutSeconds The maximum time to wait for connection to authorization server to be established (in seconds)
      * @param readTimeoutSeconds The maximum time to wait for response from authorization server after connection has been established and request sent (in seconds)
+     * @param options The optional features, such as the token caches or the JWKS snapshot
      * @param enableMetrics The switch that enables metrics collection
      * @param failFast Should exception be thrown during initialisation if unable to retrieve JWKS keys
      */
@@ -135,6 +232,7 @@ public class JWTSignatureValidator implements TokenValidator {
                                  String customClaimCheck,
                                  int connectTimeoutSeconds,
                                  int readTimeoutSeconds,
+                                 JwksOptions options,
                                  boolean enableMetrics,
                                  boolean failFast) {
 
@@ -147,7 +245,7 @@ public class JWTSignatureValidator implements TokenValidator {
             throw new IllegalArgumentException("keysEndpointUri == null");
         }
         try {
-            this.keysUri = new URI(keysEndpointUri);
+            this.keysUri = HttpEndpointGroup.register(keysEndpointUri);
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("Invalid keysEndpointUri: " + keysEndpointUri, e);
         }
@@ -176,6 +274,11 @@ public class JWTSignatureValidator implements TokenValidator {
         validateRefreshConfig(refreshSeconds, expirySeconds);
         this.maxStaleSeconds = expirySeconds;
 
+        validateOptions(options);
+        this.respectCacheControl = options.respectCacheControl();
+        this.maxCacheControlSeconds = maxCacheControlSeconds(respectCacheControl, refreshSeconds, expirySeconds);
+        this.snapshotFile = parseSnapshotDir(options.snapshotDir(), validatorId);
+
         this.checkAccessTokenType = checkAccessTokenType;
         this.audience = audience;
         this.customClaimMatcher = parseCustomClaimCheck(customClaimCheck);
@@ -186,16 +289,25 @@ public class JWTSignatureValidator implements TokenValidator {
         this.connectTimeout = connectTimeoutSeconds;
         this.readTimeout = readTimeoutSeconds;
 
+        this.validatedTokens = createTokenCache("validatedTokenCacheSize", options.validatedTokenCacheSize());
+        this.rejectedTokens = createTokenCache("rejectedTokenCacheSize", options.rejectedTokenCacheSize());
+        this.rejectedTokenCacheTtlMillis = options.rejectedTokenCacheTtlSeconds() * 1000L;
+
         this.enableMetrics = enableMetrics;
         metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
 
         jwksHttpSensorKeyProducer = new JwksHttpSensorKeyProducer(validatorId, keysUri);
+        validatedTokensSensorKeyProducer = new CacheSensorKeyProducer(validatorId, keysUri, "jwks", "validated_tokens");
+        rejectedTokensSensorKeyProducer = new CacheSensorKeyProducer(validatorId, keysUri, "jwks", "rejected_tokens");
+        stageTimer = new ValidationStageTimer(validatorId, keysUri, "jwks", metrics);
         this.ignoreKeyUse = ignoreKeyUse;
         ScheduledExecutorService executor = setupExecutorAndFetchInitialKeys(refreshSeconds, refreshMinPauseSeconds, failFast);
 
         // set up periodic timer to trigger fastScheduler job every refreshSeconds
         setupRefreshKeysJob(executor, refreshSeconds);
 
+        warmUp(options.warmupTokens());
+
         if (log.isDebugEnabled()) {
             log.debug("Configured JWTSignatureValidator:"
                     + "\n    validatorId: " + validatorId
@@ -215,6 +327,7 @@ public class JWTSignatureValidator implements TokenValidator {
                     + "\n    customClaimCheck: " + customClaimCheck
                     + "\n    connectTimeoutSeconds: " + connectTimeoutSeconds
                     + "\n    readTimeoutSeconds: " + readTimeoutSeconds
+                    + "\n    options: " + options
                     + "\n    enableMetrics: " + enableMetrics
                     + "\n    failFast: " + failFast);
         }
@@ -224,16 +337,20 @@ public class JWTSignatureValidator implements TokenValidator {
 
         // get the signing keys for signature validation before the first authorization requests start coming
         // fail fast if keys refresh doesn't work - it means network issues or authorization server not responding
+        // unless the keys that have not yet expired can be loaded from the snapshot, in which case they are refreshed in the background
 
+        boolean loadedFromSnapshot = loadSnapshot();
         boolean initFetchFailed = false;
-        try {
-            fetchKeys();
-        } catch (Exception e) {
-            if (failFast) {
-                throw e;
-            } else {
-                initFetchFailed = true;
-                log.warn("[IGNORED] Fetching JWKS keys has failed, but fail-fast is disabled: ", e);
+        if (!loadedFromSnapshot) {
+            try {
+                fetchKeys();
+            } catch (Exception e) {
+                if (failFast) {
+                    throw e;
+                } else {
+                    initFetchFailed = true;
+                    log.warn("[IGNORED] Fetching JWKS keys has failed, but fail-fast is disabled: ", e);
+                }
             }
         }
 
@@ -243,12 +360,30 @@ public class JWTSignatureValidator implements TokenValidator {
         // set up fast scheduler that refreshes keys on-demand, and keeps trying with exponential back-off until it succeeds
         fastScheduler = new BackOffTaskScheduler(executor, refreshMinPauseSeconds, refreshSeconds, this::fetchKeys);
 
-        if (initFetchFailed) {
+        if (initFetchFailed || loadedFromSnapshot) {
             fastScheduler.scheduleTask();
         }
         return executor;
     }
 
+    private static <V> TokenCache<V> createTokenCache(String name, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(name + " can't be a negative number - (" + name + "=" + size + ")");
+        }
+        return size > 0 ? new TokenCache<>(size) : null;
+    }
+
+    private static Path parseSnapshotDir(String snapshotDir, String validatorId) {
+        if (snapshotDir != null) {
+            String dir = snapshotDir.trim();
+            if (dir.length() == 0) {
+                throw new IllegalArgumentException("Value of snapshotDir is empty");
+            }
+            return JwksSnapshot.snapshotFile(Paths.get(dir), validatorId);
+        }
+        return null;
+    }
+
     private JsonPathFilterQuery parseCustomClaimCheck(String customClaimCheck) {
         if (customClaimCheck != null) {
             String query = customClaimCheck.trim();
@@ -291,10 +426,37 @@ public class JWTSignatureValidator implements TokenValidator {
         }
     }
 
+    private static int maxCacheControlSeconds(boolean respectCacheControl, int refreshSeconds, int expirySeconds) {
+        // never postpone the refresh for so long that the keys could expire before it succeeds
+        int result = expirySeconds - 60;
+        if (respectCacheControl && result <= refreshSeconds) {
+            log.warn("The Cache-Control of the JWKS endpoint response can not postpone the keys refresh, since the keys have to be refreshed "
+                    + "at least 60 seconds before they expire - (expirySeconds=" + expirySeconds + ", refreshSeconds=" + refreshSeconds
+                    + "). Increase expirySeconds to let the keys be reused for longer.");
+        }
+        return result;
+    }
+
+    private static void validateOptions(JwksOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options == null");
+        }
+        int rejectedTokenCacheTtlSeconds = options.rejectedTokenCacheTtlSeconds();
+        if (options.rejectedTokenCacheSize() > 0 && rejectedTokenCacheTtlSeconds <= 0) {
+            throw new IllegalArgumentException("rejectedTokenCacheTtlSeconds has to be a positive number - (rejectedTokenCacheTtlSeconds=" + rejectedTokenCacheTtlSeconds + ")");
+        }
+        int warmupTokens = options.warmupTokens();
+        if (warmupTokens < 0) {
+            throw new IllegalArgumentException("warmupTokens can't be a negative number - (warmupTokens=" + warmupTokens + ")");
+        }
+    }
+
     /**
      * Set up a regular keys refresh job running on a fixed schedule every <em>refreshSeconds</em>.
      * Use the fastScheduler for actual keys refresh which means that a minimum pause between two consecutive refreshes
      * is enforced, and if the keys refresh fails it keeps re-trying using the exponential backoff.
+     * If <em>respectCacheControl</em> is enabled the refresh is skipped while the keys are still fresh as per the <em>Cache-Control</em> of the last response.
+     * If they stop being fresh before the next regular refresh, the refresh is scheduled for that time instead.
      *
      * @param refreshSeconds The refresh period
      */
@@ -302,6 +464,17 @@ public class JWTSignatureValidator implements TokenValidator {
 
         executor.scheduleAtFixedRate(() -> {
             try {
+                if (isFreshPerCacheControl()) {
+                    long freshUntil = cacheControlFreshUntil;
+                    log.debug("Skipping JWKS keys refresh - keys fresh as per Cache-Control until: {}", TimeUtil.formatIsoDateTimeUTC(freshUntil));
+                    long remaining = freshUntil - System.currentTimeMillis();
+                    if (remaining < refreshSeconds * 1000L) {
+                        executor.schedule(() -> {
+                            fastScheduler.scheduleTask();
+                        }, remaining, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
                 fastScheduler.scheduleTask();
             } catch (Throwable e) {
                 // Log, but don't rethrow the exception to prevent scheduler cancelling the scheduled job.
@@ -310,13 +483,13 @@ public class JWTSignatureValidator implements TokenValidator {
         }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
     }
 
-    private PublicKey getPublicKey(String id) {
-        return getKeyUnlessStale(id);
+    private PublicKeyVerifier getVerifier(SigningKeys keys, String id) {
+        return getKeyUnlessStale(keys, id);
     }
 
-    private PublicKey getKeyUnlessStale(String id) {
-        if (lastFetchTime + maxStaleSeconds * 1000L > System.currentTimeMillis()) {
-            PublicKey result = cache.get(id);
+    private PublicKeyVerifier getKeyUnlessStale(SigningKeys keys, String id) {
+        if (!keys.isStale(maxStaleSeconds * 1000L, System.currentTimeMillis())) {
+            PublicKeyVerifier result = keys.keys().get(id);
             if (result == null) {
                 log.warn("No public key for id: " + id);
             }
@@ -327,111 +500,400 @@ public class JWTSignatureValidator implements TokenValidator {
         }
     }
 
+    private boolean isFreshPerCacheControl() {
+        return respectCacheControl && System.currentTimeMillis() < cacheControlFreshUntil;
+    }
+
     private void fetchKeys() {
         long requestStartTime = System.currentTimeMillis();
         try {
-            String response = HttpUtil.get(keysUri, socketFactory, hostnameVerifier, null, String.class, connectTimeout, readTimeout);
+            // the keys are refreshed in the background, the requests of the clients being authenticated go first
+            HttpResponse response = HttpConcurrencyLimiter.background(() ->
+                    HttpUtil.getResponse(keysUri, socketFactory, hostnameVerifier, null, conditionalRequestHeaders(), connectTimeout, readTimeout));
             addJwksHttpMetricSuccessTime(requestStartTime);
 
-            Map<String, PublicKey> newCache = new HashMap<>();
-            JWKSet jwks = JWKSet.parse(response);
+            Map<String, PublicKeyVerifier> newKeys = null;
+            if (response.isNotModified()) {
+                log.debug("JWKS keys not modified");
+            } else if (!response.body().equals(jwksResponse)) {
+                newKeys = createVerifiers(JWKSet.parse(response.body()));
+                jwksResponse = response.body();
+            }
+            updateCacheValidators(response);
+            long fetchTime = System.currentTimeMillis();
+            publishKeys(newKeys, fetchTime);
+            // 304 and unchanged responses rewrite the snapshot as well, as its freshness is the fetch time stored in it
+            saveSnapshot();
 
-            for (JWK jwk : jwks.getKeys()) {
-                if (ignoreKeyUse || KeyUse.SIGNATURE.equals(jwk.getKeyUse())) {
+        } catch (Throwable ex) {
+            addJwksHttpMetricErrorTime(ex, requestStartTime);
+            throw new ServiceException("Failed to fetch public keys needed to validate JWT signatures: " + keysUri, ex);
+        }
+    }
 
-                    PublicKey publicKey;
+    /**
+     * Load the keys from the snapshot of the last successful JWKS response, unless they have already expired
+     *
+     * @return True if the keys have been loaded
+     */
+    private boolean loadSnapshot() {
+        if (snapshotFile == null) {
+            return false;
+        }
+        try {
+            JwksSnapshot snapshot = JwksSnapshot.read(snapshotFile);
+            if (snapshot == null) {
+                log.debug("No JWKS snapshot found: {}", snapshotFile);
+                return false;
+            }
+            if (snapshot.fetchTime() + maxStaleSeconds * 1000L <= System.currentTimeMillis()) {
+                log.info("Ignoring JWKS snapshot with expired keys: {} (fetched at: {} UTC)", snapshotFile, TimeUtil.formatIsoDateTimeUTC(snapshot.fetchTime()));
+                return false;
+            }
 
-                    if (jwk instanceof ECKey) {
-                        publicKey = ((ECKey) jwk).toPublicKey();
-                    } else if (jwk instanceof RSAKey) {
-                        publicKey = ((RSAKey) jwk).toPublicKey();
-                    } else {
-                        log.warn("Unsupported JWK key type: " + jwk.getKeyType());
-                        continue;
-                    }
-                    newCache.put(jwk.getKeyID(), publicKey);
-                }
+            Map<String, PublicKeyVerifier> newKeys = createVerifiers(JWKSet.parse(snapshot.jwks()));
+            jwksResponse = snapshot.jwks();
+            etag = snapshot.etag();
+            lastModified = snapshot.lastModified();
+            publishKeys(newKeys, snapshot.fetchTime());
+
+            log.info("JWKS keys loaded from snapshot: {} (fetched at: {} UTC)", snapshotFile, TimeUtil.formatIsoDateTimeUTC(snapshot.fetchTime()));
+            return true;
+
+        } catch (Exception e) {
+            log.warn("[IGNORED] Failed to load JWKS snapshot: " + snapshotFile, e);
+            return false;
+        }
+    }
+
+    private void saveSnapshot() {
+        if (snapshotFile == null || jwksResponse == null) {
+            return;
+        }
+        try {
+            new JwksSnapshot(signingKeys.get().fetchTime(), etag, lastModified, jwksResponse).write(snapshotFile);
+        } catch (Exception e) {
+            log.warn("[IGNORED] Failed to save JWKS snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Make the keys refresh a conditional request if the last response contained the <em>ETag</em> or the <em>Last-Modified</em> header.
+     *
+     * @return The request headers or null if the request can not be conditional
+     */
+    private Map<String, String> conditionalRequestHeaders() {
+        if (jwksResponse == null || etag == null && lastModified == null) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>(2);
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+
+    private void updateCacheValidators(HttpResponse response) {
+        String newEtag = response.header("ETag");
+        String newLastModified = response.header("Last-Modified");
+        if (response.isNotModified()) {
+            // the 304 response may update the validators, but doesn't have to repeat them
+            if (newEtag != null) {
+                etag = newEtag;
+            }
+            if (newLastModified != null) {
+                lastModified = newLastModified;
             }
+        } else {
+            etag = newEtag;
+            lastModified = newLastModified;
+        }
+
+        if (respectCacheControl) {
+            long maxAge = Math.min(response.cacheControlMaxAgeSeconds(), maxCacheControlSeconds);
+            cacheControlFreshUntil = maxAge > 0 ? System.currentTimeMillis() + maxAge * 1000L : 0;
+        }
+    }
 
-            newCache = Collections.unmodifiableMap(newCache);
-            if (!cache.equals(newCache)) {
-                log.info("JWKS keys change detected. Keys updated.");
-                oldCache = cache;
-                cache = newCache;
+    /**
+     * Create the verifiers for the new JWKS endpoint response.
+     * Only the JWKs that are new or have changed since the last response are converted to public keys,
+     * and the existing verifiers are reused for the keys that did not change.
+     *
+     * @param jwkSet The JWKS endpoint response
+     * @return The verifiers by key id
+     * @throws JOSEException If conversion of the key fails
+     */
+    private Map<String, PublicKeyVerifier> createVerifiers(JWKSet jwkSet) throws JOSEException {
+        Map<String, PublicKeyVerifier> current = signingKeys.get().keys();
+        Map<String, JWK> newJwks = new HashMap<>();
+        Map<String, PublicKeyVerifier> newKeys = new HashMap<>();
+
+        for (JWK jwk : jwkSet.getKeys()) {
+            if (!ignoreKeyUse && !KeyUse.SIGNATURE.equals(jwk.getKeyUse())) {
+                continue;
+            }
+            if (!PublicKeyVerifier.isSupported(jwk)) {
+                log.warn("Unsupported JWK key type: " + jwk.getKeyType());
+                continue;
             }
-            lastFetchTime = System.currentTimeMillis();
 
-        } catch (Throwable ex) {
-            addJwksHttpMetricErrorTime(ex, requestStartTime);
-            throw new ServiceException("Failed to fetch public keys needed to validate JWT signatures: " + keysUri, ex);
+            String kid = jwk.getKeyID();
+            PublicKeyVerifier verifier = current.get(kid);
+            if (verifier == null || !jwk.equals(jwks.get(kid))) {
+                verifier = PublicKeyVerifier.forJwk(jwk, verifier);
+            }
+            newJwks.put(kid, jwk);
+            newKeys.put(kid, verifier);
+        }
+        jwks = newJwks;
+        return newKeys;
+    }
+
+    /**
+     * Publish the result of the successful keys refresh.
+     * If the keys have changed, a new version of the keys is published, and the state derived from the previous keys is invalidated.
+     * Otherwise only the refresh time is updated.
+     *
+     * @param newKeys The new keys, or null if the JWKS endpoint response did not change
+     * @param fetchTime The time of the refresh (in millis)
+     */
+    private void publishKeys(Map<String, PublicKeyVerifier> newKeys, long fetchTime) {
+        SigningKeys current = signingKeys.get();
+        if (newKeys == null || newKeys.equals(current.keys())) {
+            signingKeys.set(current.withFetchTime(fetchTime));
+            return;
+        }
+
+        SigningKeys next = current.withKeys(newKeys, fetchTime);
+        signingKeys.set(next);
+        log.info("JWKS keys change detected. Keys updated (version: {}).", next.version());
+
+        if (validatedTokens != null) {
+            // drop the validation results for tokens signed with the keys that are gone or have been replaced under the same key id
+            validatedTokens.removeIf(entry -> !entry.isVerifiedBy(next));
+        }
+        if (rejectedTokens != null) {
+            // a token with an invalid signature may be valid with the new keys
+            rejectedTokens.clear();
+        }
+
+        for (Runnable listener : keysChangeListeners) {
+            try {
+                listener.run();
+            } catch (Throwable e) {
+                log.error("Keys change listener failed: ", e);
+            }
         }
     }
 
+    /**
+     * Get the ids of the currently valid signing keys
+     *
+     * @return The set of key ids
+     */
+    Set<String> getKeyIds() {
+        return signingKeys.get().keys().keySet();
+    }
+
+    /**
+     * Get the version of the signing keys.
+     * The version starts at 0 when no keys have been fetched yet, and is incremented every time the set of keys changes.
+     * It can be used by other caches to detect the keys rotation.
+     *
+     * @return The current version of the signing keys
+     */
+    public long getKeysVersion() {
+        return signingKeys.get().version();
+    }
+
+    /**
+     * Get the required value of the 'iss' claim
+     *
+     * @return The valid issuer uri, or null if the issuer is not checked
+     */
+    public String getValidIssuerUri() {
+        return issuerUri;
+    }
+
+    /**
+     * Add a listener that is notified whenever the set of signing keys changes.
+     * The listener is called by the keys refresh job.
+     *
+     * @param listener The listener
+     */
+    void addKeysChangeListener(Runnable listener) {
+        keysChangeListeners.add(listener);
+    }
+
     @SuppressFBWarnings(value = "BC_UNCONFIRMED_CAST_OF_RETURN_VALUE",
             justification = "We tell TokenVerifier to parse AccessToken. It will return AccessToken or fail.")
     public TokenInfo validate(String token) {
 
+        // a single read gives a consistent view of the keys for the whole validation
+        SigningKeys keys = signingKeys.get();
+
+        TokenInfo cached = lookupCachedResult(keys, token);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stageStartTime = stageTimer.start();
+
+        // stage 1: the header, without decoding the payload
         SignedJWT jwt;
         String kid;
         try {
             jwt = SignedJWT.parse(token);
             kid = jwt.getHeader().getKeyID();
         } catch (Exception e) {
-            throw new TokenValidationException("Token validation failed: Failed to parse JWT: " + token, e)
-                    .status(Status.INVALID_TOKEN);
+            // the raw token is not part of the message, which may be logged, and kept in the rejected tokens cache
+            throw rejectToken(token, new TokenValidationException("Token validation failed: Failed to parse JWT", e)
+                    .status(Status.INVALID_TOKEN));
         }
+        stageStartTime = stageTimer.stageCompleted(Stage.HEADER, stageStartTime);
 
-        JsonNode t;
+        // stage 2: the cheap checks on the decoded, but not yet verified claims
+        // a token that fails them is rejected the same way as if it had a valid signature, without the cost of the signature check
+        JsonNode t = decodePayload(jwt);
+        long expiresMillis;
         try {
-            PublicKey pub = getPublicKey(kid);
-            if (pub == null) {
-                if (oldCache.get(kid) != null) {
-                    throw new TokenValidationException("Token validation failed: The signing key is no longer valid (kid:" + kid + ")");
-                } else {
-                    // Request quick keys refresh
-                    try {
-                        fastScheduler.scheduleTask();
-                    } catch (RuntimeException e) {
-                        log.error("Failed to reschedule JWKS keys refresh: ", e);
-                    }
-                    throw new TokenValidationException("Token validation failed: Unknown signing key (kid:" + kid + ")");
-                }
-            }
+            expiresMillis = validateExpiry(t);
+            validateClaims(t);
+        } catch (TokenValidationException e) {
+            throw rejectToken(token, e);
+        }
+        stageStartTime = stageTimer.stageCompleted(Stage.CLAIMS, stageStartTime);
 
-            if (!jwt.verify(VERIFIER_FACTORY.createJWSVerifier(jwt.getHeader(), pub))) {
-                throw new TokenSignatureException("Signature check failed: Invalid token signature");
-            }
-            t = JSONUtil.asJson(jwt.getPayload().toJSONObject());
+        // stage 3: the signature
+        PublicKeyVerifier verifier = verifySignature(keys, token, jwt, kid);
+        stageStartTime = stageTimer.stageCompleted(Stage.SIGNATURE, stageStartTime);
 
+        // stage 4: the custom claim check, only performed on the tokens with a valid signature
+        try {
+            validateCustomClaims(t);
         } catch (TokenValidationException e) {
-            // just rethrow
-            throw e;
+            throw rejectToken(token, e);
+        }
+        stageTimer.stageCompleted(Stage.CUSTOM_CLAIMS, stageStartTime);
+
+        String principal = extractPrincipal(t);
+        Set<String> groups = extractGroups(t);
+
+        if (validatedTokens != null) {
+            // keep a private copy of the payload, since the returned one may get modified during request processing
+            validatedTokens.put(token, new ValidatedToken(kid, verifier, new TokenInfo(t.deepCopy(), null, principal, groups)), expiresMillis);
+        }
+        return new TokenInfo(t, token, principal, groups);
+    }
+
+    private JsonNode decodePayload(SignedJWT jwt) {
+        try {
+            return jwt.getPayload().toType(PAYLOAD_TRANSFORMER);
         } catch (Exception e) {
             throw new TokenValidationException("Token validation failed", e);
         }
+    }
 
-        JsonNode exp = t.get(TokenInfo.EXP);
-        if (exp == null) {
-            throw new TokenValidationException("Token validation failed: Expiry not set");
+    private PublicKeyVerifier verifySignature(SigningKeys keys, String token, SignedJWT jwt, String kid) {
+        PublicKeyVerifier verifier = getVerifier(keys, kid);
+        if (verifier == null) {
+            if (keys.oldKeys().get(kid) != null) {
+                throw new TokenValidationException("Token validation failed: The signing key is no longer valid (kid:" + kid + ")");
+            } else {
+                // Request quick keys refresh
+                try {
+                    fastScheduler.scheduleTask();
+                } catch (RuntimeException e) {
+                    log.error("Failed to reschedule JWKS keys refresh: ", e);
+                }
+                throw new TokenValidationException("Token validation failed: Unknown signing key (kid:" + kid + ")");
+            }
         }
-        long expiresMillis = exp.asInt(0) * 1000L;
-        if (Time.SYSTEM.milliseconds() > expiresMillis) {
-            throw new TokenExpiredException("Token expired at: " + expiresMillis + " (" +
-                    TimeUtil.formatIsoDateTimeUTC(expiresMillis) + " UTC)");
+
+        boolean valid;
+        try {
+            valid = jwt.verify(verifier);
+        } catch (Exception e) {
+            throw new TokenValidationException("Token validation failed", e);
+        }
+        if (!valid) {
+            throw rejectToken(token, new TokenSignatureException("Signature check failed: Invalid token signature"));
         }
+        return verifier;
+    }
 
-        validateTokenPayload(t);
+    /**
+     * Look the token up in the validated tokens cache and in the rejected tokens cache
+     *
+     * @param keys The current signing keys
+     * @param token The raw token
+     * @return The TokenInfo of the previously validated token, or null if the token has to be validated
+     * @throws TokenValidationException The new exception with the cached outcome, if the token has been rejected before
+     */
+    private TokenInfo lookupCachedResult(SigningKeys keys, String token) {
+        if (validatedTokens != null) {
+            long lookupStartTime = System.currentTimeMillis();
+            TokenInfo cached = getCachedTokenInfo(keys, token);
+            addCacheMetricTime(validatedTokensSensorKeyProducer, cached != null, lookupStartTime);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
-        if (customClaimMatcher != null) {
-            if (!customClaimMatcher.matches(t)) {
-                throw new TokenValidationException("Token validation failed: Custom claim check failed");
+        if (rejectedTokens != null) {
+            long lookupStartTime = System.currentTimeMillis();
+            RejectedToken rejected = rejectedTokens.get(token);
+            addCacheMetricTime(rejectedTokensSensorKeyProducer, rejected != null, lookupStartTime);
+            if (rejected != null) {
+                throw rejected.toException();
             }
         }
+        return null;
+    }
 
-        String principal = extractPrincipal(t);
-        Set<String> groups = extractGroups(t);
+    /**
+     * Remember the rejection of the token, if the outcome can not change without the keys changing.
+     * Only the outcome is remembered, not the exception itself, which carries the stack trace and the cause of this validation.
+     *
+     * @param token The raw token
+     * @param e The exception to throw for the token
+     * @return The passed exception
+     */
+    private TokenValidationException rejectToken(String token, TokenValidationException e) {
+        if (rejectedTokens != null) {
+            rejectedTokens.put(token, RejectedToken.of(e), System.currentTimeMillis() + rejectedTokenCacheTtlMillis);
+        }
+        return e;
+    }
 
-        return new TokenInfo(t, token, principal, groups);
+    /**
+     * Get the number of the rejected tokens currently remembered
+     *
+     * @return The number of entries in the rejected tokens cache, or 0 if the cache is disabled
+     */
+    int rejectedTokenCount() {
+        return rejectedTokens != null ? rejectedTokens.size() : 0;
+    }
+
+    private TokenInfo getCachedTokenInfo(SigningKeys keys, String token) {
+        ValidatedToken entry = validatedTokens.get(token);
+        if (entry == null) {
+            return null;
+        }
+        // the token is only valid for as long as its signing key is valid
+        if (keys.isStale(maxStaleSeconds * 1000L, System.currentTimeMillis())) {
+            return null;
+        }
+        // the entry may have been stored concurrently with the keys change, with the key that is now gone or replaced
+        if (!entry.isVerifiedBy(keys)) {
+            return null;
+        }
+        TokenInfo info = entry.tokenInfo;
+        return new TokenInfo(info.payload().deepCopy(), token, info.principal(), info.groups());
     }
 
     private String extractPrincipal(JsonNode tokenJson) {
@@ -464,7 +926,20 @@ public class JWTSignatureValidator implements TokenValidator {
         return groupSet.isEmpty() ? null : groupSet;
     }
 
-    private void validateTokenPayload(JsonNode token) {
+    private long validateExpiry(JsonNode token) {
+        JsonNode exp = token.get(TokenInfo.EXP);
+        if (exp == null) {
+            throw new TokenValidationException("Token validation failed: Expiry not set");
+        }
+        long expiresMillis = exp.asInt(0) * 1000L;
+        if (Time.SYSTEM.milliseconds() > expiresMillis) {
+            throw new TokenExpiredException("Token expired at: " + expiresMillis + " (" +
+                    TimeUtil.formatIsoDateTimeUTC(expiresMillis) + " UTC)");
+        }
+        return expiresMillis;
+    }
+
+    private void validateClaims(JsonNode token) {
         if (issuerUri != null) {
             JsonNode iss = token.get(TokenInfo.ISS);
             if (iss == null) {
@@ -497,6 +972,62 @@ public class JWTSignatureValidator implements TokenValidator {
         }
     }
 
+    private void validateCustomClaims(JsonNode token) {
+        if (customClaimMatcher != null) {
+            if (!customClaimMatcher.matches(token)) {
+                throw new TokenValidationException("Token validation failed: Custom claim check failed");
+            }
+        }
+    }
+
+    /**
+     * Validate the synthetic tokens, so that the token parsing, the signature check and the claim checks are compiled by JIT
+     * before the clients start connecting.
+     * <p>
+     * The tokens are signed with throwaway keys of the same types as the current signing keys, and the validation bypasses
+     * the token caches and the validation metrics. The failed warm-up is logged, but otherwise ignored.
+     * </p>
+     *
+     * @param tokens The number of synthetic tokens to validate per key type. If 0 the warm-up is skipped.
+     */
+    private void warmUp(int tokens) {
+        if (tokens == 0) {
+            return;
+        }
+        new ValidationWarmup(validatorId, keysUri, issuerUri, audience, customClaimMatcher, enableMetrics)
+                .run(tokens, signingKeys.get().keys().values(), this::warmUpValidation);
+    }
+
+    /**
+     * Perform the same steps as {@link #validate(String)} except for the custom claim check, without using the caches and the metrics
+     *
+     * @param token The synthetic token
+     * @param verifier The verifier for the throwaway key
+     * @return The token payload
+     * @throws Exception If the token can not be parsed or verified
+     */
+    private JsonNode warmUpValidation(String token, PublicKeyVerifier verifier) throws Exception {
+        SignedJWT jwt = SignedJWT.parse(token);
+        jwt.getHeader().getKeyID();
+        JsonNode t = jwt.getPayload().toType(PAYLOAD_TRANSFORMER);
+        try {
+            validateExpiry(t);
+            validateClaims(t);
+        } catch (ValidationException e) {
+            throw new IllegalStateException("Claims check of the synthetic token failed", e);
+        }
+        if (!jwt.verify(verifier)) {
+            throw new IllegalStateException("Signature check of the synthetic token failed");
+        }
+        try {
+            extractPrincipal(t);
+            extractGroups(t);
+        } catch (ValidationException ignored) {
+            // the synthetic token does not have to contain the claims configured for the principal
+        }
+        return t;
+    }
+
     @Override
     public String getValidatorId() {
         return validatorId;
@@ -514,4 +1045,36 @@ public class JWTSignatureValidator implements TokenValidator {
             metrics.addTime(jwksHttpSensorKeyProducer.errorKey(e), System.currentTimeMillis() - startTimeMs);
         }
     }
+
+    private void addCacheMetricTime(CacheSensorKeyProducer producer, boolean hit, long startTimeMs) {
+        if (enableMetrics) {
+            metrics.addTime(hit ? producer.hitKey() : producer.missKey(), System.currentTimeMillis() - startTimeMs);
+        }
+    }
+
+    /**
+     * The cached result of a successful validation together with the id of the key and the verifier used to check the token signature
+     */
+    private static class ValidatedToken {
+        private final String kid;
+        private final PublicKeyVerifier verifier;
+        private final TokenInfo tokenInfo;
+
+        ValidatedToken(String kid, PublicKeyVerifier verifier, TokenInfo tokenInfo) {
+            this.kid = kid;
+            this.verifier = verifier;
+            this.tokenInfo = tokenInfo;
+        }
+
+        /**
+         * Check if the token signature would still be checked with the same key.
+         * The verifier is only reused by the keys refresh while the public key under the key id stays the same.
+         *
+         * @param keys The signing keys
+         * @return True if the key id still maps to the verifier used for this token
+         */
+        boolean isVerifiedBy(SigningKeys keys) {
+            return keys.keys().get(kid) == verifier;
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+/**
+ * The optional features of the {@link JWTSignatureValidator}: the JWKS response caching, the JWKS snapshot, the token caches and the warm-up.
+ * <p>
+ * All the features are disabled by default. The options are set fluently, for example:
+ * </p>
+ * <pre>
+ *     new JwksOptions()
+ *         .withValidatedTokenCache(10000)
+ *         .withRejectedTokenCache(1000, 30);
+ * </pre>
+ * The values are checked by the validator when it is created.
+ */
+public class JwksOptions {
+
+    private boolean respectCacheControl;
+    private String snapshotDir;
+
+    private int validatedTokenCacheSize;
+    private int rejectedTokenCacheSize;
+    private int rejectedTokenCacheTtlSeconds = 30;
+
+    private int warmupTokens;
+
+    /**
+     * Skip the regular keys refresh while the last JWKS response is still fresh according to its <em>Cache-Control: max-age</em>.
+     * The refresh is never postponed for longer than <em>expirySeconds</em> minus 60 seconds, so this only has an effect
+     * if <em>expirySeconds</em> is more than 60 seconds longer than <em>refreshSeconds</em>.
+     *
+     * @param respectCacheControl If true the <em>Cache-Control</em> of the JWKS endpoint response can postpone the keys refresh
+     * @return This instance
+     */
+    public JwksOptions withCacheControl(boolean respectCacheControl) {
+        this.respectCacheControl = respectCacheControl;
+        return this;
+    }
+
+    /**
+     * Store the last successful JWKS response on disk, and load it when the validator is created
+     *
+     * @param snapshotDir The directory of the snapshot. If null the snapshot is disabled.
+     * @return This instance
+     */
+    public JwksOptions withSnapshot(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+        return this;
+    }
+
+    /**
+     * Remember the successfully validated tokens
+     *
+     * @param cacheSize The maximum number of successfully validated tokens to keep in cache. If 0 the cache is disabled.
+     * @return This instance
+     */
+    public JwksOptions withValidatedTokenCache(int cacheSize) {
+        this.validatedTokenCacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * Remember the rejected tokens
+     *
+     * @param cacheSize The maximum number of rejected tokens to keep in cache. If 0 the cache is disabled.
+     * @param ttlSeconds The maximum time to remember a rejected token (in seconds)
+     * @return This instance
+     */
+    public JwksOptions withRejectedTokenCache(int cacheSize, int ttlSeconds) {
+        this.rejectedTokenCacheSize = cacheSize;
+        this.rejectedTokenCacheTtlSeconds = ttlSeconds;
+        return this;
+    }
+
+    /**
+     * Validate a number of synthetic tokens at startup to have the validation compiled by JIT
+     *
+     * @param tokens The number of synthetic tokens to validate per key type. If 0 the warm-up is disabled.
+     * @return This instance
+     */
+    public JwksOptions withWarmup(int tokens) {
+        this.warmupTokens = tokens;
+        return this;
+    }
+
+    boolean respectCacheControl() {
+        return respectCacheControl;
+    }
+
+    String snapshotDir() {
+        return snapshotDir;
+    }
+
+    int validatedTokenCacheSize() {
+        return validatedTokenCacheSize;
+    }
+
+    int rejectedTokenCacheSize() {
+        return rejectedTokenCacheSize;
+    }
+
+    int rejectedTokenCacheTtlSeconds() {
+        return rejectedTokenCacheTtlSeconds;
+    }
+
+    int warmupTokens() {
+        return warmupTokens;
+    }
+
+    @Override
+    public String toString() {
+        return "JwksOptions {respectCacheControl: " + respectCacheControl
+                + ", snapshotDir: " + snapshotDir
+                + ", validatedTokenCacheSize: " + validatedTokenCacheSize
+                + ", rejectedTokenCacheSize: " + rejectedTokenCacheSize
+                + ", rejectedTokenCacheTtlSeconds: " + rejectedTokenCacheTtlSeconds
+                + ", warmupTokens: " + warmupTokens
+                + "}";
+    }
+}
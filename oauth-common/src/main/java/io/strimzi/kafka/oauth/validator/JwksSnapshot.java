@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.strimzi.kafka.oauth.common.JSONUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The last successful JWKS endpoint response, as stored on disk.
+ * <p>
+ * The snapshot is written by the keys refresh, and read when the validator is created,
+ * so that the validation can start without waiting for the authorization server.
+ * </p>
+ */
+class JwksSnapshot {
+
+    private static final String FETCH_TIME = "fetch_time";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last_modified";
+    private static final String JWKS = "jwks";
+
+    private final long fetchTime;
+    private final String etag;
+    private final String lastModified;
+    private final String jwks;
+
+    /**
+     * Create a new instance
+     *
+     * @param fetchTime The time when the keys were last successfully fetched (in millis)
+     * @param etag The <em>ETag</em> of the JWKS endpoint response, or null
+     * @param lastModified The <em>Last-Modified</em> of the JWKS endpoint response, or null
+     * @param jwks The body of the JWKS endpoint response
+     */
+    JwksSnapshot(long fetchTime, String etag, String lastModified, String jwks) {
+        if (jwks == null) {
+            throw new IllegalArgumentException("jwks == null");
+        }
+        this.fetchTime = fetchTime;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.jwks = jwks;
+    }
+
+    long fetchTime() {
+        return fetchTime;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    String lastModified() {
+        return lastModified;
+    }
+
+    String jwks() {
+        return jwks;
+    }
+
+    /**
+     * Get the snapshot file for the validator
+     *
+     * @param dir The snapshot directory
+     * @param validatorId The validator id
+     * @return The path of the snapshot file
+     */
+    static Path snapshotFile(Path dir, String validatorId) {
+        // the validator id may be a user supplied config id
+        return dir.resolve(validatorId.replaceAll("[^A-Za-z0-9._-]", "_") + ".jwks.json");
+    }
+
+    /**
+     * Read the snapshot from the file.
+     * <p>
+     * The fetch time is the one stored in the file, rather than the last modified time of the file,
+     * so that a copied or restored old snapshot is not taken for a fresh one.
+     * </p>
+     *
+     * @param file The snapshot file
+     * @return The snapshot, or null if the file does not exist
+     * @throws IOException If the file can not be read or is not a valid snapshot
+     */
+    static JwksSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        JsonNode node = JSONUtil.readJSON(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), JsonNode.class);
+        JsonNode fetchTime = node.get(FETCH_TIME);
+        JsonNode jwks = node.get(JWKS);
+        if (fetchTime == null || !fetchTime.canConvertToLong() || jwks == null || !jwks.isTextual()) {
+            throw new IOException("Invalid JWKS snapshot: " + file);
+        }
+        return new JwksSnapshot(fetchTime.asLong(), textOrNull(node.get(ETAG)), textOrNull(node.get(LAST_MODIFIED)), jwks.asText());
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    /**
+     * Write the snapshot to the file.
+     * <p>
+     * The content is first written to a temporary file in the same directory, which then replaces the existing snapshot,
+     * so that a partially written snapshot is never read.
+     * </p>
+     *
+     * @param file The snapshot file
+     * @throws IOException If the file can not be written
+     */
+    void write(Path file) throws IOException {
+        ObjectNode node = JSONUtil.newObjectNode();
+        node.put(FETCH_TIME, fetchTime);
+        node.put(ETAG, etag);
+        node.put(LAST_MODIFIED, lastModified);
+        node.put(JWKS, jwks);
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, JSONUtil.MAPPER.writeValueAsBytes(node));
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nimbusds.jose.JWSObject;
+import io.strimzi.kafka.oauth.common.NimbusPayloadTransformer;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
+
+/**
+ * A validator that validates JWT tokens issued by multiple authorization servers, or multiple realms of the same authorization server.
+ * <p>
+ * Every issuer has its own {@link JWTSignatureValidator} with its own keys cache and keys refresh job.
+ * The token is routed to the validator of its issuer without trying the validators one after another:
+ * </p>
+ * <ul>
+ * <li>by the <em>kid</em> in the token header, using the index of the signing keys of all the issuers that is updated whenever the keys of any issuer change,</li>
+ * <li>by the <em>iss</em> claim in the (not yet validated) token payload, if the <em>kid</em> is unknown, or is used by more than one issuer.</li>
+ * </ul>
+ * <p>
+ * The routing only selects the validator. The selected validator then performs the complete validation,
+ * including the check that the <em>iss</em> claim matches its valid issuer.
+ * </p>
+ */
+public class MultiIssuerTokenValidator implements TokenValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiIssuerTokenValidator.class);
+
+    private static final NimbusPayloadTransformer PAYLOAD_TRANSFORMER = new NimbusPayloadTransformer();
+
+    private final String validatorId;
+
+    private final Map<String, JWTSignatureValidator> validatorsByIssuer;
+
+    private volatile Map<String, JWTSignatureValidator> validatorsByKid = Collections.emptyMap();
+
+    /**
+     * Create a new instance.
+     *
+     * @param validatorId A unique id to associate with this validator for the purpose of validator lifecycle and metrics tracking
+     * @param validators The validators of the issuers, each with a different valid issuer uri
+     */
+    public MultiIssuerTokenValidator(String validatorId, List<JWTSignatureValidator> validators) {
+        if (validatorId == null) {
+            throw new IllegalArgumentException("validatorId == null");
+        }
+        this.validatorId = validatorId;
+
+        if (validators == null || validators.isEmpty()) {
+            throw new IllegalArgumentException("validators is empty");
+        }
+        Map<String, JWTSignatureValidator> byIssuer = new LinkedHashMap<>();
+        for (JWTSignatureValidator validator : validators) {
+            String issuerUri = validator.getValidIssuerUri();
+            if (issuerUri == null) {
+                throw new IllegalArgumentException("Validator has no valid issuer uri: " + validator.getValidatorId());
+            }
+            if (byIssuer.put(issuerUri, validator) != null) {
+                throw new IllegalArgumentException("More than one validator with the valid issuer uri: " + issuerUri);
+            }
+        }
+        this.validatorsByIssuer = Collections.unmodifiableMap(byIssuer);
+
+        for (JWTSignatureValidator validator : this.validatorsByIssuer.values()) {
+            validator.addKeysChangeListener(this::updateKeyIndex);
+        }
+        updateKeyIndex();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured MultiIssuerTokenValidator:"
+                    + "\n    validatorId: " + validatorId
+                    + "\n    issuers: " + this.validatorsByIssuer.keySet());
+        }
+    }
+
+    /**
+     * Rebuild the index of the signing keys of all the issuers.
+     * The keys used by more than one issuer are left out of the index, and such tokens are routed by the <em>iss</em> claim.
+     */
+    private synchronized void updateKeyIndex() {
+        Map<String, JWTSignatureValidator> index = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+
+        for (JWTSignatureValidator validator : validatorsByIssuer.values()) {
+            for (String kid : validator.getKeyIds()) {
+                if (ambiguous.contains(kid)) {
+                    continue;
+                }
+                JWTSignatureValidator previous = index.putIfAbsent(kid, validator);
+                if (previous != null && previous != validator) {
+                    index.remove(kid);
+                    ambiguous.add(kid);
+                }
+            }
+        }
+        if (!ambiguous.isEmpty()) {
+            log.debug("Signing keys used by more than one issuer: {}", ambiguous);
+        }
+        validatorsByKid = Collections.unmodifiableMap(index);
+    }
+
+    @Override
+    public TokenInfo validate(String token) {
+        return route(token).validate(token);
+    }
+
+    private JWTSignatureValidator route(String token) {
+        JWSObject jws;
+        try {
+            jws = JWSObject.parse(token);
+        } catch (Exception e) {
+            throw new TokenValidationException("Token validation failed: Failed to parse JWT", e)
+                    .status(Status.INVALID_TOKEN);
+        }
+
+        String kid = jws.getHeader().getKeyID();
+        JWTSignatureValidator validator = kid != null ? validatorsByKid.get(kid) : null;
+        if (validator != null) {
+            return validator;
+        }
+
+        JsonNode iss;
+        try {
+            iss = jws.getPayload().toType(PAYLOAD_TRANSFORMER).get(TokenInfo.ISS);
+        } catch (Exception e) {
+            throw new TokenValidationException("Token validation failed: Failed to parse JWT payload", e)
+                    .status(Status.INVALID_TOKEN);
+        }
+        if (iss == null) {
+            throw new TokenValidationException("Token validation failed: Issuer not set");
+        }
+        validator = validatorsByIssuer.get(iss.asText());
+        if (validator == null) {
+            throw new TokenValidationException("Token validation failed: Issuer not allowed: " + iss.asText());
+        }
+        return validator;
+    }
+
+    @Override
+    public String getValidatorId() {
+        return validatorId;
+    }
+}
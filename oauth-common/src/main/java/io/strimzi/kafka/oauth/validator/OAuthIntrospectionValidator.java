@@ -6,15 +6,23 @@ package io.strimzi.kafka.oauth.validator;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.BooleanNode;
+import io.strimzi.kafka.oauth.common.HttpEndpointGroup;
+import io.strimzi.kafka.oauth.common.HttpException;
+import io.strimzi.kafka.oauth.common.IOUtil;
 import io.strimzi.kafka.oauth.common.JSONUtil;
 import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.common.RequestHedging;
 import io.strimzi.kafka.oauth.common.TimeUtil;
 import io.strimzi.kafka.oauth.common.TokenInfo;
 import io.strimzi.kafka.oauth.jsonpath.JsonPathFilterQuery;
 import io.strimzi.kafka.oauth.jsonpath.JsonPathQuery;
+import io.strimzi.kafka.oauth.metrics.CacheSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.CircuitBreakerSensorKeyProducer;
 import io.strimzi.kafka.oauth.metrics.IntrospectHttpSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
 import io.strimzi.kafka.oauth.metrics.SensorKeyProducer;
 import io.strimzi.kafka.oauth.metrics.UserInfoHttpSensorKeyProducer;
+import io.strimzi.kafka.oauth.services.CurrentTime;
 import io.strimzi.kafka.oauth.services.OAuthMetrics;
 import io.strimzi.kafka.oauth.services.Services;
 import org.apache.kafka.common.utils.Time;
@@ -29,10 +37,15 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static io.strimzi.kafka.oauth.common.HttpUtil.post;
 import static io.strimzi.kafka.oauth.common.HttpUtil.get;
+import static io.strimzi.kafka.oauth.common.HttpUtil.getAsync;
 import static io.strimzi.kafka.oauth.common.LogUtil.mask;
 import static io.strimzi.kafka.oauth.common.OAuthAuthenticator.base64encode;
 import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
@@ -44,6 +57,29 @@ import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
  * The endpoint returns a response with whether the token is valid or not, and it usually also returns additional attributes, that
  * can be used to enforce additional constraints, and prevent some otherwise valid tokens from authenticating.
  * </p>
+ * <p>
+ * If the introspection cache is enabled, the result of the successful validation is remembered until the token expires,
+ * but no longer than the configured maximum time, which limits the time a revoked token can still be used.
+ * The 'not active' answers can optionally be remembered for a short time as well, so that the same invalid token repeatedly
+ * presented does not result in a request to the authorization server every time.
+ * The cache entries are keyed by the SHA-256 digest of the token, and do not hold on to the raw token.
+ * </p>
+ * <p>
+ * The concurrent validations of the same token share a single request to the introspection endpoint (and the user info endpoint),
+ * and all receive its result, or its failure. That way many clients connecting at the same time with the same token
+ * result in a single round trip to the authorization server.
+ * </p>
+ * <p>
+ * When the user info endpoint is used to extract the principal, its responses can be cached per subject ('sub' attribute of the introspection endpoint response).
+ * If the principal is known to be always missing from the introspection endpoint response, the user info endpoint request can be sent in parallel
+ * with the introspection request, rather than after it, and is cancelled if the response turns out not to be needed.
+ * </p>
+ * <p>
+ * If the circuit breaker is enabled, and the error rate of the introspection requests reaches the configured threshold,
+ * the validations fail immediately, rather than each waiting for the unresponsive authorization server.
+ * Optionally, the cached results are used instead until the tokens expire, even if older than the configured maximum time.
+ * After the configured time a single probe request is sent, and if it succeeds, the introspection requests are resumed.
+ * </p>
  */
 public class OAuthIntrospectionValidator implements TokenValidator {
 
@@ -67,10 +103,71 @@ public class OAuthIntrospectionValidator implements TokenValidator {
     private final int connectTimeoutSeconds;
     private final int readTimeoutSeconds;
 
+    private final TokenCache<IntrospectedToken> introspectedTokens;
+    private final TokenCache<Boolean> inactiveTokens;
+    private final long cacheMaxTtlMillis;
+    private final long inactiveCacheTtlMillis;
+    private final SingleFlight<TokenInfo> inFlightValidations = new SingleFlight<>();
+    private final CircuitBreaker circuitBreaker;
+    private final boolean serveStale;
+    private final RequestHedging hedging;
+    private final TokenCache<JsonNode> userInfoResponses;
+    private final long userInfoCacheTtlMillis;
+    private final boolean userInfoParallel;
+
     private final boolean enableMetrics;
     private final OAuthMetrics metrics;
     private final SensorKeyProducer introspectHttpSensorKeyProducer;
-    private final SensorKeyProducer userInfoHttpSensorKeyProducer;
+    private final UserInfoHttpSensorKeyProducer userInfoHttpSensorKeyProducer;
+    private final CacheSensorKeyProducer introspectedTokensSensorKeyProducer;
+    private final CacheSensorKeyProducer inactiveTokensSensorKeyProducer;
+    private final CacheSensorKeyProducer inFlightSensorKeyProducer;
+    private final CacheSensorKeyProducer staleTokensSensorKeyProducer;
+    private final CircuitBreakerSensorKeyProducer circuitBreakerSensorKeyProducer;
+
+    /**
+     * Create a new instance.
+     *
+     * @param id A unique id to associate with this validator for the purpose of validator lifecycle and metrics tracking
+     * @param introspectionEndpointUri The introspection endpoint url at the authorization server
+     * @param socketFactory The optional SSL socket factory to use when establishing the connection to authorization server
+     * @param verifier The optional hostname verifier used to validate the TLS certificate by the authorization server
+     * @param principalExtractor The object used to extract the username from the attributes in the server's response
+     * @param groupsClaimQuery The JsonPath query for extracting groups from introspection endpoint response
+     * @param groupsClaimDelimiter The delimiter used to parse groups from the result of applying <em>groupQuery</em> to what introspection endpoint returns
+     * @param issuerUri The required value of the 'iss' claim in the introspection endpoint response
+     * @param userInfoUri The optional user info endpoint url at the authorization server, used as a failover when user id can't be extracted from the introspection endpoint response
+     * @param validTokenType The optional token type enforcement - only the specified token type is accepted as valid
+     * @param clientId The clientId of the OAuth2 client representing this Kafka broker - needed to authenticate to the introspection endpoint
+     * @param clientSecret The secret of the OAuth2 client representing this Kafka broker - needed to authenticate to the introspection endpoint
+     * @param audience The optional audience check. If specified, the 'aud' attribute of the introspection endpoint response needs to contain the configured clientId
+     * @param customClaimCheck The optional JSONPath filter query for additional custom attribute checking
+     * @param connectTimeoutSeconds The maximum time to wait for connection to authorization server to be established (in seconds)
+     * @param readTimeoutSeconds The maximum time to wait for response from authorization server after connection has been established and request sent (in seconds)
+     * @param enableMetrics The switch that enables metrics collection
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public OAuthIntrospectionValidator(String id,
+                                       String introspectionEndpointUri,
+                                       SSLSocketFactory socketFactory,
+                                       HostnameVerifier verifier,
+                                       PrincipalExtractor principalExtractor,
+                                       String groupsClaimQuery,
+                                       String groupsClaimDelimiter,
+                                       String issuerUri,
+                                       String userInfoUri,
+                                       String validTokenType,
+                                       String clientId,
+                                       String clientSecret,
+                                       String audience,
+                                       String customClaimCheck,
+                                       int connectTimeoutSeconds,
+                                       int readTimeoutSeconds,
+                                       boolean enableMetrics) {
+        this(id, introspectionEndpointUri, socketFactory, verifier, principalExtractor, groupsClaimQuery, groupsClaimDelimiter, issuerUri, userInfoUri,
+                validTokenType, clientId, clientSecret, audience, customClaimCheck, connectTimeoutSeconds, readTimeoutSeconds,
+                new IntrospectionOptions(), enableMetrics);
+    }
 
     /**
      * Create a new instance.
@@ -91,6 +188,7 @@ public class OAuthIntrospectionValidator implements TokenValidator {
      * @param customClaimCheck The optional JSONPath filter query for additional custom attribute checking
      * @param connectTimeoutSeconds The maximum time to wait for connection to authorization server to be established (in seconds)
      * @param readTimeoutSeconds The maximum time to wait for response from authorization server after connection has been established and request sent (in seconds)
+     * @param options The optional features, such as the caching or the circuit breaker
      * @param enableMetrics The switch that enables metrics collection
      */
     @SuppressWarnings("checkstyle:ParameterNumber")
@@ -110,6 +208,7 @@ public class OAuthIntrospectionValidator implements TokenValidator {
                                        String customClaimCheck,
                                        int connectTimeoutSeconds,
                                        int readTimeoutSeconds,
+                                       IntrospectionOptions options,
                                        boolean enableMetrics) {
 
         this.validatorId = checkValidatorId(id);
@@ -138,11 +237,40 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         this.connectTimeoutSeconds = connectTimeoutSeconds;
         this.readTimeoutSeconds = readTimeoutSeconds;
 
+        if (options == null) {
+            throw new IllegalArgumentException("options == null");
+        }
+        checkCacheConfig(options.cacheSize(), options.cacheMaxTtlSeconds(), options.inactiveCacheTtlSeconds());
+        this.introspectedTokens = createTokenCache(options.cacheSize(), true);
+        this.inactiveTokens = createTokenCache(options.cacheSize(), options.inactiveCacheTtlSeconds() > 0);
+        this.cacheMaxTtlMillis = options.cacheMaxTtlSeconds() * 1000L;
+        this.inactiveCacheTtlMillis = options.inactiveCacheTtlSeconds() * 1000L;
+
+        checkUserInfoConfig(options.userInfoCacheSize(), options.userInfoCacheTtlSeconds(), options.userInfoParallel());
+        this.userInfoResponses = createTokenCache(options.userInfoCacheSize(), true);
+        this.userInfoCacheTtlMillis = options.userInfoCacheTtlSeconds() * 1000L;
+        this.userInfoParallel = options.userInfoParallel();
+
         this.enableMetrics = enableMetrics;
         metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
 
+        circuitBreakerSensorKeyProducer = new CircuitBreakerSensorKeyProducer(validatorId, introspectionURI, "introspect");
+        this.circuitBreaker = createCircuitBreaker(options.circuitBreakerErrorRate(), options.circuitBreakerWindowSize(),
+                options.circuitBreakerOpenSeconds(), options.circuitBreakerServeStale());
+        this.serveStale = options.circuitBreakerServeStale();
+
+        this.hedging = RequestHedging.create(options.hedgingPercentile(), options.hedgingBudgetPercent());
+
         introspectHttpSensorKeyProducer = new IntrospectHttpSensorKeyProducer(validatorId, introspectionURI);
         userInfoHttpSensorKeyProducer = userInfoURI != null ? new UserInfoHttpSensorKeyProducer(validatorId, userInfoURI) : null;
+        introspectedTokensSensorKeyProducer = new CacheSensorKeyProducer(validatorId, introspectionURI, "introspect", "introspected_tokens");
+        inactiveTokensSensorKeyProducer = new CacheSensorKeyProducer(validatorId, introspectionURI, "introspect", "inactive_tokens");
+        inFlightSensorKeyProducer = new CacheSensorKeyProducer(validatorId, introspectionURI, "introspect", "in_flight_validations");
+        staleTokensSensorKeyProducer = new CacheSensorKeyProducer(validatorId, introspectionURI, "introspect", "stale_introspected_tokens");
+
+        if (enableMetrics) {
+            addGauges();
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Configured OAuthIntrospectionValidator:"
@@ -162,11 +290,61 @@ public class OAuthIntrospectionValidator implements TokenValidator {
                     + "\n    customClaimCheck: " + customClaimCheck
                     + "\n    connectTimeoutSeconds: " + connectTimeoutSeconds
                     + "\n    readTimeoutSeconds: " + readTimeoutSeconds
+                    + "\n    options: " + options
                     + "\n    enableMetrics: " + enableMetrics
             );
         }
     }
 
+    private static <V> TokenCache<V> createTokenCache(int size, boolean enabled) {
+        return size > 0 && enabled ? new TokenCache<>(size) : null;
+    }
+
+    private CircuitBreaker createCircuitBreaker(int errorRate, int windowSize, int openSeconds, boolean serveStale) {
+        if (serveStale && (errorRate <= 0 || introspectedTokens == null)) {
+            throw new IllegalArgumentException("circuitBreakerServeStale requires both the circuit breaker and the introspection cache to be enabled");
+        }
+        return errorRate > 0 ? new CircuitBreaker(windowSize, errorRate, openSeconds * 1000L, this::onCircuitBreakerTransition) : null;
+    }
+
+    private void addGauges() {
+        addCacheGauges(introspectedTokensSensorKeyProducer, introspectedTokens);
+        addCacheGauges(inactiveTokensSensorKeyProducer, inactiveTokens);
+        if (userInfoResponses != null) {
+            SensorKey sizeKey = userInfoHttpSensorKeyProducer.cacheSizeKey();
+            metrics.addGauge(sizeKey, "size", "Number of entries in the cache", userInfoResponses::size);
+            metrics.addGauge(sizeKey, "evictions", "Number of entries evicted to make room for new entries", userInfoResponses::evictionCount);
+        }
+        if (circuitBreaker != null) {
+            metrics.addGauge(circuitBreakerSensorKeyProducer.stateKey(), "state", "State of the circuit breaker (0 - closed, 1 - open, 2 - half-open)",
+                () -> circuitBreaker.state().value());
+        }
+    }
+
+    private static void checkCacheConfig(int cacheSize, int cacheMaxTtlSeconds, int inactiveCacheTtlSeconds) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize can not be a negative number - (cacheSize=" + cacheSize + ")");
+        }
+        if (cacheSize > 0 && cacheMaxTtlSeconds <= 0) {
+            throw new IllegalArgumentException("cacheMaxTtlSeconds has to be a positive number - (cacheMaxTtlSeconds=" + cacheMaxTtlSeconds + ")");
+        }
+        if (inactiveCacheTtlSeconds < 0) {
+            throw new IllegalArgumentException("inactiveCacheTtlSeconds can not be a negative number - (inactiveCacheTtlSeconds=" + inactiveCacheTtlSeconds + ")");
+        }
+    }
+
+    private void checkUserInfoConfig(int userInfoCacheSize, int userInfoCacheTtlSeconds, boolean userInfoParallel) {
+        if (userInfoURI == null && (userInfoCacheSize > 0 || userInfoParallel)) {
+            throw new IllegalArgumentException("User info endpoint cache or parallel request configured, but userInfoUri not set");
+        }
+        if (userInfoCacheSize < 0) {
+            throw new IllegalArgumentException("userInfoCacheSize can not be a negative number - (userInfoCacheSize=" + userInfoCacheSize + ")");
+        }
+        if (userInfoCacheSize > 0 && userInfoCacheTtlSeconds <= 0) {
+            throw new IllegalArgumentException("userInfoCacheTtlSeconds has to be a positive number - (userInfoCacheTtlSeconds=" + userInfoCacheTtlSeconds + ")");
+        }
+    }
+
     private HostnameVerifier checkHostnameVerifier(HostnameVerifier verifier) {
         if (verifier != null && !"https".equals(introspectionURI.getScheme())) {
             throw new IllegalArgumentException("Certificate hostname verifier set but keysEndpointUri not 'https'");
@@ -209,7 +387,7 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         }
 
         try {
-            return new URI(introspectionEndpointUri);
+            return HttpEndpointGroup.register(introspectionEndpointUri);
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("Invalid introspection endpoint uri: " + introspectionEndpointUri, e);
         }
@@ -253,28 +431,133 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         return ",";
     }
 
-    @SuppressWarnings("checkstyle:NPathComplexity")
     public TokenInfo validate(String token) {
+        TokenInfo cached = lookupCachedResult(token);
+        if (cached != null) {
+            return cached;
+        }
 
-        long requestStartTime = System.currentTimeMillis();
+        // the concurrent validations of the same token wait for the introspection in progress, rather than each sending its own request
+        long lookupStartTime = System.currentTimeMillis();
+        return inFlightValidations.execute(IOUtil.sha256Hex(token),
+            () -> {
+                addCacheMetricTime(inFlightSensorKeyProducer, false, lookupStartTime);
+                return introspectAndCache(token);
+            },
+            () -> addCacheMetricTime(inFlightSensorKeyProducer, true, lookupStartTime));
+    }
 
-        String authorization = clientSecret != null ?
-                "Basic " + base64encode(clientId + ':' + clientSecret) :
-                null;
+    /**
+     * Introspect the token again, bypassing the introspection cache, and the cached results served while the circuit breaker is open.
+     * <p>
+     * This is used by the periodic re-introspection of the tokens of the active sessions, which has to see the current state of the token
+     * at the authorization server. The result replaces the cached one, so that once the token is found to be not active,
+     * the authentications with it fail, rather than being served from the cache. While the circuit breaker is open the re-introspection fails.
+     * </p>
+     *
+     * @param token The raw token
+     * @return The TokenInfo of the active token
+     * @throws TokenValidationException If the token is not active
+     * @throws ValidationException If the token could not be introspected
+     */
+    public TokenInfo reintrospect(String token) {
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            throw new ValidationException("Failed to introspect token - introspection endpoint unavailable (circuit breaker open)");
+        }
+        return cacheResult(token, introspect(token));
+    }
 
-        StringBuilder body = new StringBuilder("token=").append(token);
+    private TokenInfo introspectAndCache(String token) {
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            return lookupStaleResult(token);
+        }
+        return cacheResult(token, introspect(token));
+    }
 
-        JsonNode response;
-        try {
-            response = post(introspectionURI, socketFactory, hostnameVerifier, authorization,
-                    "application/x-www-form-urlencoded", body.toString(), JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds);
+    private TokenInfo cacheResult(String token, TokenInfo info) {
+        if (introspectedTokens != null) {
+            long freshUntil = Math.min(info.expiresAtMs(), System.currentTimeMillis() + cacheMaxTtlMillis);
+            // the raw token is not kept in the cache
+            // the entry is kept past its freshness until the token expires, if it may be served while the circuit breaker is open
+            introspectedTokens.put(token, new IntrospectedToken(copyWithToken(info, null), freshUntil), serveStale ? info.expiresAtMs() : freshUntil);
+        }
+        return info;
+    }
 
-            addIntrospectHttpMetricSuccessTime(requestStartTime);
+    /**
+     * Look the token up in the introspected tokens cache, regardless of the freshness of the entry, while the circuit breaker is open
+     *
+     * @param token The raw token
+     * @return The TokenInfo of the previously introspected token, which has not expired yet
+     * @throws ValidationException If stale results are not to be used, or the token is not in the cache
+     */
+    private TokenInfo lookupStaleResult(String token) {
+        if (serveStale) {
+            long lookupStartTime = System.currentTimeMillis();
+            IntrospectedToken cached = introspectedTokens.get(token);
+            addCacheMetricTime(staleTokensSensorKeyProducer, cached != null, lookupStartTime);
+            if (cached != null) {
+                return copyWithToken(cached.info, token);
+            }
+        }
+        throw new ValidationException("Failed to introspect token - introspection endpoint unavailable (circuit breaker open)");
+    }
 
-        } catch (IOException e) {
-            addIntrospectHttpMetricErrorTime(e, requestStartTime);
-            throw new ValidationException("Failed to introspect token - send, fetch or parse failed: ", e);
+    /**
+     * Look the token up in the introspected tokens cache and in the inactive tokens cache
+     *
+     * @param token The raw token
+     * @return The TokenInfo of the previously introspected token, or null if the token has to be introspected
+     * @throws TokenValidationException If the token has been reported as not active before
+     */
+    private TokenInfo lookupCachedResult(String token) {
+        if (introspectedTokens != null) {
+            long lookupStartTime = System.currentTimeMillis();
+            IntrospectedToken cached = introspectedTokens.get(token);
+            boolean fresh = cached != null && CurrentTime.currentTime() < cached.freshUntil;
+            addCacheMetricTime(introspectedTokensSensorKeyProducer, fresh, lookupStartTime);
+            if (fresh) {
+                return copyWithToken(cached.info, token);
+            }
+        }
+
+        if (inactiveTokens != null) {
+            long lookupStartTime = System.currentTimeMillis();
+            boolean inactive = inactiveTokens.get(token) != null;
+            addCacheMetricTime(inactiveTokensSensorKeyProducer, inactive, lookupStartTime);
+            if (inactive) {
+                throw tokenNotActive();
+            }
+        }
+        return null;
+    }
+
+    private static TokenNotActiveException tokenNotActive() {
+        return new TokenNotActiveException("Token validation failed: Token not active");
+    }
+
+    private static TokenInfo copyWithToken(TokenInfo info, String token) {
+        String scopes = info.scope().isEmpty() ? null : String.join(" ", info.scope());
+        return new TokenInfo(token, scopes, info.principal(), info.groups(), info.issuedAtMs(), info.expiresAtMs());
+    }
+
+    private TokenInfo introspect(String token) {
+        // the parallel request is sent without blocking a thread, so it does not need a thread pool of its own
+        Future<JsonNode> parallelUserInfo = userInfoParallel ? getUserInfoEndpointResponseAsync(token) : null;
+        try {
+            return introspect(token, parallelUserInfo);
+        } finally {
+            // the response is not needed if the principal was found in the introspection endpoint response, or the introspection failed
+            if (parallelUserInfo != null && parallelUserInfo.cancel(true)) {
+                addUserInfoParallelMetricTime(false, 0);
+            }
         }
+    }
+
+    @SuppressWarnings("checkstyle:NPathComplexity")
+    private TokenInfo introspect(String token, Future<JsonNode> parallelUserInfo) {
+
+        JsonNode response = sendIntrospectionRequest(token);
 
         JsonNode activeAttr = response.get("active");
         if (!(activeAttr instanceof BooleanNode)) {
@@ -282,7 +565,15 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         }
         boolean active = activeAttr.asBoolean();
         if (!active) {
-            throw new TokenValidationException("Token validation failed: Token not active");
+            if (introspectedTokens != null) {
+                // the token may have been active when last introspected
+                introspectedTokens.remove(token);
+            }
+            if (inactiveTokens != null) {
+                // only the outcome is remembered, every validation gets its own exception
+                inactiveTokens.put(token, Boolean.TRUE, System.currentTimeMillis() + inactiveCacheTtlMillis);
+            }
+            throw tokenNotActive();
         }
 
         JsonNode value;
@@ -304,7 +595,7 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         JsonNode fallbackResponse = null;
         if (principal == null) {
             if (userInfoURI != null) {
-                fallbackResponse = getUserInfoEndpointResponse(token);
+                fallbackResponse = getUserInfo(token, response, parallelUserInfo);
                 principal = getPrincipalFromUserInfoEndpoint(fallbackResponse);
             }
             if (principal == null && !principalExtractor.isConfigured()) {
@@ -330,6 +621,45 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         return new TokenInfo(token, scopes, principal, groups, iat, expiresMillis);
     }
 
+    private JsonNode sendIntrospectionRequest(String token) {
+        long requestStartTime = System.currentTimeMillis();
+
+        String authorization = clientSecret != null ?
+                "Basic " + base64encode(clientId + ':' + clientSecret) :
+                null;
+
+        StringBuilder body = new StringBuilder("token=").append(token);
+
+        boolean available = false;
+        try {
+            // the introspection only reads the state of the token, so the request may be repeated with another endpoint of the group
+            JsonNode response = HttpEndpointGroup.idempotent(() -> post(introspectionURI, socketFactory, hostnameVerifier, authorization,
+                    "application/x-www-form-urlencoded", body.toString(), JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds, hedging));
+
+            addIntrospectHttpMetricSuccessTime(requestStartTime);
+            available = true;
+            return response;
+
+        } catch (IOException e) {
+            addIntrospectHttpMetricErrorTime(e, requestStartTime);
+            throw new ValidationException("Failed to introspect token - send, fetch or parse failed: ", e);
+
+        } catch (HttpException e) {
+            // the server errors and the throttling mean the authorization server is degraded, while the other error responses show it is available
+            available = e.getStatus() < 500 && e.getStatus() != 429;
+            throw e;
+
+        } finally {
+            if (circuitBreaker != null) {
+                if (available) {
+                    circuitBreaker.recordSuccess();
+                } else {
+                    circuitBreaker.recordFailure();
+                }
+            }
+        }
+    }
+
     private Set<String> extractGroupsFromResponse(JsonNode userInfoJson) {
         JsonNode result = groupsMatcher.apply(userInfoJson);
         if (result == null) {
@@ -341,6 +671,50 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         return groups.stream().map(String::trim).filter(v -> !v.isEmpty()).collect(Collectors.toSet());
     }
 
+    /**
+     * Get the user info endpoint response from the cache, or from the parallel request if there is one, or by sending the request
+     *
+     * @param token The raw token
+     * @param introspectResponse The introspection endpoint response
+     * @param parallelUserInfo The user info endpoint request sent in parallel with the introspection request, or null
+     * @return The user info endpoint response
+     */
+    private JsonNode getUserInfo(String token, JsonNode introspectResponse, Future<JsonNode> parallelUserInfo) {
+        String sub = userInfoResponses != null ? principalExtractor.getSub(introspectResponse) : null;
+        if (sub != null) {
+            long lookupStartTime = System.currentTimeMillis();
+            JsonNode cached = userInfoResponses.get(sub);
+            addUserInfoCacheMetricTime(cached != null, lookupStartTime);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        JsonNode userInfo = parallelUserInfo != null ? awaitUserInfo(parallelUserInfo) : getUserInfoEndpointResponse(token);
+        if (sub != null) {
+            userInfoResponses.put(sub, userInfo, System.currentTimeMillis() + userInfoCacheTtlMillis);
+        }
+        return userInfo;
+    }
+
+    private JsonNode awaitUserInfo(Future<JsonNode> parallelUserInfo) {
+        long waitStartTime = System.currentTimeMillis();
+        try {
+            return parallelUserInfo.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ValidationException("Request to User Info Endpoint failed: ", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValidationException("Interrupted while waiting for User Info Endpoint response", e);
+        } finally {
+            addUserInfoParallelMetricTime(true, System.currentTimeMillis() - waitStartTime);
+        }
+    }
+
     private JsonNode getUserInfoEndpointResponse(String token) {
         String authorization = "Bearer " + token;
         JsonNode response;
@@ -359,6 +733,23 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         return response;
     }
 
+    private CompletableFuture<JsonNode> getUserInfoEndpointResponseAsync(String token) {
+        long requestStartTime = System.currentTimeMillis();
+        return getAsync(userInfoURI, socketFactory, hostnameVerifier, "Bearer " + token, JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds)
+                .handle((response, error) -> {
+                    if (error == null) {
+                        addUserInfoHttpMetricSuccessTime(requestStartTime);
+                        return response;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof IOException) {
+                        addUserInfoHttpMetricErrorTime(cause, requestStartTime);
+                        throw new ValidationException("Request to User Info Endpoint failed: ", cause);
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
     private String getPrincipalFromUserInfoEndpoint(JsonNode userInfoJson) {
         // apply principalExtractor
         String principal = principalExtractor.getPrincipal(userInfoJson);
@@ -421,6 +812,56 @@ public class OAuthIntrospectionValidator implements TokenValidator {
         }
     }
 
+    /**
+     * The cached result of the successful introspection, together with the time until which it can be used without the introspection
+     */
+    private static class IntrospectedToken {
+        private final TokenInfo info;
+        private final long freshUntil;
+
+        IntrospectedToken(TokenInfo info, long freshUntil) {
+            this.info = info;
+            this.freshUntil = freshUntil;
+        }
+    }
+
+    private void addCacheMetricTime(CacheSensorKeyProducer producer, boolean hit, long startTimeMs) {
+        if (enableMetrics) {
+            metrics.addTime(hit ? producer.hitKey() : producer.missKey(), System.currentTimeMillis() - startTimeMs);
+        }
+    }
+
+    private void addCacheGauges(CacheSensorKeyProducer producer, TokenCache<?> cache) {
+        if (cache != null) {
+            SensorKey sizeKey = producer.sizeKey();
+            metrics.addGauge(sizeKey, "size", "Number of entries in the cache", cache::size);
+            metrics.addGauge(sizeKey, "evictions", "Number of entries evicted to make room for new entries", cache::evictionCount);
+        }
+    }
+
+    private void onCircuitBreakerTransition(CircuitBreaker.State state) {
+        if (state == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit breaker for introspection endpoint {} is now open", introspectionURI);
+        } else {
+            log.info("Circuit breaker for introspection endpoint {} is now {}", introspectionURI, state.metricName());
+        }
+        if (enableMetrics) {
+            metrics.addTime(circuitBreakerSensorKeyProducer.transitionKey(state.metricName()), 0);
+        }
+    }
+
+    private void addUserInfoCacheMetricTime(boolean hit, long startTimeMs) {
+        if (enableMetrics) {
+            metrics.addTime(userInfoHttpSensorKeyProducer.cacheKey(hit), System.currentTimeMillis() - startTimeMs);
+        }
+    }
+
+    private void addUserInfoParallelMetricTime(boolean used, long waitTimeMs) {
+        if (enableMetrics) {
+            metrics.addTime(userInfoHttpSensorKeyProducer.parallelKey(used), waitTimeMs);
+        }
+    }
+
     private void addUserInfoHttpMetricSuccessTime(long startTime) {
         if (enableMetrics) {
             metrics.addTime(userInfoHttpSensorKeyProducer.successKey(), System.currentTimeMillis() - startTime);
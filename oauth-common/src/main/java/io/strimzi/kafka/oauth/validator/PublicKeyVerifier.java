@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.impl.AlgorithmSupportMessage;
+import com.nimbusds.jose.crypto.impl.CriticalHeaderParamsDeferral;
+import com.nimbusds.jose.crypto.impl.ECDSA;
+import com.nimbusds.jose.crypto.impl.RSASSA;
+import com.nimbusds.jose.crypto.impl.RSASSAProvider;
+import com.nimbusds.jose.crypto.utils.ECChecks;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JWS signature verifier bound to a single public key from the JWKS endpoint response.
+ * <p>
+ * It is created once per signing key when the keys are fetched, and reused for all the tokens signed with that key.
+ * Every thread keeps its own {@link Signature} instance per supported algorithm, already initialised for verification with the public key,
+ * so that the verification itself does not involve any JCA provider lookups.
+ * </p>
+ * <p>
+ * The checks performed are the same as those of the Nimbus JOSE <em>RSASSAVerifier</em> and <em>ECDSAVerifier</em>.
+ * </p>
+ */
+class PublicKeyVerifier implements JWSVerifier {
+
+    private final PublicKey publicKey;
+
+    private final Map<JWSAlgorithm, ThreadLocal<Signature>> signatures;
+
+    private final CriticalHeaderParamsDeferral critPolicy = new CriticalHeaderParamsDeferral();
+
+    private final JCAContext jcaContext = new JCAContext();
+
+    private final boolean isEC;
+
+    /**
+     * Create a new instance
+     *
+     * @param publicKey The RSA or EC public key
+     * @throws JOSEException If the key is not supported
+     */
+    PublicKeyVerifier(PublicKey publicKey) throws JOSEException {
+        this.publicKey = publicKey;
+
+        Map<JWSAlgorithm, ThreadLocal<Signature>> map = new HashMap<>();
+        if (publicKey instanceof RSAPublicKey) {
+            isEC = false;
+            for (JWSAlgorithm alg : RSASSAProvider.SUPPORTED_ALGORITHMS) {
+                map.put(alg, ThreadLocal.withInitial(() -> createSignature(alg)));
+            }
+        } else if (publicKey instanceof ECPublicKey) {
+            isEC = true;
+            ECPublicKey ecKey = (ECPublicKey) publicKey;
+            if (!ECChecks.isPointOnCurve(ecKey, ecKey.getParams())) {
+                throw new JOSEException("Curve / public key parameters mismatch");
+            }
+            // only one algorithm is valid for the curve of the key
+            JWSAlgorithm alg = ECDSA.resolveAlgorithm(ecKey);
+            map.put(alg, ThreadLocal.withInitial(() -> createSignature(alg)));
+        } else {
+            throw new JOSEException("Unsupported public key type: " + publicKey.getClass());
+        }
+        signatures = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Check if the verifier can be created for the JWK
+     *
+     * @param jwk The JWK from the JWKS endpoint response
+     * @return True if the JWK is an RSA or EC key
+     */
+    static boolean isSupported(JWK jwk) {
+        return jwk instanceof ECKey || jwk instanceof RSAKey;
+    }
+
+    /**
+     * Get the verifier for the JWK, reusing the existing verifier, together with its already initialised Signature objects,
+     * if it was created for the same public key
+     *
+     * @param jwk The RSA or EC JWK
+     * @param existing The existing verifier for the same key id, or null
+     * @return The verifier
+     * @throws JOSEException If conversion of the key fails
+     */
+    static PublicKeyVerifier forJwk(JWK jwk, PublicKeyVerifier existing) throws JOSEException {
+        PublicKey publicKey = jwk instanceof ECKey ? ((ECKey) jwk).toPublicKey() : ((RSAKey) jwk).toPublicKey();
+        if (existing != null && existing.getPublicKey().equals(publicKey)) {
+            return existing;
+        }
+        return new PublicKeyVerifier(publicKey);
+    }
+
+    /**
+     * Get the public key of this verifier
+     *
+     * @return The public key
+     */
+    PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    @Override
+    public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+        JWSAlgorithm alg = header.getAlgorithm();
+        ThreadLocal<Signature> threadSignature = signatures.get(alg);
+        if (threadSignature == null) {
+            throw new JOSEException(AlgorithmSupportMessage.unsupportedJWSAlgorithm(alg, supportedJWSAlgorithms()));
+        }
+
+        if (!critPolicy.headerPasses(header)) {
+            return false;
+        }
+
+        byte[] signatureBytes = signature.decode();
+        if (isEC) {
+            if (ECDSA.getSignatureByteArrayLength(alg) != signatureBytes.length) {
+                return false;
+            }
+            try {
+                signatureBytes = ECDSA.transcodeSignatureToDER(signatureBytes);
+            } catch (JOSEException e) {
+                return false;
+            }
+        }
+
+        Signature verifier;
+        try {
+            verifier = threadSignature.get();
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof JOSEException) {
+                throw (JOSEException) e.getCause();
+            }
+            throw e;
+        }
+
+        try {
+            // verify() resets the Signature object to the state after initVerify(), ready to be used again
+            verifier.update(signingInput);
+            return verifier.verify(signatureBytes);
+        } catch (SignatureException e) {
+            // the state of the Signature object is unknown after a failure, so don't reuse it
+            threadSignature.remove();
+            return false;
+        }
+    }
+
+    private Signature createSignature(JWSAlgorithm alg) {
+        try {
+            Signature signature = isEC ? ECDSA.getSignerAndVerifier(alg, null) : RSASSA.getSignerAndVerifier(alg, null);
+            signature.initVerify(publicKey);
+            return signature;
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException(new JOSEException("Invalid public key: " + e.getMessage(), e));
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+        return signatures.keySet();
+    }
+
+    @Override
+    public JCAContext getJCAContext() {
+        return jcaContext;
+    }
+}
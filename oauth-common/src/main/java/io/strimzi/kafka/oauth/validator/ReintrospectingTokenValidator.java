@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
+import io.strimzi.kafka.oauth.common.HttpConcurrencyLimiter;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.metrics.BackgroundIntrospectionSensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.SessionFuture;
+import io.strimzi.kafka.oauth.services.Services;
+import io.strimzi.kafka.oauth.services.Sessions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.strimzi.kafka.oauth.common.LogUtil.mask;
+
+/**
+ * A validator that periodically introspects the tokens of the active sessions it has authenticated.
+ * <p>
+ * The token is otherwise only introspected at authentication, and the revocation at the authorization server is only detected when the client
+ * re-authenticates (see <em>connections.max.reauth.ms</em>). This validator tracks the tokens it has successfully validated, and every period
+ * goes over the active sessions in {@link Sessions}, introspecting every distinct tracked token once, on a pool of a fixed number of threads.
+ * If the token turns out to be inactive, the sessions using it are invalidated, so that they are denied by the authorizers as if the token expired,
+ * and any further authentication with the same token fails.
+ * </p>
+ * <p>
+ * The period is randomly extended or shortened by up to a tenth, so that the brokers started at the same time
+ * do not send their introspection requests at the same time.
+ * </p>
+ * <p>
+ * The re-introspection always sends the request to the authorization server (see {@link OAuthIntrospectionValidator#reintrospect(String)}).
+ * It is not served from the introspection cache, nor from the cached results used while the circuit breaker is open.
+ * While the circuit breaker is open, the re-introspection fails and the tokens are introspected again in the next period.
+ * </p>
+ */
+public class ReintrospectingTokenValidator implements TokenValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(ReintrospectingTokenValidator.class);
+
+    private final TokenValidator delegate;
+    private final OAuthIntrospectionValidator introspectionValidator;
+    private final long periodMillis;
+
+    /**
+     * The tokens authenticated by this validator, until they expire - false if the token was found to be inactive, true otherwise
+     */
+    private final TokenCache<Boolean> trackedTokens;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workerPool;
+
+    private final boolean enableMetrics;
+    private final OAuthMetrics metrics;
+    private final BackgroundIntrospectionSensorKeyProducer sensorKeyProducer;
+
+    /**
+     * Create a new instance.
+     *
+     * @param delegate The validator performing the validation at authentication
+     * @param introspectionValidator The validator performing the periodic introspection of the tokens, bypassing its cache
+     * @param introspectionEndpointUri The introspection endpoint uri, used for metrics
+     * @param periodSeconds The time between the introspections of the same token (in seconds)
+     * @param threads The number of threads performing the introspections
+     * @param maxTokens The maximum number of tokens to track
+     * @param enableMetrics The switch that enables metrics collection
+     */
+    public ReintrospectingTokenValidator(TokenValidator delegate,
+                                         OAuthIntrospectionValidator introspectionValidator,
+                                         URI introspectionEndpointUri,
+                                         int periodSeconds,
+                                         int threads,
+                                         int maxTokens,
+                                         boolean enableMetrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate == null");
+        }
+        this.delegate = delegate;
+
+        if (introspectionValidator == null) {
+            throw new IllegalArgumentException("introspectionValidator == null");
+        }
+        this.introspectionValidator = introspectionValidator;
+
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("periodSeconds has to be a positive number - (periodSeconds=" + periodSeconds + ")");
+        }
+        this.periodMillis = periodSeconds * 1000L;
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads has to be a positive number - (threads=" + threads + ")");
+        }
+        trackedTokens = new TokenCache<>(maxTokens);
+
+        this.enableMetrics = enableMetrics;
+        metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
+        sensorKeyProducer = new BackgroundIntrospectionSensorKeyProducer(introspectionValidator.getValidatorId(), introspectionEndpointUri, "introspect", "reintrospections");
+
+        workerPool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        scheduleNextRun();
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured ReintrospectingTokenValidator:"
+                    + "\n    validatorId: " + delegate.getValidatorId()
+                    + "\n    periodSeconds: " + periodSeconds
+                    + "\n    threads: " + threads
+                    + "\n    maxTokens: " + maxTokens
+                    + "\n    enableMetrics: " + enableMetrics);
+        }
+    }
+
+    @Override
+    public TokenInfo validate(String token) {
+        if (Boolean.FALSE.equals(trackedTokens.get(token))) {
+            throw new TokenValidationException("Token validation failed: Token not active");
+        }
+
+        TokenInfo info = delegate.validate(token);
+        trackedTokens.put(token, Boolean.TRUE, info.expiresAtMs());
+        return info;
+    }
+
+    private void scheduleNextRun() {
+        long jitter = ThreadLocalRandom.current().nextLong(-periodMillis / 10, periodMillis / 10 + 1);
+        scheduler.schedule(this::run, periodMillis + jitter, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Introspect every distinct tracked token of the active sessions, and wait for all the introspections to complete
+     */
+    void run() {
+        try {
+            log.debug("Re-introspecting the tokens of active sessions ...");
+
+            // multiple sessions can be authenticated with the same token, but the token only has to be introspected once
+            Set<String> tokens = new HashSet<>();
+            Sessions sessions = Services.getInstance().getSessions();
+            List<SessionFuture<?>> scheduled = sessions.executeTask(workerPool,
+                token -> Boolean.TRUE.equals(trackedTokens.get(token.value())) && tokens.add(token.value()),
+                this::reintrospect);
+
+            for (SessionFuture<?> f : scheduled) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    log.warn("[IGNORED] Failed to re-introspect the token of session: " + f.getToken().getSessionId() + ", token: " + mask(f.getToken().value()), e.getCause());
+                }
+            }
+            log.debug("Done re-introspecting the tokens of {} active sessions", scheduled.size());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Throwable t) {
+            // Log, but don't rethrow the exception to make sure the next run is scheduled
+            log.error("Failed to re-introspect the tokens of active sessions: ", t);
+        }
+        scheduleNextRun();
+    }
+
+    private void reintrospect(BearerTokenWithPayload session) {
+        String token = session.value();
+        long startTime = System.currentTimeMillis();
+        try {
+            HttpConcurrencyLimiter.background(() -> introspectionValidator.reintrospect(token));
+            addMetricTime(sensorKeyProducer.activeKey(), System.currentTimeMillis() - startTime);
+
+        } catch (TokenValidationException e) {
+            trackedTokens.put(token, Boolean.FALSE, session.lifetimeMs());
+            int invalidated = Services.getInstance().getSessions().invalidate(token, session.lifetimeMs());
+            addMetricTime(sensorKeyProducer.inactiveKey(), System.currentTimeMillis() - startTime);
+            log.debug("Re-introspection found the token inactive ({}) - invalidated {} session(s) for token: {}", e.getMessage(), invalidated, mask(token));
+
+        } catch (RuntimeException e) {
+            // the token stays tracked, and is introspected again in the next period
+            addMetricTime(sensorKeyProducer.errorKey(), System.currentTimeMillis() - startTime);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getValidatorId() {
+        return delegate.getValidatorId();
+    }
+
+    private void addMetricTime(SensorKey key, long timeMs) {
+        if (enableMetrics) {
+            metrics.addTime(key, timeMs);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import java.util.Locale;
+
+import static io.strimzi.kafka.oauth.validator.TokenValidationException.Status;
+
+/**
+ * The outcome of the failed token validation, kept in the rejected tokens cache in place of the exception.
+ * <p>
+ * A new exception is created every time the token is rejected from cache, so that the exceptions, with their stack traces and causes,
+ * are never shared between the validations.
+ * </p>
+ */
+class RejectedToken {
+
+    private final Class<? extends TokenValidationException> type;
+    private final String message;
+    private final String status;
+
+    private RejectedToken(Class<? extends TokenValidationException> type, String message, String status) {
+        this.type = type;
+        this.message = message;
+        this.status = status;
+    }
+
+    /**
+     * Create a new instance with the outcome of the validation that failed with the exception
+     *
+     * @param e The exception
+     * @return The rejection
+     */
+    static RejectedToken of(TokenValidationException e) {
+        return new RejectedToken(e.getClass(), e.getMessage(), e.status());
+    }
+
+    /**
+     * Create a new exception for the rejected token
+     *
+     * @return The exception of the same type, with the same message and status as the original one
+     */
+    TokenValidationException toException() {
+        TokenValidationException e;
+        if (type == TokenExpiredException.class) {
+            e = new TokenExpiredException(message);
+        } else if (type == TokenSignatureException.class) {
+            e = new TokenSignatureException(message);
+        } else {
+            e = new TokenValidationException(message);
+        }
+        return e.status(Status.valueOf(status.toUpperCase(Locale.ENGLISH)));
+    }
+}
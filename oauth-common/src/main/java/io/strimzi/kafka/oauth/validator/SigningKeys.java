@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the signing keys used by {@link JWTSignatureValidator}.
+ * <p>
+ * The keys refresh publishes a new instance whenever the keys are refreshed, and the validation takes a consistent view
+ * of the current keys, the previous generation of keys, and the time of the last successful refresh with a single read.
+ * </p>
+ * <p>
+ * The version is incremented every time the set of keys changes, and stays the same when the keys are refreshed without a change.
+ * </p>
+ */
+class SigningKeys {
+
+    static final SigningKeys EMPTY = new SigningKeys(Collections.emptyMap(), Collections.emptyMap(), 0, 0);
+
+    private final Map<String, PublicKeyVerifier> keys;
+    private final Map<String, PublicKeyVerifier> oldKeys;
+    private final long fetchTime;
+    private final long version;
+
+    private SigningKeys(Map<String, PublicKeyVerifier> keys, Map<String, PublicKeyVerifier> oldKeys, long fetchTime, long version) {
+        this.keys = keys;
+        this.oldKeys = oldKeys;
+        this.fetchTime = fetchTime;
+        this.version = version;
+    }
+
+    /**
+     * Create the next generation of keys
+     *
+     * @param newKeys The new keys
+     * @param fetchTime The time of the refresh (in millis)
+     * @return The new snapshot with the current keys as the previous generation
+     */
+    SigningKeys withKeys(Map<String, PublicKeyVerifier> newKeys, long fetchTime) {
+        return new SigningKeys(Collections.unmodifiableMap(new HashMap<>(newKeys)), keys, fetchTime, version + 1);
+    }
+
+    /**
+     * Record the refresh that did not change the keys
+     *
+     * @param fetchTime The time of the refresh (in millis)
+     * @return The new snapshot with the same keys and version
+     */
+    SigningKeys withFetchTime(long fetchTime) {
+        return new SigningKeys(keys, oldKeys, fetchTime, version);
+    }
+
+    /**
+     * @return The current keys by key id
+     */
+    Map<String, PublicKeyVerifier> keys() {
+        return keys;
+    }
+
+    /**
+     * @return The keys as they were before the last change
+     */
+    Map<String, PublicKeyVerifier> oldKeys() {
+        return oldKeys;
+    }
+
+    /**
+     * @return The time of the last successful refresh (in millis)
+     */
+    long fetchTime() {
+        return fetchTime;
+    }
+
+    /**
+     * @return The version of the keys
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Check if the keys can still be trusted
+     *
+     * @param maxStaleMillis The maximum time after the last successful refresh for the keys to be trusted
+     * @param now The current time (in millis)
+     * @return True if the keys are no longer trusted
+     */
+    boolean isStale(long maxStaleMillis, long now) {
+        return fetchTime + maxStaleMillis <= now;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.services.ServiceException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent calls for the same key into a single call.
+ * <p>
+ * The first thread to ask for the key performs the call, while the threads asking for the same key in the meantime
+ * wait for it to complete, and receive the same result, or the same exception.
+ * Once the call completes, the next thread asking for the key performs a new call.
+ * </p>
+ *
+ * @param <V> The type of the result
+ */
+class SingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Perform the call, or wait for the call for the same key already in progress
+     *
+     * @param key The key identifying the call. It should not be the raw token, but its digest.
+     * @param call The call to perform if no call for the same key is in progress
+     * @param onShared Invoked, before waiting, if the result of the call in progress is used
+     * @return The result of the call
+     */
+    V execute(String key, Supplier<V> call, Runnable onShared) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            onShared.run();
+            return await(existing);
+        }
+
+        try {
+            V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Get the number of calls currently in progress
+     *
+     * @return The number of calls
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServiceException("Shared call failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for the shared call", e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.IOUtil;
+import io.strimzi.kafka.oauth.services.CurrentTime;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * A bounded concurrent cache of per-token results.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the raw token, so the tokens themselves are not used as keys.
+ * Every entry carries its own expiry time, after which it is no longer returned, and is removed during the next cleanup.
+ * </p>
+ * <p>
+ * When the cache is full, the expired entries are removed first. If that does not free up enough space,
+ * about a tenth of the remaining entries are evicted so that the cleanup cost is amortized over many subsequent inserts.
+ * </p>
+ *
+ * @param <V> The type of the cached value
+ */
+public class TokenCache<V> {
+
+    private final int maxSize;
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new instance
+     *
+     * @param maxSize The maximum number of entries to keep
+     */
+    public TokenCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize has to be a positive number - (maxSize=" + maxSize + ")");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cached value for the token
+     *
+     * @param token The raw token
+     * @return The cached value or null if there is no entry for the token, or the entry has expired
+     */
+    public V get(String token) {
+        String key = IOUtil.sha256Hex(token);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= CurrentTime.currentTime()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Store the value for the token
+     *
+     * @param token The raw token
+     * @param value The value to cache
+     * @param expiresAtMs The time in millis after which the entry is no longer valid
+     */
+    public void put(String token, V value, long expiresAtMs) {
+        if (expiresAtMs <= CurrentTime.currentTime()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            makeRoom();
+        }
+        entries.put(IOUtil.sha256Hex(token), new Entry<>(value, expiresAtMs));
+    }
+
+    /**
+     * Remove the entry for the token
+     *
+     * @param token The raw token
+     */
+    public void remove(String token) {
+        entries.remove(IOUtil.sha256Hex(token));
+    }
+
+    /**
+     * Remove all the entries for which the predicate evaluates to true
+     *
+     * @param filter The predicate evaluated against the cached values
+     */
+    public void removeIf(Predicate<V> filter) {
+        entries.values().removeIf(entry -> filter.test(entry.value));
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the current number of entries, which may include the expired entries not yet cleaned up
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of entries evicted to make room for new entries since this cache was created
+     *
+     * @return The eviction count
+     */
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private void makeRoom() {
+        long now = CurrentTime.currentTime();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (excess > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+            excess--;
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+/**
+ * Thrown when the introspection endpoint reports the token as not active (<code>"active": false</code>), for example because it has been revoked
+ */
+public class TokenNotActiveException extends TokenValidationException {
+
+    public TokenNotActiveException(String message) {
+        super(message);
+    }
+
+    public TokenNotActiveException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
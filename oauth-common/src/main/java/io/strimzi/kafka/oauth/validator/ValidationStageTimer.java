@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.metrics.ValidationStageSensorKeyProducer;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tracks the time spent in the individual stages of the token validation.
+ * <p>
+ * The stages typically take less than a millisecond, so they are timed with the nanosecond precision,
+ * and recorded as the fractional milliseconds. If metrics are disabled no time is taken.
+ * </p>
+ */
+class ValidationStageTimer {
+
+    /**
+     * The validation stages
+     */
+    enum Stage {
+        HEADER("header"),
+        CLAIMS("claims"),
+        SIGNATURE("signature"),
+        CUSTOM_CLAIMS("custom_claims");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+    }
+
+    private final OAuthMetrics metrics;
+    private final Map<Stage, SensorKey> sensorKeys = new EnumMap<>(Stage.class);
+
+    /**
+     * Create a new instance
+     *
+     * @param contextId The context id of the validator
+     * @param uri The endpoint uri of the validator
+     * @param kind The kind of the validator (e.g. 'jwks')
+     * @param metrics The metrics to record the times to, or null if metrics are disabled
+     */
+    ValidationStageTimer(String contextId, URI uri, String kind, OAuthMetrics metrics) {
+        this.metrics = metrics;
+
+        // the keys are created upfront, not to allocate them for every validation
+        ValidationStageSensorKeyProducer producer = new ValidationStageSensorKeyProducer(contextId, uri, kind);
+        for (Stage stage : Stage.values()) {
+            sensorKeys.put(stage, producer.stageKey(stage.name));
+        }
+    }
+
+    /**
+     * @return The start time of the first stage
+     */
+    long start() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time spent in the stage
+     *
+     * @param stage The completed stage
+     * @param startTimeNanos The start time of the stage
+     * @return The start time of the next stage
+     */
+    long stageCompleted(Stage stage, long startTimeNanos) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.addTime(sensorKeys.get(stage), (now - startTimeNanos) / 1_000_000.0);
+        return now;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.jsonpath.JsonPathFilterQuery;
+import io.strimzi.kafka.oauth.metrics.SensorKey;
+import io.strimzi.kafka.oauth.metrics.SensorKeyProducer;
+import io.strimzi.kafka.oauth.metrics.WarmupSensorKeyProducer;
+import io.strimzi.kafka.oauth.services.OAuthMetrics;
+import io.strimzi.kafka.oauth.services.Services;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The warm-up of the JWT token validation at startup, using the synthetic tokens.
+ * <p>
+ * The tokens are signed with throwaway keys generated for this purpose only, which are never trusted by the validator,
+ * and carry the claims checked by the validator, so that the same code paths are taken as for the actual tokens.
+ * </p>
+ */
+class ValidationWarmup {
+
+    /**
+     * The validation steps to run for every synthetic token
+     */
+    interface Validation {
+
+        /**
+         * Validate the synthetic token
+         *
+         * @param token The synthetic token
+         * @param verifier The verifier for the throwaway key the token is signed with
+         * @return The token payload
+         * @throws Exception If the validation fails
+         */
+        JsonNode validate(String token, PublicKeyVerifier verifier) throws Exception;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ValidationWarmup.class);
+
+    private final String issuer;
+    private final String audience;
+    private final JsonPathFilterQuery customClaimMatcher;
+
+    private final OAuthMetrics metrics;
+    private final SensorKeyProducer sensorKeyProducer;
+
+    /**
+     * Create a new instance
+     *
+     * @param validatorId The id of the validator, used for metrics
+     * @param keysUri The JWKS endpoint uri of the validator, used for metrics
+     * @param issuer The 'iss' claim of the synthetic tokens, or null
+     * @param audience The 'aud' claim of the synthetic tokens, or null
+     * @param customClaimMatcher The custom claim check to run on the payloads of the synthetic tokens, or null
+     * @param enableMetrics The switch that enables metrics collection
+     */
+    ValidationWarmup(String validatorId, URI keysUri, String issuer, String audience, JsonPathFilterQuery customClaimMatcher, boolean enableMetrics) {
+        this.issuer = issuer != null ? issuer : "warmup";
+        this.audience = audience;
+        this.customClaimMatcher = customClaimMatcher;
+        this.metrics = enableMetrics ? Services.getInstance().getMetrics() : null;
+        this.sensorKeyProducer = new WarmupSensorKeyProducer(validatorId, keysUri, "jwks");
+    }
+
+    /**
+     * Run the warm-up. The failed warm-up is logged, but otherwise ignored.
+     *
+     * @param tokens The number of tokens per key type
+     * @param signingKeys The current signing keys. If empty, all the supported key types are used.
+     * @param validation The validation steps
+     */
+    void run(int tokens, Collection<PublicKeyVerifier> signingKeys, Validation validation) {
+        long startTime = System.currentTimeMillis();
+        try {
+            List<JsonNode> samples = validateTokens(tokens, signingKeys, validation);
+            if (customClaimMatcher != null) {
+                customClaimMatcher.warmUp(samples, tokens);
+            }
+            addMetricTime(sensorKeyProducer.successKey(), startTime);
+            log.info("Validation warm-up with {} synthetic tokens completed in {} ms", tokens, System.currentTimeMillis() - startTime);
+
+        } catch (Exception e) {
+            addMetricTime(sensorKeyProducer.errorKey(e), startTime);
+            log.warn("[IGNORED] Validation warm-up failed: ", e);
+        }
+    }
+
+    /**
+     * Validate the synthetic tokens signed with the throwaway keys of the same types as the signing keys
+     *
+     * @param tokens The number of tokens per key type
+     * @param signingKeys The current signing keys. If empty, all the supported key types are used.
+     * @param validation The validation steps
+     * @return The payload of the first token of every key type, to be used as a sample
+     * @throws Exception If key generation, signing, or the validation fails
+     */
+    private List<JsonNode> validateTokens(int tokens, Collection<PublicKeyVerifier> signingKeys, Validation validation) throws Exception {
+        boolean rsa = signingKeys.isEmpty();
+        boolean ec = signingKeys.isEmpty();
+        for (PublicKeyVerifier verifier : signingKeys) {
+            if (verifier.getPublicKey() instanceof ECPublicKey) {
+                ec = true;
+            } else {
+                rsa = true;
+            }
+        }
+
+        List<JsonNode> samples = new ArrayList<>(2);
+        if (rsa) {
+            RSAKey key = new RSAKeyGenerator(2048).keyID("warmup-rsa").generate();
+            samples.add(run(tokens, JWSAlgorithm.RS256, key.getKeyID(), new RSASSASigner(key), new PublicKeyVerifier(key.toPublicKey()), validation));
+        }
+        if (ec) {
+            ECKey key = new ECKeyGenerator(Curve.P_256).keyID("warmup-ec").generate();
+            samples.add(run(tokens, JWSAlgorithm.ES256, key.getKeyID(), new ECDSASigner(key), new PublicKeyVerifier(key.toPublicKey()), validation));
+        }
+        return samples;
+    }
+
+    private JsonNode run(int tokens, JWSAlgorithm alg, String kid, JWSSigner signer, PublicKeyVerifier verifier, Validation validation) throws Exception {
+        JsonNode sample = null;
+        for (int i = 0; i < tokens; i++) {
+            JsonNode payload = validation.validate(createToken(alg, kid, signer, i), verifier);
+            if (sample == null) {
+                sample = payload;
+            }
+        }
+        return sample;
+    }
+
+    private void addMetricTime(SensorKey key, long startTimeMs) {
+        if (metrics != null) {
+            metrics.addTime(key, System.currentTimeMillis() - startTimeMs);
+        }
+    }
+
+    private String createToken(JWSAlgorithm alg, String kid, JWSSigner signer, int i) throws JOSEException {
+        long now = System.currentTimeMillis();
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .subject("warmup-" + i)
+                .issuer(issuer)
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + 60_000))
+                .claim(TokenInfo.TYP, "Bearer");
+        if (audience != null) {
+            claims.audience(audience);
+        }
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(alg).keyID(kid).build(), claims.build());
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Collects the response body received by the {@link HttpClientTransport} into the {@link ResponseBodyBuffer},
+ * failing as soon as the body is known to exceed the maximum size.
+ */
+class HttpClientBodySubscriber implements HttpResponse.BodySubscriber<ResponseBodyBuffer> {
+
+    private final CompletableFuture<ResponseBodyBuffer> result = new CompletableFuture<>();
+    private ResponseBodyBuffer buffer;
+    private Flow.Subscription subscription;
+
+    HttpClientBodySubscriber(long expectedSize, int maxSize) {
+        try {
+            buffer = new ResponseBodyBuffer(expectedSize, maxSize);
+        } catch (ResponseBodyBuffer.ResponseTooLargeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<ResponseBodyBuffer> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (result.isDone()) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer item : items) {
+                if (item.hasArray()) {
+                    buffer.append(item.array(), item.arrayOffset() + item.position(), item.remaining());
+                } else {
+                    byte[] bytes = new byte[item.remaining()];
+                    item.get(bytes);
+                    buffer.append(bytes, 0, bytes.length);
+                }
+            }
+        } catch (ResponseBodyBuffer.ResponseTooLargeException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(buffer.size() > 0 ? buffer : null);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Holds the requests to an endpoint without a recent connection, until the first of them completes.
+ * <p>
+ * <code>java.net.http.HttpClient</code> opens a new connection for every request started before the first connection to the endpoint
+ * is established, so a burst of concurrent requests would not be multiplexed over HTTP/2. Once the first request completes,
+ * its connection is in the pool of the client, and the held requests are sent over it.
+ * A request is held for at most the given time though, after which it is sent anyway, so that a slow first request does not
+ * hold up the others.
+ * </p>
+ */
+class HttpClientConnectionGate {
+
+    /**
+     * The time after the last response from an endpoint, after which its connection may have been closed
+     */
+    static final long IDLE_MS = 30_000;
+
+    private CompletableFuture<?> first = CompletableFuture.completedFuture(null);
+    private long lastResponseMs;
+
+    /**
+     * Send the request now, or once the request opening the connection completes, but no later than after <code>maxHoldMs</code>
+     *
+     * @param request Sends the request
+     * @param maxHoldMs The maximum time in millis to hold the request
+     * @param <T> The type of the response
+     * @return The response future
+     */
+    <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request, long maxHoldMs) {
+        CompletableFuture<?> pending;
+        CompletableFuture<T> result;
+        synchronized (this) {
+            pending = first;
+            if (pending.isDone() && System.currentTimeMillis() - lastResponseMs > IDLE_MS) {
+                // the connection may have been closed - the next requests wait until this one opens a new one
+                result = request.get();
+                first = result;
+                pending = null;
+            } else {
+                result = null;
+            }
+        }
+        if (pending != null) {
+            result = pending.isDone() ? request.get()
+                    // whatever the outcome of the first request, or if it takes too long, the next ones are sent
+                    : pending.handle((response, error) -> null)
+                        .completeOnTimeout(null, maxHoldMs, TimeUnit.MILLISECONDS)
+                        .thenCompose(ignored -> request.get());
+        }
+        return result.whenComplete((response, error) -> onResponse(error));
+    }
+
+    private synchronized void onResponse(Throwable error) {
+        // after a failure the connection is opened again
+        lastResponseMs = error == null ? System.currentTimeMillis() : 0;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.ProxySelector;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The transport that performs the requests using <code>java.net.http.HttpClient</code>, the default on Java 11 or later.
+ * <p>
+ * It is shipped in the multi-release jar under <em>META-INF/versions/11</em>, and is not visible on Java 8. The requests are sent without
+ * blocking a thread, and HTTP/2 is negotiated with the servers that support it over TLS, so that the concurrent requests to the same
+ * endpoint are multiplexed over a single connection. The plain <em>http</em> requests are always sent using HTTP/1.1.
+ * </p>
+ * <p>
+ * The client opens a new connection for every request started before the first connection to the endpoint is established.
+ * So when there is no recent connection to an <em>https</em> endpoint, the concurrent requests, like the burst of the grants refresh,
+ * wait for the first of them to complete, up to the connect timeout, and are then multiplexed over its connection - see {@link HttpClientConnectionGate}.
+ * </p>
+ * <p>
+ * The request timeout of the client only covers the time until the response headers are received, so the whole exchange,
+ * including the response body, is bounded by the sum of the connect timeout and the read timeout.
+ * </p>
+ * <p>
+ * The connections are kept alive and reused by the client itself, which is configured with the JDK system properties
+ * such as <em>jdk.httpclient.connectionPoolSize</em> and <em>jdk.httpclient.keepalive.timeout</em>. The JDK proxy settings are honored.
+ * The client can not use the hostname verifier, nor the custom SSL socket factory not created by {@link SSLUtil#createSSLFactory} -
+ * such requests are sent with the {@link UrlConnectionHttpTransport}.
+ * </p>
+ *
+ * See: https://docs.oracle.com/en/java/javase/11/docs/api/java.net.http/module-summary.html
+ */
+class HttpClientTransport implements HttpTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpClientTransport.class);
+
+    /**
+     * The headers set by the client itself, which it does not allow to be set on the request
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final int maxResponseSize;
+    private final HttpTransport fallback;
+    // the connect timeout is the setting of the client rather than the request
+    private final Map<SSLContext, Map<Integer, HttpClient>> clients = new ConcurrentHashMap<>();
+    private final Map<HttpClient, Map<String, HttpClientConnectionGate>> gates = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new instance, configured with system properties or env variables.
+     *
+     * @param config The configuration
+     */
+    HttpClientTransport(Config config) {
+        this.maxResponseSize = ResponseBodyBuffer.configuredMaxSize(config);
+        if (maxResponseSize <= 0) {
+            throw new IllegalArgumentException("maxResponseSize has to be a positive number - (maxResponseSize=" + maxResponseSize + ")");
+        }
+        this.fallback = new UrlConnectionHttpTransport(maxResponseSize);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Configured HttpClientTransport:"
+                    + "\n    maxResponseSize: " + maxResponseSize);
+        }
+    }
+
+    @Override
+    public HttpResponse send(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                             Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) throws IOException {
+        CompletableFuture<HttpResponse> result = sendAsync(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout);
+        try {
+            // the result completes within the same bound already, the bound here only guards against a result that never completes
+            return result.get(exchangeTimeout(connectTimeout, readTimeout) + 1, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw (IOException) new SocketTimeoutException("Read timed out").initCause(e);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response from: " + uri);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Request failed: " + uri, cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> sendAsync(URI uri, String method, SSLSocketFactory socketFactory, HostnameVerifier hostnameVerifier,
+                                                     Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout) {
+        boolean https = HttpConnection.isHttps(uri);
+        SSLContext sslContext = SSLUtil.getSSLContext(https ? socketFactory : null);
+        if (https && (sslContext == null || hostnameVerifier != null)) {
+            log.debug("Custom SSL socket factory ({}) or hostname verifier ({}) - sending the request to {} with the blocking transport",
+                    socketFactory, hostnameVerifier, uri);
+            return fallback.sendAsync(uri, method, socketFactory, hostnameVerifier, headers, body, connectTimeout, readTimeout);
+        }
+        if (!https && socketFactory != null) {
+            log.warn("SSL socket factory set but url scheme not https ({})", uri);
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(readTimeout))
+                .method(method, body != null ? HttpRequest.BodyPublishers.ofByteArray(body) : HttpRequest.BodyPublishers.noBody());
+        if (!https) {
+            // avoid the upgrade to the cleartext HTTP/2, which not all servers handle well
+            request.version(HttpClient.Version.HTTP_1_1);
+        }
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                    request.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+
+        HttpClient client = clients.computeIfAbsent(sslContext, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(connectTimeout, timeout -> createClient(sslContext, timeout));
+        HttpRequest httpRequest = request.build();
+        CompletableFuture<java.net.http.HttpResponse<ResponseBodyBuffer>> result;
+        if (https) {
+            HttpClientConnectionGate gate = gates.computeIfAbsent(client, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(uri.getHost() + ":" + uri.getPort(), k -> new HttpClientConnectionGate());
+            // a request is held for at most the time it could take to open its own connection
+            result = gate.send(() -> client.sendAsync(httpRequest, this::bodySubscriber), TimeUnit.SECONDS.toMillis(connectTimeout));
+        } else {
+            result = client.sendAsync(httpRequest, this::bodySubscriber);
+        }
+        return result
+                .orTimeout(exchangeTimeout(connectTimeout, readTimeout), TimeUnit.SECONDS)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new CompletionException(translate(uri, error));
+                    }
+                    ResponseBodyBuffer buffer = response.body();
+                    if (buffer == null) {
+                        return new HttpResponse(response.statusCode(), null, response.headers().map(), null, 0);
+                    }
+                    return new HttpResponse(response.statusCode(), null, response.headers().map(), buffer.array(), buffer.size());
+                });
+    }
+
+    private static long exchangeTimeout(int connectTimeout, int readTimeout) {
+        return (long) connectTimeout + readTimeout;
+    }
+
+    private HttpClientBodySubscriber bodySubscriber(java.net.http.HttpResponse.ResponseInfo info) {
+        return new HttpClientBodySubscriber(info.headers().firstValueAsLong("Content-Length").orElse(-1), maxResponseSize);
+    }
+
+    private static HttpClient createClient(SSLContext sslContext, int connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .sslContext(sslContext)
+                .connectTimeout(Duration.ofSeconds(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER);
+        ProxySelector proxySelector = ProxySelector.getDefault();
+        if (proxySelector != null) {
+            builder.proxy(proxySelector);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Report the failure the same way as the blocking transports do, with the exception types the callers expect
+     */
+    private static Throwable translate(URI uri, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpConnectTimeoutException) {
+            return new SocketTimeoutException("connect timed out").initCause(cause);
+        }
+        if (cause instanceof HttpTimeoutException || cause instanceof TimeoutException) {
+            return new SocketTimeoutException("Read timed out").initCause(cause);
+        }
+        if (cause instanceof ConnectException) {
+            return new IOException("Failed to connect to: " + uri, cause);
+        }
+        return cause;
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The burst of concurrent POST requests, like the one of the grants refresh, sent to a local HTTP/2 server.
+ * <p>
+ * The transport based on <code>java.net.http.HttpClient</code> multiplexes all of them over a single connection,
+ * while the {@link PooledHttpTransport} sends one request at a time per connection, and opens as many as it is allowed to.
+ * Skipped when running on Java 8.
+ */
+public class Http2MultiplexingTest {
+
+    private static final String KEYSTORE = "src/test/resources/localhost.keystore.p12";
+    private static final String PASSWORD = "changeit";
+    private static final int REQUESTS = 200;
+    private static final long RESPONSE_DELAY_MS = 50;
+
+    private final Map<String, AtomicInteger> protocols = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Server server;
+    private URI uri;
+    private SSLSocketFactory socketFactory;
+
+    private HttpTransport transport;
+
+    @Before
+    public void startServer() throws Exception {
+        Map<String, String> props = Collections.singletonMap(Config.OAUTH_HTTP_TRANSPORT, "httpclient");
+        transport = HttpUtil.createTransport(new Config(props));
+        // on Java 8 there is neither the transport nor the ALPN support of the server
+        Assume.assumeTrue("Requires Java 11 or later", "HttpClientTransport".equals(transport.getClass().getSimpleName()));
+
+        String keystore = Paths.get(KEYSTORE).toAbsolutePath().toString();
+        // the self-signed certificate of the key entry is trusted as well
+        socketFactory = SSLUtil.createSSLFactory(keystore, null, PASSWORD, "pkcs12", null);
+
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.addCustomizer(new SecureRequestCustomizer());
+        HttpConnectionFactory http11 = new HttpConnectionFactory(httpConfig);
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpConfig);
+        h2.setMaxConcurrentStreams(REQUESTS * 2);
+        ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+        alpn.setDefaultProtocol(http11.getProtocol());
+
+        SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+        sslContextFactory.setKeyStorePath(keystore);
+        sslContextFactory.setKeyStorePassword(PASSWORD);
+        sslContextFactory.setKeyStoreType("PKCS12");
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), alpn, h2, http11);
+        connector.setHost("localhost");
+        connector.setPort(0);
+        connector.addBean(new Connection.Listener.Adapter() {
+            @Override
+            public void onOpened(Connection connection) {
+                if (connection instanceof SslConnection) {
+                    connections.incrementAndGet();
+                }
+            }
+        });
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                protocols.computeIfAbsent(request.getProtocol(), k -> new AtomicInteger()).incrementAndGet();
+                new ResponseBodyBuffer(-1, Integer.MAX_VALUE).appendAll(request.getInputStream());
+                try {
+                    if ("/stalled".equals(target)) {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    // the time the authorization server takes to evaluate the grants
+                    Thread.sleep(RESPONSE_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+                response.setStatus(200);
+                response.setContentType("application/json");
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        uri = URI.create("https://localhost:" + connector.getLocalPort() + "/grants");
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        release.countDown();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPostBurst() throws Exception {
+        // the first burst opens the connections, the second one reuses them
+        for (int round = 1; round <= 2; round++) {
+            sendBurst(transport);
+            Assert.assertEquals("All requests should use HTTP/2: " + protocols, REQUESTS * round, count("HTTP/2.0"));
+            Assert.assertEquals("All requests should share one connection", 1, connections.get());
+        }
+
+        protocols.clear();
+        connections.set(0);
+
+        PooledHttpTransport pooled = new PooledHttpTransport(20, 30, true);
+        for (int round = 1; round <= 2; round++) {
+            sendBurst(pooled);
+            Assert.assertEquals("All requests should use HTTP/1.1: " + protocols, REQUESTS * round, count("HTTP/1.1"));
+            Assert.assertTrue("The pool should not open more connections than allowed: " + connections.get(), connections.get() <= 20);
+        }
+    }
+
+    @Test
+    public void testStalledFirstRequest() throws Exception {
+        Map<String, String> headers = Collections.emptyMap();
+        // the request opening the connection does not complete in time
+        CompletableFuture<HttpResponse> first = transport.sendAsync(uri.resolve("/stalled"), "GET", socketFactory, null, headers, null, 1, 10);
+
+        long start = System.currentTimeMillis();
+        HttpResponse response = transport.send(uri, "GET", socketFactory, null, headers, null, 1, 10);
+        long diff = System.currentTimeMillis() - start;
+        Assert.assertEquals(200, response.status());
+        // the next request is held for at most the connect timeout
+        Assert.assertTrue("Unexpected diff: " + diff, diff >= 1000 && diff < 3000);
+        Assert.assertFalse("The first request should still wait for the response", first.isDone());
+
+        release.countDown();
+        Assert.assertEquals(200, first.get(10, TimeUnit.SECONDS).status());
+    }
+
+    private void sendBurst(HttpTransport transport) throws Exception {
+        byte[] body = "grant_type=urn:ietf:params:oauth:grant-type:uma-ticket".getBytes(StandardCharsets.UTF_8);
+        Map<String, String> headers = Collections.singletonMap("Content-Type", "application/x-www-form-urlencoded");
+
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(transport.sendAsync(uri, "POST", socketFactory, null, headers, body, 10, 10));
+        }
+        for (CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertEquals(200, response.get(30, TimeUnit.SECONDS).status());
+        }
+    }
+
+    private int count(String protocol) {
+        AtomicInteger count = protocols.get(protocol);
+        return count == null ? 0 : count.get();
+    }
+}
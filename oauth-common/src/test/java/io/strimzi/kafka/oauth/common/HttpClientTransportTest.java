@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tests of the transport based on <code>java.net.http.HttpClient</code>, skipped when running on Java 8
+ */
+public class HttpClientTransportTest {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void startServer() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/echo", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            String response = "{\"method\":\"" + exchange.getRequestMethod() + "\",\"body\":\"" + new String(body, StandardCharsets.UTF_8) + "\"}";
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/large", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[4096]);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            byte[] body = "{\"error\":\"not_found\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        release.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRequests() throws Exception {
+        HttpTransport transport = createTransport(Collections.emptyMap());
+
+        HttpResponse response = transport.send(uri("/echo"), "GET", null, null, Collections.singletonMap("Accept", "application/json"), null, 10, 10);
+        Assert.assertEquals(200, response.status());
+        Assert.assertEquals("{\"method\":\"GET\",\"body\":\"\"}", response.body());
+
+        // the headers set by the client itself are skipped, rather than rejected
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Host", "localhost");
+        headers.put("Connection", "keep-alive");
+        headers.put("Content-Type", "text/plain");
+        headers.put("Content-Length", "5");
+        response = transport.send(uri("/echo"), "POST", null, null, headers, "hello".getBytes(StandardCharsets.UTF_8), 10, 10);
+        Assert.assertEquals("{\"method\":\"POST\",\"body\":\"hello\"}", response.body());
+
+        response = transport.send(uri("/missing"), "GET", null, null, Collections.emptyMap(), null, 10, 10);
+        Assert.assertEquals("Error status should be returned as response", 404, response.status());
+        Assert.assertEquals("{\"error\":\"not_found\"}", response.body());
+    }
+
+    @Test
+    public void testAsyncRequests() throws Exception {
+        HttpTransport transport = createTransport(Collections.emptyMap());
+        release = new CountDownLatch(1);
+
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            responses.add(transport.sendAsync(uri("/slow"), "GET", null, null, Collections.emptyMap(), null, 10, 10));
+        }
+        Thread.sleep(200);
+        for (CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertFalse("Should still wait for the response", response.isDone());
+        }
+        release.countDown();
+
+        for (CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertEquals(200, response.get(10, TimeUnit.SECONDS).status());
+        }
+    }
+
+    @Test
+    public void testMaxResponseSize() throws Exception {
+        Map<String, String> config = new HashMap<>();
+        config.put(Config.OAUTH_HTTP_MAX_RESPONSE_SIZE, "1024");
+        HttpTransport transport = createTransport(config);
+        try {
+            transport.send(uri("/large"), "GET", null, null, Collections.emptyMap(), null, 10, 10);
+            Assert.fail("Should fail with ResponseTooLargeException");
+        } catch (ResponseBodyBuffer.ResponseTooLargeException expected) {
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        HttpTransport transport = createTransport(Collections.emptyMap());
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            CountDownLatch done = new CountDownLatch(1);
+            Thread serverThread = new Thread(() -> {
+                // accept the connection, but never respond
+                try (Socket ignored = serverSocket.accept()) {
+                    done.await(10, TimeUnit.SECONDS);
+                } catch (Exception ignored) {
+                    // server closed
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/timeout");
+            long start = System.currentTimeMillis();
+            try {
+                transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 1, 1);
+                Assert.fail("Should fail with SocketTimeoutException");
+            } catch (SocketTimeoutException e) {
+                long diff = System.currentTimeMillis() - start;
+                Assert.assertTrue("Unexpected error: " + e, e.toString().contains("Read timed out"));
+                Assert.assertTrue("Unexpected diff: " + diff, diff >= 1000 && diff < 2000);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void testStalledBody() throws Exception {
+        HttpTransport transport = createTransport(Collections.emptyMap());
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            CountDownLatch done = new CountDownLatch(1);
+            Thread serverThread = new Thread(() -> {
+                // send the headers, and the first part of the body only
+                try (Socket socket = serverSocket.accept()) {
+                    socket.getInputStream().read(new byte[4096]);
+                    OutputStream out = socket.getOutputStream();
+                    out.write("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 100\r\n\r\n{\"keys\":".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    done.await(10, TimeUnit.SECONDS);
+                } catch (Exception ignored) {
+                    // server closed
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/stalled");
+            long start = System.currentTimeMillis();
+            try {
+                transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 1, 1);
+                Assert.fail("Should fail with SocketTimeoutException");
+            } catch (SocketTimeoutException e) {
+                long diff = System.currentTimeMillis() - start;
+                Assert.assertTrue("Unexpected error: " + e, e.toString().contains("Read timed out"));
+                // the whole exchange is bounded by the connect timeout plus the read timeout
+                Assert.assertTrue("Unexpected diff: " + diff, diff >= 2000 && diff < 3000);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private static HttpTransport createTransport(Map<String, String> config) {
+        Map<String, String> props = new HashMap<>(config);
+        props.put(Config.OAUTH_HTTP_TRANSPORT, "httpclient");
+        HttpTransport transport = HttpUtil.createTransport(new Config(props));
+        Assume.assumeTrue("Requires Java 11 or later", "HttpClientTransport".equals(transport.getClass().getSimpleName()));
+        return transport;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ResponseBodyBuffer buffer = new ResponseBodyBuffer(-1, Integer.MAX_VALUE);
+        buffer.appendAll(in);
+        return buffer.toByteArray();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
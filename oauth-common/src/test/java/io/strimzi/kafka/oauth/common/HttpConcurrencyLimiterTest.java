@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class HttpConcurrencyLimiterTest {
+
+    private static final URI ENDPOINT = URI.create("http://keycloak:8080/");
+
+    private static final HttpResponse OK = new HttpResponse(200, Collections.emptyMap(), "{}");
+    private static final HttpResponse UNAVAILABLE = new HttpResponse(503, Collections.emptyMap(), "");
+
+    @Test
+    public void testPriority() throws Exception {
+        HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter(ENDPOINT, 4, 4, 50, 10);
+
+        // the background requests only use half the limit
+        HttpConcurrencyLimiter.Permit background1 = limiter.acquire(true).get();
+        HttpConcurrencyLimiter.Permit background2 = limiter.acquire(true).get();
+        CompletableFuture<HttpConcurrencyLimiter.Permit> background3 = limiter.acquire(true);
+        Assert.assertFalse(background3.isDone());
+
+        // the interactive requests use the rest
+        HttpConcurrencyLimiter.Permit interactive1 = limiter.acquire(false).get();
+        HttpConcurrencyLimiter.Permit interactive2 = limiter.acquire(false).get();
+        CompletableFuture<HttpConcurrencyLimiter.Permit> interactive3 = limiter.acquire(false);
+        Assert.assertFalse(interactive3.isDone());
+        Assert.assertEquals(4, limiter.inFlight());
+        Assert.assertEquals(2, limiter.queued());
+
+        // the waiting interactive request goes first
+        background1.release(OK, null);
+        Assert.assertTrue(interactive3.isDone());
+        Assert.assertFalse(background3.isDone());
+
+        // the background request waits for the number of requests in progress to drop below its share of the limit
+        interactive1.release(OK, null);
+        interactive2.release(OK, null);
+        Assert.assertFalse(background3.isDone());
+        background2.release(OK, null);
+        Assert.assertTrue(background3.isDone());
+
+        background3.get().release(OK, null);
+        interactive3.get().release(OK, null);
+        Assert.assertEquals(0, limiter.inFlight());
+        Assert.assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    public void testMaxWait() throws Exception {
+        HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter(ENDPOINT, 1, 1, 100, 10);
+        HttpConcurrencyLimiter.Permit permit = limiter.acquire(false).get();
+
+        long start = System.currentTimeMillis();
+        try {
+            limiter.send(false, 200, () -> OK);
+            Assert.fail("Should fail with LimitExceededException");
+        } catch (HttpConcurrencyLimiter.LimitExceededException expected) {
+        }
+        Assert.assertTrue("Should wait for the max wait", System.currentTimeMillis() - start >= 200);
+        Assert.assertEquals("The expired request should not stay queued", 0, limiter.queued());
+
+        CompletableFuture<HttpResponse> async = limiter.sendAsync(false, 200, () -> CompletableFuture.completedFuture(OK));
+        try {
+            async.get(5, TimeUnit.SECONDS);
+            Assert.fail("Should fail with LimitExceededException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Unexpected error: " + e.getCause(), e.getCause() instanceof HttpConcurrencyLimiter.LimitExceededException);
+        }
+        Assert.assertEquals("The expired request should not stay queued", 0, limiter.queued());
+
+        // the request sent within the max wait
+        CompletableFuture<HttpResponse> sent = limiter.sendAsync(false, 5000, () -> CompletableFuture.completedFuture(OK));
+        permit.release(OK, null);
+        Assert.assertEquals(OK, sent.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter(ENDPOINT, 1, 1, 100, 1);
+        HttpConcurrencyLimiter.Permit permit = limiter.acquire(false).get();
+        CompletableFuture<HttpConcurrencyLimiter.Permit> waiting = limiter.acquire(false);
+        try {
+            limiter.acquire(false).get();
+            Assert.fail("Should fail with LimitExceededException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Unexpected error: " + e.getCause(), e.getCause() instanceof HttpConcurrencyLimiter.LimitExceededException);
+        }
+
+        // the permit released twice only counts once
+        permit.release(OK, null);
+        permit.release(OK, null);
+        Assert.assertTrue(waiting.isDone());
+        Assert.assertEquals(1, limiter.inFlight());
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter(ENDPOINT, 4, 8, 50, 10);
+
+        // the limit grows while it is used
+        for (int i = 0; i < 20; i++) {
+            List<HttpConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int j = limiter.limit(); j > 0; j--) {
+                permits.add(limiter.acquire(false).get());
+            }
+            for (HttpConcurrencyLimiter.Permit permit : permits) {
+                permit.release(OK, null);
+            }
+        }
+        Assert.assertEquals(8, limiter.limit());
+
+        // the limit is not raised by the requests that do not use it
+        limiter = new HttpConcurrencyLimiter(ENDPOINT, 4, 8, 50, 10);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire(false).get().release(OK, null);
+        }
+        Assert.assertEquals(4, limiter.limit());
+
+        // the overload reduces the limit once for the requests that were in progress at the same time
+        limiter = new HttpConcurrencyLimiter(ENDPOINT, 8, 8, 50, 10);
+        HttpConcurrencyLimiter.Permit first = limiter.acquire(false).get();
+        HttpConcurrencyLimiter.Permit second = limiter.acquire(false).get();
+        Thread.sleep(10);
+        first.release(UNAVAILABLE, null);
+        Assert.assertEquals(7, limiter.limit());
+        second.release(null, new SocketTimeoutException("Read timed out"));
+        Assert.assertEquals(7, limiter.limit());
+
+        Thread.sleep(10);
+        limiter.acquire(false).get().release(null, new SocketTimeoutException("Read timed out"));
+        Assert.assertEquals(6, limiter.limit());
+
+        // the errors other than IOException do not affect the limit
+        limiter.acquire(false).get().release(null, new IllegalStateException("Test error"));
+        Assert.assertEquals(6, limiter.limit());
+        Assert.assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void testBackground() throws Exception {
+        Assert.assertFalse(HttpConcurrencyLimiter.isBackground());
+        Assert.assertTrue(HttpConcurrencyLimiter.background(() -> HttpConcurrencyLimiter.background(HttpConcurrencyLimiter::isBackground)
+                && HttpConcurrencyLimiter.isBackground()));
+        Assert.assertFalse(HttpConcurrencyLimiter.isBackground());
+
+        try {
+            HttpConcurrencyLimiter.background(() -> {
+                throw new SocketTimeoutException("Read timed out");
+            });
+            Assert.fail("Should fail with SocketTimeoutException");
+        } catch (SocketTimeoutException expected) {
+        }
+        Assert.assertFalse(HttpConcurrencyLimiter.isBackground());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpContentDecoderTest {
+
+    private static final URI ENDPOINT = URI.create("http://localhost/grants");
+    private static final String BODY = "{\"results\":[" + String.join(",", Collections.nCopies(100, "{\"rsname\":\"Topic:a_*\",\"scopes\":[\"Describe\",\"Write\"]}")) + "]}";
+
+    @Test
+    public void testDecode() throws Exception {
+        // gzip, zlib wrapped deflate, and raw deflate
+        for (String encoding : Arrays.asList("gzip", "deflate", "raw")) {
+            byte[] compressed = compress(encoding, BODY);
+            HttpResponse response = response("raw".equals(encoding) ? "deflate" : encoding, compressed);
+
+            HttpResponse decoded = HttpContentDecoder.decode(response, ENDPOINT, 1024 * 1024);
+            Assert.assertEquals(encoding, BODY, decoded.body());
+            Assert.assertEquals(encoding, BODY.length(), decoded.bodyLength());
+            Assert.assertTrue(encoding, compressed.length < BODY.length() / 10);
+            Assert.assertNull(encoding, decoded.header("Content-Encoding"));
+            Assert.assertNull(encoding, decoded.header("Content-Length"));
+            Assert.assertEquals(encoding, "application/json", decoded.header("Content-Type"));
+            Assert.assertEquals(encoding, 100, decoded.readJSON(JsonNode.class).get("results").size());
+        }
+
+        // the response without the Content-Encoding is used as is
+        HttpResponse plain = new HttpResponse(200, "OK", null, BODY);
+        Assert.assertSame(plain, HttpContentDecoder.decode(plain, ENDPOINT, 1024 * 1024));
+    }
+
+    @Test
+    public void testDecodeErrors() throws Exception {
+        // the decompressed size is limited, not just the compressed one
+        HttpResponse response = response("gzip", compress("gzip", BODY));
+        try {
+            HttpContentDecoder.decode(response, ENDPOINT, BODY.length() - 1);
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("exceeds the maximum size"));
+        }
+
+        byte[] truncated = compress("gzip", BODY);
+        response = response("gzip", Arrays.copyOf(truncated, truncated.length / 2));
+        try {
+            HttpContentDecoder.decode(response, ENDPOINT, 1024 * 1024);
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("Failed to decompress"));
+        }
+    }
+
+    private static HttpResponse response(String encoding, byte[] body) {
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList("application/json"));
+        headers.put("Content-Encoding", Collections.singletonList(encoding));
+        headers.put("Content-Length", Collections.singletonList(String.valueOf(body.length)));
+        return new HttpResponse(200, "OK", headers, body, body.length);
+    }
+
+    private static byte[] compress(String encoding, String body) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, "raw".equals(encoding));
+        try (OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(result) : new DeflaterOutputStream(result, deflater)) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            deflater.end();
+        }
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpEndpointGroupTest {
+
+    private static final URI NODE_A = URI.create("http://node-a:8080/certs");
+    private static final URI NODE_B = URI.create("http://node-b:8080/certs");
+
+    @Test
+    public void testRegister() throws Exception {
+        Assert.assertEquals(NODE_A, HttpEndpointGroup.register(" " + NODE_A + " "));
+        Assert.assertNull(HttpEndpointGroup.forUri(NODE_A));
+
+        URI primary = HttpEndpointGroup.register("http://group-a/certs  http://group-b/certs\nhttp://group-c/certs");
+        Assert.assertEquals("http://group-a/certs", primary.getScheme() + ":" + primary.getSchemeSpecificPart());
+        Assert.assertTrue(primary.toString(), primary.getFragment().startsWith("endpoint-group-"));
+        HttpEndpointGroup group = HttpEndpointGroup.forUri(primary);
+        Assert.assertNotNull(group);
+        Assert.assertEquals(3, group.uris().size());
+
+        // registering the same list again keeps the state of the group
+        Assert.assertSame(group, HttpEndpointGroup.forUri(HttpEndpointGroup.register("http://group-a/certs http://group-b/certs http://group-c/certs")));
+
+        // the different list starting with the same URI does not replace the group
+        URI other = HttpEndpointGroup.register("http://group-a/certs http://group-d/certs");
+        Assert.assertNotEquals(primary, other);
+        Assert.assertEquals(Arrays.asList(URI.create("http://group-a/certs"), URI.create("http://group-d/certs")), HttpEndpointGroup.forUri(other).uris());
+        Assert.assertSame(group, HttpEndpointGroup.forUri(primary));
+        Assert.assertEquals(other, HttpEndpointGroup.register("http://group-a/certs http://group-d/certs"));
+
+        // the component configured with just the first URI does not use the group
+        Assert.assertEquals(URI.create("http://group-a/certs"), HttpEndpointGroup.register("http://group-a/certs"));
+        Assert.assertNull(HttpEndpointGroup.forUri(URI.create("http://group-a/certs")));
+        // nor can it be configured with the URI identifying the group
+        try {
+            HttpEndpointGroup.register(primary.toString());
+            Assert.fail("Should fail with URISyntaxException: " + primary);
+        } catch (URISyntaxException expected) {
+        }
+
+        // the comma is a valid character of the URI
+        Assert.assertEquals(URI.create("http://node-a/certs?kid=a,b"), HttpEndpointGroup.register("http://node-a/certs?kid=a,b"));
+        for (String value : Arrays.asList("http://group-a/certs,http://group-b/certs", "http://group-a/certs, http://group-b/certs",
+                "http://group-a/certs ,https://group-b/certs")) {
+            try {
+                HttpEndpointGroup.register(value);
+                Assert.fail("Should fail with URISyntaxException: " + value);
+            } catch (URISyntaxException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        AtomicInteger sentToA = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            HttpResponse response = group.send(uri -> {
+                if (NODE_A.equals(uri)) {
+                    sentToA.incrementAndGet();
+                    throw new ConnectException("Connection refused");
+                }
+                return new HttpResponse(200, Collections.emptyMap(), uri.getHost());
+            }, false);
+            Assert.assertEquals("node-b", response.body());
+        }
+        // once failed, the endpoint is ejected
+        Assert.assertEquals(1, sentToA.get());
+
+        // the 5xx response to the idempotent request is also failed over
+        group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = group.send(uri -> new HttpResponse(NODE_A.equals(uri) ? 503 : 200, Collections.emptyMap(), uri.getHost()), true);
+            Assert.assertEquals(200, response.status());
+        }
+    }
+
+    @Test
+    public void testNonIdempotentNotRetried() throws Exception {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        AtomicInteger sent = new AtomicInteger();
+
+        // the request may have been processed by the endpoint that timed out, so it is not repeated with the other one
+        try {
+            group.send(uri -> {
+                sent.incrementAndGet();
+                throw new SocketTimeoutException("Read timed out");
+            }, false);
+            Assert.fail("Should fail with SocketTimeoutException");
+        } catch (SocketTimeoutException expected) {
+        }
+        Assert.assertEquals(1, sent.get());
+
+        // the endpoint is still ejected, so the next request is sent to the other one
+        URI failed = group.select(Collections.emptySet()).uri().equals(NODE_A) ? NODE_B : NODE_A;
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = group.send(uri -> new HttpResponse(failed.equals(uri) ? 503 : 200, Collections.emptyMap(), uri.getHost()), false);
+            Assert.assertEquals(200, response.status());
+        }
+
+        // the 5xx response is returned as is
+        group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        sent.set(0);
+        HttpResponse response = group.sendAsync(uri -> {
+            sent.incrementAndGet();
+            return CompletableFuture.completedFuture(new HttpResponse(503, Collections.emptyMap(), uri.getHost()));
+        }, false).get();
+        Assert.assertEquals(503, response.status());
+        Assert.assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void testIdempotent() throws Exception {
+        Assert.assertTrue(HttpEndpointGroup.isIdempotent("GET"));
+        Assert.assertFalse(HttpEndpointGroup.isIdempotent("POST"));
+        Assert.assertTrue("Should be idempotent within the task", HttpEndpointGroup.idempotent(() -> HttpEndpointGroup.isIdempotent("POST")));
+        Assert.assertFalse("Should not be idempotent after the task", HttpEndpointGroup.isIdempotent("POST"));
+
+        Assert.assertTrue(HttpEndpointGroup.isNotSent(new IOException("Failed to connect to: " + NODE_A, new ConnectException("Connection refused"))));
+        Assert.assertTrue(HttpEndpointGroup.isNotSent(new SocketTimeoutException("Connect timed out")));
+        Assert.assertFalse(HttpEndpointGroup.isNotSent(new SocketTimeoutException("Read timed out")));
+    }
+
+    @Test
+    public void testConcurrencyLimitExceeded() throws Exception {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        AtomicInteger sentToA = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            HttpResponse response = group.send(uri -> {
+                if (NODE_A.equals(uri)) {
+                    sentToA.incrementAndGet();
+                    throw sentToA.get() % 2 == 0 ? new HttpConcurrencyLimiter.LimitExceededException(uri, 1)
+                            : new HttpConnectionPool.PoolTimeoutException(uri.toString());
+                }
+                return new HttpResponse(200, Collections.emptyMap(), uri.getHost());
+            }, false);
+            Assert.assertEquals("node-b", response.body());
+        }
+        // the busy endpoint is tried with another endpoint, but is not ejected
+        Assert.assertTrue("Busy endpoint should not be ejected", sentToA.get() > 1);
+    }
+
+    @Test
+    public void testAllEndpointsFailing() throws Exception {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        AtomicInteger sent = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            try {
+                group.send(uri -> {
+                    sent.incrementAndGet();
+                    throw new ConnectException("Connection refused: " + uri.getHost());
+                }, false);
+                Assert.fail("Should fail with IOException");
+            } catch (IOException e) {
+                Assert.assertTrue("Unexpected error: " + e, e.getMessage().startsWith("Connection refused"));
+            }
+        }
+        // with all the endpoints ejected, the request is still tried with each of them, rather than failing outright
+        Assert.assertEquals(6, sent.get());
+
+        // the last endpoint returns its 5xx response as is
+        HttpResponse response = group.send(uri -> new HttpResponse(503, Collections.emptyMap(), uri.getHost()), true);
+        Assert.assertEquals(503, response.status());
+    }
+
+    @Test
+    public void testAsyncFailover() throws Exception {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = group.sendAsync(uri -> {
+                CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+                if (NODE_A.equals(uri)) {
+                    result.completeExceptionally(new ConnectException("Connection refused"));
+                } else {
+                    result.complete(new HttpResponse(200, Collections.emptyMap(), uri.getHost()));
+                }
+                return result;
+            }, false).get();
+            Assert.assertEquals("node-b", response.body());
+        }
+
+        // the errors other than IOException are not failed over
+        try {
+            group.sendAsync(uri -> {
+                throw new IllegalStateException("Test error");
+            }, true).get();
+            Assert.fail("Should fail with IllegalStateException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testLatencyAwareSelection() {
+        HttpEndpointGroup group = new HttpEndpointGroup(Arrays.asList(NODE_A, NODE_B), 60_000, 120_000);
+        HttpEndpointGroup.Endpoint slow = group.select(Collections.emptySet());
+        HttpEndpointGroup.Endpoint fast = group.select(Collections.singleton(slow));
+        Assert.assertNotSame(slow, fast);
+
+        slow.start();
+        slow.succeeded(500);
+        fast.start();
+        fast.succeeded(20);
+
+        // with two endpoints both are compared every time
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(fast, group.select(Collections.emptySet()));
+        }
+
+        // the requests in progress add to the load
+        for (int i = 0; i < 30; i++) {
+            fast.start();
+        }
+        Assert.assertSame(slow, group.select(Collections.emptySet()));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class HttpResponseParserTest {
+
+    @Test
+    public void testChunkedResponseInPieces() throws Exception {
+        String response = "HTTP/1.1 100 Continue\r\n\r\n"
+                + "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "8\r\n{\"type\":\r\n"
+                + "A;name=value\r\n\"chunked\"}\r\n0\r\nTrailer: x\r\n\r\n";
+
+        // feed the response one byte at a time
+        HttpResponseParser parser = new HttpResponseParser("GET");
+        byte[] bytes = response.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < bytes.length; i++) {
+            boolean done = parser.feed(ByteBuffer.wrap(bytes, i, 1));
+            Assert.assertEquals("Done at byte " + i, i == bytes.length - 1, done);
+        }
+
+        HttpResponse result = parser.response();
+        Assert.assertEquals(200, result.status());
+        Assert.assertEquals("OK", result.statusMessage());
+        Assert.assertEquals("{\"type\":\"chunked\"}", result.body());
+        Assert.assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testResponseDelimitedByClose() throws Exception {
+        HttpResponseParser parser = new HttpResponseParser("GET");
+        Assert.assertFalse(parser.feed(ByteBuffer.wrap("HTTP/1.0 200 OK\r\n\r\n{}".getBytes(StandardCharsets.ISO_8859_1))));
+        Assert.assertTrue(parser.closed());
+        Assert.assertEquals("{}", parser.response().body());
+        Assert.assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testNoContent() throws Exception {
+        HttpResponseParser parser = new HttpResponseParser("DELETE");
+        Assert.assertTrue(parser.feed(ByteBuffer.wrap("HTTP/1.1 204 No Content\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1))));
+        Assert.assertNull(parser.response().body());
+        Assert.assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testMaxBodySize() throws Exception {
+        // the announced Content-Length is checked before the body is read
+        HttpResponseParser parser = new HttpResponseParser("GET", 16);
+        try {
+            parser.feed(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 17\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("exceeds the maximum size of 16 bytes"));
+        }
+
+        // the chunked body is checked as it arrives
+        parser = new HttpResponseParser("GET", 16);
+        Assert.assertFalse(parser.feed(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nA\r\n0123456789\r\n".getBytes(StandardCharsets.ISO_8859_1))));
+        try {
+            parser.feed(ByteBuffer.wrap("A\r\n0123456789\r\n0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("exceeds the maximum size of 16 bytes"));
+        }
+
+        // the body of exactly the maximum size is accepted, and parsed straight from the received bytes
+        parser = new HttpResponseParser("GET", 16);
+        Assert.assertTrue(parser.feed(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: 16\r\n\r\n{\"keys\":[1,2,3]}".getBytes(StandardCharsets.ISO_8859_1))));
+        HttpResponse response = parser.response();
+        Assert.assertEquals(16, response.bodyLength());
+        Assert.assertEquals(3, response.readJSON(JsonNode.class).get("keys").size());
+        Assert.assertEquals("{\"keys\":[1,2,3]}", response.body());
+    }
+
+    @Test
+    public void testNegativeLength() throws Exception {
+        HttpResponseParser parser = new HttpResponseParser("GET");
+        try {
+            parser.feed(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nContent-Length: -5\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("Invalid Content-Length"));
+        }
+
+        parser = new HttpResponseParser("GET");
+        try {
+            parser.feed(ByteBuffer.wrap("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-A\r\n0123456789\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+            Assert.fail("Should fail with IOException");
+        } catch (IOException e) {
+            Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("Invalid chunk size"));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class HttpResponseTest {
+
+    @Test
+    public void testCacheControlMaxAge() {
+        Assert.assertEquals(-1, response(null).cacheControlMaxAgeSeconds());
+        Assert.assertEquals(300, response("max-age=300").cacheControlMaxAgeSeconds());
+        Assert.assertEquals(300, response("public, Max-Age=300, must-revalidate").cacheControlMaxAgeSeconds());
+        Assert.assertEquals(-1, response("max-age=300, no-cache").cacheControlMaxAgeSeconds());
+        Assert.assertEquals(-1, response("no-store").cacheControlMaxAgeSeconds());
+        Assert.assertEquals(-1, response("max-age=soon").cacheControlMaxAgeSeconds());
+    }
+
+    @Test
+    public void testHeaderNamesCaseInsensitive() {
+        HttpResponse response = new HttpResponse(200,
+                Collections.singletonMap("etag", Collections.singletonList("\"v1\"")), "{}");
+        Assert.assertEquals("\"v1\"", response.header("ETag"));
+        Assert.assertNull(response.header("Last-Modified"));
+    }
+
+    private static HttpResponse response(String cacheControl) {
+        return new HttpResponse(200, cacheControl == null ? null :
+                Collections.singletonMap("Cache-Control", Collections.singletonList(cacheControl)), "{}");
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.util.Base64URL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+public class NimbusPayloadTransformerTest {
+
+    private static final String PAYLOAD = "{\"exp\":1653383543,\"iat\":1653383243,\"iss\":\"https://mockoauth:8090\",\"sub\":\"alice\"," +
+            "\"typ\":\"Bearer\",\"aud\":[\"kafka\",\"account\"],\"scope\":\"profile email\",\"nbf\":0,\"weight\":0.75," +
+            "\"realm_access\":{\"roles\":[\"offline_access\",\"uma_authorization\"]},\"email_verified\":false,\"nothing\":null}";
+
+    // numeric nodes compare equal if they represent the same value, regardless of the node type
+    private static final Comparator<JsonNode> NUMERIC_VALUE = (o1, o2) -> {
+        if (o1.isNumber() && o2.isNumber()) {
+            return Double.compare(o1.asDouble(), o2.asDouble());
+        }
+        return o1.equals(o2) ? 0 : 1;
+    };
+
+    @Test
+    public void testSameResultAsMapConversion() throws Exception {
+        String token = "eyJhbGciOiJSUzI1NiJ9." + Base64URL.encode(PAYLOAD.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+        Payload payload = JWSObject.parse(token).getPayload();
+
+        JsonNode direct = payload.toType(new NimbusPayloadTransformer());
+        JsonNode converted = JSONUtil.asJson(payload.toJSONObject());
+
+        Assert.assertTrue("Direct decoding should produce the same claims: " + direct + " vs. " + converted,
+                direct.equals(NUMERIC_VALUE, converted));
+        Assert.assertEquals(1653383543, direct.get(TokenInfo.EXP).asInt());
+        Assert.assertEquals("alice", TokenIntrospection.introspectAccessToken(token, null).principal());
+    }
+
+    @Test
+    public void testNotAnObject() throws Exception {
+        String token = "eyJhbGciOiJSUzI1NiJ9." + Base64URL.encode("[1,2,3]".getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+        try {
+            JWSObject.parse(token).getPayload().toType(new NimbusPayloadTransformer());
+            Assert.fail("Should fail to parse payload that is not a JSON object");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
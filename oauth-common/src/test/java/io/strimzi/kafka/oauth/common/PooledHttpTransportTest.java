@@ -0,0 +1,419 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PooledHttpTransportTest {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void startServer() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fixed", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"type\":\"fixed\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/chunked", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{\"type\":".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                out.write("\"chunked\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            byte[] body = "{\"error\":\"not_found\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        release.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(5, 30, true);
+
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = transport.send(uri("/fixed"), "GET", null, null, Collections.emptyMap(), null, 10, 10);
+            Assert.assertEquals(200, response.status());
+            Assert.assertEquals("{\"type\":\"fixed\"}", response.body());
+        }
+        for (int i = 0; i < 5; i++) {
+            HttpResponse response = transport.send(uri("/chunked"), "POST", null, null,
+                    Collections.singletonMap("Content-Type", "application/json"), "{}".getBytes(StandardCharsets.UTF_8), 10, 10);
+            Assert.assertEquals(200, response.status());
+            Assert.assertEquals("{\"type\":\"chunked\"}", response.body());
+        }
+        // every endpoint has its own pool
+        Assert.assertEquals("Sequential requests to the same endpoint should reuse the connection", 2, clientPorts.size());
+    }
+
+    @Test
+    public void testMaxConnections() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30, true);
+        release = new CountDownLatch(1);
+
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(clients.submit(() -> transport.send(uri("/slow"), "GET", null, null, Collections.emptyMap(), null, 10, 10)));
+            }
+            Thread.sleep(500);
+            release.countDown();
+
+            for (Future<HttpResponse> response : responses) {
+                Assert.assertEquals(200, response.get(10, TimeUnit.SECONDS).status());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        Assert.assertEquals("At most 'maxConnections' requests should be in progress", 2, maxConcurrent.get());
+        Assert.assertEquals("At most 'maxConnections' connections should be opened", 2, clientPorts.size());
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        try {
+            HttpUtil.get(uri("/missing"), null, String.class);
+            Assert.fail("Should fail with HttpException");
+        } catch (HttpException e) {
+            Assert.assertEquals(404, e.getStatus());
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("not_found"));
+        }
+    }
+
+    @Test
+    public void testConnectionClosedByServer() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            Thread serverThread = new Thread(() -> {
+                // respond to a single request per connection, then close the connection without announcing it
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept()) {
+                        accepted.incrementAndGet();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                        String line;
+                        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                            // skip the request headers
+                        }
+                        socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}".getBytes(StandardCharsets.ISO_8859_1));
+                        socket.getOutputStream().flush();
+                        Thread.sleep(100);
+                    } catch (Exception ignored) {
+                        // server closed
+                    }
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            PooledHttpTransport transport = new PooledHttpTransport(5, 30, true);
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/stale");
+            Assert.assertEquals("{}", transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 10, 10).body());
+            Thread.sleep(500);
+            Assert.assertEquals("Request on the connection closed by the server should be retried",
+                    "{}", transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 10, 10).body());
+            Assert.assertEquals(2, accepted.get());
+        }
+    }
+
+    @Test
+    public void testAsyncRequests() throws Exception {
+        PooledHttpTransport transport = new PooledHttpTransport(2, 30, true);
+        release = new CountDownLatch(1);
+
+        // many requests submitted at the same time from the same thread, sent by the shared thread pool
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            responses.add(transport.sendAsync(uri("/slow"), "GET", null, null, Collections.emptyMap(), null, 10, 10));
+        }
+        Thread.sleep(500);
+        for (CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertFalse("Should still wait for the response", response.isDone());
+        }
+        release.countDown();
+
+        for (CompletableFuture<HttpResponse> response : responses) {
+            Assert.assertEquals(200, response.get(10, TimeUnit.SECONDS).status());
+        }
+        Assert.assertEquals("At most 'maxConnections' requests should be in progress", 2, maxConcurrent.get());
+        Assert.assertEquals("At most 'maxConnections' connections should be opened", 2, clientPorts.size());
+
+        JsonNode result = HttpUtil.getAsync(uri("/fixed"), null, null, null, JsonNode.class, 10, 10).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("fixed", result.get("type").asText());
+
+        try {
+            HttpUtil.getAsync(uri("/missing"), null, null, null, String.class, 10, 10).get(10, TimeUnit.SECONDS);
+            Assert.fail("Should fail with HttpException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Unexpected cause: " + e.getCause(), e.getCause() instanceof HttpException);
+            Assert.assertEquals(404, ((HttpException) e.getCause()).getStatus());
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            CountDownLatch done = new CountDownLatch(1);
+            Thread serverThread = new Thread(() -> {
+                // accept the connection, but never respond
+                try (Socket ignored = serverSocket.accept()) {
+                    done.await(10, TimeUnit.SECONDS);
+                } catch (Exception ignored) {
+                    // server closed
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            PooledHttpTransport transport = new PooledHttpTransport(5, 30, true);
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/timeout");
+            long start = System.currentTimeMillis();
+            try {
+                transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 1, 1);
+                Assert.fail("Should fail with SocketTimeoutException");
+            } catch (SocketTimeoutException e) {
+                long diff = System.currentTimeMillis() - start;
+                Assert.assertTrue("Unexpected error: " + e, e.toString().contains("Read timed out"));
+                Assert.assertTrue("Unexpected diff: " + diff, diff >= 1000 && diff < 2000);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidResponse() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            Thread serverThread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    readRequest(new BufferedInputStream(socket.getInputStream()));
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: -5\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                    socket.getOutputStream().flush();
+                    Thread.sleep(10_000);
+                } catch (Exception ignored) {
+                    // server closed
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            PooledHttpTransport transport = new PooledHttpTransport(1, 30, true);
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/invalid");
+            try {
+                transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 10, 10);
+                Assert.fail("Should fail with IOException");
+            } catch (IOException e) {
+                Assert.assertTrue("Unexpected error: " + e, e.getMessage().contains("Invalid Content-Length"));
+            }
+        }
+
+        // the connection slot is released
+        PooledHttpTransport transport = new PooledHttpTransport(1, 30, true);
+        Assert.assertEquals(200, transport.send(uri("/fixed"), "GET", null, null, Collections.emptyMap(), null, 10, 10).status());
+    }
+
+    @Test
+    public void testUnsafeRequestNotRetried() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            // answer a single request per connection, then close the connection without announcing it
+            startEchoServer(serverSocket, accepted, 1);
+
+            PooledHttpTransport transport = new PooledHttpTransport(1, 30, true);
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/post");
+            Map<String, String> headers = Collections.singletonMap("Content-Type", "text/plain");
+
+            Assert.assertEquals("first", transport.send(uri, "POST", null, null, headers, "first".getBytes(StandardCharsets.UTF_8), 10, 10).body());
+            try {
+                transport.send(uri, "POST", null, null, headers, "second".getBytes(StandardCharsets.UTF_8), 10, 10);
+                Assert.fail("The request sent over the connection closed by the server should not be retried");
+            } catch (IOException expected) {
+            }
+            Assert.assertEquals(1, accepted.get());
+
+            Assert.assertEquals("third", transport.send(uri, "POST", null, null, headers, "third".getBytes(StandardCharsets.UTF_8), 10, 10).body());
+            Thread.sleep(PooledHttpTransport.STALE_CHECK_IDLE_MS + 200);
+            Assert.assertEquals("The connection closed while idle should not be used",
+                    "fourth", transport.send(uri, "POST", null, null, headers, "fourth".getBytes(StandardCharsets.UTF_8), 10, 10).body());
+            Assert.assertEquals(3, accepted.get());
+        }
+    }
+
+    @Test
+    public void testIdleConnectionClosed() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 0, null)) {
+            CompletableFuture<Long> closed = new CompletableFuture<>();
+            Thread serverThread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    readRequest(in);
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}".getBytes(StandardCharsets.ISO_8859_1));
+                    socket.getOutputStream().flush();
+                    long start = System.currentTimeMillis();
+                    // wait for the client to close the connection
+                    socket.setSoTimeout(10_000);
+                    if (in.read() == -1) {
+                        closed.complete(System.currentTimeMillis() - start);
+                    }
+                } catch (Exception e) {
+                    closed.completeExceptionally(e);
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            PooledHttpTransport transport = new PooledHttpTransport(1, 1, true);
+            URI uri = URI.create("http://localhost:" + serverSocket.getLocalPort() + "/idle");
+            Assert.assertEquals(200, transport.send(uri, "GET", null, null, Collections.emptyMap(), null, 10, 10).status());
+
+            // no more requests are sent, the idle connection is closed by the periodic check
+            long idleMs = closed.get(10, TimeUnit.SECONDS);
+            Assert.assertTrue("Unexpected idle time: " + idleMs, idleMs >= 900 && idleMs < 1000 + 2 * PooledHttpTransport.MIN_SWEEP_PERIOD_MS);
+        }
+    }
+
+    private static void startEchoServer(ServerSocket serverSocket, AtomicInteger accepted, int maxRequestsPerConnection) {
+        Thread serverThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    accepted.incrementAndGet();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    for (int i = 0; i < maxRequestsPerConnection; i++) {
+                        // echo the request body or query
+                        byte[] body = readRequest(in);
+                        if (body == null) {
+                            break;
+                        }
+                        out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                        out.write(body);
+                        out.flush();
+                    }
+                } catch (Exception ignored) {
+                    // server closed
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    private static byte[] readRequest(InputStream in) throws IOException {
+        String query = null;
+        int contentLength = 0;
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                continue;
+            }
+            if (c != '\n') {
+                line.append((char) c);
+                continue;
+            }
+            if (line.length() == 0) {
+                if (contentLength == 0 && query != null) {
+                    return query.getBytes(StandardCharsets.ISO_8859_1);
+                }
+                byte[] body = new byte[contentLength];
+                int read = 0;
+                while (read < contentLength) {
+                    int count = in.read(body, read, contentLength - read);
+                    if (count == -1) {
+                        return null;
+                    }
+                    read += count;
+                }
+                return body;
+            }
+            String header = line.toString();
+            if (query == null) {
+                // the request line
+                String target = header.split(" ")[1];
+                query = target.contains("?") ? target.substring(target.indexOf('?') + 1) : "";
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+            line.setLength(0);
+        }
+        return null;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestHedgingTest {
+
+    @Test
+    public void testHedgedRequestWins() throws Exception {
+        URI uri = URI.create("http://hedging-wins:8080/introspect");
+        RequestHedging hedging = new RequestHedging(95, 100);
+        warmUp(hedging, uri);
+
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<HttpResponse> stalled = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> result = hedging.send(uri, () -> sent.incrementAndGet() == 1 ? stalled : response("hedged"));
+
+        Assert.assertEquals("hedged", result.get(5, TimeUnit.SECONDS).body());
+        Assert.assertEquals(2, sent.get());
+
+        // the slower response is discarded
+        stalled.complete(new HttpResponse(200, Collections.emptyMap(), "first"));
+        Assert.assertEquals("hedged", result.get().body());
+    }
+
+    @Test
+    public void testNoHedgingBeforeEnoughSamples() throws Exception {
+        URI uri = URI.create("http://hedging-samples:8080/introspect");
+        RequestHedging hedging = new RequestHedging(95, 100);
+        for (int i = 0; i < RequestHedging.MIN_SAMPLES - 1; i++) {
+            hedging.send(uri, () -> response("fast")).get();
+        }
+
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<HttpResponse> stalled = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> result = hedging.send(uri, () -> {
+            sent.incrementAndGet();
+            return stalled;
+        });
+        Thread.sleep(200);
+        Assert.assertFalse(result.isDone());
+        Assert.assertEquals(1, sent.get());
+
+        stalled.complete(new HttpResponse(200, Collections.emptyMap(), "slow"));
+        Assert.assertEquals("slow", result.get().body());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        URI uri = URI.create("http://hedging-budget:8080/introspect");
+        RequestHedging hedging = new RequestHedging(95, 10);
+        warmUp(hedging, uri);
+
+        // every request adds a tenth of the hedged request to the budget - about two hedged requests are allowed after the warm-up
+        List<CompletableFuture<HttpResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            AtomicInteger sent = new AtomicInteger();
+            results.add(hedging.send(uri, () -> sent.incrementAndGet() == 1 ? new CompletableFuture<>() : response("hedged")));
+        }
+        Thread.sleep(500);
+        Assert.assertEquals("Hedged requests", 2, results.stream().filter(CompletableFuture::isDone).count());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        URI uri = URI.create("http://hedging-failure:8080/introspect");
+        RequestHedging hedging = new RequestHedging(95, 100);
+        warmUp(hedging, uri);
+
+        // the failed hedged request does not fail the request still in progress
+        CompletableFuture<HttpResponse> slow = new CompletableFuture<>();
+        AtomicInteger sent = new AtomicInteger();
+        CompletableFuture<HttpResponse> result = hedging.send(uri, () -> sent.incrementAndGet() == 1 ? slow : failure());
+        Thread.sleep(200);
+        Assert.assertEquals(2, sent.get());
+        Assert.assertFalse(result.isDone());
+        slow.complete(new HttpResponse(200, Collections.emptyMap(), "slow"));
+        Assert.assertEquals("slow", result.get().body());
+
+        // the request fails once all the requests sent have failed
+        CompletableFuture<HttpResponse> failing = new CompletableFuture<>();
+        sent.set(0);
+        result = hedging.send(uri, () -> sent.incrementAndGet() == 1 ? failing : failure());
+        Thread.sleep(200);
+        Assert.assertFalse(result.isDone());
+        failing.completeExceptionally(new ConnectException("Connection refused"));
+        try {
+            result.get();
+            Assert.fail("Should fail with ConnectException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("Unexpected error: " + e.getCause(), e.getCause() instanceof ConnectException);
+        }
+    }
+
+    private static void warmUp(RequestHedging hedging, URI uri) throws Exception {
+        for (int i = 0; i < RequestHedging.MIN_SAMPLES; i++) {
+            hedging.send(uri, () -> response("fast")).get();
+        }
+    }
+
+    private static CompletableFuture<HttpResponse> response(String body) {
+        return CompletableFuture.completedFuture(new HttpResponse(200, Collections.emptyMap(), body));
+    }
+
+    private static CompletableFuture<HttpResponse> failure() {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        result.completeExceptionally(new ConnectException("Connection refused"));
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.services;
+
+import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
+import io.strimzi.kafka.oauth.validator.HybridTokenValidatorTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SessionsTest {
+
+    @Test
+    public void testExecuteTaskMaxInProgress() throws Exception {
+        Sessions sessions = new Sessions();
+        // keep the references, so that the sessions are not garbage collected
+        List<BearerTokenWithPayload> tokens = new ArrayList<>();
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 10; i++) {
+            BearerTokenWithPayload token = new HybridTokenValidatorTest.MockSession("token-" + i, expiresAt);
+            tokens.add(token);
+            sessions.put(token);
+        }
+
+        List<CompletableFuture<Object>> started = new ArrayList<>();
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<SessionFuture<?>>> scheduled = executor.submit(() -> sessions.executeTask(token -> true, 3, token -> {
+                maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                synchronized (started) {
+                    started.add(future);
+                }
+                return future.whenComplete((result, error) -> inProgress.decrementAndGet());
+            }));
+
+            // complete the tasks one by one, as they are started
+            for (int i = 0; i < tokens.size(); i++) {
+                CompletableFuture<Object> next = null;
+                for (int j = 0; next == null && j < 500; j++) {
+                    synchronized (started) {
+                        if (started.size() > i) {
+                            next = started.get(i);
+                        }
+                    }
+                    if (next == null) {
+                        Thread.sleep(10);
+                    }
+                }
+                Assert.assertNotNull("Task should be started: " + i, next);
+                Thread.sleep(10);
+                next.complete(null);
+            }
+
+            Assert.assertEquals("All the tasks should be started", tokens.size(), scheduled.get(10, TimeUnit.SECONDS).size());
+            Assert.assertEquals("At most 'maxInProgress' tasks should be in progress", 3, maxInProgress.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.services.ServiceException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedExecutorTokenValidatorTest {
+
+    private static final URI ENDPOINT = URI.create("https://mockoauth/introspect");
+
+    @Test
+    public void testDelegation() {
+        TokenValidationException rejection = new TokenValidationException("Token validation failed: Token not active");
+        TokenValidator delegate = new FixedTokenValidator(token -> {
+            if ("bad".equals(token)) {
+                throw rejection;
+            }
+            return new TokenInfo(token, null, "alice", null, System.currentTimeMillis(), System.currentTimeMillis() + 60_000);
+        });
+
+        BoundedExecutorTokenValidator validator = new BoundedExecutorTokenValidator(delegate, ENDPOINT, "introspect", 2, 10, 5000, false);
+        Assert.assertEquals("test", validator.getValidatorId());
+        Assert.assertEquals("alice", validator.validate("good").principal());
+
+        try {
+            validator.validate("bad");
+            Assert.fail("Validation should have failed");
+        } catch (TokenValidationException e) {
+            Assert.assertSame("The exception of the delegate should be rethrown", rejection, e);
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TokenValidator delegate = new FixedTokenValidator(token -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TokenInfo(token, null, "alice", null, System.currentTimeMillis(), System.currentTimeMillis() + 60_000);
+        });
+
+        BoundedExecutorTokenValidator validator = new BoundedExecutorTokenValidator(delegate, ENDPOINT, "introspect", 1, 1, 500, false);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one validation in progress, and one waiting in the queue
+            Future<?> inProgress = callers.submit(() -> validator.validate("token-1"));
+            Thread.sleep(100);
+            Future<?> queued = callers.submit(() -> validator.validate("token-2"));
+            Thread.sleep(100);
+
+            long start = System.currentTimeMillis();
+            try {
+                validator.validate("token-3");
+                Assert.fail("Validation should be rejected when the queue is full");
+            } catch (ServiceException e) {
+                Assert.assertTrue("Rejection should be immediate", System.currentTimeMillis() - start < 400);
+            }
+
+            for (Future<?> result : new Future<?>[] {inProgress, queued}) {
+                try {
+                    result.get();
+                    Assert.fail("Validation should time out");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue("Unexpected exception: " + e.getCause(), e.getCause() instanceof ServiceException);
+                }
+            }
+        } finally {
+            release.countDown();
+            callers.shutdown();
+        }
+
+        // once the delegate responds again, validations are accepted again
+        long deadline = System.currentTimeMillis() + 5000;
+        TokenInfo info = null;
+        while (info == null && System.currentTimeMillis() < deadline) {
+            try {
+                info = validator.validate("token-4");
+            } catch (ServiceException e) {
+                Thread.sleep(100);
+            }
+        }
+        Assert.assertNotNull("Validation should succeed", info);
+    }
+
+    interface ValidateFunction {
+        TokenInfo validate(String token);
+    }
+
+    static class FixedTokenValidator implements TokenValidator {
+
+        private final ValidateFunction function;
+
+        FixedTokenValidator(ValidateFunction function) {
+            this.function = function;
+        }
+
+        @Override
+        public TokenInfo validate(String token) {
+            return function.validate(token);
+        }
+
+        @Override
+        public String getValidatorId() {
+            return "test";
+        }
+    }
+}
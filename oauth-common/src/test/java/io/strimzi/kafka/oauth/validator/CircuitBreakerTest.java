@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.HttpException;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.services.CurrentTime;
+import io.strimzi.kafka.oauth.services.CurrentTimeProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CircuitBreakerTest {
+
+    @After
+    public void resetTime() {
+        CurrentTime.setCurrentTimeProvider(CurrentTimeProvider.DEFAULT);
+    }
+
+    @Test
+    public void testTransitions() {
+        MockCurrentTimeProvider time = new MockCurrentTimeProvider();
+        CurrentTime.setCurrentTimeProvider(time);
+
+        List<CircuitBreaker.State> transitions = new ArrayList<>();
+        CircuitBreaker breaker = new CircuitBreaker(4, 50, 10_000, transitions::add);
+
+        // the error rate is only evaluated once the window is full
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Assert.assertFalse("Requests should be rejected while open", breaker.allowRequest());
+
+        time.addSeconds(11);
+        Assert.assertTrue("Probe should be let through", breaker.allowRequest());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        Assert.assertFalse("Only one probe at a time", breaker.allowRequest());
+
+        // the failed probe opens the breaker for another period
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Assert.assertFalse(breaker.allowRequest());
+
+        time.addSeconds(11);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        Assert.assertTrue(breaker.allowRequest());
+
+        Assert.assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.OPEN,
+                CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), transitions);
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 75, 10_000, state -> { });
+        for (int i = 0; i < 10; i++) {
+            // every other request fails, which is below the error rate
+            breaker.recordFailure();
+            breaker.recordSuccess();
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void testIntrospectionValidator() throws Exception {
+        MockCurrentTimeProvider time = new MockCurrentTimeProvider();
+        CurrentTime.setCurrentTimeProvider(time);
+
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            server.addToken("token-1", "alice", expiresAt);
+            server.addToken("token-2", "bob", expiresAt);
+
+            OAuthIntrospectionValidator validator = new OAuthIntrospectionValidator("circuit-breaker-test",
+                    server.introspectionUri(), null, null, new PrincipalExtractor(), null, null, null, null, null,
+                    "kafka", "kafka-secret", null, null, 10, 10,
+                    new IntrospectionOptions().withCache(10, 30, 0).withCircuitBreaker(50, 2, 60, true), false);
+
+            Assert.assertEquals("alice", validator.validate("token-1").principal());
+
+            // with one of the two most recent requests failed the error rate is reached
+            server.setFailureStatus(503);
+            try {
+                validator.validate("token-2");
+                Assert.fail("Validation should fail while the authorization server is unavailable");
+            } catch (HttpException expected) {
+            }
+            Assert.assertEquals(2, server.requestCount());
+
+            // the circuit breaker is open
+            try {
+                validator.validate("token-2");
+                Assert.fail("Validation should fail fast while the circuit breaker is open");
+            } catch (ValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("circuit breaker open"));
+            }
+            // the cached result is past its freshness, but the token has not expired yet
+            time.addSeconds(35);
+            Assert.assertEquals("Cached result should be used while the circuit breaker is open", "alice", validator.validate("token-1").principal());
+            Assert.assertEquals(2, server.requestCount());
+
+            // the probe succeeds and closes the circuit breaker
+            server.setFailureStatus(0);
+            time.addSeconds(30);
+            Assert.assertEquals("bob", validator.validate("token-2").principal());
+            Assert.assertEquals("alice", validator.validate("token-1").principal());
+            Assert.assertEquals(4, server.requestCount());
+        }
+    }
+}
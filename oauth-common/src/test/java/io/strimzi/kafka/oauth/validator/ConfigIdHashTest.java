@@ -26,6 +26,54 @@ public class ConfigIdHashTest {
         Assert.assertEquals("Config id hash mismatch", "208f4f6d", key4.getConfigIdHash());
     }
 
+    @Test
+    public void testJwtValidatorKey() {
+
+        // the hash of the configuration without the optional features is the same as before they were added
+        ValidatorKey vkey = getJwtKey(null, 0);
+        Assert.assertEquals("Config id hash mismatch", "5c2fbd8c", vkey.getConfigIdHash());
+
+        ValidatorKey key2 = getJwtKey("/var/cache/jwks", 0);
+        ValidatorKey key3 = getJwtKey(null, 1000);
+
+        Assert.assertNotEquals("Config id hash should differ", vkey.getConfigIdHash(), key2.getConfigIdHash());
+        Assert.assertNotEquals("Config id hash should differ", vkey.getConfigIdHash(), key3.getConfigIdHash());
+        Assert.assertNotEquals("Config id hash should differ", key2.getConfigIdHash(), key3.getConfigIdHash());
+    }
+
+    ValidatorKey getJwtKey(String jwksSnapshotDir, int validatedTokenCacheSize) {
+        return new ValidatorKey.JwtValidatorKey(
+                "http://mockoauth:8080",
+                null,
+                null,
+                "preferred_username",
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                false,
+                "http://mockoauth:8080/jwks",
+                300,
+                360,
+                1,
+                false,
+                false,
+                jwksSnapshotDir,
+                true,
+                60,
+                60,
+                validatedTokenCacheSize,
+                0,
+                30,
+                0,
+                true,
+                true);
+    }
+
     ValidatorKey getKey(String groupQuery, String groupDelimiter) {
         ValidatorKey key = new ValidatorKey.IntrospectionValidatorKey(
                 "http://mockoauth:8080",
@@ -48,6 +96,24 @@ public class ConfigIdHashTest {
                 "example-client-secret",
                 60,
                 60,
+                0,
+                100,
+                5000,
+                0,
+                60,
+                0,
+                0,
+                60,
+                false,
+                0,
+                20,
+                30,
+                false,
+                0,
+                10,
+                0,
+                2,
+                10000,
                 true);
 
         return key;
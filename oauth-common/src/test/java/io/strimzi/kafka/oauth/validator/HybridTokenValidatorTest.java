@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.services.Services;
+import io.strimzi.kafka.oauth.services.Sessions;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+public class HybridTokenValidatorTest {
+
+    @BeforeClass
+    public static void configureServices() {
+        Services.configure(Collections.emptyMap());
+    }
+
+    @Test
+    public void testActiveToken() throws Exception {
+        try (MockJwksServer jwksServer = new MockJwksServer();
+             MockIntrospectionServer introspectionServer = new MockIntrospectionServer()) {
+            RSAKey key = jwksServer.addKey("key-1");
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            String token = MockJwksServer.createToken(key, "alice", expiresAt);
+            introspectionServer.addToken(token, "alice", expiresAt);
+
+            HybridTokenValidator validator = createValidator("hybrid-active-test", jwksServer, introspectionServer);
+            Sessions sessions = Services.getInstance().getSessions();
+            BearerTokenWithPayload session = new MockSession(token, expiresAt);
+            sessions.put(session);
+
+            Assert.assertEquals("alice", validator.validate(token).principal());
+            waitFor(() -> introspectionServer.requestCount() == 1, "Token should be introspected in the background");
+            Thread.sleep(200);
+
+            Assert.assertEquals("alice", validator.validate(token).principal());
+            Thread.sleep(200);
+            Assert.assertEquals("Active token should only be introspected once", 1, introspectionServer.requestCount());
+            Assert.assertFalse(sessions.isInvalidated(session));
+        }
+    }
+
+    @Test
+    public void testRevokedToken() throws Exception {
+        try (MockJwksServer jwksServer = new MockJwksServer();
+             MockIntrospectionServer introspectionServer = new MockIntrospectionServer()) {
+            RSAKey key = jwksServer.addKey("key-1");
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            String token = MockJwksServer.createToken(key, "bob", expiresAt);
+            introspectionServer.addToken(token, "bob", expiresAt);
+            introspectionServer.revokeToken(token);
+
+            HybridTokenValidator validator = createValidator("hybrid-revoked-test", jwksServer, introspectionServer);
+            Sessions sessions = Services.getInstance().getSessions();
+            BearerTokenWithPayload session = new MockSession(token, expiresAt);
+            sessions.put(session);
+
+            // the authentication does not wait for the introspection
+            Assert.assertEquals("bob", validator.validate(token).principal());
+            waitFor(() -> sessions.isInvalidated(session), "Session using the revoked token should be invalidated");
+
+            try {
+                validator.validate(token);
+                Assert.fail("Revoked token should fail validation");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Token not active"));
+            }
+            Assert.assertEquals(1, introspectionServer.requestCount());
+
+            BearerTokenWithPayload laterSession = new MockSession(token, expiresAt);
+            sessions.put(laterSession);
+            Assert.assertTrue("Session added after the revocation should be invalidated", sessions.isInvalidated(laterSession));
+        }
+    }
+
+    @Test
+    public void testActiveTokenFailingIntrospectionChecks() throws Exception {
+        try (MockJwksServer jwksServer = new MockJwksServer();
+             MockIntrospectionServer introspectionServer = new MockIntrospectionServer()) {
+            RSAKey key = jwksServer.addKey("key-1");
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            String token = MockJwksServer.createToken(key, "carol", expiresAt);
+            introspectionServer.addToken(token, "carol", expiresAt);
+
+            // the introspection response has no "iss", so the issuer check of the introspection validator fails
+            HybridTokenValidator validator = createValidator("hybrid-checks-test", jwksServer, introspectionServer, MockJwksServer.ISSUER);
+            Sessions sessions = Services.getInstance().getSessions();
+            BearerTokenWithPayload session = new MockSession(token, expiresAt);
+            sessions.put(session);
+
+            Assert.assertEquals("carol", validator.validate(token).principal());
+            waitFor(() -> introspectionServer.requestCount() == 1, "Token should be introspected in the background");
+            Thread.sleep(200);
+
+            Assert.assertFalse("Active token failing the introspection checks is not revoked", sessions.isInvalidated(session));
+            Assert.assertEquals("carol", validator.validate(token).principal());
+            Thread.sleep(200);
+            Assert.assertEquals("Active token should only be introspected once", 1, introspectionServer.requestCount());
+        }
+    }
+
+    private static HybridTokenValidator createValidator(String validatorId, MockJwksServer jwksServer, MockIntrospectionServer introspectionServer) {
+        return createValidator(validatorId, jwksServer, introspectionServer, null);
+    }
+
+    private static HybridTokenValidator createValidator(String validatorId, MockJwksServer jwksServer, MockIntrospectionServer introspectionServer,
+                                                        String introspectionIssuer) {
+        JWTSignatureValidator jwtValidator = new JWTSignatureValidator(validatorId,
+                jwksServer.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                MockJwksServer.ISSUER, 300, 0, 360, false, true, null, null, 10, 10, false, true);
+        OAuthIntrospectionValidator introspectionValidator = new OAuthIntrospectionValidator(validatorId + "-introspect",
+                introspectionServer.introspectionUri(), null, null, new PrincipalExtractor(), null, null, introspectionIssuer, null, null,
+                "kafka", "kafka-secret", null, null, 10, 10, false);
+        return new HybridTokenValidator(jwtValidator, introspectionValidator,
+                URI.create(introspectionServer.introspectionUri()), 1, 10, 100, false);
+    }
+
+    private static void waitFor(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail(message);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    public static class MockSession implements BearerTokenWithPayload {
+
+        private final String token;
+        private final long expiresAtMs;
+        private Object payload;
+
+        public MockSession(String token, long expiresAtMs) {
+            this.token = token;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        @Override
+        public Object getPayload() {
+            return payload;
+        }
+
+        @Override
+        public void setPayload(Object payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public Set<String> getGroups() {
+            return null;
+        }
+
+        @Override
+        public ObjectNode getJSON() {
+            return null;
+        }
+
+        @Override
+        public String value() {
+            return token;
+        }
+
+        @Override
+        public Set<String> scope() {
+            return null;
+        }
+
+        @Override
+        public long lifetimeMs() {
+            return expiresAtMs;
+        }
+
+        @Override
+        public String principalName() {
+            return null;
+        }
+
+        @Override
+        public Long startTimeMs() {
+            return null;
+        }
+    }
+}
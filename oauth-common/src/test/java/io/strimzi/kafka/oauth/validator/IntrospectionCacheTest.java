@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.services.CurrentTime;
+import io.strimzi.kafka.oauth.services.CurrentTimeProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntrospectionCacheTest {
+
+    @After
+    public void resetTime() {
+        CurrentTime.setCurrentTimeProvider(CurrentTimeProvider.DEFAULT);
+    }
+
+    @Test
+    public void testCachedResult() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            server.addToken("token-1", "alice", System.currentTimeMillis() + 300_000);
+            OAuthIntrospectionValidator validator = createValidator(server, 10, 60, 0);
+
+            TokenInfo info = validator.validate("token-1");
+            Assert.assertEquals("alice", info.principal());
+
+            TokenInfo cached = validator.validate("token-1");
+            Assert.assertEquals("Cached result should be used", 1, server.requestCount());
+            Assert.assertEquals("alice", cached.principal());
+            Assert.assertEquals("token-1", cached.token());
+            Assert.assertEquals(info.scope(), cached.scope());
+            Assert.assertEquals(info.expiresAtMs(), cached.expiresAtMs());
+        }
+    }
+
+    @Test
+    public void testMaxTtl() throws Exception {
+        MockCurrentTimeProvider time = new MockCurrentTimeProvider();
+        CurrentTime.setCurrentTimeProvider(time);
+
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            server.addToken("token-1", "alice", System.currentTimeMillis() + 300_000);
+            OAuthIntrospectionValidator validator = createValidator(server, 10, 30, 0);
+            validator.validate("token-1");
+
+            // the token is revoked, but remains valid until the cache entry expires
+            server.revokeToken("token-1");
+            time.addSeconds(20);
+            Assert.assertEquals("alice", validator.validate("token-1").principal());
+            Assert.assertEquals(1, server.requestCount());
+
+            time.addSeconds(20);
+            try {
+                validator.validate("token-1");
+                Assert.fail("Revoked token should fail validation once the cache entry expires");
+            } catch (TokenValidationException expected) {
+            }
+            Assert.assertEquals(2, server.requestCount());
+        }
+    }
+
+    @Test
+    public void testInactiveTokens() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            OAuthIntrospectionValidator validator = createValidator(server, 10, 60, 0);
+            assertNotActive(validator, "unknown");
+            assertNotActive(validator, "unknown");
+            Assert.assertEquals("'Not active' results should not be cached by default", 2, server.requestCount());
+
+            validator = createValidator(server, 10, 60, 30);
+            TokenValidationException first = assertNotActive(validator, "unknown");
+            TokenValidationException second = assertNotActive(validator, "unknown");
+            Assert.assertEquals("'Not active' result should be cached", 3, server.requestCount());
+            Assert.assertNotSame("Every validation should get its own exception", first, second);
+        }
+    }
+
+    private static TokenValidationException assertNotActive(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            throw new AssertionError("Token should not be active");
+        } catch (TokenValidationException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Token not active"));
+            return e;
+        }
+    }
+
+    private static OAuthIntrospectionValidator createValidator(MockIntrospectionServer server, int cacheSize, int cacheMaxTtlSeconds, int inactiveCacheTtlSeconds) {
+        return new OAuthIntrospectionValidator("introspection-cache-test",
+                server.introspectionUri(), null, null, new PrincipalExtractor(), null, null, null, null, null,
+                "kafka", "kafka-secret", null, null, 10, 10,
+                new IntrospectionOptions().withCache(cacheSize, cacheMaxTtlSeconds, inactiveCacheTtlSeconds), false);
+    }
+}
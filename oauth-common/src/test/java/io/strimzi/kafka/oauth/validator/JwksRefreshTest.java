@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.services.ServiceException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BooleanSupplier;
+
+public class JwksRefreshTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testConditionalRefresh() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            server.setUseEtag(true);
+            RSAKey key1 = server.addKey("key-1");
+
+            JWTSignatureValidator validator = createValidator("conditional-refresh-test", server, 1, 61, false);
+            String token1 = MockJwksServer.createToken(key1, "alice", System.currentTimeMillis() + 300_000);
+            Assert.assertEquals("alice", validator.validate(token1).principal());
+
+            waitFor(() -> server.notModifiedCount() >= 2, "Regular refresh should receive '304 Not Modified'");
+            Assert.assertEquals("alice", validator.validate(token1).principal());
+
+            // a changed key set is still picked up
+            RSAKey key2 = server.addKey("key-2");
+            String token2 = MockJwksServer.createToken(key2, "bob", System.currentTimeMillis() + 300_000);
+            waitFor(() -> isValid(validator, token2), "Token signed with the new key should eventually be valid");
+            Assert.assertEquals("alice", validator.validate(token1).principal());
+        }
+    }
+
+    @Test
+    public void testCacheControl() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            server.setCacheControl("public, max-age=3600");
+            RSAKey key1 = server.addKey("key-1");
+
+            JWTSignatureValidator validator = createValidator("cache-control-test", server, 1, 600, true);
+            String token1 = MockJwksServer.createToken(key1, "alice", System.currentTimeMillis() + 300_000);
+            Assert.assertEquals("alice", validator.validate(token1).principal());
+
+            Thread.sleep(3000);
+            Assert.assertEquals("Regular refresh should be skipped while the keys are fresh", 1, server.requestCount());
+
+            // an unknown signing key still triggers the refresh
+            RSAKey key2 = server.addKey("key-2");
+            String token2 = MockJwksServer.createToken(key2, "bob", System.currentTimeMillis() + 300_000);
+            waitFor(() -> isValid(validator, token2), "Token signed with the new key should eventually be valid");
+        }
+    }
+
+    @Test
+    public void testCacheControlLimitedByExpiry() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            server.setCacheControl("public, max-age=3600");
+            server.addKey("key-1");
+
+            // the keys have to be refreshed 60 seconds before they expire, so the max-age is capped at 2 seconds
+            createValidator("cache-control-expiry-test", server, 1, 62, true);
+            waitFor(() -> server.requestCount() >= 3, "The keys should be refreshed before they expire");
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        String snapshotDir = tempFolder.getRoot().getAbsolutePath();
+        Path snapshotFile = JwksSnapshot.snapshotFile(tempFolder.getRoot().toPath(), "snapshot-test");
+        String jwksUri;
+        String token;
+
+        try (MockJwksServer server = new MockJwksServer()) {
+            jwksUri = server.jwksUri();
+            RSAKey key = server.addKey("key-1");
+            token = MockJwksServer.createToken(key, "alice", System.currentTimeMillis() + 300_000);
+
+            createValidator("snapshot-test", jwksUri, 300, 360, false, snapshotDir);
+            Assert.assertTrue("Snapshot should be written", Files.exists(snapshotFile));
+        }
+
+        // authorization server is down, but the keys are loaded from the snapshot
+        JWTSignatureValidator validator = createValidator("snapshot-test", jwksUri, 300, 360, false, snapshotDir);
+        Assert.assertEquals("alice", validator.validate(token).principal());
+
+        // the keys in the snapshot have expired
+        JwksSnapshot snapshot = JwksSnapshot.read(snapshotFile);
+        long expired = System.currentTimeMillis() - 360_000;
+        new JwksSnapshot(expired, null, null, snapshot.jwks()).write(snapshotFile);
+        // just written, like a copied or restored file, but the fetch time stored in it counts
+        Files.setLastModifiedTime(snapshotFile, FileTime.fromMillis(System.currentTimeMillis()));
+        try {
+            createValidator("snapshot-test", jwksUri, 300, 360, false, snapshotDir);
+            Assert.fail("Expired snapshot should not be used");
+        } catch (ServiceException expected) {
+        }
+    }
+
+    @Test
+    public void testSnapshotFetchTimeUpdatedWhenKeysUnchanged() throws Exception {
+        String snapshotDir = tempFolder.getRoot().getAbsolutePath();
+        Path snapshotFile = JwksSnapshot.snapshotFile(tempFolder.getRoot().toPath(), "snapshot-unchanged-test");
+
+        try (MockJwksServer server = new MockJwksServer()) {
+            server.addKey("key-1");
+
+            createValidator("snapshot-unchanged-test", server.jwksUri(), 1, 360, false, snapshotDir);
+            JwksSnapshot snapshot = JwksSnapshot.read(snapshotFile);
+
+            waitFor(() -> server.requestCount() >= 3, "The keys should be refreshed");
+            JwksSnapshot refreshed = JwksSnapshot.read(snapshotFile);
+            Assert.assertEquals("Snapshot keys should stay the same", snapshot.jwks(), refreshed.jwks());
+            Assert.assertTrue("Snapshot fetch time should be updated", refreshed.fetchTime() > snapshot.fetchTime());
+        }
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            RSAKey key = server.addKey("key-1");
+
+            JWTSignatureValidator validator = new JWTSignatureValidator("warmup-test",
+                    server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                    MockJwksServer.ISSUER, 300, 0, 360, false, true, null, "@.sub =~ /^alice$/", 10, 10,
+                    new JwksOptions().withRejectedTokenCache(100, 30).withWarmup(50), false, true);
+
+            Assert.assertEquals("Synthetic tokens should not trigger the keys refresh", 1, server.requestCount());
+
+            String token = MockJwksServer.createToken(key, "alice", System.currentTimeMillis() + 300_000);
+            Assert.assertEquals("alice", validator.validate(token).principal());
+
+            String other = MockJwksServer.createToken(key, "bob", System.currentTimeMillis() + 300_000);
+            Assert.assertFalse("Custom claim check should still apply after the warm-up", isValid(validator, other));
+        }
+    }
+
+    @Test
+    public void testClaimsCheckedBeforeSignature() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            server.addKey("key-1");
+            JWTSignatureValidator validator = createValidator("claims-first-test", server, 300, 360, false);
+
+            // signed with a key unknown to the authorization server, which would otherwise trigger the keys refresh
+            RSAKey unknownKey = new RSAKeyGenerator(2048).keyID("unknown").generate();
+
+            String expired = MockJwksServer.createToken(unknownKey, "alice", System.currentTimeMillis() - 60_000);
+            try {
+                validator.validate(expired);
+                Assert.fail("Expired token should fail validation");
+            } catch (TokenExpiredException expected) {
+            }
+
+            String wrongIssuer = MockJwksServer.createToken(unknownKey, "https://other/issuer", "alice", System.currentTimeMillis() + 300_000);
+            try {
+                validator.validate(wrongIssuer);
+                Assert.fail("Token with the wrong issuer should fail validation");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Issuer not allowed"));
+            }
+
+            Thread.sleep(500);
+            Assert.assertEquals("Rejected tokens should not trigger the keys refresh", 1, server.requestCount());
+
+            // a token that passes the claims checks still has its signature checked
+            String valid = MockJwksServer.createToken(unknownKey, "alice", System.currentTimeMillis() + 300_000);
+            try {
+                validator.validate(valid);
+                Assert.fail("Token signed with an unknown key should fail validation");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown signing key"));
+            }
+        }
+    }
+
+    private static JWTSignatureValidator createValidator(String validatorId, MockJwksServer server, int refreshSeconds,
+                                                         int expirySeconds, boolean respectCacheControl) {
+        return createValidator(validatorId, server.jwksUri(), refreshSeconds, expirySeconds, respectCacheControl, null);
+    }
+
+    private static JWTSignatureValidator createValidator(String validatorId, String jwksUri, int refreshSeconds,
+                                                         int expirySeconds, boolean respectCacheControl, String snapshotDir) {
+        return new JWTSignatureValidator(validatorId,
+                jwksUri, null, null, new PrincipalExtractor(), null, null,
+                MockJwksServer.ISSUER, refreshSeconds, 0, expirySeconds, false, true, null, null, 10, 10,
+                new JwksOptions().withCacheControl(respectCacheControl).withSnapshot(snapshotDir), false, true);
+    }
+
+    private static boolean isValid(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            return true;
+        } catch (TokenValidationException e) {
+            return false;
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail(message);
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.strimzi.kafka.oauth.common.IOUtil;
+import io.strimzi.kafka.oauth.common.JSONUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal introspection endpoint on localhost which reports the registered tokens as active, and any other token as not active.
+ * The user info endpoint returns the 'username' attribute, which is not part of the introspection endpoint response.
+ */
+public class MockIntrospectionServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger userInfoRequestCount = new AtomicInteger();
+
+    private final Map<String, ObjectNode> activeTokens = new ConcurrentHashMap<>();
+
+    private volatile long responseDelayMs;
+    private volatile int failureStatus;
+
+    public MockIntrospectionServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/introspect", exchange -> {
+            requestCount.incrementAndGet();
+            String token;
+            ByteArrayOutputStream form = new ByteArrayOutputStream();
+            try (InputStream is = exchange.getRequestBody()) {
+                IOUtil.copy(is, form);
+            }
+            String params = new String(form.toByteArray(), StandardCharsets.UTF_8);
+            token = URLDecoder.decode(params.substring(params.indexOf('=') + 1), "UTF-8");
+            delay();
+            if (failureStatus > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                exchange.close();
+                return;
+            }
+            ObjectNode response = activeTokens.get(token);
+            if (response == null) {
+                response = JSONUtil.newObjectNode();
+                response.put("active", false);
+            }
+            sendResponse(exchange, response);
+        });
+        server.createContext("/userinfo", exchange -> {
+            userInfoRequestCount.incrementAndGet();
+            delay();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            ObjectNode token = authorization != null ? activeTokens.get(authorization.substring("Bearer ".length())) : null;
+            if (token == null) {
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+                return;
+            }
+            ObjectNode response = JSONUtil.newObjectNode();
+            response.put("sub", token.get("sub").asText());
+            response.put("username", token.get("sub").asText() + "-username");
+            sendResponse(exchange, response);
+        });
+        // concurrent requests are handled concurrently
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String introspectionUri() {
+        return "http://localhost:" + server.getAddress().getPort() + "/introspect";
+    }
+
+    public String userInfoUri() {
+        return "http://localhost:" + server.getAddress().getPort() + "/userinfo";
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    public int userInfoRequestCount() {
+        return userInfoRequestCount.get();
+    }
+
+    public void setResponseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+    }
+
+    public void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    public void addToken(String token, String subject, long expiresAtMs) {
+        ObjectNode response = JSONUtil.newObjectNode();
+        response.put("active", true);
+        response.put("sub", subject);
+        response.put("scope", "profile email");
+        response.put("iat", System.currentTimeMillis() / 1000);
+        response.put("exp", expiresAtMs / 1000);
+        activeTokens.put(token, response);
+    }
+
+    public void revokeToken(String token) {
+        activeTokens.remove(token);
+    }
+
+    private static void sendResponse(HttpExchange exchange, ObjectNode response) throws IOException {
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private void delay() {
+        if (responseDelayMs > 0) {
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import io.strimzi.kafka.oauth.common.IOUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal JWKS endpoint on localhost serving a mutable set of generated RSA signing keys
+ */
+public class MockJwksServer implements AutoCloseable {
+
+    static final String ISSUER = "https://mockoauth/issuer";
+
+    private final HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    private volatile boolean useEtag;
+    private volatile String cacheControl;
+
+    private volatile List<RSAKey> keys = Collections.emptyList();
+
+    public MockJwksServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            requestCount.incrementAndGet();
+            List<JWK> publicKeys = new ArrayList<>();
+            for (RSAKey key : keys) {
+                publicKeys.add(key.toPublicJWK());
+            }
+            String jwks = new JWKSet(publicKeys).toString();
+            String etag = "\"" + IOUtil.sha256Hex(jwks) + "\"";
+            if (cacheControl != null) {
+                exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            }
+            if (useEtag) {
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedCount.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] body = jwks.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    public String jwksUri() {
+        return "http://localhost:" + server.getAddress().getPort() + "/jwks";
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    public int notModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public void setUseEtag(boolean useEtag) {
+        this.useEtag = useEtag;
+    }
+
+    public void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public RSAKey addKey(String kid) throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID(kid).keyUse(KeyUse.SIGNATURE).generate();
+        List<RSAKey> newKeys = new ArrayList<>(keys);
+        newKeys.add(key);
+        keys = newKeys;
+        return key;
+    }
+
+    public void removeKey(String kid) {
+        List<RSAKey> newKeys = new ArrayList<>(keys);
+        newKeys.removeIf(k -> kid.equals(k.getKeyID()));
+        keys = newKeys;
+    }
+
+    public static String createToken(RSAKey key, String subject, long expiresAtMs) throws JOSEException {
+        return createToken(key, ISSUER, subject, expiresAtMs);
+    }
+
+    public static String createToken(RSAKey key, String issuer, String subject, long expiresAtMs) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .issuer(issuer)
+                .claim("typ", "Bearer")
+                .issueTime(new Date())
+                .expirationTime(new Date(expiresAtMs))
+                .build();
+
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
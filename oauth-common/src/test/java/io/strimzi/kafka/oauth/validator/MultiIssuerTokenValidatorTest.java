@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.jwk.RSAKey;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MultiIssuerTokenValidatorTest {
+
+    private static final String ISSUER_A = "https://mockoauth/realms/a";
+    private static final String ISSUER_B = "https://mockoauth/realms/b";
+
+    @Test
+    public void testRouting() throws Exception {
+        try (MockJwksServer serverA = new MockJwksServer(); MockJwksServer serverB = new MockJwksServer()) {
+            RSAKey keyA = serverA.addKey("a1");
+            RSAKey keyB = serverB.addKey("b1");
+            RSAKey sharedA = serverA.addKey("shared");
+            RSAKey sharedB = serverB.addKey("shared");
+
+            MultiIssuerTokenValidator validator = new MultiIssuerTokenValidator("multi",
+                    Arrays.asList(createValidator("multi-a", serverA, ISSUER_A), createValidator("multi-b", serverB, ISSUER_B)));
+
+            long exp = System.currentTimeMillis() + 300_000;
+            Assert.assertEquals("alice", validator.validate(MockJwksServer.createToken(keyA, ISSUER_A, "alice", exp)).principal());
+            Assert.assertEquals("bob", validator.validate(MockJwksServer.createToken(keyB, ISSUER_B, "bob", exp)).principal());
+
+            // the key id used by both issuers is routed by the 'iss' claim
+            Assert.assertEquals("alice", validator.validate(MockJwksServer.createToken(sharedA, ISSUER_A, "alice", exp)).principal());
+            Assert.assertEquals("bob", validator.validate(MockJwksServer.createToken(sharedB, ISSUER_B, "bob", exp)).principal());
+
+            // routing by the key id does not skip the issuer check
+            assertRejected(validator, MockJwksServer.createToken(keyA, ISSUER_B, "mallory", exp), "Issuer not allowed");
+            assertRejected(validator, MockJwksServer.createToken(sharedA, ISSUER_B, "mallory", exp), "Invalid token signature");
+            assertRejected(validator, MockJwksServer.createToken(keyA, "https://unknown", "mallory", exp), "Issuer not allowed");
+
+            // the new key is routed by the 'iss' claim until the keys of the issuer are refreshed
+            RSAKey keyA2 = serverA.addKey("a2");
+            String token = MockJwksServer.createToken(keyA2, ISSUER_A, "carol", exp);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!isValid(validator, token) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals("carol", validator.validate(token).principal());
+        }
+    }
+
+    private static boolean isValid(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            return true;
+        } catch (TokenValidationException e) {
+            return false;
+        }
+    }
+
+    private static void assertRejected(TokenValidator validator, String token, String message) {
+        try {
+            validator.validate(token);
+            Assert.fail("Validation should have failed");
+        } catch (TokenValidationException e) {
+            Assert.assertTrue("Unexpected message: " + e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static JWTSignatureValidator createValidator(String validatorId, MockJwksServer server, String issuer) {
+        return new JWTSignatureValidator(validatorId,
+                server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                issuer, 300, 0, 360, false, true, null, null, 10, 10, false, true);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PublicKeyVerifierTest {
+
+    @Test
+    public void testRSA() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("rsa").generate();
+        PublicKeyVerifier verifier = new PublicKeyVerifier(key.toPublicKey());
+
+        for (JWSAlgorithm alg : new JWSAlgorithm[] {JWSAlgorithm.RS256, JWSAlgorithm.RS512, JWSAlgorithm.PS256}) {
+            assertVerifies(verifier, sign(new RSASSASigner(key), alg, "rsa"));
+        }
+
+        RSAKey otherKey = new RSAKeyGenerator(2048).keyID("rsa").generate();
+        Assert.assertFalse("Signature by another key should not verify",
+                SignedJWT.parse(sign(new RSASSASigner(otherKey), JWSAlgorithm.RS256, "rsa")).verify(verifier));
+
+        // the verifier should still work after a failed verification
+        assertVerifies(verifier, sign(new RSASSASigner(key), JWSAlgorithm.RS256, "rsa"));
+    }
+
+    @Test
+    public void testEC() throws Exception {
+        ECKey key = new ECKeyGenerator(Curve.P_256).keyID("ec").generate();
+        PublicKeyVerifier verifier = new PublicKeyVerifier(key.toPublicKey());
+
+        assertVerifies(verifier, sign(new ECDSASigner(key), JWSAlgorithm.ES256, "ec"));
+
+        String token = sign(new ECDSASigner(key), JWSAlgorithm.ES256, "ec");
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        Assert.assertFalse("Truncated signature should not verify", SignedJWT.parse(tampered).verify(verifier));
+
+        try {
+            SignedJWT.parse(sign(new RSASSASigner(new RSAKeyGenerator(2048).generate()), JWSAlgorithm.RS256, "ec")).verify(verifier);
+            Assert.fail("Algorithm not matching the key should fail");
+        } catch (JOSEException expected) {
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("rsa").generate();
+        PublicKeyVerifier verifier = new PublicKeyVerifier(key.toPublicKey());
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tokens.add(sign(new RSASSASigner(key), JWSAlgorithm.RS256, "rsa"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String token = tokens.get(i % tokens.size());
+                results.add(executor.submit(() -> SignedJWT.parse(token).verify(verifier)));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue("Signature should verify", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertVerifies(PublicKeyVerifier verifier, String token) throws Exception {
+        Assert.assertTrue("Signature should verify", SignedJWT.parse(token).verify(verifier));
+    }
+
+    private static String sign(JWSSigner signer, JWSAlgorithm alg, String kid) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder().subject("alice").build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(alg).keyID(kid).build(), claims);
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.services.Services;
+import io.strimzi.kafka.oauth.services.Sessions;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+
+public class ReintrospectingTokenValidatorTest {
+
+    @BeforeClass
+    public static void configureServices() {
+        Services.configure(Collections.emptyMap());
+    }
+
+    @Test
+    public void testRevokedDuringSession() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            server.addToken("reintrospect-token-1", "alice", expiresAt);
+            server.addToken("reintrospect-token-2", "bob", expiresAt);
+
+            OAuthIntrospectionValidator introspectionValidator = new OAuthIntrospectionValidator("reintrospect-test",
+                    server.introspectionUri(), null, null, new PrincipalExtractor(), null, null, null, null, null,
+                    "kafka", "kafka-secret", null, null, 10, 10, false);
+            ReintrospectingTokenValidator validator = new ReintrospectingTokenValidator(introspectionValidator, introspectionValidator,
+                    URI.create(server.introspectionUri()), 1, 2, 100, false);
+
+            Sessions sessions = Services.getInstance().getSessions();
+            BearerTokenWithPayload revoked = new HybridTokenValidatorTest.MockSession("reintrospect-token-1", expiresAt);
+            BearerTokenWithPayload active = new HybridTokenValidatorTest.MockSession("reintrospect-token-2", expiresAt);
+            BearerTokenWithPayload sameToken = new HybridTokenValidatorTest.MockSession("reintrospect-token-2", expiresAt);
+            // a session authenticated by another validator, unknown to this authorization server
+            BearerTokenWithPayload foreign = new HybridTokenValidatorTest.MockSession("reintrospect-foreign", expiresAt);
+
+            Assert.assertEquals("alice", validator.validate("reintrospect-token-1").principal());
+            Assert.assertEquals("bob", validator.validate("reintrospect-token-2").principal());
+            sessions.put(revoked);
+            sessions.put(active);
+            sessions.put(sameToken);
+            sessions.put(foreign);
+            Assert.assertEquals(2, server.requestCount());
+
+            server.revokeToken("reintrospect-token-1");
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!sessions.isInvalidated(revoked)) {
+                if (System.currentTimeMillis() > deadline) {
+                    Assert.fail("Session using the revoked token should be invalidated");
+                }
+                Thread.sleep(50);
+            }
+
+            // the next period starts at least 900 ms after the current one completed
+            Thread.sleep(300);
+            Assert.assertFalse(sessions.isInvalidated(active));
+            Assert.assertFalse(sessions.isInvalidated(sameToken));
+            Assert.assertFalse("Tokens not authenticated by the validator should not be introspected", sessions.isInvalidated(foreign));
+            Assert.assertEquals("Every distinct token should be introspected once per period", 4, server.requestCount());
+
+            try {
+                validator.validate("reintrospect-token-1");
+                Assert.fail("Revoked token should fail validation");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Token not active"));
+            }
+        }
+    }
+
+    @Test
+    public void testRevokedWithCache() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            long expiresAt = System.currentTimeMillis() + 300_000;
+            server.addToken("reintrospect-cached-token", "alice", expiresAt);
+
+            // the validated tokens are remembered for longer than the re-introspection period
+            OAuthIntrospectionValidator introspectionValidator = new OAuthIntrospectionValidator("reintrospect-cache-test",
+                    server.introspectionUri(), null, null, new PrincipalExtractor(), null, null, null, null, null,
+                    "kafka", "kafka-secret", null, null, 10, 10,
+                    new IntrospectionOptions().withCache(10, 300, 0), false);
+            ReintrospectingTokenValidator validator = new ReintrospectingTokenValidator(introspectionValidator, introspectionValidator,
+                    URI.create(server.introspectionUri()), 1, 2, 100, false);
+
+            BearerTokenWithPayload session = new HybridTokenValidatorTest.MockSession("reintrospect-cached-token", expiresAt);
+            Assert.assertEquals("alice", validator.validate("reintrospect-cached-token").principal());
+            Services.getInstance().getSessions().put(session);
+
+            server.revokeToken("reintrospect-cached-token");
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!Services.getInstance().getSessions().isInvalidated(session)) {
+                if (System.currentTimeMillis() > deadline) {
+                    Assert.fail("Re-introspection should bypass the cache and invalidate the session");
+                }
+                Thread.sleep(50);
+            }
+
+            try {
+                introspectionValidator.validate("reintrospect-cached-token");
+                Assert.fail("Revoked token should no longer be served from the cache");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("Token not active"));
+            }
+        }
+    }
+}
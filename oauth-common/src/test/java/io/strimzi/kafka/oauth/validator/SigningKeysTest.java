@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class SigningKeysTest {
+
+    private static final int THREADS = 8;
+    private static final int ROTATIONS = 10;
+
+    @Test
+    public void testVersions() throws Exception {
+        Map<String, PublicKeyVerifier> keys1 = Collections.singletonMap("key-1", verifier());
+        Map<String, PublicKeyVerifier> keys2 = Collections.singletonMap("key-2", verifier());
+
+        SigningKeys v1 = SigningKeys.EMPTY.withKeys(keys1, 1000);
+        Assert.assertEquals(1, v1.version());
+        Assert.assertEquals(keys1, v1.keys());
+        Assert.assertTrue(v1.oldKeys().isEmpty());
+
+        SigningKeys refreshed = v1.withFetchTime(2000);
+        Assert.assertEquals("Refresh without a change should keep the version", 1, refreshed.version());
+        Assert.assertSame(v1.keys(), refreshed.keys());
+        Assert.assertEquals(2000, refreshed.fetchTime());
+        Assert.assertEquals(1000, v1.fetchTime());
+
+        SigningKeys v2 = refreshed.withKeys(keys2, 3000);
+        Assert.assertEquals(2, v2.version());
+        Assert.assertEquals(keys2, v2.keys());
+        Assert.assertEquals(keys1, v2.oldKeys());
+
+        Assert.assertFalse(v2.isStale(1000, 3999));
+        Assert.assertTrue(v2.isStale(1000, 4000));
+        Assert.assertTrue(SigningKeys.EMPTY.isStale(1000, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testValidationDuringKeysRotation() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            RSAKey stableKey = server.addKey("stable");
+            RSAKey rotatingKey = server.addKey("rotating-0");
+
+            JWTSignatureValidator validator = new JWTSignatureValidator("keys-rotation-test",
+                    server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                    MockJwksServer.ISSUER, 300, 0, 360, false, true, null, null, 10, 10,
+                    new JwksOptions().withValidatedTokenCache(100).withRejectedTokenCache(100, 30), false, true);
+            Assert.assertEquals(1, validator.getKeysVersion());
+
+            String stableToken = MockJwksServer.createToken(stableKey, "alice", System.currentTimeMillis() + 300_000);
+            List<String> rotatedTokens = Collections.synchronizedList(new ArrayList<>());
+            rotatedTokens.add(MockJwksServer.createToken(rotatingKey, "bob", System.currentTimeMillis() + 300_000));
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger validations = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(THREADS);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> results = new ArrayList<>();
+
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    long lastVersion = 0;
+                    while (!done.get()) {
+                        long version = validator.getKeysVersion();
+                        Assert.assertTrue("Keys version should never go back", version >= lastVersion);
+                        lastVersion = version;
+
+                        // the key that is never rotated must stay valid through all the rotations
+                        Assert.assertEquals("alice", validator.validate(stableToken).principal());
+
+                        // the tokens signed with the rotated keys may be valid or not, but must be rejected cleanly
+                        String rotated = rotatedTokens.get(validations.incrementAndGet() % rotatedTokens.size());
+                        try {
+                            validator.validate(rotated);
+                        } catch (TokenValidationException expected) {
+                        }
+                    }
+                    return null;
+                }));
+            }
+            started.await();
+
+            for (int i = 1; i <= ROTATIONS; i++) {
+                long version = validator.getKeysVersion();
+                RSAKey newKey = server.addKey("rotating-" + i);
+                server.removeKey("rotating-" + (i - 1));
+
+                // the unknown key triggers the keys refresh
+                String token = MockJwksServer.createToken(newKey, "bob", System.currentTimeMillis() + 300_000);
+                waitFor(() -> isValid(validator, token));
+                rotatedTokens.add(token);
+                Assert.assertTrue("Keys version should increase with the rotation", validator.getKeysVersion() > version);
+            }
+
+            done.set(true);
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            for (Future<?> result : results) {
+                // rethrows the assertion errors from the validating threads
+                result.get();
+            }
+            Assert.assertTrue(validator.getKeysVersion() >= 1 + ROTATIONS);
+            Assert.assertTrue("Validations should run concurrently with the rotations", validations.get() > ROTATIONS);
+        }
+    }
+
+    private static PublicKeyVerifier verifier() throws Exception {
+        return new PublicKeyVerifier(new RSAKeyGenerator(2048).generate().toPublicKey());
+    }
+
+    private static boolean isValid(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            return true;
+        } catch (TokenValidationException e) {
+            return false;
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Token signed with the new key should eventually be valid");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class SingleFlightTest {
+
+    private static final int THREADS = 20;
+
+    @Test
+    public void testSharedResult() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger shared = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "result";
+        }, shared::incrementAndGet), () -> shared.get() == THREADS - 1, release);
+
+        for (Future<String> result : results) {
+            Assert.assertEquals("result", result.get());
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, singleFlight.size());
+
+        // the next call after completion is not shared
+        Assert.assertEquals("next", singleFlight.execute("key", () -> "next", shared::incrementAndGet));
+        Assert.assertEquals(THREADS - 1, shared.get());
+    }
+
+    @Test
+    public void testSharedFailure() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger shared = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("key", () -> {
+            await(release);
+            throw new TokenValidationException("Token validation failed: Token not active");
+        }, shared::incrementAndGet), () -> shared.get() == THREADS - 1, release);
+
+        for (Future<String> result : results) {
+            try {
+                result.get();
+                Assert.fail("Call should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("Wrong exception: " + e.getCause(), e.getCause() instanceof TokenValidationException);
+            }
+        }
+        Assert.assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void testConcurrentIntrospection() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            server.addToken("token-1", "alice", System.currentTimeMillis() + 300_000);
+            server.setResponseDelayMs(500);
+
+            OAuthIntrospectionValidator validator = new OAuthIntrospectionValidator("single-flight-test",
+                    server.introspectionUri(), null, null, new PrincipalExtractor(), null, null, null, null, null,
+                    "kafka", "kafka-secret", null, null, 10, 10, false);
+
+            CountDownLatch started = new CountDownLatch(THREADS);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    results.add(executor.submit(() -> {
+                        started.countDown();
+                        started.await();
+                        return validator.validate("token-1").principal();
+                    }));
+                }
+                for (Future<String> result : results) {
+                    Assert.assertEquals("alice", result.get());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            Assert.assertEquals("Concurrent validations should share the introspection request", 1, server.requestCount());
+        }
+    }
+
+    private static List<Future<String>> runConcurrently(Callable<String> task, BooleanSupplier allWaiting,
+                                                        CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(task));
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!allWaiting.getAsBoolean()) {
+                if (System.currentTimeMillis() > deadline) {
+                    Assert.fail("All the threads should be waiting for the shared call");
+                }
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException ignored) {
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import io.strimzi.kafka.oauth.common.TokenInfo;
+import io.strimzi.kafka.oauth.services.CurrentTime;
+import io.strimzi.kafka.oauth.services.CurrentTimeProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenCacheTest {
+
+    @After
+    public void resetTime() {
+        CurrentTime.setCurrentTimeProvider(CurrentTimeProvider.DEFAULT);
+    }
+
+    @Test
+    public void testExpiry() {
+        MockCurrentTimeProvider time = new MockCurrentTimeProvider();
+        CurrentTime.setCurrentTimeProvider(time);
+
+        TokenCache<String> cache = new TokenCache<>(10);
+        cache.put("token-1", "value-1", time.currentTime() + 60_000);
+        cache.put("token-2", "value-2", time.currentTime() + 120_000);
+        cache.put("token-3", "value-3", time.currentTime() - 1);
+
+        Assert.assertEquals("value-1", cache.get("token-1"));
+        Assert.assertEquals("value-2", cache.get("token-2"));
+        Assert.assertNull("Already expired entry should not be cached", cache.get("token-3"));
+
+        time.addSeconds(90);
+        Assert.assertNull("Entry should have expired", cache.get("token-1"));
+        Assert.assertEquals("value-2", cache.get("token-2"));
+    }
+
+    @Test
+    public void testBounded() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        TokenCache<String> cache = new TokenCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("token-" + i, "value-" + i, expiresAt);
+            Assert.assertTrue("Cache size exceeded: " + cache.size(), cache.size() <= 100);
+        }
+        Assert.assertEquals("value-999", cache.get("token-999"));
+        Assert.assertTrue("Evictions should be counted", cache.evictionCount() >= 900);
+    }
+
+    @Test
+    public void testRemoveIf() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        TokenCache<String> cache = new TokenCache<>(10);
+        cache.put("token-1", "keep", expiresAt);
+        cache.put("token-2", "drop", expiresAt);
+
+        cache.removeIf("drop"::equals);
+        Assert.assertEquals("keep", cache.get("token-1"));
+        Assert.assertNull(cache.get("token-2"));
+    }
+
+    @Test
+    public void testValidatedTokenCache() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            RSAKey key1 = server.addKey("key-1");
+
+            JWTSignatureValidator validator = new JWTSignatureValidator("cache-test",
+                    server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                    MockJwksServer.ISSUER, 300, 0, 360, false, true, null, null, 10, 10,
+                    new JwksOptions().withValidatedTokenCache(100), false, true);
+
+            String token1 = MockJwksServer.createToken(key1, "alice", System.currentTimeMillis() + 300_000);
+
+            TokenInfo info = validator.validate(token1);
+            Assert.assertEquals("alice", info.principal());
+            info.payload().put("custom", "value");
+
+            TokenInfo cached = validator.validate(token1);
+            Assert.assertEquals("alice", cached.principal());
+            Assert.assertEquals(token1, cached.token());
+            Assert.assertEquals(info.expiresAtMs(), cached.expiresAtMs());
+            Assert.assertFalse("Cached payload should not be affected by modifications of returned payload", cached.payload().has("custom"));
+
+            // rotate the keys, and trigger the refresh by using a token signed with the new key
+            server.removeKey("key-1");
+            RSAKey key2 = server.addKey("key-2");
+            String token2 = MockJwksServer.createToken(key2, "bob", System.currentTimeMillis() + 300_000);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            TokenInfo info2 = null;
+            while (info2 == null && System.currentTimeMillis() < deadline) {
+                try {
+                    info2 = validator.validate(token2);
+                } catch (TokenValidationException e) {
+                    Thread.sleep(100);
+                }
+            }
+            Assert.assertNotNull("Token signed with the new key should eventually be valid", info2);
+            Assert.assertEquals("bob", info2.principal());
+
+            try {
+                validator.validate(token1);
+                Assert.fail("Token signed with the removed key should no longer be valid");
+            } catch (TokenValidationException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("no longer valid"));
+            }
+        }
+    }
+
+    @Test
+    public void testValidatedTokenCacheWithKeyReplacedUnderSameKid() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            RSAKey oldKey = server.addKey("key-1");
+
+            JWTSignatureValidator validator = new JWTSignatureValidator("cache-same-kid-test",
+                    server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                    MockJwksServer.ISSUER, 1, 0, 61, false, true, null, null, 10, 10,
+                    new JwksOptions().withValidatedTokenCache(100), false, true);
+
+            String oldToken = MockJwksServer.createToken(oldKey, "alice", System.currentTimeMillis() + 300_000);
+            Assert.assertEquals("alice", validator.validate(oldToken).principal());
+            Assert.assertEquals("alice", validator.validate(oldToken).principal());
+
+            // replace the key material, but keep the key id
+            server.removeKey("key-1");
+            RSAKey newKey = server.addKey("key-1");
+            String newToken = MockJwksServer.createToken(newKey, "bob", System.currentTimeMillis() + 300_000);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!isValid(validator, newToken) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertTrue("Token signed with the new key should eventually be valid", isValid(validator, newToken));
+
+            try {
+                validator.validate(oldToken);
+                Assert.fail("Token signed with the replaced key should no longer be valid");
+            } catch (TokenSignatureException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedTokenCache() throws Exception {
+        try (MockJwksServer server = new MockJwksServer()) {
+            RSAKey key = server.addKey("key-1");
+
+            JWTSignatureValidator validator = new JWTSignatureValidator("rejected-cache-test",
+                    server.jwksUri(), null, null, new PrincipalExtractor(), null, null,
+                    MockJwksServer.ISSUER, 300, 0, 360, false, true, null, null, 10, 10,
+                    new JwksOptions().withRejectedTokenCache(100, 30), false, true);
+
+            String expired = MockJwksServer.createToken(key, "alice", System.currentTimeMillis() - 60_000);
+            TokenValidationException first = expectFailure(validator, expired);
+            Assert.assertTrue("Should be TokenExpiredException: " + first, first instanceof TokenExpiredException);
+            Assert.assertEquals(1, validator.rejectedTokenCount());
+            assertSameOutcome(first, expectFailure(validator, expired));
+            Assert.assertEquals(1, validator.rejectedTokenCount());
+
+            String token = MockJwksServer.createToken(key, "alice", System.currentTimeMillis() + 300_000);
+            String badSignature = token.substring(0, token.length() - 4) + "AAAA";
+            first = expectFailure(validator, badSignature);
+            assertSameOutcome(first, expectFailure(validator, badSignature));
+            Assert.assertEquals(2, validator.rejectedTokenCount());
+
+            // the raw token is not kept in the cached outcome
+            String malformed = "not-a-jwt." + token;
+            first = expectFailure(validator, malformed);
+            assertSameOutcome(first, expectFailure(validator, malformed));
+            Assert.assertFalse("Message should not contain the token: " + first.getMessage(), first.getMessage().contains(token));
+            Assert.assertEquals(3, validator.rejectedTokenCount());
+
+            // unknown key may become known after the refresh, so such failures should not be remembered
+            RSAKey unknownKey = new RSAKeyGenerator(2048).keyID("unknown").generate();
+            String unknown = MockJwksServer.createToken(unknownKey, "alice", System.currentTimeMillis() + 300_000);
+            expectFailure(validator, unknown);
+            Assert.assertEquals("Unknown signing key failure should not be cached", 3, validator.rejectedTokenCount());
+        }
+    }
+
+    private static void assertSameOutcome(TokenValidationException first, TokenValidationException cached) {
+        // every rejection served from cache is a new exception, with the same type, message and status
+        Assert.assertNotSame(first, cached);
+        Assert.assertSame(first.getClass(), cached.getClass());
+        Assert.assertEquals(first.getMessage(), cached.getMessage());
+        Assert.assertEquals(first.status(), cached.status());
+    }
+
+    private static boolean isValid(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            return true;
+        } catch (TokenValidationException e) {
+            return false;
+        }
+    }
+
+    private static TokenValidationException expectFailure(TokenValidator validator, String token) {
+        try {
+            validator.validate(token);
+            Assert.fail("Validation should have failed");
+            return null;
+        } catch (TokenValidationException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.validator;
+
+import io.strimzi.kafka.oauth.common.PrincipalExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserInfoTest {
+
+    @Test
+    public void testCachedUserInfo() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            server.addToken("token-1", "alice", System.currentTimeMillis() + 300_000);
+            server.addToken("token-2", "alice", System.currentTimeMillis() + 300_000);
+            OAuthIntrospectionValidator validator = createValidator(server, 10, false);
+
+            Assert.assertEquals("alice-username", validator.validate("token-1").principal());
+            Assert.assertEquals("alice-username", validator.validate("token-2").principal());
+            Assert.assertEquals("Both tokens should be introspected", 2, server.requestCount());
+            Assert.assertEquals("User info should be cached per subject", 1, server.userInfoRequestCount());
+        }
+    }
+
+    @Test
+    public void testParallelUserInfo() throws Exception {
+        try (MockIntrospectionServer server = new MockIntrospectionServer()) {
+            server.addToken("token-1", "alice", System.currentTimeMillis() + 300_000);
+            server.setResponseDelayMs(500);
+            OAuthIntrospectionValidator validator = createValidator(server, 0, true);
+
+            long start = System.currentTimeMillis();
+            Assert.assertEquals("alice-username", validator.validate("token-1").principal());
+            long duration = System.currentTimeMillis() - start;
+            Assert.assertTrue("User info should be fetched in parallel with the introspection (took " + duration + " ms)", duration < 1000);
+            Assert.assertEquals(1, server.userInfoRequestCount());
+
+            // the parallel request is cancelled for the token that is not active
+            try {
+                validator.validate("unknown");
+                Assert.fail("Token should not be active");
+            } catch (TokenValidationException expected) {
+            }
+        }
+    }
+
+    private static OAuthIntrospectionValidator createValidator(MockIntrospectionServer server, int userInfoCacheSize, boolean userInfoParallel) {
+        return new OAuthIntrospectionValidator("userinfo-test",
+                server.introspectionUri(), null, null, new PrincipalExtractor("username", null, null), null, null, null,
+                server.userInfoUri(), null, "kafka", "kafka-secret", null, null, 10, 10,
+                new IntrospectionOptions().withUserInfo(userInfoCacheSize, 60, userInfoParallel), false);
+    }
+}
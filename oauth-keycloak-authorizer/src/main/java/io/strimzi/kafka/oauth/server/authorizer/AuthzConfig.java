@@ -18,6 +18,8 @@ public class AuthzConfig extends Config {
 
     public static final String STRIMZI_AUTHORIZATION_GRANTS_REFRESH_PERIOD_SECONDS = "strimzi.authorization.grants.refresh.period.seconds";
     public static final String STRIMZI_AUTHORIZATION_GRANTS_REFRESH_POOL_SIZE = "strimzi.authorization.grants.refresh.pool.size";
+    public static final String STRIMZI_AUTHORIZATION_GRANTS_HEDGING_PERCENTILE = "strimzi.authorization.grants.hedging.percentile";
+    public static final String STRIMZI_AUTHORIZATION_GRANTS_HEDGING_BUDGET_PERCENT = "strimzi.authorization.grants.hedging.budget.percent";
 
     public static final String STRIMZI_AUTHORIZATION_SSL_TRUSTSTORE_LOCATION = "strimzi.authorization.ssl.truststore.location";
     public static final String STRIMZI_AUTHORIZATION_SSL_TRUSTSTORE_CERTIFICATES = "strimzi.authorization.ssl.truststore.certificates";
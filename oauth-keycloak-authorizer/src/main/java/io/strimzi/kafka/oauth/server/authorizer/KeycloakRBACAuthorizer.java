@@ -10,8 +10,11 @@ import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
 import io.strimzi.kafka.oauth.common.Config;
 import io.strimzi.kafka.oauth.common.ConfigException;
 import io.strimzi.kafka.oauth.common.ConfigUtil;
+import io.strimzi.kafka.oauth.common.HttpConcurrencyLimiter;
+import io.strimzi.kafka.oauth.common.HttpEndpointGroup;
 import io.strimzi.kafka.oauth.common.HttpException;
 import io.strimzi.kafka.oauth.common.JSONUtil;
+import io.strimzi.kafka.oauth.common.RequestHedging;
 import io.strimzi.kafka.oauth.common.SSLUtil;
 import io.strimzi.kafka.oauth.common.TimeUtil;
 import io.strimzi.kafka.oauth.metrics.SensorKeyProducer;
@@ -51,6 +54,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -64,6 +68,7 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static io.strimzi.kafka.oauth.common.HttpUtil.post;
+import static io.strimzi.kafka.oauth.common.HttpUtil.postAsync;
 import static io.strimzi.kafka.oauth.common.LogUtil.mask;
 import static io.strimzi.kafka.oauth.common.OAuthAuthenticator.urlencode;
 
@@ -113,9 +118,18 @@ import static io.strimzi.kafka.oauth.common.OAuthAuthenticator.urlencode;
  * <li><em>strimzi.authorization.grants.refresh.period.seconds</em> The time interval for refreshing the grants of the active sessions. The scheduled job iterates over active sessions and fetches a fresh list of grants for each.<br>
  * The default value is <em>60</em>
  * </li>
- * <li><em>strimzi.authorization.grants.refresh.pool.size</em> The number of threads to fetch grants from token endpoint (in parallel).<br>
+ * <li><em>strimzi.authorization.grants.refresh.pool.size</em> The number of threads to process the grants fetched from the token endpoint.
+ * The grants of all the active sessions are fetched in parallel, without blocking a thread per request.<br>
  * The default value is <em>5</em>
  * </li>
+ * <li><em>strimzi.authorization.grants.hedging.percentile</em> The percentile of the recent token endpoint response times, after which the request
+ * fetching the grants of the new session is sent once more, possibly to another endpoint, and the response that arrives first is used.
+ * The periodic refresh of the grants is never hedged.<br>
+ * The default value is <em>0</em> which disables the hedging.
+ * </li>
+ * <li><em>strimzi.authorization.grants.hedging.budget.percent</em> The maximum share of the requests fetching the grants in percent that are sent once more.<br>
+ * The default value is <em>10</em>
+ * </li>
  * <li><em>strimzi.authorization.connect.timeout.seconds</em> The maximum time to wait when establishing the connection to the authorization server.<br>
  * The default value is <em>60</em>.
  * If not present, <em>oauth.connect.timeout.seconds</em> is used as a fallback configuration key to avoid unnecessary duplication when already present.
@@ -162,6 +176,9 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
     private static final String PRINCIPAL_BUILDER_CLASS = OAuthKafkaPrincipalBuilder.class.getName();
     private static final String DEPRECATED_PRINCIPAL_BUILDER_CLASS = JwtKafkaPrincipalBuilder.class.getName();
 
+    // The grants requests in progress at the same time, per thread of the grants refresh pool
+    private static final int GRANTS_REFRESH_REQUESTS_PER_THREAD = 4;
+
     static final Logger log = LoggerFactory.getLogger(KeycloakRBACAuthorizer.class);
     static final Logger GRANT_LOG = LoggerFactory.getLogger(KeycloakRBACAuthorizer.class.getName() + ".grant");
     static final Logger DENY_LOG = LoggerFactory.getLogger(KeycloakRBACAuthorizer.class.getName() + ".deny");
@@ -175,11 +192,13 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
     private boolean delegateToKafkaACL = false;
     private int connectTimeoutSeconds;
     private int readTimeoutSeconds;
+    private RequestHedging grantsHedging;
 
     // Turning it to false will not enforce access token expiry time (only for debugging purposes during development)
     private final boolean denyWhenTokenInvalid = true;
 
     private ExecutorService workerPool;
+    private int grantsRefreshMaxInProgress;
 
     private OAuthMetrics metrics;
     private boolean enableMetrics;
@@ -212,7 +231,7 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
         }
 
         try {
-            tokenEndpointUrl = new URI(endpoint);
+            tokenEndpointUrl = HttpEndpointGroup.register(endpoint);
         } catch (URISyntaxException e) {
             throw new ConfigException("Specified token endpoint uri is invalid: " + endpoint);
         }
@@ -242,7 +261,8 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
                     .collect(Collectors.toList());
         }
 
-        // Number of threads that can perform token endpoint requests at the same time
+        // Number of threads that process the responses of the token endpoint requests, which are sent asynchronously,
+        // at most GRANTS_REFRESH_REQUESTS_PER_THREAD per thread at the same time
         final int grantsRefreshPoolSize = config.getValueAsInt(AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_REFRESH_POOL_SIZE, 5);
         if (grantsRefreshPoolSize < 1) {
             throw new ConfigException("Invalid value of 'strimzi.authorization.grants.refresh.pool.size': " + grantsRefreshPoolSize + ". Has to be >= 1.");
@@ -251,8 +271,17 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
         // Less or equal zero means to never check
         final int grantsRefreshPeriodSeconds = config.getValueAsInt(AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_REFRESH_PERIOD_SECONDS, 60);
 
+        final int grantsHedgingPercentile = config.getValueAsInt(AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_HEDGING_PERCENTILE, 0);
+        final int grantsHedgingBudgetPercent = config.getValueAsInt(AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_HEDGING_BUDGET_PERCENT, 10);
+        try {
+            grantsHedging = RequestHedging.create(grantsHedgingPercentile, grantsHedgingBudgetPercent);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException("Invalid value of 'strimzi.authorization.grants.hedging.percentile' or 'strimzi.authorization.grants.hedging.budget.percent': " + e.getMessage());
+        }
+
         if (grantsRefreshPeriodSeconds > 0) {
             workerPool = Executors.newFixedThreadPool(grantsRefreshPoolSize);
+            grantsRefreshMaxInProgress = grantsRefreshPoolSize * GRANTS_REFRESH_REQUESTS_PER_THREAD;
             setupRefreshGrantsJob(grantsRefreshPeriodSeconds);
         }
 
@@ -271,6 +300,7 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
                     + "\n    superUsers: " + superUsers.stream().map(u -> "'" + u.getType() + ":" + u.getName() + "'").collect(Collectors.toList())
                     + "\n    grantsRefreshPeriodSeconds: " + grantsRefreshPeriodSeconds
                     + "\n    grantsRefreshPoolSize: " + grantsRefreshPoolSize
+                    + "\n    grantsHedging: " + grantsHedging
                     + "\n    connectTimeoutSeconds: " + connectTimeoutSeconds
                     + "\n    readTimeoutSeconds: " + readTimeoutSeconds
                     + "\n    enableMetrics: " + enableMetrics
@@ -307,6 +337,8 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
         String[] keys = {
             AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_REFRESH_PERIOD_SECONDS,
             AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_REFRESH_POOL_SIZE,
+            AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_HEDGING_PERCENTILE,
+            AuthzConfig.STRIMZI_AUTHORIZATION_GRANTS_HEDGING_BUDGET_PERCENT,
             AuthzConfig.STRIMZI_AUTHORIZATION_DELEGATE_TO_KAFKA_ACL,
             AuthzConfig.STRIMZI_AUTHORIZATION_KAFKA_CLUSTER_NAME,
             AuthzConfig.STRIMZI_AUTHORIZATION_CLIENT_ID,
@@ -507,6 +539,12 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
             }
             return true;
         }
+        if (denyWhenTokenInvalid && Services.isAvailable() && Services.getInstance().getSessions().isInvalidated(token)) {
+            if (DENY_LOG.isDebugEnabled()) {
+                DENY_LOG.debug("Authorization DENIED due to token invalidation - The token was found to be no longer valid after authentication, for token: " + mask(token.value()));
+            }
+            return true;
+        }
         return false;
     }
 
@@ -596,8 +634,9 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
         long startTime = System.currentTimeMillis();
 
         try {
-            response = post(tokenEndpointUrl, socketFactory, hostnameVerifier, authorization,
-                    "application/x-www-form-urlencoded", body.toString(), JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds);
+            // only the grants of the new session are fetched on the client-visible path, so only those requests are hedged
+            response = HttpEndpointGroup.idempotent(() -> post(tokenEndpointUrl, socketFactory, hostnameVerifier, authorization,
+                    "application/x-www-form-urlencoded", body.toString(), JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds, grantsHedging));
             addGrantsHttpMetricSuccessTime(startTime);
         } catch (HttpException e) {
             addGrantsHttpMetricErrorTime(e, startTime);
@@ -610,6 +649,40 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
         return response;
     }
 
+    private CompletableFuture<JsonNode> fetchAuthorizationGrantsAsync(String token) {
+
+        String authorization = "Bearer " + token;
+
+        StringBuilder body = new StringBuilder("audience=").append(urlencode(clientId))
+                .append("&grant_type=").append(urlencode("urn:ietf:params:oauth:grant-type:uma-ticket"))
+                .append("&response_mode=permissions");
+
+        long startTime = System.currentTimeMillis();
+
+        CompletableFuture<JsonNode> response;
+        try {
+            // fetching the grants does not change the state of the server, so the request may be repeated with another endpoint of the group
+            response = HttpEndpointGroup.idempotent(() -> postAsync(tokenEndpointUrl, socketFactory, hostnameVerifier, authorization,
+                    "application/x-www-form-urlencoded", body.toString(), JsonNode.class, connectTimeoutSeconds, readTimeoutSeconds));
+        } catch (Exception e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+
+        return response.handle((grants, error) -> {
+            if (error == null) {
+                addGrantsHttpMetricSuccessTime(startTime);
+                return grants;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            addGrantsHttpMetricErrorTime(cause, startTime);
+            if (cause instanceof HttpException) {
+                throw new CompletionException(cause);
+            }
+            throw new CompletionException(new ServiceException("Failed to fetch authorization data from authorization server: ", cause));
+        });
+    }
+
     private void setupRefreshGrantsJob(int refreshSeconds) {
         // Set up periodic timer to fetch grants for active sessions every refresh seconds
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
@@ -703,29 +776,31 @@ public class KeycloakRBACAuthorizer extends AclAuthorizer {
     }
 
     private List<SessionFuture<?>> scheduleGrantsRefresh(Predicate<BearerTokenWithPayload> filter, Sessions sessions) {
-        return sessions.executeTask(workerPool, filter, token -> {
+        // Bound the number of requests in progress, so that the refresh of many sessions does not flood the authorization server
+        return sessions.executeTask(filter, grantsRefreshMaxInProgress, token -> {
             if (log.isTraceEnabled()) {
                 log.trace("Fetch grants for session: " + token.getSessionId() + ", token: " + mask(token.value()));
             }
 
-            JsonNode newGrants;
-            try {
-                newGrants = fetchAuthorizationGrants(token.value());
-            } catch (HttpException e) {
-                if (403 == e.getStatus()) {
-                    // 403 happens when no policy matches the token - thus there are no grants
-                    newGrants = JSONUtil.newObjectNode();
-                } else {
-                    throw e;
-                }
-            }
-            Object oldGrants = token.getPayload();
-            if (!newGrants.equals(oldGrants)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Grants have changed for session: {}, token: {}\nbefore: {}\nafter: {}", token.getSessionId(), mask(token.value()), oldGrants, newGrants);
-                }
-                token.setPayload(newGrants);
-            }
+            return HttpConcurrencyLimiter.background(() -> fetchAuthorizationGrantsAsync(token.value()))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof HttpException && 403 == ((HttpException) cause).getStatus()) {
+                        // 403 happens when no policy matches the token - thus there are no grants
+                        return JSONUtil.newObjectNode();
+                    }
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                })
+                // The response is processed by the worker pool rather than the thread completing the request
+                .thenAcceptAsync(newGrants -> {
+                    Object oldGrants = token.getPayload();
+                    if (!newGrants.equals(oldGrants)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Grants have changed for session: {}, token: {}\nbefore: {}\nafter: {}", token.getSessionId(), mask(token.value()), oldGrants, newGrants);
+                        }
+                        token.setPayload(newGrants);
+                    }
+                }, workerPool);
         });
     }
 
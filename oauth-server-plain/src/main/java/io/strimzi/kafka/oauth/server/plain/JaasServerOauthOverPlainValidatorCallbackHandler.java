@@ -5,6 +5,7 @@
 package io.strimzi.kafka.oauth.server.plain;
 
 import io.strimzi.kafka.oauth.common.Config;
+import io.strimzi.kafka.oauth.common.HttpEndpointGroup;
 import io.strimzi.kafka.oauth.common.MetricsHandler;
 import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
 import io.strimzi.kafka.oauth.common.HttpException;
@@ -140,7 +141,7 @@ public class JaasServerOauthOverPlainValidatorCallbackHandler extends JaasServer
         // otherwise the password value is interpreted as a token
         if (tokenEndpoint != null) {
             try {
-                this.tokenEndpointUri = new URI(tokenEndpoint);
+                this.tokenEndpointUri = HttpEndpointGroup.register(tokenEndpoint);
             } catch (URISyntaxException e) {
                 throw new IllegalArgumentException("Invalid tokenEndpointUri: " + tokenEndpoint, e);
             }
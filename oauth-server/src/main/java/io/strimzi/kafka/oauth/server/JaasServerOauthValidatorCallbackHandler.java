@@ -20,9 +20,15 @@ import io.strimzi.kafka.oauth.services.ConfigurationKey;
 import io.strimzi.kafka.oauth.services.OAuthMetrics;
 import io.strimzi.kafka.oauth.services.Services;
 import io.strimzi.kafka.oauth.services.ValidatorKey;
+import io.strimzi.kafka.oauth.validator.BoundedExecutorTokenValidator;
+import io.strimzi.kafka.oauth.validator.HybridTokenValidator;
+import io.strimzi.kafka.oauth.validator.IntrospectionOptions;
 import io.strimzi.kafka.oauth.validator.JWTSignatureValidator;
+import io.strimzi.kafka.oauth.validator.JwksOptions;
+import io.strimzi.kafka.oauth.validator.MultiIssuerTokenValidator;
 import io.strimzi.kafka.oauth.common.TokenInfo;
 import io.strimzi.kafka.oauth.validator.OAuthIntrospectionValidator;
+import io.strimzi.kafka.oauth.validator.ReintrospectingTokenValidator;
 import io.strimzi.kafka.oauth.validator.TokenValidator;
 import io.strimzi.kafka.oauth.validator.TokenValidationException;
 import org.apache.kafka.common.errors.SaslAuthenticationException;
@@ -38,6 +44,8 @@ import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.AppConfigurationEntry;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -119,8 +127,34 @@ import static io.strimzi.kafka.oauth.common.TokenIntrospection.debugLogJWT;
  * <li><em>oauth.jwks.refresh.min.pause.seconds</em> The minimum pause between two consecutive refreshes. <br>
  * When an unknown signing key is encountered the refresh is scheduled immediately, but will always wait for this minimum pause. Default value is <em>1</em>.</li>
  * <li><em>oauth.jwks.ignore.key.use</em> Configure whether any public key in JWKS response should be considered for signature checking or only those explicitly marked as such (some authorization servers require setting this to `true`). Default value is <em>false</em>.</li>
+ * <li><em>oauth.jwks.respect.cache.control</em> Configure whether the <em>Cache-Control: max-age</em> of the JWKS endpoint response should be used to skip the regular refreshes while the keys are still fresh. <br>
+ * The keys are still refreshed at least 60 seconds before they expire, and immediately when an unknown signing key is encountered,
+ * so <em>oauth.jwks.expiry.seconds</em> has to be increased as well for this to have an effect. Default value is <em>false</em>.</li>
+ * <li><em>oauth.jwks.snapshot.dir</em> A directory where the last successful JWKS endpoint response is stored. <br>
+ * During startup the keys that have not yet expired are loaded from the snapshot, and the authorization server is contacted in the background. Not set by default.</li>
+ * <li><em>oauth.jwks.warmup.tokens</em> The number of synthetic tokens signed with throwaway keys to validate during startup, so that the validation is compiled by JIT before the clients connect. <br>
+ * Default value is <em>0</em>, which disables the warm-up.</li>
+ * <li><em>oauth.validated.token.cache.size</em> The maximum number of successfully validated tokens to remember, so that the same token presented again skips the signature check. <br>
+ * Cached results expire with the token, and are dropped when the signing key is removed from the JWKS endpoint response. Default value is <em>0</em>, which disables the cache.</li>
+ * <li><em>oauth.rejected.token.cache.size</em> The maximum number of rejected tokens to remember, so that a client retrying with the same expired or otherwise invalid token gets the same error without the token being validated again. <br>
+ * The cache is cleared whenever the JWKS keys change. Default value is <em>0</em>, which disables the cache.</li>
+ * <li><em>oauth.rejected.token.cache.ttl.seconds</em> The maximum time to remember a rejected token. Default value is <em>30</em>.</li>
  * </ul>
  * <p>
+ * Configuring the fast local token validation of tokens from multiple issuers
+ * </p><p>
+ * Instead of <em>oauth.jwks.endpoint.uri</em> and <em>oauth.valid.issuer.uri</em> the following <em>sasl.jaas.config</em> configuration is required:
+ * </p>
+ * <ul>
+ * <li><em>oauth.jwks.issuer.names</em> A comma separated list of names of the issuers. <br>
+ * Every token is routed to the issuer by the signing key id in the token header, or by the 'iss' claim.</li>
+ * <li><em>oauth.jwks.issuer.&lt;NAME&gt;.endpoint.uri</em> A URL of the JWKS endpoint of the issuer.</li>
+ * <li><em>oauth.jwks.issuer.&lt;NAME&gt;.valid.issuer.uri</em> The issuer URI of the tokens issued by the issuer.</li>
+ * </ul>
+ * <p>
+ * All the other options for the fast local token validation apply to every issuer.
+ * </p>
+ * <p>
  * Configuring the introspection endpoint based token validation
  * </p><p>
  * Required <em>sasl.jaas.config</em> configuration:
@@ -136,7 +170,65 @@ import static io.strimzi.kafka.oauth.common.TokenIntrospection.debugLogJWT;
  * </p>
  * <ul>
  * <li><em>oauth.userinfo.endpoint.uri</em> A URL of the token introspection endpoint which can be used to validate opaque non-JWT tokens.<br>
+ * <li><em>oauth.userinfo.cache.size</em> The maximum number of user info endpoint responses to remember, per subject. <br>
+ * The default value is <em>0</em> which disables the cache.</li>
+ * <li><em>oauth.userinfo.cache.ttl.seconds</em> The time to remember the user info endpoint response. <br>
+ * The default value is <em>60</em>.</li>
+ * <li><em>oauth.userinfo.parallel</em> If true, the user info endpoint request is sent in parallel with the introspection request, rather than only when the principal
+ * can not be extracted from the introspection endpoint response. It saves the round trip when the user info endpoint is always needed. <br>
+ * The default value is <em>false</em>.</li>
  * <li><em>oauth.valid.token.type</em> If set, the token type returned by the introspection endpoint has to match the configured value.<br>
+ * <li><em>oauth.introspection.executor.threads</em> If set to a positive number, the validations are performed by a dedicated pool of threads of this size,
+ * rather than by the thread handling the authentication. Default value is <em>0</em>, which disables the dedicated pool.</li>
+ * <li><em>oauth.introspection.executor.queue.size</em> The maximum number of validations waiting for a thread in the dedicated pool. <br>
+ * When the queue is full the validation fails immediately. Default value is <em>100</em>.</li>
+ * <li><em>oauth.introspection.executor.max.wait.ms</em> The maximum time for the thread handling the authentication to wait for the result of validation by the dedicated pool. <br>
+ * The thread handles other connections as well, which are stalled while it waits. Default value is <em>1000</em>.</li>
+ * <li><em>oauth.introspection.cache.size</em> The maximum number of introspection results to remember, so that the same token does not have to be introspected again. <br>
+ * The default value is <em>0</em> which disables the cache.</li>
+ * <li><em>oauth.introspection.cache.max.ttl.seconds</em> The maximum time to remember the introspection result, even if the token expires later. It limits the time a revoked token can still be used. <br>
+ * The default value is <em>60</em>.</li>
+ * <li><em>oauth.introspection.cache.inactive.ttl.seconds</em> The time to remember that the token is not active, if the introspection cache is enabled. <br>
+ * The default value is <em>0</em> which means the 'not active' results are not remembered.</li>
+ * <li><em>oauth.introspection.circuit.breaker.error.rate</em> The share of failed introspection requests in percent at which the circuit breaker opens,
+ * and the validations fail immediately without contacting the authorization server. <br>
+ * The default value is <em>0</em> which disables the circuit breaker.</li>
+ * <li><em>oauth.introspection.circuit.breaker.window.size</em> The number of the most recent introspection requests from which the error rate is calculated. <br>
+ * The default value is <em>20</em>.</li>
+ * <li><em>oauth.introspection.circuit.breaker.open.seconds</em> The time the circuit breaker stays open before a probe request is sent to check if the authorization server has recovered. <br>
+ * The default value is <em>30</em>.</li>
+ * <li><em>oauth.introspection.circuit.breaker.serve.stale</em> If true, while the circuit breaker is open, the cached introspection results are used until the tokens expire.
+ * Requires the introspection cache. <br>
+ * The default value is <em>false</em>.</li>
+ * <li><em>oauth.introspection.hedging.percentile</em> The percentile of the recent introspection response times, after which the introspection request
+ * is sent once more, possibly to another endpoint, and the response that arrives first is used. <br>
+ * The default value is <em>0</em> which disables the hedging.</li>
+ * <li><em>oauth.introspection.hedging.budget.percent</em> The maximum share of the introspection requests in percent that are sent once more. <br>
+ * The default value is <em>10</em>.</li>
+ * <li><em>oauth.introspection.reintrospect.period.seconds</em> If set to a positive number, the tokens of the active sessions are introspected again with this period,
+ * and the sessions whose tokens are no longer active are denied by {@link OAuthSessionAuthorizer} and <em>KeycloakRBACAuthorizer</em> as if the tokens expired. <br>
+ * The re-introspection bypasses the introspection cache, and fails while the circuit breaker is open. <br>
+ * The default value is <em>0</em> which disables the periodic re-introspection.</li>
+ * <li><em>oauth.introspection.reintrospect.threads</em> The maximum number of re-introspection requests in progress at the same time. <br>
+ * The default value is <em>2</em>.</li>
+ * <li><em>oauth.introspection.reintrospect.max.tokens</em> The maximum number of authenticated tokens to track for re-introspection. <br>
+ * The default value is <em>10000</em>.</li>
+ * </ul>
+ * <p>
+ * Configuring the hybrid token validation
+ * </p><p>
+ * Both <em>oauth.jwks.endpoint.uri</em> and <em>oauth.introspection.endpoint.uri</em> can be configured together with <em>oauth.introspection.background.threads</em>.
+ * The tokens are then validated using the fast local token validation, and every distinct token is additionally introspected in the background.
+ * If the token turns out to be inactive (e.g. it has been revoked), the sessions using it are denied by {@link OAuthSessionAuthorizer} and
+ * <em>KeycloakRBACAuthorizer</em>, and any further authentication with the token fails. All the options of both validation modes apply.
+ * </p>
+ * <ul>
+ * <li><em>oauth.introspection.background.threads</em> The number of threads introspecting the tokens in the background.
+ * Default value is <em>0</em>, which disables the hybrid token validation.</li>
+ * <li><em>oauth.introspection.background.queue.size</em> The maximum number of tokens waiting for the background introspection. <br>
+ * When the queue is full the token is left unchecked until it is used for authentication again. Default value is <em>1000</em>.</li>
+ * <li><em>oauth.introspection.background.cache.size</em> The maximum number of background introspection results to remember until the tokens expire. <br>
+ * Default value is <em>10000</em>.</li>
  * </ul>
  * <p>
  * Common optional <em>sasl.jaas.config</em> configuration:
@@ -194,6 +286,7 @@ import static io.strimzi.kafka.oauth.common.TokenIntrospection.debugLogJWT;
  * </li>
  * </ul>
  */
+@SuppressWarnings("checkstyle:ClassDataAbstractionCoupling")
 public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCallbackHandler {
 
     private static final Logger log = LoggerFactory.getLogger(JaasServerOauthValidatorCallbackHandler.class);
@@ -242,8 +335,12 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
 
         String jwksUri = config.getValue(ServerConfig.OAUTH_JWKS_ENDPOINT_URI);
         String validIssuerUri = config.getValue(ServerConfig.OAUTH_VALID_ISSUER_URI);
+        List<String> issuerNames = getIssuerNames();
 
-        validateIssuerUri(validIssuerUri);
+        if (issuerNames == null) {
+            // with multiple issuers the valid issuer uri is configured per issuer
+            validateIssuerUri(validIssuerUri);
+        }
 
         checkDeprecatedConfig();
 
@@ -282,20 +379,35 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
         configureMetrics(configs);
 
         if (jwksUri != null) {
-            String effectiveConfigId = setupJWKSValidator(configId, jwksUri, validIssuerUri, checkTokenType,
+            validator = setupJWKSValidator(configId, jwksUri, validIssuerUri, checkTokenType,
+                    usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
+                    groupQuery, groupDelimiter, audience, customClaimCheck,
+                    sslTruststore, sslPassword, sslType, sslRnd);
+
+            if (config.getValue(ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI) != null) {
+                validator = setupHybridValidator(validator, configId, validIssuerUri, usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
+                        groupQuery, groupDelimiter, clientId, clientSecret, audience, customClaimCheck,
+                        sslTruststore, sslPassword, sslType, sslRnd);
+            }
+
+            URI jwksEndpointUri = ConfigUtil.getEndpointURI(config, ServerConfig.OAUTH_JWKS_ENDPOINT_URI);
+            validationSensorKeyProducer = new JwksValidationSensorKeyProducer(validator.getValidatorId(), saslMechanism, jwksEndpointUri);
+        } else if (issuerNames != null) {
+            validator = setupMultiIssuerValidator(configId, issuerNames, checkTokenType,
                     usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
                     groupQuery, groupDelimiter, audience, customClaimCheck,
                     sslTruststore, sslPassword, sslType, sslRnd);
 
-            URI jwksEndpointUri = config.getValueAsURI(ServerConfig.OAUTH_JWKS_ENDPOINT_URI);
-            validationSensorKeyProducer = new JwksValidationSensorKeyProducer(effectiveConfigId, saslMechanism, jwksEndpointUri);
+            // there is no single JWKS endpoint - the endpoint of the first issuer is used, the endpoint of each issuer is tracked by its http_requests metrics
+            URI jwksEndpointUri = ConfigUtil.getEndpointURI(config, ServerConfig.OAUTH_JWKS_ISSUER_PREFIX + issuerNames.get(0) + ServerConfig.OAUTH_JWKS_ISSUER_ENDPOINT_URI_SUFFIX);
+            validationSensorKeyProducer = new JwksValidationSensorKeyProducer(validator.getValidatorId(), saslMechanism, jwksEndpointUri);
         } else {
-            String effectiveConfigId = setupIntrospectionValidator(configId, validIssuerUri, usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
+            validator = setupIntrospectionValidator(configId, validIssuerUri, usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
                     groupQuery, groupDelimiter, clientId, clientSecret, audience, customClaimCheck,
                     sslTruststore, sslPassword, sslType, sslRnd);
 
-            URI introspectionUri = config.getValueAsURI(ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
-            validationSensorKeyProducer = new IntrospectValidationSensorKeyProducer(effectiveConfigId, saslMechanism, introspectionUri);
+            URI introspectionUri = ConfigUtil.getEndpointURI(config, ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
+            validationSensorKeyProducer = new IntrospectValidationSensorKeyProducer(validator.getValidatorId(), saslMechanism, introspectionUri);
         }
     }
 
@@ -311,13 +423,31 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
     }
 
     @SuppressWarnings("checkstyle:ParameterNumber")
-    private String setupIntrospectionValidator(String configId, String validIssuerUri, String usernameClaim, String fallbackUsernameClaim, String fallbackUsernamePrefix,
+    private TokenValidator setupIntrospectionValidator(String configId, String validIssuerUri, String usernameClaim, String fallbackUsernameClaim, String fallbackUsernamePrefix,
                                              String groupQuery, String groupDelimiter, String clientId, String clientSecret, String audience, String customClaimCheck,
                                              String sslTruststore, String sslPassword, String sslType, String sslRnd) {
 
         String introspectionEndpoint = config.getValue(ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
         String userInfoEndpoint = config.getValue(ServerConfig.OAUTH_USERINFO_ENDPOINT_URI);
         String validTokenType = config.getValue(ServerConfig.OAUTH_VALID_TOKEN_TYPE);
+        int executorThreads = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_EXECUTOR_THREADS, 0);
+        int executorQueueSize = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_EXECUTOR_QUEUE_SIZE, 100);
+        int executorMaxWaitMs = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_EXECUTOR_MAX_WAIT_MS, 1000);
+        int cacheSize = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CACHE_SIZE, 0);
+        int cacheMaxTtlSeconds = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CACHE_MAX_TTL_SECONDS, 60);
+        int inactiveCacheTtlSeconds = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CACHE_INACTIVE_TTL_SECONDS, 0);
+        int userInfoCacheSize = config.getValueAsInt(ServerConfig.OAUTH_USERINFO_CACHE_SIZE, 0);
+        int userInfoCacheTtlSeconds = config.getValueAsInt(ServerConfig.OAUTH_USERINFO_CACHE_TTL_SECONDS, 60);
+        boolean userInfoParallel = config.getValueAsBoolean(ServerConfig.OAUTH_USERINFO_PARALLEL, false);
+        int circuitBreakerErrorRate = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CIRCUIT_BREAKER_ERROR_RATE, 0);
+        int circuitBreakerWindowSize = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CIRCUIT_BREAKER_WINDOW_SIZE, 20);
+        int circuitBreakerOpenSeconds = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_CIRCUIT_BREAKER_OPEN_SECONDS, 30);
+        boolean circuitBreakerServeStale = config.getValueAsBoolean(ServerConfig.OAUTH_INTROSPECTION_CIRCUIT_BREAKER_SERVE_STALE, false);
+        int hedgingPercentile = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_HEDGING_PERCENTILE, 0);
+        int hedgingBudgetPercent = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_HEDGING_BUDGET_PERCENT, 10);
+        int reintrospectPeriodSeconds = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_REINTROSPECT_PERIOD_SECONDS, 0);
+        int reintrospectThreads = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_REINTROSPECT_THREADS, 2);
+        int reintrospectMaxTokens = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_REINTROSPECT_MAX_TOKENS, 10000);
 
         ValidatorKey vkey = new ValidatorKey.IntrospectionValidatorKey(
                 validIssuerUri,
@@ -340,11 +470,29 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
                 clientSecret,
                 connectTimeout,
                 readTimeout,
+                executorThreads,
+                executorQueueSize,
+                executorMaxWaitMs,
+                cacheSize,
+                cacheMaxTtlSeconds,
+                inactiveCacheTtlSeconds,
+                userInfoCacheSize,
+                userInfoCacheTtlSeconds,
+                userInfoParallel,
+                circuitBreakerErrorRate,
+                circuitBreakerWindowSize,
+                circuitBreakerOpenSeconds,
+                circuitBreakerServeStale,
+                hedgingPercentile,
+                hedgingBudgetPercent,
+                reintrospectPeriodSeconds,
+                reintrospectThreads,
+                reintrospectMaxTokens,
                 enableMetrics);
 
         String effectiveConfigId = configId != null ? configId : vkey.getConfigIdHash();
 
-        Supplier<TokenValidator> factory = () -> new OAuthIntrospectionValidator(
+        Supplier<OAuthIntrospectionValidator> introspectionFactory = () -> new OAuthIntrospectionValidator(
                 effectiveConfigId,
                 introspectionEndpoint,
                 socketFactory,
@@ -361,16 +509,133 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
                 customClaimCheck,
                 connectTimeout,
                 readTimeout,
+                new IntrospectionOptions()
+                        .withCache(cacheSize, cacheMaxTtlSeconds, inactiveCacheTtlSeconds)
+                        .withUserInfo(userInfoCacheSize, userInfoCacheTtlSeconds, userInfoParallel)
+                        .withCircuitBreaker(circuitBreakerErrorRate, circuitBreakerWindowSize, circuitBreakerOpenSeconds, circuitBreakerServeStale)
+                        .withHedging(hedgingPercentile, hedgingBudgetPercent),
                 enableMetrics);
 
+        URI introspectionUri = ConfigUtil.getEndpointURI(config, ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
+        Supplier<TokenValidator> factory = () -> {
+            OAuthIntrospectionValidator introspectionValidator = introspectionFactory.get();
+
+            // optionally run the validations on a dedicated executor, rather than blocking the calling thread while waiting for the authorization server
+            TokenValidator result = executorThreads <= 0 ? introspectionValidator : new BoundedExecutorTokenValidator(
+                    introspectionValidator,
+                    introspectionUri,
+                    "introspect",
+                    executorThreads,
+                    executorQueueSize,
+                    executorMaxWaitMs,
+                    enableMetrics);
+
+            // optionally introspect the tokens of the active sessions again, so that the revocation is detected before the client re-authenticates
+            return reintrospectPeriodSeconds <= 0 ? result : new ReintrospectingTokenValidator(
+                    result,
+                    introspectionValidator,
+                    introspectionUri,
+                    reintrospectPeriodSeconds,
+                    reintrospectThreads,
+                    reintrospectMaxTokens,
+                    enableMetrics);
+        };
+
         ConfigurationKey confKey = configId != null ? new ConfigurationKey(configId, vkey) : new ConfigurationKey(vkey.getConfigIdHash(), vkey);
-        validator = Services.getInstance().getValidators().get(confKey, factory);
+        return Services.getInstance().getValidators().get(confKey, factory);
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private TokenValidator setupHybridValidator(TokenValidator jwksValidator, String configId, String validIssuerUri,
+                                                String usernameClaim, String fallbackUsernameClaim, String fallbackUsernamePrefix,
+                                                String groupQuery, String groupDelimiter, String clientId, String clientSecret, String audience, String customClaimCheck,
+                                                String sslTruststore, String sslPassword, String sslType, String sslRnd) {
+
+        int threads = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_THREADS, 0);
+        int queueSize = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_QUEUE_SIZE, 1000);
+        int cacheSize = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_CACHE_SIZE, 10000);
+
+        TokenValidator introspectionValidator = setupIntrospectionValidator(configId != null ? configId + "-introspect" : null, validIssuerUri,
+                usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
+                groupQuery, groupDelimiter, clientId, clientSecret, audience, customClaimCheck,
+                sslTruststore, sslPassword, sslType, sslRnd);
+
+        // registered like any other validator, so that reconfiguration reuses the instance with its executor and cache
+        ValidatorKey vkey = new ValidatorKey.CompositeValidatorKey("hybrid",
+                Arrays.asList(jwksValidator.getValidatorId(), introspectionValidator.getValidatorId()),
+                threads, queueSize, cacheSize, enableMetrics);
+        String effectiveConfigId = configId != null ? configId + "-hybrid" : vkey.getConfigIdHash();
+
+        URI introspectionUri = ConfigUtil.getEndpointURI(config, ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
+        Supplier<TokenValidator> factory = () -> new HybridTokenValidator(jwksValidator, introspectionValidator,
+                introspectionUri,
+                threads,
+                queueSize,
+                cacheSize,
+                enableMetrics);
+        return Services.getInstance().getValidators().get(new ConfigurationKey(effectiveConfigId, vkey), factory);
+    }
+
+    private List<String> getIssuerNames() {
+        String issuerNames = config.getValue(ServerConfig.OAUTH_JWKS_ISSUER_NAMES);
+        if (issuerNames == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : issuerNames.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.length() > 0 && !names.contains(trimmed)) {
+                names.add(trimmed);
+            }
+        }
+        if (names.isEmpty()) {
+            throw new ConfigException("OAuth validator configuration error: OAUTH_JWKS_ISSUER_NAMES is empty");
+        }
+        return names;
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private TokenValidator setupMultiIssuerValidator(String configId, List<String> issuerNames, boolean checkTokenType,
+                                    String usernameClaim, String fallbackUsernameClaim, String fallbackUsernamePrefix,
+                                    String groupQuery, String groupDelimiter, String audience, String customClaimCheck,
+                                    String sslTruststore, String sslPassword, String sslType, String sslRnd) {
+
+        List<JWTSignatureValidator> validators = new ArrayList<>();
+        List<String> validIssuerUris = new ArrayList<>();
+        List<String> validatorIds = new ArrayList<>();
+
+        for (String name : issuerNames) {
+            String prefix = ServerConfig.OAUTH_JWKS_ISSUER_PREFIX + name;
+            String jwksUri = config.getValue(prefix + ServerConfig.OAUTH_JWKS_ISSUER_ENDPOINT_URI_SUFFIX);
+            String validIssuerUri = config.getValue(prefix + ServerConfig.OAUTH_JWKS_ISSUER_VALID_ISSUER_URI_SUFFIX);
+            if (jwksUri == null || validIssuerUri == null) {
+                throw new ConfigException("OAuth validator configuration error: both '" + prefix + ServerConfig.OAUTH_JWKS_ISSUER_ENDPOINT_URI_SUFFIX
+                        + "' and '" + prefix + ServerConfig.OAUTH_JWKS_ISSUER_VALID_ISSUER_URI_SUFFIX + "' have to be specified");
+            }
+            if (validIssuerUris.contains(validIssuerUri)) {
+                throw new ConfigException("OAuth validator configuration error: the same valid issuer uri is configured for more than one issuer: " + validIssuerUri);
+            }
+            TokenValidator issuerValidator = setupJWKSValidator(configId != null ? configId + "-" + name : null,
+                    jwksUri, validIssuerUri, checkTokenType,
+                    usernameClaim, fallbackUsernameClaim, fallbackUsernamePrefix,
+                    groupQuery, groupDelimiter, audience, customClaimCheck,
+                    sslTruststore, sslPassword, sslType, sslRnd);
 
-        return effectiveConfigId;
+            validators.add((JWTSignatureValidator) issuerValidator);
+            validIssuerUris.add(validIssuerUri);
+            validatorIds.add(issuerValidator.getValidatorId());
+        }
+
+        // registered like any other validator, so that reconfiguration reuses the instance listening for the keys changes of the issuers
+        ValidatorKey vkey = new ValidatorKey.CompositeValidatorKey("multi-issuer", validatorIds);
+        String effectiveConfigId = configId != null ? configId : vkey.getConfigIdHash();
+
+        Supplier<TokenValidator> factory = () -> new MultiIssuerTokenValidator(effectiveConfigId, validators);
+        return Services.getInstance().getValidators().get(new ConfigurationKey(effectiveConfigId, vkey), factory);
     }
 
     @SuppressWarnings("checkstyle:ParameterNumber")
-    private String setupJWKSValidator(String configId, String jwksUri, String validIssuerUri, boolean checkTokenType,
+    private TokenValidator setupJWKSValidator(String configId, String jwksUri, String validIssuerUri, boolean checkTokenType,
                                     String usernameClaim, String fallbackUsernameClaim, String fallbackUsernamePrefix,
                                     String groupQuery, String groupDelimiter, String audience, String customClaimCheck,
                                     String sslTruststore, String sslPassword, String sslType, String sslRnd) {
@@ -380,6 +645,12 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
         int jwksMinPauseSeconds = config.getValueAsInt(ServerConfig.OAUTH_JWKS_REFRESH_MIN_PAUSE_SECONDS, 1);
         boolean failFast = config.getValueAsBoolean(ServerConfig.OAUTH_FAIL_FAST, true);
         boolean jwksIgnoreKeyUse = config.getValueAsBoolean(ServerConfig.OAUTH_JWKS_IGNORE_KEY_USE, false);
+        boolean jwksRespectCacheControl = config.getValueAsBoolean(ServerConfig.OAUTH_JWKS_RESPECT_CACHE_CONTROL, false);
+        String jwksSnapshotDir = config.getValue(ServerConfig.OAUTH_JWKS_SNAPSHOT_DIR);
+        int validatedTokenCacheSize = config.getValueAsInt(ServerConfig.OAUTH_VALIDATED_TOKEN_CACHE_SIZE, 0);
+        int rejectedTokenCacheSize = config.getValueAsInt(ServerConfig.OAUTH_REJECTED_TOKEN_CACHE_SIZE, 0);
+        int rejectedTokenCacheTtlSeconds = config.getValueAsInt(ServerConfig.OAUTH_REJECTED_TOKEN_CACHE_TTL_SECONDS, 30);
+        int jwksWarmupTokens = config.getValueAsInt(ServerConfig.OAUTH_JWKS_WARMUP_TOKENS, 0);
 
         ValidatorKey vkey = new ValidatorKey.JwtValidatorKey(
                 validIssuerUri,
@@ -400,9 +671,15 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
                 jwksExpirySeconds,
                 jwksMinPauseSeconds,
                 jwksIgnoreKeyUse,
+                jwksRespectCacheControl,
+                jwksSnapshotDir,
                 checkTokenType,
                 connectTimeout,
                 readTimeout,
+                validatedTokenCacheSize,
+                rejectedTokenCacheSize,
+                rejectedTokenCacheTtlSeconds,
+                jwksWarmupTokens,
                 enableMetrics,
                 failFast
         );
@@ -427,13 +704,17 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
                 customClaimCheck,
                 connectTimeout,
                 readTimeout,
+                new JwksOptions()
+                        .withCacheControl(jwksRespectCacheControl)
+                        .withSnapshot(jwksSnapshotDir)
+                        .withValidatedTokenCache(validatedTokenCacheSize)
+                        .withRejectedTokenCache(rejectedTokenCacheSize, rejectedTokenCacheTtlSeconds)
+                        .withWarmup(jwksWarmupTokens),
                 enableMetrics,
                 failFast);
 
         ConfigurationKey confKey = configId != null ? new ConfigurationKey(configId, vkey) : new ConfigurationKey(vkey.getConfigIdHash(), vkey);
-        validator = Services.getInstance().getValidators().get(confKey, factory);
-
-        return effectiveConfigId;
+        return Services.getInstance().getValidators().get(confKey, factory);
     }
 
     private void checkDeprecatedConfig() {
@@ -476,11 +757,27 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
     private void validateConfig() {
         String jwksUri = config.getValue(ServerConfig.OAUTH_JWKS_ENDPOINT_URI);
         String introspectUri = config.getValue(ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI);
+        String issuerNames = config.getValue(ServerConfig.OAUTH_JWKS_ISSUER_NAMES);
+
+        if (issuerNames != null) {
+            if (jwksUri != null || introspectUri != null) {
+                throw new ConfigException("OAuth validator configuration error: OAUTH_JWKS_ISSUER_NAMES (for fast local signature validation of tokens from multiple issuers) can not be combined with OAUTH_JWKS_ENDPOINT_URI or OAUTH_INTROSPECTION_ENDPOINT_URI");
+            }
+            if (!isJwt) {
+                throw new ConfigException("OAuth validator configuration error: OAUTH_JWKS_ISSUER_NAMES (for fast local signature validation of tokens from multiple issuers) is not compatible with OAUTH_ACCESS_TOKEN_IS_JWT=false");
+            }
+            return;
+        }
 
         if ((jwksUri == null) && (introspectUri == null)) {
             throw new ConfigException("OAuth validator configuration error: either OAUTH_JWKS_ENDPOINT_URI (for fast local signature validation) or OAUTH_INTROSPECTION_ENDPOINT_URI (for using authorization server during validation) should be specified!");
-        } else if ((jwksUri != null) && (introspectUri != null)) {
-            throw new ConfigException("OAuth validator configuration error: only one of OAUTH_JWKS_ENDPOINT_URI (for fast local signature validation) and OAUTH_INTROSPECTION_ENDPOINT_URI (for using authorization server during validation) can be specified!");
+        }
+
+        boolean hybrid = config.getValueAsInt(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_THREADS, 0) > 0;
+        if (hybrid && (jwksUri == null || introspectUri == null)) {
+            throw new ConfigException("OAuth validator configuration error: OAUTH_INTROSPECTION_BACKGROUND_THREADS (for hybrid validation) requires both OAUTH_JWKS_ENDPOINT_URI and OAUTH_INTROSPECTION_ENDPOINT_URI to be specified");
+        } else if (!hybrid && (jwksUri != null) && (introspectUri != null)) {
+            throw new ConfigException("OAuth validator configuration error: only one of OAUTH_JWKS_ENDPOINT_URI (for fast local signature validation) and OAUTH_INTROSPECTION_ENDPOINT_URI (for using authorization server during validation) can be specified, unless OAUTH_INTROSPECTION_BACKGROUND_THREADS (for hybrid validation) is set!");
         }
 
         if (jwksUri != null && !isJwt) {
@@ -639,6 +936,10 @@ public class JaasServerOauthValidatorCallbackHandler implements AuthenticateCall
         return readTimeout;
     }
 
+    TokenValidator getValidator() {
+        return validator;
+    }
+
     static class BearerTokenWithPayloadImpl implements BearerTokenWithPayload {
 
         private final TokenInfo ti;
@@ -8,6 +8,7 @@ import io.strimzi.kafka.oauth.common.BearerTokenWithPayload;
 import io.strimzi.kafka.oauth.common.Config;
 import io.strimzi.kafka.oauth.common.ConfigException;
 import io.strimzi.kafka.oauth.common.TimeUtil;
+import io.strimzi.kafka.oauth.services.Services;
 import org.apache.kafka.common.Endpoint;
 import org.apache.kafka.common.acl.AclBinding;
 import org.apache.kafka.common.acl.AclBindingFilter;
@@ -34,8 +35,10 @@ import static io.strimzi.kafka.oauth.common.LogUtil.mask;
  * An authorizer that grants access only if the access token used during SASL/OAUTHBEARER based authentication
  * has not yet expired based on expiry time of the token as set by Authorization Server when the token was issued.
  * <p>
- * This authorizer does not detect if the token was invalidated mid-session by explicitly revoking it at the
- * authorization server or by revoking the JWKS signing keys at the authorization server.
+ * This authorizer does not by itself detect if the token was invalidated mid-session by explicitly revoking it at the
+ * authorization server or by revoking the JWKS signing keys at the authorization server. However, when the hybrid validation
+ * is configured on the listener (see <em>oauth.introspection.background.threads</em>), the sessions whose tokens are found
+ * to be inactive by the background introspection are denied as well.
  * <p>
  * To install this authorizer in Kafka broker, specify the following in your 'server.properties':
  * <pre>
@@ -145,6 +148,12 @@ public class OAuthSessionAuthorizer implements Authorizer {
             }
             return true;
         }
+        if (Services.isAvailable() && Services.getInstance().getSessions().isInvalidated(token)) {
+            if (DENY_LOG.isDebugEnabled()) {
+                DENY_LOG.debug("Authorization DENIED due to token invalidation - The token was found to be no longer valid after authentication, for token: " + mask(token.value()));
+            }
+            return true;
+        }
         return false;
     }
 
@@ -15,8 +15,39 @@ public class ServerConfig extends Config {
     public static final String OAUTH_JWKS_REFRESH_SECONDS = "oauth.jwks.refresh.seconds";
     public static final String OAUTH_JWKS_REFRESH_MIN_PAUSE_SECONDS = "oauth.jwks.refresh.min.pause.seconds";
     public static final String OAUTH_JWKS_IGNORE_KEY_USE = "oauth.jwks.ignore.key.use";
+    public static final String OAUTH_JWKS_RESPECT_CACHE_CONTROL = "oauth.jwks.respect.cache.control";
+    public static final String OAUTH_JWKS_SNAPSHOT_DIR = "oauth.jwks.snapshot.dir";
+    public static final String OAUTH_JWKS_WARMUP_TOKENS = "oauth.jwks.warmup.tokens";
+    public static final String OAUTH_JWKS_ISSUER_NAMES = "oauth.jwks.issuer.names";
+    public static final String OAUTH_JWKS_ISSUER_PREFIX = "oauth.jwks.issuer.";
+    public static final String OAUTH_JWKS_ISSUER_ENDPOINT_URI_SUFFIX = ".endpoint.uri";
+    public static final String OAUTH_JWKS_ISSUER_VALID_ISSUER_URI_SUFFIX = ".valid.issuer.uri";
+    public static final String OAUTH_VALIDATED_TOKEN_CACHE_SIZE = "oauth.validated.token.cache.size";
+    public static final String OAUTH_REJECTED_TOKEN_CACHE_SIZE = "oauth.rejected.token.cache.size";
+    public static final String OAUTH_REJECTED_TOKEN_CACHE_TTL_SECONDS = "oauth.rejected.token.cache.ttl.seconds";
     public static final String OAUTH_VALID_ISSUER_URI = "oauth.valid.issuer.uri";
     public static final String OAUTH_INTROSPECTION_ENDPOINT_URI = "oauth.introspection.endpoint.uri";
+    public static final String OAUTH_INTROSPECTION_EXECUTOR_THREADS = "oauth.introspection.executor.threads";
+    public static final String OAUTH_INTROSPECTION_EXECUTOR_QUEUE_SIZE = "oauth.introspection.executor.queue.size";
+    public static final String OAUTH_INTROSPECTION_EXECUTOR_MAX_WAIT_MS = "oauth.introspection.executor.max.wait.ms";
+    public static final String OAUTH_INTROSPECTION_CACHE_SIZE = "oauth.introspection.cache.size";
+    public static final String OAUTH_INTROSPECTION_CACHE_MAX_TTL_SECONDS = "oauth.introspection.cache.max.ttl.seconds";
+    public static final String OAUTH_INTROSPECTION_CACHE_INACTIVE_TTL_SECONDS = "oauth.introspection.cache.inactive.ttl.seconds";
+    public static final String OAUTH_INTROSPECTION_CIRCUIT_BREAKER_ERROR_RATE = "oauth.introspection.circuit.breaker.error.rate";
+    public static final String OAUTH_INTROSPECTION_CIRCUIT_BREAKER_WINDOW_SIZE = "oauth.introspection.circuit.breaker.window.size";
+    public static final String OAUTH_INTROSPECTION_CIRCUIT_BREAKER_OPEN_SECONDS = "oauth.introspection.circuit.breaker.open.seconds";
+    public static final String OAUTH_INTROSPECTION_CIRCUIT_BREAKER_SERVE_STALE = "oauth.introspection.circuit.breaker.serve.stale";
+    public static final String OAUTH_INTROSPECTION_HEDGING_PERCENTILE = "oauth.introspection.hedging.percentile";
+    public static final String OAUTH_INTROSPECTION_HEDGING_BUDGET_PERCENT = "oauth.introspection.hedging.budget.percent";
+    public static final String OAUTH_INTROSPECTION_REINTROSPECT_PERIOD_SECONDS = "oauth.introspection.reintrospect.period.seconds";
+    public static final String OAUTH_INTROSPECTION_REINTROSPECT_THREADS = "oauth.introspection.reintrospect.threads";
+    public static final String OAUTH_INTROSPECTION_REINTROSPECT_MAX_TOKENS = "oauth.introspection.reintrospect.max.tokens";
+    public static final String OAUTH_INTROSPECTION_BACKGROUND_THREADS = "oauth.introspection.background.threads";
+    public static final String OAUTH_INTROSPECTION_BACKGROUND_QUEUE_SIZE = "oauth.introspection.background.queue.size";
+    public static final String OAUTH_INTROSPECTION_BACKGROUND_CACHE_SIZE = "oauth.introspection.background.cache.size";
+    public static final String OAUTH_USERINFO_CACHE_SIZE = "oauth.userinfo.cache.size";
+    public static final String OAUTH_USERINFO_CACHE_TTL_SECONDS = "oauth.userinfo.cache.ttl.seconds";
+    public static final String OAUTH_USERINFO_PARALLEL = "oauth.userinfo.parallel";
     public static final String OAUTH_USERINFO_ENDPOINT_URI = "oauth.userinfo.endpoint.uri";
     public static final String OAUTH_CHECK_ACCESS_TOKEN_TYPE = "oauth.check.access.token.type";
     public static final String OAUTH_CHECK_ISSUER = "oauth.check.issuer";
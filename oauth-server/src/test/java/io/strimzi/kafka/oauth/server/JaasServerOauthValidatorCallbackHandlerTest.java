@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2022, Strimzi authors.
+ * License: Apache License 2.0 (see the file LICENSE or http://apache.org/licenses/LICENSE-2.0.html).
+ */
+package io.strimzi.kafka.oauth.server;
+
+import io.strimzi.kafka.oauth.validator.HybridTokenValidator;
+import io.strimzi.kafka.oauth.validator.MultiIssuerTokenValidator;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.security.auth.login.AppConfigurationEntry;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JaasServerOauthValidatorCallbackHandlerTest {
+
+    @Test
+    public void testConfigureMultiIssuer() {
+        Map<String, String> options = new HashMap<>();
+        options.put(ServerConfig.OAUTH_JWKS_ISSUER_NAMES, "first, second");
+        options.put("oauth.jwks.issuer.first.endpoint.uri", "http://localhost:1/first/jwks");
+        options.put("oauth.jwks.issuer.first.valid.issuer.uri", "https://first/issuer");
+        options.put("oauth.jwks.issuer.second.endpoint.uri", "http://localhost:1/second/jwks");
+        options.put("oauth.jwks.issuer.second.valid.issuer.uri", "https://second/issuer");
+        options.put(ServerConfig.OAUTH_USERNAME_CLAIM, "preferred_username");
+        // the JWKS endpoints are not reachable
+        options.put(ServerConfig.OAUTH_FAIL_FAST, "false");
+        options.put(ServerConfig.OAUTH_ENABLE_METRICS, "true");
+
+        JaasServerOauthValidatorCallbackHandler handler = configure(options);
+        Assert.assertTrue("Should be a multi issuer validator", handler.getValidator() instanceof MultiIssuerTokenValidator);
+
+        // reconfiguration reuses the validator registered for the same configuration
+        JaasServerOauthValidatorCallbackHandler other = configure(options);
+        Assert.assertSame("Should reuse the same validator", handler.getValidator(), other.getValidator());
+
+        options.put(ServerConfig.OAUTH_JWKS_ISSUER_NAMES, "second");
+        JaasServerOauthValidatorCallbackHandler single = configure(options);
+        Assert.assertNotSame("Should not reuse the validator for different issuers", handler.getValidator(), single.getValidator());
+    }
+
+    @Test
+    public void testConfigureHybrid() {
+        Map<String, String> options = new HashMap<>();
+        options.put(ServerConfig.OAUTH_JWKS_ENDPOINT_URI, "http://localhost:1/hybrid/jwks");
+        options.put(ServerConfig.OAUTH_INTROSPECTION_ENDPOINT_URI, "http://localhost:1/hybrid/introspect");
+        options.put(ServerConfig.OAUTH_VALID_ISSUER_URI, "https://hybrid/issuer");
+        options.put(ServerConfig.OAUTH_CLIENT_ID, "kafka");
+        options.put(ServerConfig.OAUTH_CLIENT_SECRET, "kafka-secret");
+        options.put(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_THREADS, "1");
+        options.put(ServerConfig.OAUTH_FAIL_FAST, "false");
+
+        JaasServerOauthValidatorCallbackHandler handler = configure(options);
+        Assert.assertTrue("Should be a hybrid validator", handler.getValidator() instanceof HybridTokenValidator);
+
+        // reconfiguration reuses the validator with its executor and cache
+        JaasServerOauthValidatorCallbackHandler other = configure(options);
+        Assert.assertSame("Should reuse the same validator", handler.getValidator(), other.getValidator());
+
+        options.put(ServerConfig.OAUTH_INTROSPECTION_BACKGROUND_CACHE_SIZE, "100");
+        JaasServerOauthValidatorCallbackHandler changed = configure(options);
+        Assert.assertNotSame("Should not reuse the validator with a different cache size", handler.getValidator(), changed.getValidator());
+    }
+
+    private static JaasServerOauthValidatorCallbackHandler configure(Map<String, String> options) {
+        List<AppConfigurationEntry> jaasConfig = Collections.singletonList(new AppConfigurationEntry(OAuthBearerLoginModule.class.getName(),
+                AppConfigurationEntry.LoginModuleControlFlag.REQUIRED, options));
+
+        JaasServerOauthValidatorCallbackHandler handler = new JaasServerOauthValidatorCallbackHandler();
+        handler.configure(new HashMap<>(), OAuthBearerLoginModule.OAUTHBEARER_MECHANISM, jaasConfig);
+        return handler;
+    }
+}